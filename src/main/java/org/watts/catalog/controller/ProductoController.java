@@ -4,8 +4,8 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.persistence.criteria.Predicate;
 import org.springdoc.core.annotations.ParameterObject;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -17,6 +17,7 @@ import org.watts.catalog.service.ProductoService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.watts.shared.enums.ModoTotal;
 import org.watts.shared.service.StorageService;
 import org.watts.shared.utils.SpecificationUtils;
 
@@ -54,17 +55,19 @@ public class ProductoController {
     }
 
     // Endpoint para obtener todos los productos Arreglado: Ahora es paginado para evitar problemas con muchos productos
+    // Con total=SIN_TOTAL o total=APROXIMADO se evita el COUNT de cada página
     @GetMapping
     @PreAuthorize("hasAuthority('PRODUCTO_LEER')")
-    public ResponseEntity<Page<ProductoResponse>> obtenerProductos(
+    public ResponseEntity<Slice<ProductoResponse>> obtenerProductos(
             @ParameterObject Pageable pageable,
             @RequestParam(required = false) String codigoBase,
             @RequestParam(required = false) String codigoMatchMode,
             @RequestParam(required = false) String nombre,
             @RequestParam(required = false) String nombreMatchMode,
-            @RequestParam(required = false) Boolean activo
+            @RequestParam(required = false) Boolean activo,
+            @RequestParam(defaultValue = "EXACTO") ModoTotal total
     ) {
-        return ResponseEntity.ok(productoService.listarProductos(pageable, codigoBase, codigoMatchMode, nombre, nombreMatchMode, activo));
+        return ResponseEntity.ok(productoService.listarProductos(pageable, codigoBase, codigoMatchMode, nombre, nombreMatchMode, activo, total));
     }
 
     // Endpoint para exportar productos
@@ -4,8 +4,8 @@ package org.watts.catalog.controller;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springdoc.core.annotations.ParameterObject;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -14,6 +14,7 @@ import org.springframework.web.multipart.MultipartFile;
 import org.watts.catalog.dto.VarianteRequest;
 import org.watts.catalog.dto.VarianteResponse;
 import org.watts.catalog.service.VarianteService;
+import org.watts.shared.enums.ModoTotal;
 import org.watts.shared.service.StorageService;
 
 
@@ -50,7 +51,7 @@ public class VarianteController {
     // Endpoint actualizado con page para obtener todas las variantes con paginación
     @GetMapping
     @PreAuthorize("hasAuthority('VARIANTE_LEER')")
-    public ResponseEntity<Page<VarianteResponse>> listarVariantes(
+    public ResponseEntity<Slice<VarianteResponse>> listarVariantes(
             @ParameterObject Pageable pageable,
             @RequestParam(required = false) Long productoId,
             @RequestParam(required = false) String sku,
@@ -58,7 +59,8 @@ public class VarianteController {
             @RequestParam(required = false) String talla,
             @RequestParam(required = false) String tallaMatchMode,
             @RequestParam(required = false) String color,
-            @RequestParam(required = false) String colorMatchMode
+            @RequestParam(required = false) String colorMatchMode,
+            @RequestParam(defaultValue = "EXACTO") ModoTotal total
     ) {
         return ResponseEntity.ok(varianteService.listarVariantes(
                 productoId,
@@ -68,7 +70,8 @@ public class VarianteController {
                 talla,
                 tallaMatchMode,
                 color,
-                colorMatchMode
+                colorMatchMode,
+                total
         ));
     }
 
@@ -0,0 +1,10 @@
+package org.watts.catalog.dto;
+
+// Fila de la exportación de productos (PDF/CSV)
+public record ProductoExportacion(
+        String codigoBase,
+        String nombre,
+        String caracteristicasTecnicas,
+        boolean activo
+) {
+}
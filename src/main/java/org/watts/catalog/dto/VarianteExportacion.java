@@ -0,0 +1,13 @@
+package org.watts.catalog.dto;
+
+// Fila de la exportación de variantes (PDF/CSV), con los nombres de producto, talla y color ya resueltos
+public record VarianteExportacion(
+        String sku,
+        String productoNombre,
+        String talla,
+        String color,
+        Double precioCompra,
+        Double precioVenta,
+        boolean activo
+) {
+}
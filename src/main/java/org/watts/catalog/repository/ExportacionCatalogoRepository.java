@@ -0,0 +1,76 @@
+package org.watts.catalog.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Repository;
+import org.watts.catalog.dto.ProductoExportacion;
+import org.watts.catalog.dto.VarianteExportacion;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.shared.utils.LecturaContinua;
+
+import java.util.stream.Stream;
+
+// Exportaciones del catálogo leídas por bloques y construidas directamente como filas del informe:
+// no se cargan entidades (nada que desconectar ni limpiar al avanzar) y producto, talla y color van en la misma SELECT.
+// Los Stream se consumen dentro de una transacción y se cierran
+@Repository
+public class ExportacionCatalogoRepository {
+
+    private final EntityManager entityManager;
+
+    public ExportacionCatalogoRepository(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    public Stream<ProductoExportacion> productos(Specification<Producto> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductoExportacion> query = cb.createQuery(ProductoExportacion.class);
+        Root<Producto> root = query.from(Producto.class);
+
+        query.select(cb.construct(ProductoExportacion.class,
+                root.get("codigoBase"),
+                root.get("nombre"),
+                root.get("caracteristicasTecnicas"),
+                root.get("activo")));
+        filtrar(query, root, cb, spec);
+        query.orderBy(cb.asc(root.get("id")));
+        return LecturaContinua.abrir(entityManager.createQuery(query));
+    }
+
+    public Stream<VarianteExportacion> variantes(Specification<Variante> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<VarianteExportacion> query = cb.createQuery(VarianteExportacion.class);
+        Root<Variante> root = query.from(Variante.class);
+
+        Join<Variante, Producto> producto = root.join("producto");
+        Join<Variante, Talla> talla = root.join("talla");
+        Join<Variante, Color> color = root.join("color");
+
+        query.select(cb.construct(VarianteExportacion.class,
+                root.get("sku"),
+                producto.get("nombre"),
+                talla.get("nombre"),
+                color.get("nombre"),
+                root.get("precioCompra"),
+                root.get("precioVenta"),
+                root.get("activo")));
+        filtrar(query, root, cb, spec);
+        query.orderBy(cb.asc(root.get("id")));
+        return LecturaContinua.abrir(entityManager.createQuery(query));
+    }
+
+    private static <T> void filtrar(CriteriaQuery<?> query, Root<T> root, CriteriaBuilder cb, Specification<T> spec) {
+        Predicate predicado = spec != null ? spec.toPredicate(root, query, cb) : null;
+        if (predicado != null) {
+            query.where(predicado);
+        }
+    }
+}
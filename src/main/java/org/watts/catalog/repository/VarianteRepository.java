@@ -2,11 +2,14 @@ package org.watts.catalog.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.watts.catalog.model.Variante;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,6 +19,22 @@ public interface VarianteRepository extends JpaRepository<Variante, Long>, JpaSp
     // Se usa para buscar una variante por su SKU
     Optional<Variante> findBySku(String sku);
 
+    // Se usa para resolver un SKU con su producto en la misma consulta (índice de referencias de movimientos)
+    @EntityGraph(attributePaths = {"producto", "talla", "color"})
+    Optional<Variante> findConProductoBySku(String sku);
+
+    // Se usa para cargar el índice de referencias de movimientos al arrancar, con una sola consulta
+    @EntityGraph(attributePaths = {"producto", "talla", "color"})
+    @Query("select v from Variante v")
+    List<Variante> findAllConProducto();
+
+    // Se usa para resolver de una sola consulta todos los SKUs de un lote de movimientos
+    List<Variante> findBySkuIn(Collection<String> skus);
+
+    // Se usa para cargar de una vez todos los SKUs al validar una importación de movimientos
+    @Query("select v.sku from Variante v")
+    List<String> findAllSkus();
+
     // Se usa para buscar todas las variantes de un producto específico (Paginado)
     Page<Variante> findByProductoIdAndActivo(Long productoId, Boolean activo, Pageable pageable);
 
@@ -4,6 +4,8 @@ import org.springframework.stereotype.Service;
 import org.watts.catalog.dto.ColorRequest;
 import org.watts.catalog.model.Color;
 import org.watts.catalog.repository.ColorRepository;
+import org.watts.inventory.service.IndiceReferenciasService;
+import org.watts.inventory.service.VistaInventarioService;
 import org.springframework.transaction.annotation.Transactional;
 import org.watts.shared.exception.ResourceNotFoundException;
 
@@ -13,9 +15,14 @@ import java.util.List;
 public class ColorService {
 
     private final ColorRepository colorRepository;
+    private final VistaInventarioService vistaInventarioService;
+    private final IndiceReferenciasService indiceReferencias;
 
-    public ColorService(ColorRepository colorRepository) {
+    public ColorService(ColorRepository colorRepository, VistaInventarioService vistaInventarioService,
+                        IndiceReferenciasService indiceReferencias) {
         this.colorRepository = colorRepository;
+        this.vistaInventarioService = vistaInventarioService;
+        this.indiceReferencias = indiceReferencias;
     }
 
     // Metodo para crear un nuevo color
@@ -36,6 +43,9 @@ public class ColorService {
                 .orElseThrow(() -> new ResourceNotFoundException("Color", id));
 
         color.setNombre(request.nombre());
+        // El nombre está copiado en la vista de inventario y en el índice de referencias de movimientos
+        vistaInventarioService.renombrarColor(id, request.nombre());
+        indiceReferencias.renombrarColor(id, request.nombre());
 
         return colorRepository.save(color);
     }
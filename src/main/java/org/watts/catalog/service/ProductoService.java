@@ -2,17 +2,24 @@ package org.watts.catalog.service;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.domain.Specification;
+import org.watts.catalog.dto.ProductoExportacion;
 import org.watts.catalog.dto.ProductoRequest;
 import org.watts.catalog.dto.ProductoResponse;
 import org.watts.catalog.mapper.ProductoMapper;
 import org.watts.catalog.model.Producto;
 import org.watts.catalog.model.Variante;
+import org.watts.catalog.repository.ExportacionCatalogoRepository;
 import org.watts.catalog.repository.ProductoRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.watts.inventory.service.IndiceReferenciasService;
+import org.watts.inventory.service.VistaInventarioService;
+import org.watts.shared.enums.ModoTotal;
 import org.watts.shared.exception.ResourceNotFoundException;
 import jakarta.persistence.criteria.Predicate;
+import org.watts.shared.service.PaginacionService;
 import org.watts.shared.service.ReportService;
 import org.watts.shared.service.StorageService;
 import org.watts.shared.utils.SpecificationUtils;
@@ -20,6 +27,7 @@ import org.watts.shared.utils.SpecificationUtils;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service
 public class ProductoService {
@@ -28,16 +36,28 @@ public class ProductoService {
     private final ProductoMapper productoMapper;
     private final ReportService reportService;
     private final StorageService storageService;
+    private final VistaInventarioService vistaInventarioService;
+    private final PaginacionService paginacionService;
+    private final ExportacionCatalogoRepository exportacionCatalogo;
+    private final IndiceReferenciasService indiceReferencias;
 
     public ProductoService(ProductoRepository productoRepository,
                            ProductoMapper productoMapper,
                            ReportService reportService,
-                           StorageService storageService
+                           StorageService storageService,
+                           VistaInventarioService vistaInventarioService,
+                           PaginacionService paginacionService,
+                           IndiceReferenciasService indiceReferencias,
+                           ExportacionCatalogoRepository exportacionCatalogo
     ) {
         this.productoRepository = productoRepository;
         this.productoMapper = productoMapper;
         this.reportService = reportService;
         this.storageService = storageService;
+        this.vistaInventarioService = vistaInventarioService;
+        this.paginacionService = paginacionService;
+        this.indiceReferencias = indiceReferencias;
+        this.exportacionCatalogo = exportacionCatalogo;
     }
 
     @Transactional
@@ -85,6 +105,8 @@ public class ProductoService {
         // ------------------------------------------
         // Logica para actualizar codigo base y SKUs
         String nuevoCodigo = request.codigoBase().trim().toUpperCase();
+        // Las variantes llevan SKU y nombre del producto en el índice de referencias de movimientos
+        boolean cambiaIndice = !nuevoCodigo.equals(producto.getCodigoBase()) || !request.nombre().equals(producto.getNombre());
         // Verificamos si el código ha cambiado respecto al que ya tenía
         if (!nuevoCodigo.equals(producto.getCodigoBase())) {
             // Si cambió, verificamos que el nuevo código no esté ocupado por otro producto
@@ -99,11 +121,15 @@ public class ProductoService {
                 for (Variante variante : producto.getVariantes()) {
                     // Reutilizamos el metodo existente en la entidad Variante
                     variante.generarSkuAutomatico();
+                    vistaInventarioService.actualizarSku(variante.getId(), variante.getSku());
                 }
             }
         }
         // -------------------------------------------
         // Actualizamos los datos
+        if (!request.nombre().equals(producto.getNombre())) {
+            vistaInventarioService.renombrarProducto(producto.getId(), request.nombre());
+        }
         producto.setNombre(request.nombre());
         producto.setCaracteristicasTecnicas(request.caracteristicasTecnicas());
         // Si el producto ya tenía una imagen, la borramos del FTP
@@ -117,6 +143,9 @@ public class ProductoService {
 
         // Lo guardamos en la BDD
         Producto productoActualizado = productoRepository.save(producto);
+        if (cambiaIndice && productoActualizado.getVariantes() != null) {
+            productoActualizado.getVariantes().forEach(indiceReferencias::registrarVariante);
+        }
 
         return productoMapper.toResponse(productoActualizado);
     }
@@ -153,7 +182,28 @@ public class ProductoService {
             String nombreMode,
             Boolean activo
     ) {
-        Specification<Producto> spec = (root, query, cb) -> {
+        return productoRepository.findAll(especificacion(codigoBase, codigoMode, nombre, nombreMode, activo), pageable)
+                .map(productoMapper::toResponse);
+    }
+
+    // Metodo que devuelve los productos con el total exacto, aproximado o sin total (solo si hay página siguiente)
+    public Slice<ProductoResponse> listarProductos(
+            Pageable pageable,
+            String codigoBase,
+            String codigoMode,
+            String nombre,
+            String nombreMode,
+            Boolean activo,
+            ModoTotal modo
+    ) {
+        return paginacionService.buscar(productoRepository, especificacion(codigoBase, codigoMode, nombre, nombreMode, activo),
+                        pageable, modo, PaginacionService.clave("productos", codigoBase, codigoMode, nombre, nombreMode, activo))
+                .map(productoMapper::toResponse);
+    }
+
+    private static Specification<Producto> especificacion(String codigoBase, String codigoMode, String nombre,
+                                                          String nombreMode, Boolean activo) {
+        return (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
 
             SpecificationUtils.addPredicate(predicates, cb, root.get("codigoBase"), codigoBase, codigoMode);
@@ -165,18 +215,18 @@ public class ProductoService {
 
             return cb.and(predicates.toArray(new Predicate[0]));
         };
-
-        return productoRepository.findAll(spec, pageable).map(productoMapper::toResponse);
     }
 
     // Metodo para exportar usando el servicio ReportService
+    // Las filas se leen por bloques y se escriben según llegan; la transacción mantiene abierta la lectura
+    @Transactional(readOnly = true)
     public void exportar(Specification<Producto> spec, String formato, OutputStream outputStream) {
-        List<Producto> lista = productoRepository.findAll(spec);
-
-        if ("csv".equalsIgnoreCase(formato)) {
-            reportService.generarCsvProductos(lista, outputStream);
-        } else {
-            reportService.generarPdfProductos(lista, outputStream);
+        try (Stream<ProductoExportacion> productos = exportacionCatalogo.productos(spec)) {
+            if ("csv".equalsIgnoreCase(formato)) {
+                reportService.generarCsvProductos(productos, outputStream);
+            } else {
+                reportService.generarPdfProductos(productos, outputStream);
+            }
         }
     }
 }
@@ -4,6 +4,8 @@ import org.springframework.stereotype.Service;
 import org.watts.catalog.dto.TallaRequest;
 import org.watts.catalog.model.Talla;
 import org.watts.catalog.repository.TallaRepository;
+import org.watts.inventory.service.IndiceReferenciasService;
+import org.watts.inventory.service.VistaInventarioService;
 import org.watts.shared.exception.ResourceNotFoundException;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -13,9 +15,14 @@ import java.util.List;
 public class TallaService {
 
     private final TallaRepository tallaRepository;
+    private final VistaInventarioService vistaInventarioService;
+    private final IndiceReferenciasService indiceReferencias;
 
-    public TallaService(TallaRepository tallaRepository) {
+    public TallaService(TallaRepository tallaRepository, VistaInventarioService vistaInventarioService,
+                        IndiceReferenciasService indiceReferencias) {
         this.tallaRepository = tallaRepository;
+        this.vistaInventarioService = vistaInventarioService;
+        this.indiceReferencias = indiceReferencias;
     }
 
     // Metodo para crear una nueva talla
@@ -36,6 +43,9 @@ public class TallaService {
                 .orElseThrow(() -> new ResourceNotFoundException("Talla", id));
 
         talla.setNombre(request.nombre());
+        // El nombre está copiado en la vista de inventario y en el índice de referencias de movimientos
+        vistaInventarioService.renombrarTalla(id, request.nombre());
+        indiceReferencias.renombrarTalla(id, request.nombre());
 
         return tallaRepository.save(talla);
     }
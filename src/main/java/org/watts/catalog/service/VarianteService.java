@@ -3,11 +3,13 @@ package org.watts.catalog.service;
 import aj.org.objectweb.asm.commons.InstructionAdapter;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.watts.catalog.dto.ProductoResumen;
+import org.watts.catalog.dto.VarianteExportacion;
 import org.watts.catalog.dto.VarianteRequest;
 import org.watts.catalog.dto.VarianteResponse;
 import org.watts.catalog.mapper.VarianteMapper;
@@ -16,10 +18,14 @@ import org.watts.catalog.model.Producto;
 import org.watts.catalog.model.Talla;
 import org.watts.catalog.model.Variante;
 import org.watts.catalog.repository.ColorRepository;
+import org.watts.catalog.repository.ExportacionCatalogoRepository;
 import org.watts.catalog.repository.ProductoRepository;
 import org.watts.catalog.repository.TallaRepository;
 import org.watts.catalog.repository.VarianteRepository;
+import org.watts.inventory.service.IndiceReferenciasService;
+import org.watts.shared.enums.ModoTotal;
 import org.watts.shared.exception.ResourceNotFoundException;
+import org.watts.shared.service.PaginacionService;
 import org.watts.shared.service.ReportService;
 import org.watts.shared.service.StorageService;
 import org.watts.shared.utils.SpecificationUtils;
@@ -28,6 +34,7 @@ import jakarta.persistence.criteria.Predicate;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service
 public class VarianteService {
@@ -39,6 +46,9 @@ public class VarianteService {
     private final VarianteMapper varianteMapper;
     private final ReportService reportService;
     private final StorageService storageService;
+    private final PaginacionService paginacionService;
+    private final ExportacionCatalogoRepository exportacionCatalogo;
+    private final IndiceReferenciasService indiceReferencias;
 
     public VarianteService(VarianteRepository varianteRepository,
                            ProductoRepository productoRepository,
@@ -46,7 +56,10 @@ public class VarianteService {
                            ColorRepository colorRepository,
                            VarianteMapper varianteMapper,
                            ReportService reportService,
-                           StorageService storageService
+                           StorageService storageService,
+                           PaginacionService paginacionService,
+                           IndiceReferenciasService indiceReferencias,
+                           ExportacionCatalogoRepository exportacionCatalogo
     ) {
         this.varianteRepository = varianteRepository;
         this.productoRepository = productoRepository;
@@ -55,6 +68,9 @@ public class VarianteService {
         this.varianteMapper = varianteMapper;
         this.reportService = reportService;
         this.storageService = storageService;
+        this.paginacionService = paginacionService;
+        this.indiceReferencias = indiceReferencias;
+        this.exportacionCatalogo = exportacionCatalogo;
     }
 
     // Metodo para crear nuevas variantes
@@ -83,6 +99,7 @@ public class VarianteService {
 
         // 3 Guardamos
         Variante varianteGuardada = varianteRepository.save(nuevaVariante);
+        indiceReferencias.registrarVariante(varianteGuardada);
 
         // 4 Devolvemos conversión a DTO
         return varianteMapper.toResponse(varianteGuardada);
@@ -112,6 +129,7 @@ public class VarianteService {
         }
         // Lo guardamos en la BDD
         Variante varianteActualizada = varianteRepository.save(variante);
+        indiceReferencias.registrarVariante(varianteActualizada);
 
         return varianteMapper.toResponse(varianteActualizada);
     }
@@ -126,6 +144,7 @@ public class VarianteService {
         variante.setActivo(false);
         // Lo guardamos en la BDD
         varianteRepository.save(variante);
+        indiceReferencias.registrarVariante(variante);
     }
 
     @Transactional
@@ -139,6 +158,7 @@ public class VarianteService {
         }
         variante.setActivo(true);
         varianteRepository.save(variante);
+        indiceReferencias.registrarVariante(variante);
     }
 
     // Metodo modificado para que devuelva todas las variantes activas de un producto o mostrar todas con paginación
@@ -152,8 +172,31 @@ public class VarianteService {
             String color,
             String colorMatchMode
     ) {
+        return varianteRepository.findAll(especificacion(productoId, sku, skuMatchMode, talla, tallaMatchMode, color, colorMatchMode), pageable)
+                .map(varianteMapper::toResponse);
+    }
+
+    // Metodo para listar las variantes con el total exacto, aproximado o sin total (solo si hay página siguiente)
+    public Slice<VarianteResponse> listarVariantes(
+            Long productoId,
+            Pageable pageable,
+            String sku,
+            String skuMatchMode,
+            String talla,
+            String tallaMatchMode,
+            String color,
+            String colorMatchMode,
+            ModoTotal modo
+    ) {
+        return paginacionService.buscar(varianteRepository,
+                        especificacion(productoId, sku, skuMatchMode, talla, tallaMatchMode, color, colorMatchMode), pageable, modo,
+                        PaginacionService.clave("variantes", productoId, sku, skuMatchMode, talla, tallaMatchMode, color, colorMatchMode))
+                .map(varianteMapper::toResponse);
+    }
 
-        Specification<Variante> spec = (root, query, cb) -> {
+    private static Specification<Variante> especificacion(Long productoId, String sku, String skuMatchMode, String talla,
+                                                          String tallaMatchMode, String color, String colorMatchMode) {
+        return (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
 
             // 1. Filtro EXACTO por Producto Padre
@@ -178,18 +221,18 @@ public class VarianteService {
 
             return cb.and(predicates.toArray(new Predicate[0]));
         };
-
-        return varianteRepository.findAll(spec, pageable).map(varianteMapper::toResponse);
     }
 
     // Metodo para exportar usando el servicio ReportService
+    // Las filas se leen por bloques y se escriben según llegan; la transacción mantiene abierta la lectura
+    @Transactional(readOnly = true)
     public void exportar(Specification<Variante> spec, String formato, OutputStream outputStream) {
-        List<Variante> lista = varianteRepository.findAll(spec);
-
-        if ("csv".equalsIgnoreCase(formato)) {
-            reportService.generarCsvVariantes(lista, outputStream);
-        } else {
-            reportService.generarPdfVariantes(lista, outputStream);
+        try (Stream<VarianteExportacion> variantes = exportacionCatalogo.variantes(spec)) {
+            if ("csv".equalsIgnoreCase(formato)) {
+                reportService.generarCsvVariantes(variantes, outputStream);
+            } else {
+                reportService.generarPdfVariantes(variantes, outputStream);
+            }
         }
     }
 }
@@ -27,6 +27,9 @@ public class CorsConfig {
         // HEADERS PERMITIDOS
         config.setAllowedHeaders(List.of("*"));
 
+        // HEADERS QUE EL FRONT PUEDE LEER
+        config.setExposedHeaders(List.of("Idempotent-Replayed"));
+
         // PERMITIR COOKIES / AUTH HEADER
         config.setAllowCredentials(true);
 
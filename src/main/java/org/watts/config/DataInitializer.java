@@ -66,6 +66,7 @@ public class DataInitializer {
                 "PRODUCTO_LEER", "PRODUCTO_CREAR", "PRODUCTO_EDITAR", "PRODUCTO_ELIMINAR",
                 "VARIANTE_LEER", "VARIANTE_CREAR", "VARIANTE_EDITAR", "VARIANTE_ELIMINAR",
                 "ALMACEN_LEER", "ALMACEN_CREAR", "ALMACEN_EDITAR", "ALMACEN_ELIMINAR",
+                "INVENTARIO_CONCILIAR",
                 // Transacciones
                 "MOVIMIENTO_LEER", "MOVIMIENTO_CREAR",
                 // Proyectos
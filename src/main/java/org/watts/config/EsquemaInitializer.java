@@ -0,0 +1,109 @@
+package org.watts.config;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.watts.inventory.service.VistaInventarioService;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+// Ajustes de esquema que ddl-auto=update no sabe hacer sobre tablas que ya existen en MySQL
+// Se aplican antes de construir el EntityManagerFactory: ni Hibernate ni ningún bean (servidor web,
+// tareas programadas, @PostConstruct) pueden leer o reservar ids hasta que el esquema está al día
+@Configuration
+public class EsquemaInitializer {
+
+    // Columnas de enums cuyo tipo ENUM de MySQL se queda corto cuando el enum gana valores
+    private static final Map<String, String> COLUMNAS_ENUM = Map.of(
+            "movimientos", "tipo",
+            "notificaciones_pendientes", "estado"
+    );
+
+    // Tablas cuyo id pasó de AUTO_INCREMENT a secuencia, con su secuencia
+    // (en MySQL Hibernate emula la secuencia con una tabla de una fila y columna next_val)
+    private static final Map<String, String> SECUENCIAS = Map.of(
+            "movimientos", "movimientos_seq",
+            "notificaciones_pendientes", "notificaciones_pendientes_seq"
+    );
+
+    @Bean
+    public MigracionEsquema migracionEsquema(DataSource dataSource) {
+        return new MigracionEsquema(new JdbcTemplate(dataSource));
+    }
+
+    // El EntityManagerFactory espera a la migración (igual que hace Spring Boot con Flyway)
+    @Bean
+    public static EntityManagerFactoryDependsOnPostProcessor entityManagerFactoryTrasMigracion() {
+        return new EntityManagerFactoryDependsOnPostProcessor("migracionEsquema");
+    }
+
+    public static class MigracionEsquema implements InitializingBean {
+
+        private final JdbcTemplate jdbcTemplate;
+
+        public MigracionEsquema(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @Override
+        public void afterPropertiesSet() {
+            if (!esMySql()) return;
+            convertirEnums();
+            ajustarSecuencias();
+        }
+
+        // Hibernate crea las columnas de enums como ENUM de MySQL: al añadir valores nuevos
+        // (transferencias, notificaciones en envío) hay que pasarlas a VARCHAR o los INSERT fallan
+        private void convertirEnums() {
+            COLUMNAS_ENUM.forEach((tabla, columna) -> {
+                if (tipoColumna(tabla, columna).contains("enum")) {
+                    jdbcTemplate.execute("ALTER TABLE " + tabla + " MODIFY " + columna + " VARCHAR(30)");
+                    System.out.println("Columna " + tabla + "." + columna + " convertida a VARCHAR");
+                }
+            });
+        }
+
+        // Hibernate crearía la tabla de la secuencia empezando en 1: si la tabla de datos ya tiene filas,
+        // la creamos nosotros (o la adelantamos) por encima del último id existente
+        private void ajustarSecuencias() {
+            SECUENCIAS.forEach((tabla, secuencia) -> {
+                if (tipoColumna(tabla, "id").isEmpty()) return;
+
+                Long maximo = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + tabla, Long.class);
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + secuencia + " (next_val BIGINT) ENGINE=InnoDB");
+                int actualizadas = jdbcTemplate.update("INSERT INTO " + secuencia + " (next_val) "
+                        + "SELECT ? FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM " + secuencia + ")", maximo + 1);
+                actualizadas += jdbcTemplate.update(
+                        "UPDATE " + secuencia + " SET next_val = ? WHERE next_val <= ?", maximo + 1, maximo);
+                if (actualizadas > 0) {
+                    System.out.println("Secuencia " + secuencia + " adelantada a " + (maximo + 1));
+                }
+            });
+        }
+
+        private List<String> tipoColumna(String tabla, String columna) {
+            return jdbcTemplate.queryForList("""
+                    SELECT DATA_TYPE FROM information_schema.COLUMNS
+                    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?
+                    """, String.class, tabla, columna);
+        }
+
+        private boolean esMySql() {
+            String producto = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+            return producto != null && producto.toLowerCase().contains("mysql");
+        }
+    }
+
+    // Rellena las tablas de lectura del inventario la primera vez que arranca esta versión
+    @Bean
+    public CommandLineRunner reconstruirVistaInventario(VistaInventarioService vistaInventarioService) {
+        return args -> vistaInventarioService.reconstruirSiVacia();
+    }
+}
@@ -0,0 +1,27 @@
+package org.watts.dashboard.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.watts.dashboard.dto.DashboardResponse;
+import org.watts.dashboard.service.DashboardService;
+
+@RestController
+@RequestMapping("/api/dashboard")
+public class DashboardController {
+
+    private final DashboardService dashboardService;
+
+    public DashboardController(DashboardService dashboardService) {
+        this.dashboardService = dashboardService;
+    }
+
+    // Endpoint con los KPIs del panel; se sirven desde memoria, sin consultas por petición
+    @GetMapping
+    @PreAuthorize("hasAuthority('MOVIMIENTO_LEER')")
+    public ResponseEntity<DashboardResponse> dashboard() {
+        return ResponseEntity.ok(dashboardService.dashboard());
+    }
+}
@@ -0,0 +1,14 @@
+package org.watts.dashboard.dto;
+
+import org.watts.inventory.dto.ValoracionAlmacenResponse;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Panel de control: ventas de hoy, de la semana y del mes, y valor actual del stock por almacén
+public record DashboardResponse(
+        LocalDateTime calculadoEn,
+        List<KpiPeriodoResponse> periodos,
+        List<ValoracionAlmacenResponse> valorStock
+) {
+}
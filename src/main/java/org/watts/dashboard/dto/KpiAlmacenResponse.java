@@ -0,0 +1,4 @@
+package org.watts.dashboard.dto;
+
+public record KpiAlmacenResponse(Long almacenId, long unidadesVendidas, double ingresos, double margenBruto) {
+}
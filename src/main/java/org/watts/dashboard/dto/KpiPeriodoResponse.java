@@ -0,0 +1,17 @@
+package org.watts.dashboard.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Ventas de un periodo (HOY, SEMANA o MES) en total, por almacén y los SKUs que más facturan
+public record KpiPeriodoResponse(
+        String periodo,
+        LocalDate desde,
+        LocalDate hasta,
+        long unidadesVendidas,
+        double ingresos,
+        double margenBruto,
+        List<KpiAlmacenResponse> porAlmacen,
+        List<TopSkuResponse> topSkus
+) {
+}
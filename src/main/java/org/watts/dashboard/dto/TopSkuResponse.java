@@ -0,0 +1,4 @@
+package org.watts.dashboard.dto;
+
+public record TopSkuResponse(Long varianteId, String sku, long unidadesVendidas, double ingresos) {
+}
@@ -0,0 +1,146 @@
+package org.watts.dashboard.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.watts.dashboard.dto.DashboardResponse;
+import org.watts.dashboard.dto.KpiAlmacenResponse;
+import org.watts.dashboard.dto.KpiPeriodoResponse;
+import org.watts.dashboard.dto.TopSkuResponse;
+import org.watts.inventory.dto.ValoracionAlmacenResponse;
+import org.watts.inventory.repository.ValoracionInventarioRepository;
+import org.watts.transaction.dto.TotalesDiaVariante;
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.model.MovimientosAplicadosEvent;
+import org.watts.transaction.repository.ResumenMovimientosDiaRepository;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// KPIs del panel de control calculados desde los agregados (movimientos_diarios y valoracion_inventario),
+// nunca desde movimientos. La respuesta se guarda ya construida: una petición solo lee una referencia.
+// Los días cerrados de la ventana se cargan una vez; cuando se confirman movimientos se vuelve a leer solo
+// el día de hoy y el valor del stock. Como mucho intervalo-ms de retraso tras un movimiento, y max-antiguedad-ms
+// para lo que no avisa (rellenos de totales, volcados del libro en memoria)
+@Service
+public class DashboardService {
+
+    private final ResumenMovimientosDiaRepository resumenRepository;
+    private final ValoracionInventarioRepository valoracionRepository;
+    private final long maxAntiguedadMs;
+    private final int topSkus;
+
+    private final AtomicBoolean sucio = new AtomicBoolean(true);
+    private volatile DashboardResponse actual;
+
+    // Solo los usa refrescar(), que está sincronizado
+    private LocalDate hoy;
+    private List<TotalesDiaVariante> diasCerrados = List.of();
+    private long ultimaCargaCompleta;
+
+    public DashboardService(ResumenMovimientosDiaRepository resumenRepository,
+                            ValoracionInventarioRepository valoracionRepository,
+                            @Value("${dashboard.max-antiguedad-ms:30000}") long maxAntiguedadMs,
+                            @Value("${dashboard.top-skus:10}") int topSkus) {
+        this.resumenRepository = resumenRepository;
+        this.valoracionRepository = valoracionRepository;
+        this.maxAntiguedadMs = maxAntiguedadMs;
+        this.topSkus = topSkus;
+    }
+
+    // Metodo para obtener el panel; solo calcula si todavía no se ha hecho nunca
+    public DashboardResponse dashboard() {
+        DashboardResponse respuesta = actual;
+        if (respuesta == null) {
+            refrescar();
+            respuesta = actual;
+        }
+        return respuesta;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alAplicarMovimientos(MovimientosAplicadosEvent evento) {
+        sucio.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${dashboard.intervalo-ms:1000}")
+    public synchronized void refrescar() {
+        LocalDate dia = LocalDate.now();
+        long ahora = System.currentTimeMillis();
+        boolean completa = !dia.equals(hoy) || ahora - ultimaCargaCompleta >= maxAntiguedadMs;
+        // Se limpia antes de leer: lo que se confirme durante la lectura vuelve a marcarlo
+        if (!sucio.getAndSet(false) && !completa) return;
+
+        if (completa) {
+            LocalDate inicio = inicioVentana(dia);
+            diasCerrados = inicio.isBefore(dia)
+                    ? resumenRepository.totalesPorVariante(TipoMovimiento.VENTA, inicio, dia.minusDays(1))
+                    : List.of();
+            hoy = dia;
+            ultimaCargaCompleta = ahora;
+        }
+        List<TotalesDiaVariante> totales = new ArrayList<>(diasCerrados);
+        totales.addAll(resumenRepository.totalesPorVariante(TipoMovimiento.VENTA, dia, dia));
+
+        List<KpiPeriodoResponse> periodos = List.of(
+                periodo("HOY", dia, dia, totales),
+                periodo("SEMANA", dia.with(DayOfWeek.MONDAY), dia, totales),
+                periodo("MES", dia.withDayOfMonth(1), dia, totales));
+        List<ValoracionAlmacenResponse> valorStock = valoracionRepository.valorPorAlmacen();
+        actual = new DashboardResponse(LocalDateTime.now(), periodos, valorStock);
+    }
+
+    // La ventana empieza en lo que sea antes, el lunes de esta semana o el día 1 del mes
+    private static LocalDate inicioVentana(LocalDate dia) {
+        LocalDate lunes = dia.with(DayOfWeek.MONDAY);
+        LocalDate primeroDeMes = dia.withDayOfMonth(1);
+        return lunes.isBefore(primeroDeMes) ? lunes : primeroDeMes;
+    }
+
+    private static final class Suma {
+        long unidades;
+        double ingresos;
+        double coste;
+        String sku;
+
+        void sumar(TotalesDiaVariante t) {
+            unidades += t.cantidadTotal();
+            ingresos += t.precioVentaTotal();
+            coste += t.precioCompraTotal();
+        }
+    }
+
+    private KpiPeriodoResponse periodo(String nombre, LocalDate desde, LocalDate hasta, List<TotalesDiaVariante> totales) {
+        Suma total = new Suma();
+        Map<Long, Suma> porAlmacen = new TreeMap<>();
+        Map<Long, Suma> porVariante = new TreeMap<>();
+        for (TotalesDiaVariante t : totales) {
+            if (t.dia().isBefore(desde) || t.dia().isAfter(hasta)) continue;
+            total.sumar(t);
+            porAlmacen.computeIfAbsent(t.almacenId(), k -> new Suma()).sumar(t);
+            Suma variante = porVariante.computeIfAbsent(t.varianteId(), k -> new Suma());
+            variante.sumar(t);
+            variante.sku = t.sku();
+        }
+
+        List<KpiAlmacenResponse> almacenes = porAlmacen.entrySet().stream()
+                .map(e -> new KpiAlmacenResponse(e.getKey(), e.getValue().unidades, e.getValue().ingresos,
+                        e.getValue().ingresos - e.getValue().coste))
+                .toList();
+        List<TopSkuResponse> top = porVariante.entrySet().stream()
+                .sorted(Comparator.comparingDouble((Map.Entry<Long, Suma> e) -> e.getValue().ingresos).reversed())
+                .limit(topSkus)
+                .map(e -> new TopSkuResponse(e.getKey(), e.getValue().sku, e.getValue().unidades, e.getValue().ingresos))
+                .toList();
+        return new KpiPeriodoResponse(nombre, desde, hasta, total.unidades, total.ingresos, total.ingresos - total.coste,
+                almacenes, top);
+    }
+}
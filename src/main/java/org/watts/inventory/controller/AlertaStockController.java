@@ -0,0 +1,71 @@
+package org.watts.inventory.controller;
+
+import jakarta.validation.Valid;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.watts.catalog.model.Variante;
+import org.watts.catalog.repository.VarianteRepository;
+import org.watts.inventory.dto.AlertaStockResponse;
+import org.watts.inventory.dto.UmbralStockRequest;
+import org.watts.inventory.dto.UmbralStockResponse;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.repository.AlmacenRepository;
+import org.watts.inventory.service.AlertasStockService;
+import org.watts.shared.exception.ResourceNotFoundException;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/inventario")
+public class AlertaStockController {
+
+    private final AlertasStockService alertasStockService;
+    private final VarianteRepository varianteRepository;
+    private final AlmacenRepository almacenRepository;
+
+    public AlertaStockController(AlertasStockService alertasStockService, VarianteRepository varianteRepository,
+                                 AlmacenRepository almacenRepository) {
+        this.alertasStockService = alertasStockService;
+        this.varianteRepository = varianteRepository;
+        this.almacenRepository = almacenRepository;
+    }
+
+    // Endpoint para crear o cambiar el punto de pedido de una variante en un almacén
+    @PutMapping("/umbrales")
+    @PreAuthorize("hasAuthority('ALMACEN_EDITAR')")
+    public ResponseEntity<UmbralStockResponse> guardarUmbral(@Valid @RequestBody UmbralStockRequest request) {
+        Variante variante = varianteRepository.findBySku(request.varianteSku())
+                .orElseThrow(() -> new ResourceNotFoundException("Variante", request.varianteSku()));
+        Almacen almacen = almacenRepository.findById(request.almacenId())
+                .orElseThrow(() -> new ResourceNotFoundException("Almacen", request.almacenId()));
+        return ResponseEntity.ok(alertasStockService.guardarUmbral(variante, almacen, request.minimo(), request.histeresis()));
+    }
+
+    @DeleteMapping("/umbrales/{id}")
+    @PreAuthorize("hasAuthority('ALMACEN_EDITAR')")
+    public ResponseEntity<Void> eliminarUmbral(@PathVariable Long id) {
+        alertasStockService.eliminarUmbral(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/umbrales")
+    @PreAuthorize("hasAuthority('ALMACEN_LEER')")
+    public ResponseEntity<List<UmbralStockResponse>> listarUmbrales(@RequestParam Long almacenId) {
+        return ResponseEntity.ok(alertasStockService.listarUmbrales(almacenId));
+    }
+
+    // Endpoint para listar las alertas de stock bajo (por defecto solo las que siguen abiertas)
+    @GetMapping("/alertas")
+    @PreAuthorize("hasAuthority('ALMACEN_LEER')")
+    public ResponseEntity<Page<AlertaStockResponse>> listarAlertas(
+            @ParameterObject Pageable pageable,
+            @RequestParam(required = false) Long almacenId,
+            @RequestParam(defaultValue = "true") boolean abiertas
+    ) {
+        return ResponseEntity.ok(alertasStockService.listarAlertas(almacenId, abiertas, pageable));
+    }
+}
@@ -2,8 +2,8 @@ package org.watts.inventory.controller;
 
 import jakarta.validation.Valid;
 import org.springdoc.core.annotations.ParameterObject;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.*;
 import org.watts.inventory.dto.AlmacenRequest;
 import org.watts.inventory.dto.AlmacenResponse;
 import org.watts.inventory.service.AlmacenService;
+import org.watts.shared.enums.ModoTotal;
 import org.watts.shared.service.StorageService;
 
 @RestController
@@ -39,15 +40,16 @@ public class AlmacenController {
     // Endpoint para listar todos los almacenes con paginación
     @GetMapping
     @PreAuthorize("hasAuthority('ALMACEN_LEER')")
-    public ResponseEntity<Page<AlmacenResponse>> listarAlmacenes(
+    public ResponseEntity<Slice<AlmacenResponse>> listarAlmacenes(
             @ParameterObject Pageable pageable,
             @RequestParam(required = false) String codigo,
             @RequestParam(required = false) String codigoMatchMode,
             @RequestParam(required = false) String descripcion,
             @RequestParam(required = false) String descripcionMatchMode,
-            @RequestParam(required = false) Boolean activo
+            @RequestParam(required = false) Boolean activo,
+            @RequestParam(defaultValue = "EXACTO") ModoTotal total
     ) {
-        return ResponseEntity.ok(almacenService.listarAlmacenes(pageable,codigo,codigoMatchMode,descripcion,descripcionMatchMode,activo));
+        return ResponseEntity.ok(almacenService.listarAlmacenes(pageable,codigo,codigoMatchMode,descripcion,descripcionMatchMode,activo,total));
     }
 
     @GetMapping("/{id}")
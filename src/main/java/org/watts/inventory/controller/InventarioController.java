@@ -1,17 +1,30 @@
 package org.watts.inventory.controller;
 
 import org.springdoc.core.annotations.ParameterObject;
-import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.watts.catalog.model.Variante;
 import org.watts.catalog.repository.VarianteRepository;
+import org.watts.inventory.dto.ConciliacionResponse;
 import org.watts.inventory.dto.InventarioResponse;
+import org.watts.inventory.dto.StockAFechaResponse;
 import org.watts.inventory.models.Inventario;
 import org.watts.inventory.repository.AlmacenRepository;
+import org.watts.inventory.service.ConciliacionInventarioService;
 import org.watts.inventory.service.InventarioService;
+import org.watts.inventory.service.SnapshotInventarioService;
+import org.watts.inventory.service.StreamStockService;
+import org.watts.shared.enums.ModoTotal;
+import org.watts.shared.exception.ResourceNotFoundException;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -21,23 +34,38 @@ public class InventarioController {
     private final VarianteRepository varianteRepository;
     private final AlmacenRepository almacenRepository;
     private final InventarioService inventarioService;
+    private final SnapshotInventarioService snapshotInventarioService;
+    private final ConciliacionInventarioService conciliacionInventarioService;
+    private final StreamStockService streamStockService;
 
-    public InventarioController(VarianteRepository varianteRepository, AlmacenRepository almacenRepository,InventarioService inventarioService ){
+    public InventarioController(VarianteRepository varianteRepository, AlmacenRepository almacenRepository,InventarioService inventarioService,
+                                SnapshotInventarioService snapshotInventarioService,
+                                ConciliacionInventarioService conciliacionInventarioService,
+                                StreamStockService streamStockService){
         this.varianteRepository = varianteRepository;
         this.almacenRepository = almacenRepository;
         this.inventarioService = inventarioService;
+        this.snapshotInventarioService = snapshotInventarioService;
+        this.conciliacionInventarioService = conciliacionInventarioService;
+        this.streamStockService = streamStockService;
     }
 
     @GetMapping("/total/{varianteId}")
     @PreAuthorize("hasAuthority('ALMACEN_LEER')")
     public int stockTotal(@PathVariable Long varianteId) {
-        return inventarioService.stockTotal(varianteRepository.findById(varianteId).orElseThrow());
+        // Una sola fila de la tabla de totales; solo si no hay fila comprobamos que la variante existe
+        return inventarioService.stockTotal(varianteId).orElseGet(() -> {
+            if (!varianteRepository.existsById(varianteId)) {
+                throw new ResourceNotFoundException("Variante", varianteId);
+            }
+            return 0;
+        });
     }
 
     // Endpoint para listar el stock por almacén con paginación
     @GetMapping("/stock/{almacenId}")
     @PreAuthorize("hasAuthority('ALMACEN_LEER')")
-    public ResponseEntity<Page<InventarioResponse>> listarStockPorAlmacen(
+    public ResponseEntity<Slice<InventarioResponse>> listarStockPorAlmacen(
             @PathVariable Long almacenId,
             @ParameterObject Pageable pageable,
             @RequestParam(required = false) String producto,
@@ -47,10 +75,55 @@ public class InventarioController {
             @RequestParam(required = false) String talla,
             @RequestParam(required = false) String tallaMatchMode,
             @RequestParam(required = false) String color,
-            @RequestParam(required = false) String colorMatchMode
+            @RequestParam(required = false) String colorMatchMode,
+            @RequestParam(defaultValue = "EXACTO") ModoTotal total
     ) {
         return ResponseEntity.ok(inventarioService.listarStockPorAlmacen(
-                almacenId, pageable, producto, productoMatchMode, sku, skuMatchMode, talla, tallaMatchMode, color, colorMatchMode
+                almacenId, pageable, producto, productoMatchMode, sku, skuMatchMode, talla, tallaMatchMode, color, colorMatchMode, total
         ));
     }
+
+    // Endpoint para consultar el stock de un almacén al final de un día pasado (de una sola variante si se indica el SKU)
+    @GetMapping("/stock-a-fecha")
+    @PreAuthorize("hasAuthority('ALMACEN_LEER')")
+    public ResponseEntity<List<StockAFechaResponse>> stockAFecha(
+            @RequestParam Long almacenId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fecha,
+            @RequestParam(required = false) String varianteSku
+    ) {
+        if (!almacenRepository.existsById(almacenId)) {
+            throw new ResourceNotFoundException("Almacén", almacenId);
+        }
+        if (varianteSku == null || varianteSku.isBlank()) {
+            return ResponseEntity.ok(snapshotInventarioService.stockAFecha(almacenId, fecha));
+        }
+        Variante variante = varianteRepository.findBySku(varianteSku)
+                .orElseThrow(() -> new ResourceNotFoundException("Variante", varianteSku));
+        return ResponseEntity.ok(List.of(snapshotInventarioService.stockAFecha(variante, almacenId, fecha)));
+    }
+
+    // Endpoint para lanzar la conciliación del inventario con los movimientos (con reparar=true corrige los descuadres)
+    @PostMapping("/conciliacion")
+    @PreAuthorize("hasAuthority('INVENTARIO_CONCILIAR')")
+    public ResponseEntity<ConciliacionResponse> iniciarConciliacion(@RequestParam(defaultValue = "false") boolean reparar) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(conciliacionInventarioService.iniciar(reparar));
+    }
+
+    // Endpoint para consultar el progreso de la conciliación en curso o el resultado de la última
+    @GetMapping("/conciliacion")
+    @PreAuthorize("hasAuthority('INVENTARIO_CONCILIAR')")
+    public ResponseEntity<ConciliacionResponse> estadoConciliacion() {
+        ConciliacionResponse estado = conciliacionInventarioService.estado();
+        return estado != null ? ResponseEntity.ok(estado) : ResponseEntity.noContent().build();
+    }
+
+    // Endpoint SSE con el stock nuevo de cada fila que cambia (eventos "stock"); sin almacenId, de todos los almacenes
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('ALMACEN_LEER')")
+    public SseEmitter stream(@RequestParam(required = false) Long almacenId) {
+        if (almacenId != null && !almacenRepository.existsById(almacenId)) {
+            throw new ResourceNotFoundException("Almacén", almacenId);
+        }
+        return streamStockService.suscribir(almacenId);
+    }
 }
@@ -0,0 +1,74 @@
+package org.watts.inventory.controller;
+
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.watts.catalog.model.Variante;
+import org.watts.catalog.repository.VarianteRepository;
+import org.watts.inventory.dto.DisponibilidadResponse;
+import org.watts.inventory.dto.InventarioResponse;
+import org.watts.inventory.dto.ReservaRequest;
+import org.watts.inventory.dto.ReservaResponse;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.repository.AlmacenRepository;
+import org.watts.inventory.service.ReservaStockService;
+import org.watts.shared.exception.ResourceNotFoundException;
+import org.watts.transaction.service.MovimientoService;
+
+@RestController
+@RequestMapping("/api/reservas")
+public class ReservaController {
+
+    private final ReservaStockService reservaStockService;
+    private final MovimientoService movimientoService;
+    private final VarianteRepository varianteRepository;
+    private final AlmacenRepository almacenRepository;
+
+    public ReservaController(ReservaStockService reservaStockService, MovimientoService movimientoService,
+                             VarianteRepository varianteRepository, AlmacenRepository almacenRepository) {
+        this.reservaStockService = reservaStockService;
+        this.movimientoService = movimientoService;
+        this.varianteRepository = varianteRepository;
+        this.almacenRepository = almacenRepository;
+    }
+
+    // Endpoint para retener stock durante un pedido (caduca sola si no se confirma ni se anula)
+    @PostMapping
+    @PreAuthorize("hasAuthority('MOVIMIENTO_CREAR')")
+    public ResponseEntity<ReservaResponse> reservar(@Valid @RequestBody ReservaRequest request) {
+        return new ResponseEntity<>(reservaStockService.reservar(buscarVariante(request.varianteSku()),
+                buscarAlmacen(request.almacenId()), request.cantidad(), request.ttlSegundos()), HttpStatus.CREATED);
+    }
+
+    // Endpoint para confirmar una reserva: registra la venta de la cantidad reservada
+    @PostMapping("/{id}/confirmar")
+    @PreAuthorize("hasAuthority('MOVIMIENTO_CREAR')")
+    public ResponseEntity<InventarioResponse> confirmar(@PathVariable String id) {
+        return new ResponseEntity<>(movimientoService.confirmarReserva(id), HttpStatus.CREATED);
+    }
+
+    // Endpoint para anular una reserva sin registrar nada
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasAuthority('MOVIMIENTO_CREAR')")
+    public ResponseEntity<Void> liberar(@PathVariable String id) {
+        reservaStockService.liberar(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Endpoint para consultar el stock disponible para vender (stock menos reservas activas)
+    @GetMapping("/disponible")
+    @PreAuthorize("hasAuthority('ALMACEN_LEER')")
+    public ResponseEntity<DisponibilidadResponse> disponible(@RequestParam String varianteSku, @RequestParam Long almacenId) {
+        return ResponseEntity.ok(reservaStockService.disponibilidad(buscarVariante(varianteSku), buscarAlmacen(almacenId)));
+    }
+
+    private Variante buscarVariante(String sku) {
+        return varianteRepository.findBySku(sku).orElseThrow(() -> new ResourceNotFoundException("Variante", sku));
+    }
+
+    private Almacen buscarAlmacen(Long id) {
+        return almacenRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Almacen", id));
+    }
+}
@@ -0,0 +1,47 @@
+package org.watts.inventory.controller;
+
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.watts.inventory.dto.ReconstruccionValoracionResponse;
+import org.watts.inventory.dto.ValoracionResponse;
+import org.watts.inventory.dto.ValoracionTotalResponse;
+import org.watts.inventory.service.ValoracionInventarioService;
+
+@RestController
+@RequestMapping("/api/inventario/valoracion")
+public class ValoracionController {
+
+    private final ValoracionInventarioService valoracionService;
+
+    public ValoracionController(ValoracionInventarioService valoracionService) {
+        this.valoracionService = valoracionService;
+    }
+
+    // Endpoint para el informe de valoración por variante y almacén (de un solo almacén si se indica)
+    @GetMapping
+    @PreAuthorize("hasAuthority('ALMACEN_LEER')")
+    public ResponseEntity<Page<ValoracionResponse>> informe(
+            @ParameterObject Pageable pageable,
+            @RequestParam(required = false) Long almacenId
+    ) {
+        return ResponseEntity.ok(valoracionService.informe(almacenId, pageable));
+    }
+
+    // Endpoint con el valor total del inventario a coste medio y a FIFO
+    @GetMapping("/total")
+    @PreAuthorize("hasAuthority('ALMACEN_LEER')")
+    public ResponseEntity<ValoracionTotalResponse> total(@RequestParam(required = false) Long almacenId) {
+        return ResponseEntity.ok(valoracionService.total(almacenId));
+    }
+
+    // Endpoint para rehacer la valoración desde todos los movimientos (p. ej. tras corregir precios de compra)
+    @PostMapping("/reconstruccion")
+    @PreAuthorize("hasAuthority('INVENTARIO_CONCILIAR')")
+    public ResponseEntity<ReconstruccionValoracionResponse> reconstruir() {
+        return ResponseEntity.ok(valoracionService.reconstruir());
+    }
+}
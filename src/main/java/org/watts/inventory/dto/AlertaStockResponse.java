@@ -0,0 +1,18 @@
+package org.watts.inventory.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+public record AlertaStockResponse(
+        Long id,
+        String sku,
+        Long almacenId,
+        int stock,
+        int minimo,
+        @JsonFormat(pattern = "dd-MM-yyyy HH:mm:ss")
+        LocalDateTime fechaAlerta,
+        @JsonFormat(pattern = "dd-MM-yyyy HH:mm:ss")
+        LocalDateTime fechaResolucion
+) {
+}
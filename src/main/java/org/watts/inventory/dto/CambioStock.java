@@ -0,0 +1,7 @@
+package org.watts.inventory.dto;
+
+import org.watts.transaction.enums.TipoMovimiento;
+
+// Stock nuevo de una fila de inventario tras un movimiento (lo que se envía por /api/inventario/stream)
+public record CambioStock(Long varianteId, String sku, Long almacenId, int stock, TipoMovimiento tipo) {
+}
@@ -0,0 +1,26 @@
+package org.watts.inventory.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import org.watts.inventory.enums.EstadoConciliacion;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Progreso y resultado de la última conciliación del inventario con los movimientos
+public record ConciliacionResponse(
+        EstadoConciliacion estado,
+        boolean reparar,
+        @JsonFormat(pattern = "dd-MM-yyyy HH:mm:ss")
+        LocalDateTime inicio,
+        @JsonFormat(pattern = "dd-MM-yyyy HH:mm:ss")
+        LocalDateTime fin,
+        long rangosTotales,
+        long rangosCompletados,
+        long filasComprobadas,
+        long descuadres,
+        long filasReparadas,
+        // Solo los primeros descuadres encontrados, el total está en descuadres
+        List<DescuadreInventario> muestra,
+        String error
+) {
+}
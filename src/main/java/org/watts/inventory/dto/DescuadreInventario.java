@@ -0,0 +1,6 @@
+package org.watts.inventory.dto;
+
+// Fila de inventario cuyo stock no coincide con la suma de sus movimientos
+// stockActual es null si la fila ni siquiera existe
+public record DescuadreInventario(Long varianteId, Long almacenId, Integer stockActual, long stockEsperado) {
+}
@@ -0,0 +1,5 @@
+package org.watts.inventory.dto;
+
+// Stock que se puede vender: el del inventario menos lo retenido por reservas activas
+public record DisponibilidadResponse(String varianteSku, Long almacenId, int stock, int reservado, int disponible) {
+}
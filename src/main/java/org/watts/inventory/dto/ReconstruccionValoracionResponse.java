@@ -0,0 +1,4 @@
+package org.watts.inventory.dto;
+
+public record ReconstruccionValoracionResponse(long movimientos, int filas, long duracionMs) {
+}
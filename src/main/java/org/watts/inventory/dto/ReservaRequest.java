@@ -0,0 +1,16 @@
+package org.watts.inventory.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public record ReservaRequest(
+        @NotNull(message = "La variante es obligatoria")
+        String varianteSku,
+        @NotNull(message = "El almacén es obligatorio")
+        Long almacenId,
+        @Min(value = 1, message = "La cantidad debe ser mayor que 0")
+        int cantidad,
+        @Min(value = 1, message = "La duración de la reserva debe ser de al menos 1 segundo")
+        Integer ttlSegundos // Si es null, se usa la duración por defecto
+) {
+}
@@ -0,0 +1,15 @@
+package org.watts.inventory.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+public record ReservaResponse(
+        String id,
+        String varianteSku,
+        Long almacenId,
+        int cantidad,
+        @JsonFormat(pattern = "dd-MM-yyyy HH:mm:ss")
+        LocalDateTime expira
+) {
+}
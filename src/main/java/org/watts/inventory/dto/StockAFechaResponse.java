@@ -0,0 +1,19 @@
+package org.watts.inventory.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+// Stock que tenía una variante en un almacén en una fecha pasada
+public record StockAFechaResponse(
+        Long varianteId,
+        String sku,
+        Long almacenId,
+        @JsonFormat(pattern = "dd-MM-yyyy HH:mm:ss")
+        LocalDateTime fecha,
+        int stock,
+        // Foto de partida desde la que se han reaplicado los movimientos (null si se ha partido del stock actual)
+        @JsonFormat(pattern = "dd-MM-yyyy HH:mm:ss")
+        LocalDateTime fechaSnapshot
+) {
+}
@@ -0,0 +1,5 @@
+package org.watts.inventory.dto;
+
+// Proyección mínima de una fila de inventario (id y stock) leída directamente de la BDD
+public record StockActual(Long inventarioId, int stock) {
+}
@@ -0,0 +1,5 @@
+package org.watts.inventory.dto;
+
+// Proyección de stock (o de variación de stock) de una variante en un almacén
+public record StockVariante(Long varianteId, Long stock) {
+}
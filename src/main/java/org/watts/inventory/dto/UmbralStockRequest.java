@@ -0,0 +1,16 @@
+package org.watts.inventory.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public record UmbralStockRequest(
+        @NotNull(message = "La variante es obligatoria")
+        String varianteSku,
+        @NotNull(message = "El almacén es obligatorio")
+        Long almacenId,
+        @Min(value = 0, message = "El mínimo no puede ser negativo")
+        int minimo,
+        @Min(value = 0, message = "La histéresis no puede ser negativa")
+        int histeresis // Unidades por encima del mínimo que hay que recuperar para rearmar la alerta
+) {
+}
@@ -0,0 +1,4 @@
+package org.watts.inventory.dto;
+
+public record UmbralStockResponse(Long id, Long varianteId, Long almacenId, int minimo, int histeresis, boolean enAlerta) {
+}
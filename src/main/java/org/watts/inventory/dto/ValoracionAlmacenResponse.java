@@ -0,0 +1,5 @@
+package org.watts.inventory.dto;
+
+// Valor del stock de un almacén a coste medio y a FIFO
+public record ValoracionAlmacenResponse(Long almacenId, double valorMedio, double valorFifo) {
+}
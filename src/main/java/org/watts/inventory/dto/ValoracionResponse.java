@@ -0,0 +1,6 @@
+package org.watts.inventory.dto;
+
+// Valoración de una variante en un almacén: a coste medio ponderado (valorMedio) y a FIFO (valorFifo)
+public record ValoracionResponse(Long varianteId, String sku, Long almacenId, int cantidad, double costeMedio,
+                                 double valorMedio, double valorFifo) {
+}
@@ -0,0 +1,4 @@
+package org.watts.inventory.dto;
+
+public record ValoracionTotalResponse(long cantidad, double valorMedio, double valorFifo) {
+}
@@ -0,0 +1,7 @@
+package org.watts.inventory.enums;
+
+public enum EstadoConciliacion {
+    EN_CURSO,
+    TERMINADA,
+    FALLIDA
+}
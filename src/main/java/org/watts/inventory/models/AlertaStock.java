@@ -0,0 +1,83 @@
+package org.watts.inventory.models;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// Aviso de stock por debajo del punto de pedido; se resuelve cuando el stock se recupera
+@Entity
+@Table(name = "alertas_stock",
+        indexes = {
+                @Index(name = "idx_alertas_stock_almacen_fecha", columnList = "almacen_id, fechaAlerta"),
+                @Index(name = "idx_alertas_stock_abiertas", columnList = "variante_id, almacen_id, fechaResolucion")
+        })
+public class AlertaStock {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "variante_id", nullable = false)
+    private Long varianteId;
+
+    @Column(name = "almacen_id", nullable = false)
+    private Long almacenId;
+
+    private String sku;
+
+    // Stock que hizo saltar la alerta y mínimo vigente en ese momento
+    private int stock;
+
+    private int minimo;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaAlerta;
+
+    private LocalDateTime fechaResolucion;
+
+    protected AlertaStock() {
+    }
+
+    public AlertaStock(Long varianteId, Long almacenId, String sku, int stock, int minimo) {
+        this.varianteId = varianteId;
+        this.almacenId = almacenId;
+        this.sku = sku;
+        this.stock = stock;
+        this.minimo = minimo;
+        this.fechaAlerta = LocalDateTime.now();
+    }
+
+    // Getters
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getVarianteId() {
+        return varianteId;
+    }
+
+    public Long getAlmacenId() {
+        return almacenId;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    public int getMinimo() {
+        return minimo;
+    }
+
+    public LocalDateTime getFechaAlerta() {
+        return fechaAlerta;
+    }
+
+    public LocalDateTime getFechaResolucion() {
+        return fechaResolucion;
+    }
+}
@@ -0,0 +1,71 @@
+package org.watts.inventory.models;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// Unidades de una entrada que aún no han salido, a su coste de entrada
+// Las salidas consumen las capas de una variante / almacén en orden de id (la más antigua primero)
+@Entity
+@Table(name = "capas_fifo",
+        indexes = @Index(name = "idx_capas_fifo_variante_almacen", columnList = "variante_id, almacen_id, id"))
+public class CapaFifo {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "variante_id", nullable = false)
+    private Long varianteId;
+
+    @Column(name = "almacen_id", nullable = false)
+    private Long almacenId;
+
+    // Unidades que quedan de la entrada
+    private int cantidad;
+
+    private double costeUnitario;
+
+    private LocalDateTime fechaEntrada;
+
+    public CapaFifo() {
+    }
+
+    public CapaFifo(Long varianteId, Long almacenId, int cantidad, double costeUnitario, LocalDateTime fechaEntrada) {
+        this.varianteId = varianteId;
+        this.almacenId = almacenId;
+        this.cantidad = cantidad;
+        this.costeUnitario = costeUnitario;
+        this.fechaEntrada = fechaEntrada;
+    }
+
+    // Getters y setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getVarianteId() {
+        return varianteId;
+    }
+
+    public Long getAlmacenId() {
+        return almacenId;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    public void setCantidad(int cantidad) {
+        this.cantidad = cantidad;
+    }
+
+    public double getCosteUnitario() {
+        return costeUnitario;
+    }
+
+    public LocalDateTime getFechaEntrada() {
+        return fechaEntrada;
+    }
+}
@@ -0,0 +1,21 @@
+package org.watts.inventory.models;
+
+import java.util.Comparator;
+
+// Identifica una fila de inventario por (variante, almacén) sin necesidad de cargar las entidades
+// El orden natural (varianteId, almacenId) es el que se usa para bloquear filas y evitar deadlocks
+public record ClaveInventario(Long varianteId, Long almacenId) implements Comparable<ClaveInventario> {
+
+    private static final Comparator<ClaveInventario> ORDEN = Comparator
+            .comparing(ClaveInventario::varianteId)
+            .thenComparing(ClaveInventario::almacenId);
+
+    public static ClaveInventario de(Inventario inventario) {
+        return new ClaveInventario(inventario.getVariante().getId(), inventario.getAlmacen().getId());
+    }
+
+    @Override
+    public int compareTo(ClaveInventario otra) {
+        return ORDEN.compare(this, otra);
+    }
+}
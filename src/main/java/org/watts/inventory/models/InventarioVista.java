@@ -0,0 +1,149 @@
+package org.watts.inventory.models;
+
+import jakarta.persistence.*;
+
+// Modelo de lectura plano del inventario: una fila por variante y almacén con los nombres ya resueltos
+// Se mantiene en la misma transacción que cada cambio de stock (ver VistaInventarioService)
+// para que los listados de stock se sirvan con una sola consulta indexada, sin joins
+@Entity
+@Table(name = "inventario_vista",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"variante_id", "almacen_id"}),
+        indexes = {
+                @Index(name = "idx_inventario_vista_almacen_sku", columnList = "almacen_id, sku"),
+                @Index(name = "idx_inventario_vista_almacen_producto", columnList = "almacen_id, producto_nombre")
+        })
+public class InventarioVista {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "variante_id", nullable = false)
+    private Long varianteId;
+
+    @Column(name = "almacen_id", nullable = false)
+    private Long almacenId;
+
+    private Long inventarioId;
+
+    // Ids para poder refrescar los nombres cuando se renombran en el catálogo
+    private Long productoId;
+    private Long tallaId;
+    private Long colorId;
+
+    private String sku;
+
+    @Column(name = "producto_nombre")
+    private String productoNombre;
+
+    private String talla;
+    private String color;
+    private String almacenNombre;
+    private int stock;
+
+    // Getters y setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getVarianteId() {
+        return varianteId;
+    }
+
+    public void setVarianteId(Long varianteId) {
+        this.varianteId = varianteId;
+    }
+
+    public Long getAlmacenId() {
+        return almacenId;
+    }
+
+    public void setAlmacenId(Long almacenId) {
+        this.almacenId = almacenId;
+    }
+
+    public Long getInventarioId() {
+        return inventarioId;
+    }
+
+    public void setInventarioId(Long inventarioId) {
+        this.inventarioId = inventarioId;
+    }
+
+    public Long getProductoId() {
+        return productoId;
+    }
+
+    public void setProductoId(Long productoId) {
+        this.productoId = productoId;
+    }
+
+    public Long getTallaId() {
+        return tallaId;
+    }
+
+    public void setTallaId(Long tallaId) {
+        this.tallaId = tallaId;
+    }
+
+    public Long getColorId() {
+        return colorId;
+    }
+
+    public void setColorId(Long colorId) {
+        this.colorId = colorId;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    public void setSku(String sku) {
+        this.sku = sku;
+    }
+
+    public String getProductoNombre() {
+        return productoNombre;
+    }
+
+    public void setProductoNombre(String productoNombre) {
+        this.productoNombre = productoNombre;
+    }
+
+    public String getTalla() {
+        return talla;
+    }
+
+    public void setTalla(String talla) {
+        this.talla = talla;
+    }
+
+    public String getColor() {
+        return color;
+    }
+
+    public void setColor(String color) {
+        this.color = color;
+    }
+
+    public String getAlmacenNombre() {
+        return almacenNombre;
+    }
+
+    public void setAlmacenNombre(String almacenNombre) {
+        this.almacenNombre = almacenNombre;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    public void setStock(int stock) {
+        this.stock = stock;
+    }
+}
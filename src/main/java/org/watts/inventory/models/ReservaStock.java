@@ -0,0 +1,90 @@
+package org.watts.inventory.models;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// Reserva de stock activa (ReservaStockService). Solo se guarda para recargar las reservas al arrancar:
+// lo retenido se lleva en memoria (RetencionesStock) y la fila se borra al confirmar, anular o caducar
+@Entity
+@Table(name = "reservas_stock")
+public class ReservaStock {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    private Long varianteId;
+
+    private String varianteSku;
+
+    private Long almacenId;
+
+    private int cantidad;
+
+    private LocalDateTime fechaExpiracion;
+
+    // Constructor vacío (obligatorio en JPA/Hibernate)
+    public ReservaStock() {
+    }
+
+    public ReservaStock(String id, Long varianteId, String varianteSku, Long almacenId, int cantidad,
+                        LocalDateTime fechaExpiracion) {
+        this.id = id;
+        this.varianteId = varianteId;
+        this.varianteSku = varianteSku;
+        this.almacenId = almacenId;
+        this.cantidad = cantidad;
+        this.fechaExpiracion = fechaExpiracion;
+    }
+
+    // Getters y setters
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Long getVarianteId() {
+        return varianteId;
+    }
+
+    public void setVarianteId(Long varianteId) {
+        this.varianteId = varianteId;
+    }
+
+    public String getVarianteSku() {
+        return varianteSku;
+    }
+
+    public void setVarianteSku(String varianteSku) {
+        this.varianteSku = varianteSku;
+    }
+
+    public Long getAlmacenId() {
+        return almacenId;
+    }
+
+    public void setAlmacenId(Long almacenId) {
+        this.almacenId = almacenId;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    public void setCantidad(int cantidad) {
+        this.cantidad = cantidad;
+    }
+
+    public LocalDateTime getFechaExpiracion() {
+        return fechaExpiracion;
+    }
+
+    public void setFechaExpiracion(LocalDateTime fechaExpiracion) {
+        this.fechaExpiracion = fechaExpiracion;
+    }
+}
@@ -0,0 +1,73 @@
+package org.watts.inventory.models;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+// Foto periódica del stock de cada fila de inventario (ver SnapshotInventarioService)
+// Las filas sin stock en el momento de la foto no se guardan: su stock era 0
+@Entity
+@Table(name = "inventario_snapshots",
+        indexes = {
+                @Index(name = "idx_inventario_snapshots_variante", columnList = "variante_id, almacen_id, fecha"),
+                @Index(name = "idx_inventario_snapshots_almacen", columnList = "fecha, almacen_id")
+        })
+@IdClass(SnapshotInventario.Clave.class)
+public class SnapshotInventario {
+
+    @Id
+    private LocalDateTime fecha;
+
+    @Id
+    @Column(name = "variante_id")
+    private Long varianteId;
+
+    @Id
+    @Column(name = "almacen_id")
+    private Long almacenId;
+
+    private int stock;
+
+    // Clave compuesta: fecha de la foto, variante y almacén
+    public static class Clave implements Serializable {
+        private LocalDateTime fecha;
+        private Long varianteId;
+        private Long almacenId;
+
+        public Clave() {
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Clave clave)) return false;
+            return Objects.equals(fecha, clave.fecha) && Objects.equals(varianteId, clave.varianteId)
+                    && Objects.equals(almacenId, clave.almacenId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fecha, varianteId, almacenId);
+        }
+    }
+
+    // Getters
+
+    public LocalDateTime getFecha() {
+        return fecha;
+    }
+
+    public Long getVarianteId() {
+        return varianteId;
+    }
+
+    public Long getAlmacenId() {
+        return almacenId;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+}
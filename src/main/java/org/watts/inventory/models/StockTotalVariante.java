@@ -0,0 +1,33 @@
+package org.watts.inventory.models;
+
+import jakarta.persistence.*;
+
+// Stock total de una variante sumando todos los almacenes, mantenido junto con InventarioVista
+@Entity
+@Table(name = "stock_total_variante")
+public class StockTotalVariante {
+
+    @Id
+    @Column(name = "variante_id")
+    private Long varianteId;
+
+    private int stockTotal;
+
+    // Getters y setters
+
+    public Long getVarianteId() {
+        return varianteId;
+    }
+
+    public void setVarianteId(Long varianteId) {
+        this.varianteId = varianteId;
+    }
+
+    public int getStockTotal() {
+        return stockTotal;
+    }
+
+    public void setStockTotal(int stockTotal) {
+        this.stockTotal = stockTotal;
+    }
+}
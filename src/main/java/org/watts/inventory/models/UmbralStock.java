@@ -0,0 +1,75 @@
+package org.watts.inventory.models;
+
+import jakarta.persistence.*;
+
+// Punto de pedido de una variante en un almacén
+// Salta una alerta al bajar de minimo y no vuelve a saltar hasta recuperar minimo + histeresis
+@Entity
+@Table(name = "umbrales_stock",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"variante_id", "almacen_id"}),
+        indexes = @Index(name = "idx_umbrales_stock_almacen", columnList = "almacen_id"))
+public class UmbralStock {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "variante_id", nullable = false)
+    private Long varianteId;
+
+    @Column(name = "almacen_id", nullable = false)
+    private Long almacenId;
+
+    private int minimo;
+
+    private int histeresis;
+
+    // true desde que salta la alerta hasta que el stock se recupera
+    private boolean enAlerta;
+
+    // Getters y setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getVarianteId() {
+        return varianteId;
+    }
+
+    public void setVarianteId(Long varianteId) {
+        this.varianteId = varianteId;
+    }
+
+    public Long getAlmacenId() {
+        return almacenId;
+    }
+
+    public void setAlmacenId(Long almacenId) {
+        this.almacenId = almacenId;
+    }
+
+    public int getMinimo() {
+        return minimo;
+    }
+
+    public void setMinimo(int minimo) {
+        this.minimo = minimo;
+    }
+
+    public int getHisteresis() {
+        return histeresis;
+    }
+
+    public void setHisteresis(int histeresis) {
+        this.histeresis = histeresis;
+    }
+
+    public boolean isEnAlerta() {
+        return enAlerta;
+    }
+
+    public void setEnAlerta(boolean enAlerta) {
+        this.enAlerta = enAlerta;
+    }
+}
@@ -0,0 +1,87 @@
+package org.watts.inventory.models;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// Valoración de una variante en un almacén según los movimientos (ver ValoracionInventarioService)
+// Se mantiene a la vez a coste medio ponderado y a FIFO; el valor FIFO es la suma de sus CapaFifo
+@Entity
+@Table(name = "valoracion_inventario",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"variante_id", "almacen_id"}),
+        indexes = @Index(name = "idx_valoracion_inventario_almacen", columnList = "almacen_id"))
+public class ValoracionInventario {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "variante_id", nullable = false)
+    private Long varianteId;
+
+    @Column(name = "almacen_id", nullable = false)
+    private Long almacenId;
+
+    // Unidades según los movimientos valorados
+    private int cantidad;
+
+    private double costeMedio;
+
+    private double valorFifo;
+
+    private LocalDateTime fechaActualizacion;
+
+    public ValoracionInventario() {
+    }
+
+    public ValoracionInventario(Long varianteId, Long almacenId) {
+        this.varianteId = varianteId;
+        this.almacenId = almacenId;
+    }
+
+    // Getters y setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getVarianteId() {
+        return varianteId;
+    }
+
+    public Long getAlmacenId() {
+        return almacenId;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    public void setCantidad(int cantidad) {
+        this.cantidad = cantidad;
+    }
+
+    public double getCosteMedio() {
+        return costeMedio;
+    }
+
+    public void setCosteMedio(double costeMedio) {
+        this.costeMedio = costeMedio;
+    }
+
+    public double getValorFifo() {
+        return valorFifo;
+    }
+
+    public void setValorFifo(double valorFifo) {
+        this.valorFifo = valorFifo;
+    }
+
+    public LocalDateTime getFechaActualizacion() {
+        return fechaActualizacion;
+    }
+
+    public void setFechaActualizacion(LocalDateTime fechaActualizacion) {
+        this.fechaActualizacion = fechaActualizacion;
+    }
+}
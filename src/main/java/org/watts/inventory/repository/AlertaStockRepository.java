@@ -0,0 +1,23 @@
+package org.watts.inventory.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.watts.inventory.models.AlertaStock;
+
+import java.time.LocalDateTime;
+
+public interface AlertaStockRepository extends JpaRepository<AlertaStock, Long>, JpaSpecificationExecutor<AlertaStock> {
+
+    Page<AlertaStock> findByAlmacenId(Long almacenId, Pageable pageable);
+
+    // Cierra la alerta abierta de una variante en un almacén
+    @Modifying
+    @Query("update AlertaStock a set a.fechaResolucion = :fecha " +
+            "where a.varianteId = :varianteId and a.almacenId = :almacenId and a.fechaResolucion is null")
+    int resolver(@Param("varianteId") Long varianteId, @Param("almacenId") Long almacenId, @Param("fecha") LocalDateTime fecha);
+}
@@ -5,8 +5,10 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.watts.inventory.models.Almacen;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface AlmacenRepository extends JpaRepository<Almacen, Long>, JpaSpecificationExecutor<Almacen> {
@@ -17,4 +19,8 @@ public interface AlmacenRepository extends JpaRepository<Almacen, Long>, JpaSpec
 
     boolean existsByCodigo(String codigo);
 
+    // Se usa para validar los almacenes de una importación de movimientos sin cargar las entidades
+    @Query("select a.id from Almacen a")
+    List<Long> findAllIds();
+
 }
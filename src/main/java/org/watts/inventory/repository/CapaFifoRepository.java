@@ -0,0 +1,12 @@
+package org.watts.inventory.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.watts.inventory.models.CapaFifo;
+
+import java.util.List;
+
+public interface CapaFifoRepository extends JpaRepository<CapaFifo, Long> {
+
+    // Capas pendientes de una fila, de la más antigua a la más reciente
+    List<CapaFifo> findByVarianteIdAndAlmacenIdOrderById(Long varianteId, Long almacenId);
+}
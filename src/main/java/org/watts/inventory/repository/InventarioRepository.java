@@ -6,19 +6,61 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.watts.catalog.model.Variante;
+import org.watts.inventory.dto.StockActual;
+import org.watts.inventory.dto.StockVariante;
 import org.watts.inventory.models.Almacen;
 import org.watts.inventory.models.Inventario;
 
 import java.util.List;
 import java.util.Optional;
 
-public interface InventarioRepository extends JpaRepository<Inventario, Long>, JpaSpecificationExecutor<Inventario> {
+public interface InventarioRepository extends JpaRepository<Inventario, Long>, JpaSpecificationExecutor<Inventario>,
+        InventarioRepositoryCustom {
 
     @Lock(LockModeType.PESSIMISTIC_WRITE) // Bloquea la fila hasta que termine la transacción para evitar race conditions
     Optional<Inventario> findByVarianteAndAlmacen(Variante variante, Almacen almacen);
 
+    // Crea la fila con stock 0 si no existe; si existe no cambia nada, pero la deja bloqueada igual
+    @Modifying
+    @Query(value = "INSERT INTO inventario (variante_id, almacen_id, stock) VALUES (:varianteId, :almacenId, 0) " +
+            "ON DUPLICATE KEY UPDATE stock = stock", nativeQuery = true)
+    int crearSiNoExiste(@Param("varianteId") Long varianteId,
+                        @Param("almacenId") Long almacenId);
+
+    // Suma stock en una sola sentencia atómica, creando la fila si todavía no existe
+    // Al no hacer SELECT previo, dos primeros movimientos concurrentes ya no chocan con la restricción única
+    @Modifying
+    @Query(value = "INSERT INTO inventario (variante_id, almacen_id, stock) VALUES (:varianteId, :almacenId, :cantidad) " +
+            "ON DUPLICATE KEY UPDATE stock = stock + :cantidad", nativeQuery = true)
+    int incrementarStock(@Param("varianteId") Long varianteId,
+                         @Param("almacenId") Long almacenId,
+                         @Param("cantidad") int cantidad);
+
+    // Resta stock solo si hay suficiente sin tocar lo reservado (RetencionesStock). Devuelve 0 si la fila no existe o no llega
+    @Modifying
+    @Query("update Inventario i set i.stock = i.stock - :cantidad " +
+            "where i.variante.id = :varianteId and i.almacen.id = :almacenId and i.stock - :cantidad >= :reservado")
+    int decrementarStock(@Param("varianteId") Long varianteId,
+                         @Param("almacenId") Long almacenId,
+                         @Param("cantidad") int cantidad,
+                         @Param("reservado") int reservado);
+
+    // Lee el stock directamente de la BDD (sin pasar por las entidades ya cargadas en la sesión)
+    @Query("select new org.watts.inventory.dto.StockActual(i.id, i.stock) from Inventario i " +
+            "where i.variante.id = :varianteId and i.almacen.id = :almacenId")
+    Optional<StockActual> findStockActual(@Param("varianteId") Long varianteId,
+                                          @Param("almacenId") Long almacenId);
+
     List<Inventario> findByVariante(Variante variante);
 
     Page<Inventario> findByAlmacen_Id(Long id, Pageable pageable);
-}
\ No newline at end of file
+
+    // Stock actual de todas las variantes de un almacén
+    @Query("select new org.watts.inventory.dto.StockVariante(i.variante.id, cast(i.stock as Long)) " +
+            "from Inventario i where i.almacen.id = :almacenId")
+    List<StockVariante> findStockPorAlmacen(@Param("almacenId") Long almacenId);
+}
@@ -0,0 +1,14 @@
+package org.watts.inventory.repository;
+
+import org.watts.inventory.models.ClaveInventario;
+import org.watts.inventory.models.Inventario;
+
+import java.util.Collection;
+import java.util.List;
+
+// Consultas de InventarioRepository que no se pueden escribir con @Query (InventarioRepositoryImpl)
+public interface InventarioRepositoryCustom {
+
+    // Bloquea exactamente las filas (variante, almacén) indicadas, en orden (variante, almacén)
+    List<Inventario> bloquearClaves(Collection<ClaveInventario> claves);
+}
@@ -0,0 +1,47 @@
+package org.watts.inventory.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.watts.inventory.models.ClaveInventario;
+import org.watts.inventory.models.Inventario;
+
+import java.util.Collection;
+import java.util.List;
+
+// Spring Data lo combina con InventarioRepository por el sufijo Impl
+public class InventarioRepositoryImpl implements InventarioRepositoryCustom {
+
+    private final EntityManager entityManager;
+
+    public InventarioRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    // Un OR de pares (variante = ? and almacén = ?) sobre la restricción única: solo se bloquean las filas
+    // del lote, no el producto cruzado de sus variantes y almacenes
+    @Override
+    public List<Inventario> bloquearClaves(Collection<ClaveInventario> claves) {
+        if (claves.isEmpty()) {
+            return List.of();
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Inventario> query = cb.createQuery(Inventario.class);
+        Root<Inventario> root = query.from(Inventario.class);
+
+        Predicate[] pares = claves.stream()
+                .map(clave -> cb.and(cb.equal(root.get("variante").get("id"), clave.varianteId()),
+                        cb.equal(root.get("almacen").get("id"), clave.almacenId())))
+                .toArray(Predicate[]::new);
+        query.select(root)
+                .where(cb.or(pares))
+                .orderBy(cb.asc(root.get("variante").get("id")), cb.asc(root.get("almacen").get("id")));
+
+        return entityManager.createQuery(query)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+}
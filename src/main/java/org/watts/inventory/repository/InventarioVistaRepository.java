@@ -0,0 +1,74 @@
+package org.watts.inventory.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.watts.inventory.models.InventarioVista;
+
+import java.util.Optional;
+
+public interface InventarioVistaRepository extends JpaRepository<InventarioVista, Long>, JpaSpecificationExecutor<InventarioVista> {
+
+    // Stock que tenía la fila antes del cambio, leído con bloqueo (lectura actual, no la foto de la transacción)
+    // El llamante tiene bloqueada la fila de inventario, así que nadie más puede estar cambiando esta
+    @Query(value = "SELECT stock FROM inventario_vista WHERE variante_id = :varianteId AND almacen_id = :almacenId FOR UPDATE",
+            nativeQuery = true)
+    Optional<Integer> bloquearStock(@Param("varianteId") Long varianteId,
+                                    @Param("almacenId") Long almacenId);
+
+    // Camino habitual: la fila ya existe y solo cambia el stock
+    @Modifying
+    @Query("update InventarioVista iv set iv.stock = :stock where iv.varianteId = :varianteId and iv.almacenId = :almacenId")
+    int actualizarStock(@Param("varianteId") Long varianteId,
+                        @Param("almacenId") Long almacenId,
+                        @Param("stock") int stock);
+
+    // Primera vez que la variante tiene stock en el almacén: copiamos los nombres del catálogo
+    // El llamante tiene bloqueada la fila de inventario, así que no puede haber dos inserciones a la vez
+    // Producto, talla y color van con LEFT JOIN: si falta alguno la fila se crea igual, con ese nombre vacío
+    @Modifying
+    @Query(value = "INSERT INTO inventario_vista (variante_id, almacen_id, inventario_id, producto_id, talla_id, color_id, " +
+            "sku, producto_nombre, talla, color, almacen_nombre, stock) " +
+            "SELECT v.id, a.id, (SELECT i.id FROM inventario i WHERE i.variante_id = v.id AND i.almacen_id = a.id), " +
+            "p.id, t.id, c.id, v.sku, p.nombre, t.nombre, c.nombre, a.descripcion, :stock " +
+            "FROM variantes v LEFT JOIN productos p ON p.id = v.producto_id LEFT JOIN tallas t ON t.id = v.talla_id " +
+            "LEFT JOIN colores c ON c.id = v.color_id JOIN almacenes a ON a.id = :almacenId " +
+            "WHERE v.id = :varianteId", nativeQuery = true)
+    int insertarDesdeCatalogo(@Param("varianteId") Long varianteId,
+                              @Param("almacenId") Long almacenId,
+                              @Param("stock") int stock);
+
+    // Reconstrucción completa desde inventario (tabla vacía tras desplegar esta versión)
+    @Modifying
+    @Query(value = "INSERT INTO inventario_vista (variante_id, almacen_id, inventario_id, producto_id, talla_id, color_id, " +
+            "sku, producto_nombre, talla, color, almacen_nombre, stock) " +
+            "SELECT v.id, a.id, i.id, p.id, t.id, c.id, v.sku, p.nombre, t.nombre, c.nombre, a.descripcion, i.stock " +
+            "FROM inventario i JOIN variantes v ON v.id = i.variante_id LEFT JOIN productos p ON p.id = v.producto_id " +
+            "LEFT JOIN tallas t ON t.id = v.talla_id LEFT JOIN colores c ON c.id = v.color_id JOIN almacenes a ON a.id = i.almacen_id",
+            nativeQuery = true)
+    int reconstruir();
+
+    // Refrescos de nombres cuando cambian en el catálogo
+
+    @Modifying
+    @Query("update InventarioVista iv set iv.productoNombre = :nombre where iv.productoId = :productoId")
+    int renombrarProducto(@Param("productoId") Long productoId, @Param("nombre") String nombre);
+
+    @Modifying
+    @Query("update InventarioVista iv set iv.sku = :sku where iv.varianteId = :varianteId")
+    int actualizarSku(@Param("varianteId") Long varianteId, @Param("sku") String sku);
+
+    @Modifying
+    @Query("update InventarioVista iv set iv.talla = :nombre where iv.tallaId = :tallaId")
+    int renombrarTalla(@Param("tallaId") Long tallaId, @Param("nombre") String nombre);
+
+    @Modifying
+    @Query("update InventarioVista iv set iv.color = :nombre where iv.colorId = :colorId")
+    int renombrarColor(@Param("colorId") Long colorId, @Param("nombre") String nombre);
+
+    @Modifying
+    @Query("update InventarioVista iv set iv.almacenNombre = :nombre where iv.almacenId = :almacenId")
+    int renombrarAlmacen(@Param("almacenId") Long almacenId, @Param("nombre") String nombre);
+}
@@ -0,0 +1,15 @@
+package org.watts.inventory.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.watts.inventory.models.ReservaStock;
+
+public interface ReservaStockRepository extends JpaRepository<ReservaStock, String> {
+
+    // Borra sin cargar la entidad antes (si ya no existe no hace nada)
+    @Modifying
+    @Query("delete from ReservaStock r where r.id = :id")
+    int borrar(@Param("id") String id);
+}
@@ -0,0 +1,49 @@
+package org.watts.inventory.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.watts.inventory.models.SnapshotInventario;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface SnapshotInventarioRepository extends JpaRepository<SnapshotInventario, SnapshotInventario.Clave> {
+
+    // Foto del inventario en :fecha con una sola sentencia: stock actual menos lo que han movido
+    // los movimientos posteriores a :fecha (ya confirmados, o no estarían en el stock actual)
+    @Modifying
+    @Query(value = "INSERT INTO inventario_snapshots (fecha, variante_id, almacen_id, stock) " +
+            "SELECT :fecha, i.variante_id, i.almacen_id, i.stock - COALESCE((" +
+            "  SELECT SUM(CASE WHEN m.tipo IN (:salidas) THEN -m.cantidad ELSE m.cantidad END) FROM movimientos m " +
+            "  WHERE m.variante_id = i.variante_id AND m.almacen_id = i.almacen_id AND m.fecha_creacion > :fecha), 0) " +
+            "FROM inventario i", nativeQuery = true)
+    int tomar(@Param("fecha") LocalDateTime fecha, @Param("salidas") Collection<String> salidas);
+
+    // Las filas que han quedado a 0 no aportan nada (la ausencia de fila ya significa 0)
+    @Modifying
+    @Query("delete from SnapshotInventario s where s.fecha = :fecha and s.stock = 0")
+    int borrarVacias(@Param("fecha") LocalDateTime fecha);
+
+    @Query("select max(s.fecha) from SnapshotInventario s where s.fecha <= :fecha")
+    LocalDateTime ultimaHasta(@Param("fecha") LocalDateTime fecha);
+
+    @Query("select min(s.fecha) from SnapshotInventario s where s.fecha > :fecha")
+    LocalDateTime primeraDespuesDe(@Param("fecha") LocalDateTime fecha);
+
+    boolean existsByFecha(LocalDateTime fecha);
+
+    Optional<SnapshotInventario> findByFechaAndVarianteIdAndAlmacenId(LocalDateTime fecha, Long varianteId, Long almacenId);
+
+    List<SnapshotInventario> findByFechaAndAlmacenId(LocalDateTime fecha, Long almacenId);
+
+    @Query("select distinct s.fecha from SnapshotInventario s where s.fecha < :limite order by s.fecha")
+    List<LocalDateTime> fechasAnterioresA(@Param("limite") LocalDateTime limite);
+
+    @Modifying
+    @Query("delete from SnapshotInventario s where s.fecha in :fechas")
+    int borrarFechas(@Param("fechas") Collection<LocalDateTime> fechas);
+}
@@ -0,0 +1,22 @@
+package org.watts.inventory.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.watts.inventory.models.StockTotalVariante;
+
+public interface StockTotalVarianteRepository extends JpaRepository<StockTotalVariante, Long> {
+
+    // Suma al total de la variante lo que ha cambiado el stock de una de sus filas, creando la fila si no existe
+    // Solo toca la fila de la variante: nada de agregados ni lecturas de las filas de los otros almacenes
+    @Modifying
+    @Query(value = "INSERT INTO stock_total_variante (variante_id, stock_total) VALUES (:varianteId, :delta) " +
+            "ON DUPLICATE KEY UPDATE stock_total = stock_total + :delta", nativeQuery = true)
+    int sumar(@Param("varianteId") Long varianteId, @Param("delta") long delta);
+
+    @Modifying
+    @Query(value = "INSERT INTO stock_total_variante (variante_id, stock_total) " +
+            "SELECT iv.variante_id, SUM(iv.stock) FROM inventario_vista iv GROUP BY iv.variante_id", nativeQuery = true)
+    int reconstruir();
+}
@@ -0,0 +1,26 @@
+package org.watts.inventory.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.watts.inventory.models.UmbralStock;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface UmbralStockRepository extends JpaRepository<UmbralStock, Long> {
+
+    Optional<UmbralStock> findByVarianteIdAndAlmacenId(Long varianteId, Long almacenId);
+
+    List<UmbralStock> findByAlmacenIdOrderByVarianteId(Long almacenId);
+
+    @Query("select u.enAlerta from UmbralStock u where u.id = :id")
+    boolean enAlerta(@Param("id") Long id);
+
+    // Cambia el estado solo si sigue siendo el esperado: de dos transacciones que cruzan el umbral a la vez
+    // solo una recibe 1 y genera la alerta
+    @Modifying
+    @Query("update UmbralStock u set u.enAlerta = :nuevo where u.id = :id and u.enAlerta = :anterior")
+    int cambiarEstado(@Param("id") Long id, @Param("anterior") boolean anterior, @Param("nuevo") boolean nuevo);
+}
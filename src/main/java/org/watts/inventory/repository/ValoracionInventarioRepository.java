@@ -0,0 +1,46 @@
+package org.watts.inventory.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.watts.inventory.dto.ValoracionAlmacenResponse;
+import org.watts.inventory.dto.ValoracionResponse;
+import org.watts.inventory.dto.ValoracionTotalResponse;
+import org.watts.inventory.models.ValoracionInventario;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ValoracionInventarioRepository extends JpaRepository<ValoracionInventario, Long> {
+
+    // Bloquea la valoración de la fila hasta que termine la transacción que aplica sus movimientos
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select v from ValoracionInventario v where v.varianteId = :varianteId and v.almacenId = :almacenId")
+    Optional<ValoracionInventario> bloquear(@Param("varianteId") Long varianteId, @Param("almacenId") Long almacenId);
+
+    // Informe de valoración: una fila por variante / almacén, ya calculada, sin recorrer movimientos
+    @Query(value = """
+            select new org.watts.inventory.dto.ValoracionResponse(v.varianteId, var.sku, v.almacenId, v.cantidad,
+                v.costeMedio, v.cantidad * v.costeMedio, v.valorFifo)
+            from ValoracionInventario v join Variante var on var.id = v.varianteId
+            where (:almacenId is null or v.almacenId = :almacenId)
+            """,
+            countQuery = "select count(v) from ValoracionInventario v where (:almacenId is null or v.almacenId = :almacenId)")
+    Page<ValoracionResponse> informe(@Param("almacenId") Long almacenId, Pageable pageable);
+
+    @Query("""
+            select new org.watts.inventory.dto.ValoracionTotalResponse(coalesce(sum(v.cantidad), 0L),
+                coalesce(sum(v.cantidad * v.costeMedio), 0.0), coalesce(sum(v.valorFifo), 0.0))
+            from ValoracionInventario v
+            where (:almacenId is null or v.almacenId = :almacenId)
+            """)
+    ValoracionTotalResponse total(@Param("almacenId") Long almacenId);
+
+    @Query("select new org.watts.inventory.dto.ValoracionAlmacenResponse(v.almacenId, sum(v.cantidad * v.costeMedio), " +
+            "sum(v.valorFifo)) from ValoracionInventario v group by v.almacenId order by v.almacenId")
+    List<ValoracionAlmacenResponse> valorPorAlmacen();
+}
@@ -0,0 +1,201 @@
+package org.watts.inventory.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.watts.catalog.model.Variante;
+import org.watts.catalog.repository.VarianteRepository;
+import org.watts.inventory.dto.AlertaStockResponse;
+import org.watts.inventory.dto.StockActual;
+import org.watts.inventory.dto.UmbralStockResponse;
+import org.watts.inventory.models.AlertaStock;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.models.ClaveInventario;
+import org.watts.inventory.models.UmbralStock;
+import org.watts.inventory.repository.AlertaStockRepository;
+import org.watts.inventory.repository.InventarioRepository;
+import org.watts.inventory.repository.UmbralStockRepository;
+import org.watts.shared.exception.ResourceNotFoundException;
+import org.watts.shared.service.EmailService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Alertas de stock bajo evaluadas en cada cambio de stock, solo para la fila que cambia
+// Los umbrales se tienen en memoria: una fila sin umbral cuesta una consulta al mapa y nada más.
+// El mapa se recarga entero cada cierto tiempo para ver los umbrales creados o borrados en otras instancias.
+// Al cruzar el mínimo se guarda la alerta y se deja el aviso en la bandeja de salida de emails,
+// que DespachadorNotificaciones envía agrupado con el resto
+@Service
+public class AlertasStockService {
+
+    // Copia en memoria de un umbral; enAlerta es una pista, la verdad está en la BDD
+    private record Umbral(Long id, int minimo, int histeresis, boolean enAlerta) {
+        static Umbral de(UmbralStock umbral) {
+            return new Umbral(umbral.getId(), umbral.getMinimo(), umbral.getHisteresis(), umbral.isEnAlerta());
+        }
+
+        Umbral conAlerta(boolean enAlerta) {
+            return new Umbral(id, minimo, histeresis, enAlerta);
+        }
+    }
+
+    private final UmbralStockRepository umbralStockRepository;
+    private final AlertaStockRepository alertaStockRepository;
+    private final InventarioRepository inventarioRepository;
+    private final VarianteRepository varianteRepository;
+    private final EmailService emailService;
+
+    private final Map<ClaveInventario, Umbral> umbrales = new ConcurrentHashMap<>();
+
+    public AlertasStockService(UmbralStockRepository umbralStockRepository,
+                               AlertaStockRepository alertaStockRepository,
+                               InventarioRepository inventarioRepository,
+                               VarianteRepository varianteRepository,
+                               EmailService emailService) {
+        this.umbralStockRepository = umbralStockRepository;
+        this.alertaStockRepository = alertaStockRepository;
+        this.inventarioRepository = inventarioRepository;
+        this.varianteRepository = varianteRepository;
+        this.emailService = emailService;
+    }
+
+    // Relee los umbrales para ver los creados, cambiados o borrados en otras instancias
+    @Scheduled(fixedDelayString = "${inventario.alertas.recarga-ms:30000}", initialDelayString = "${inventario.alertas.recarga-ms:30000}")
+    public void recargarUmbrales() {
+        cargarUmbrales();
+    }
+
+    // Si se cuela un umbral recién borrado, su cambio de estado no encuentra la fila y recargar() lo quita;
+    // uno guardado aquí durante la lectura vuelve en la siguiente recarga
+    @PostConstruct
+    void cargarUmbrales() {
+        Map<ClaveInventario, Umbral> leidos = new HashMap<>();
+        umbralStockRepository.findAll().forEach(u ->
+                leidos.put(new ClaveInventario(u.getVarianteId(), u.getAlmacenId()), Umbral.de(u)));
+        umbrales.keySet().retainAll(leidos.keySet());
+        umbrales.putAll(leidos);
+    }
+
+    // Metodo para evaluar el stock nuevo de varias filas (lotes y transferencias)
+    public void evaluar(Map<ClaveInventario, Integer> stockPorClave) {
+        stockPorClave.forEach((clave, stock) -> evaluar(clave.varianteId(), clave.almacenId(), stock));
+    }
+
+    // Metodo para evaluar el stock nuevo de una fila, dentro de la transacción que lo cambia
+    public void evaluar(Long varianteId, Long almacenId, int stock) {
+        ClaveInventario clave = new ClaveInventario(varianteId, almacenId);
+        Umbral umbral = umbrales.get(clave);
+        if (umbral == null) return;
+
+        if (!umbral.enAlerta() && stock < umbral.minimo()) {
+            if (umbralStockRepository.cambiarEstado(umbral.id(), false, true) == 1) {
+                String sku = varianteRepository.findById(varianteId).map(Variante::getSku).orElse(null);
+                alertaStockRepository.save(new AlertaStock(varianteId, almacenId, sku, stock, umbral.minimo()));
+                emailService.enviarNotificacionMovimiento("Stock bajo: " + sku, """
+                    <h3>Stock por debajo del mínimo</h3>
+                    <p><b>SKU:</b> %s</p>
+                    <p><b>Almacén:</b> %d</p>
+                    <p><b>Stock:</b> %d (mínimo %d)</p>
+                """.formatted(sku, almacenId, stock, umbral.minimo()));
+                actualizarPista(clave, umbral.id(), true);
+            } else {
+                recargar(clave);
+            }
+        } else if (umbral.enAlerta() && stock >= umbral.minimo() + umbral.histeresis()) {
+            if (umbralStockRepository.cambiarEstado(umbral.id(), true, false) == 1) {
+                alertaStockRepository.resolver(varianteId, almacenId, LocalDateTime.now());
+                actualizarPista(clave, umbral.id(), false);
+            } else {
+                recargar(clave);
+            }
+        }
+    }
+
+    // Metodo para crear o cambiar el umbral de una variante en un almacén; se evalúa ya con el stock actual
+    @Transactional
+    public UmbralStockResponse guardarUmbral(Variante variante, Almacen almacen, int minimo, int histeresis) {
+        UmbralStock umbral = umbralStockRepository.findByVarianteIdAndAlmacenId(variante.getId(), almacen.getId())
+                .orElseGet(UmbralStock::new);
+        umbral.setVarianteId(variante.getId());
+        umbral.setAlmacenId(almacen.getId());
+        umbral.setMinimo(minimo);
+        umbral.setHisteresis(histeresis);
+        umbral = umbralStockRepository.saveAndFlush(umbral);
+
+        ClaveInventario clave = new ClaveInventario(variante.getId(), almacen.getId());
+        umbrales.put(clave, Umbral.de(umbral));
+        int stock = inventarioRepository.findStockActual(variante.getId(), almacen.getId()).map(StockActual::stock).orElse(0);
+        evaluar(variante.getId(), almacen.getId(), stock);
+        // La entidad de la sesión no ve el cambio de estado hecho con UPDATE directo
+        return new UmbralStockResponse(umbral.getId(), umbral.getVarianteId(), umbral.getAlmacenId(),
+                minimo, histeresis, umbralStockRepository.enAlerta(umbral.getId()));
+    }
+
+    @Transactional
+    public void eliminarUmbral(Long id) {
+        UmbralStock umbral = umbralStockRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Umbral", id));
+        umbralStockRepository.delete(umbral);
+        alertaStockRepository.resolver(umbral.getVarianteId(), umbral.getAlmacenId(), LocalDateTime.now());
+        umbrales.remove(new ClaveInventario(umbral.getVarianteId(), umbral.getAlmacenId()));
+    }
+
+    public List<UmbralStockResponse> listarUmbrales(Long almacenId) {
+        return umbralStockRepository.findByAlmacenIdOrderByVarianteId(almacenId).stream().map(this::aRespuesta).toList();
+    }
+
+    // Alertas de un almacén (o de todos), solo las abiertas si se pide
+    public Page<AlertaStockResponse> listarAlertas(Long almacenId, boolean soloAbiertas, Pageable pageable) {
+        Specification<AlertaStock> spec = (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (almacenId != null) {
+                predicates.add(cb.equal(root.get("almacenId"), almacenId));
+            }
+            if (soloAbiertas) {
+                predicates.add(cb.isNull(root.get("fechaResolucion")));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+        return alertaStockRepository.findAll(spec, pageable).map(a -> new AlertaStockResponse(a.getId(), a.getSku(),
+                a.getAlmacenId(), a.getStock(), a.getMinimo(), a.getFechaAlerta(), a.getFechaResolucion()));
+    }
+
+    // La pista en memoria cambia solo si la transacción se confirma; si se deshace, la BDD sigue como estaba
+    private void actualizarPista(ClaveInventario clave, Long id, boolean enAlerta) {
+        Runnable actualizar = () -> umbrales.computeIfPresent(clave,
+                (k, actual) -> actual.id().equals(id) ? actual.conAlerta(enAlerta) : actual);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    actualizar.run();
+                }
+            });
+        } else {
+            actualizar.run();
+        }
+    }
+
+    // La pista no coincidía con la BDD (otra transacción cambió el estado): se vuelve a leer
+    private void recargar(ClaveInventario clave) {
+        umbralStockRepository.findByVarianteIdAndAlmacenId(clave.varianteId(), clave.almacenId())
+                .ifPresentOrElse(u -> umbrales.put(clave, Umbral.de(u)), () -> umbrales.remove(clave));
+    }
+
+    private UmbralStockResponse aRespuesta(UmbralStock umbral) {
+        return new UmbralStockResponse(umbral.getId(), umbral.getVarianteId(), umbral.getAlmacenId(),
+                umbral.getMinimo(), umbral.getHisteresis(), umbral.isEnAlerta());
+    }
+}
@@ -3,6 +3,7 @@ package org.watts.inventory.service;
 import jakarta.persistence.criteria.Predicate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -11,7 +12,9 @@ import org.watts.inventory.dto.AlmacenResponse;
 import org.watts.inventory.mapper.AlmacenMapper;
 import org.watts.inventory.models.Almacen;
 import org.watts.inventory.repository.AlmacenRepository;
+import org.watts.shared.enums.ModoTotal;
 import org.watts.shared.exception.ResourceNotFoundException;
+import org.watts.shared.service.PaginacionService;
 import org.watts.shared.utils.SpecificationUtils;
 
 import java.util.ArrayList;
@@ -22,10 +25,17 @@ public class AlmacenService {
 
     private final AlmacenRepository almacenRepository;
     private final AlmacenMapper almacenMapper;
+    private final VistaInventarioService vistaInventarioService;
+    private final PaginacionService paginacionService;
+    private final IndiceReferenciasService indiceReferencias;
 
-    public AlmacenService(AlmacenRepository almacenRepository,  AlmacenMapper almacenMapper) {
+    public AlmacenService(AlmacenRepository almacenRepository,  AlmacenMapper almacenMapper, VistaInventarioService vistaInventarioService,
+                          PaginacionService paginacionService, IndiceReferenciasService indiceReferencias) {
         this.almacenRepository = almacenRepository;
         this.almacenMapper = almacenMapper;
+        this.vistaInventarioService = vistaInventarioService;
+        this.paginacionService = paginacionService;
+        this.indiceReferencias = indiceReferencias;
     }
 
     @Transactional(readOnly = true)
@@ -52,6 +62,7 @@ public class AlmacenService {
 
         // Lo guardamos en la BDD
         Almacen almacenGuardado = almacenRepository.save(nuevoAlmacen);
+        indiceReferencias.registrarAlmacen(almacenGuardado);
 
         return almacenMapper.toResponse(almacenGuardado);
     }
@@ -69,6 +80,7 @@ public class AlmacenService {
         }
         if (request.getDescripcion() != null) {
             almacen.setDescripcion(request.getDescripcion());
+            vistaInventarioService.renombrarAlmacen(id, request.getDescripcion());
         }
 
         if (request.getUbicacionMaps() != null) {
@@ -77,6 +89,7 @@ public class AlmacenService {
 
         // Lo guardamos en la BDD
         Almacen almacenActualizado = almacenRepository.save(almacen);
+        indiceReferencias.registrarAlmacen(almacenActualizado);
 
         return almacenMapper.toResponse(almacenActualizado);
     }
@@ -93,6 +106,7 @@ public class AlmacenService {
 
         // Lo guardamos en la BDD
         almacenRepository.save(almacen);
+        indiceReferencias.registrarAlmacen(almacen);
     }
 
     // Metodo para listar todos los almacenes con paginación
@@ -104,7 +118,28 @@ public class AlmacenService {
             String descripcionMode,
             Boolean activo
     ) {
-        Specification<Almacen> spec = (root, query, cb) -> {
+        return almacenRepository.findAll(especificacion(codigo, codigoMode, descripcion, descripcionMode, activo), pageable)
+                .map(almacenMapper::toResponse);
+    }
+
+    // Metodo para listar los almacenes con el total exacto, aproximado o sin total (solo si hay página siguiente)
+    public Slice<AlmacenResponse> listarAlmacenes(
+            Pageable pageable,
+            String codigo,
+            String codigoMode,
+            String descripcion,
+            String descripcionMode,
+            Boolean activo,
+            ModoTotal modo
+    ) {
+        return paginacionService.buscar(almacenRepository, especificacion(codigo, codigoMode, descripcion, descripcionMode, activo),
+                        pageable, modo, PaginacionService.clave("almacenes", codigo, codigoMode, descripcion, descripcionMode, activo))
+                .map(almacenMapper::toResponse);
+    }
+
+    private static Specification<Almacen> especificacion(String codigo, String codigoMode, String descripcion,
+                                                         String descripcionMode, Boolean activo) {
+        return (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
 
             SpecificationUtils.addPredicate(predicates, cb, root.get("codigo"), codigo, codigoMode);
@@ -116,8 +151,6 @@ public class AlmacenService {
 
             return cb.and(predicates.toArray(new Predicate[0]));
         };
-
-        return almacenRepository.findAll(spec, pageable).map(almacenMapper::toResponse);
     }
 
     @Transactional
@@ -127,5 +160,6 @@ public class AlmacenService {
 
         almacen.setActivo(true);
         almacenRepository.save(almacen);
+        indiceReferencias.registrarAlmacen(almacen);
     }
 }
@@ -0,0 +1,304 @@
+package org.watts.inventory.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.watts.inventory.dto.ConciliacionResponse;
+import org.watts.inventory.dto.DescuadreInventario;
+import org.watts.inventory.enums.EstadoConciliacion;
+import org.watts.inventory.models.ClaveInventario;
+import org.watts.shared.exception.ConflictoException;
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.service.LibroStockMemoria;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+// Comprueba que el stock de cada fila de inventario coincide con la suma con signo de sus movimientos
+// (tabla caliente y archivo) y, si se pide, corrige las filas descuadradas
+// Los variantes se reparten en tramos de ids que se concilian en paralelo con fork/join; cada tramo
+// suma en arrays de primitivos lo que devuelve la BDD ya agregado, sin cargar entidades
+// En modo memoria no se repara: el libro de stock es el único que escribe inventario y no se enteraría
+@Service
+public class ConciliacionInventarioService {
+
+    // Descuadres que se guardan para consultarlos desde el endpoint (el resto solo se cuentan)
+    private static final int MAX_MUESTRA = 100;
+    // Celdas variante × almacén máximas de un tramo, para acotar la memoria de cada tarea
+    private static final int MAX_CELDAS = 1_000_000;
+
+    private static final byte CON_MOVIMIENTOS = 1;
+    private static final byte CON_FILA = 2;
+
+    private static final String SALIDAS = TipoMovimiento.salidas().stream()
+            .map(tipo -> "'" + tipo.name() + "'")
+            .collect(Collectors.joining(", "));
+
+    private static final String SUMA_MOVIMIENTOS = "SELECT variante_id, almacen_id, " +
+            "SUM(CASE WHEN tipo IN (" + SALIDAS + ") THEN -cantidad ELSE cantidad END) " +
+            "FROM %s WHERE variante_id BETWEEN ? AND ? GROUP BY variante_id, almacen_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final VistaInventarioService vistaInventarioService;
+    private final AlertasStockService alertasStockService;
+    private final LibroStockMemoria libroStock;
+
+    private final int paralelismo;
+    private final int tamanoRango;
+    private final int tamanoLote;
+
+    private final AtomicReference<Ejecucion> ultima = new AtomicReference<>();
+
+    public ConciliacionInventarioService(JdbcTemplate jdbcTemplate,
+                                         PlatformTransactionManager transactionManager,
+                                         VistaInventarioService vistaInventarioService,
+                                         AlertasStockService alertasStockService,
+                                         LibroStockMemoria libroStock,
+                                         @Value("${inventario.conciliacion.paralelismo:4}") int paralelismo,
+                                         @Value("${inventario.conciliacion.tamano-rango:1000}") int tamanoRango,
+                                         @Value("${inventario.conciliacion.tamano-lote:500}") int tamanoLote) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionManager = transactionManager;
+        this.vistaInventarioService = vistaInventarioService;
+        this.alertasStockService = alertasStockService;
+        this.libroStock = libroStock;
+        this.paralelismo = paralelismo;
+        this.tamanoRango = tamanoRango;
+        this.tamanoLote = tamanoLote;
+    }
+
+    // Metodo para lanzar una conciliación en segundo plano; su progreso se consulta con estado()
+    public ConciliacionResponse iniciar(boolean reparar) {
+        Ejecucion ejecucion = registrar(reparar);
+        Thread hilo = new Thread(() -> ejecutar(ejecucion), "conciliacion-inventario");
+        hilo.setDaemon(true);
+        hilo.start();
+        return ejecucion.respuesta();
+    }
+
+    // Metodo para conciliar en el hilo actual, esperando a que termine
+    public ConciliacionResponse conciliar(boolean reparar) {
+        Ejecucion ejecucion = registrar(reparar);
+        ejecutar(ejecucion);
+        return ejecucion.respuesta();
+    }
+
+    // Estado de la conciliación en curso o de la última terminada (null si no se ha lanzado ninguna)
+    public ConciliacionResponse estado() {
+        Ejecucion ejecucion = ultima.get();
+        return ejecucion != null ? ejecucion.respuesta() : null;
+    }
+
+    private Ejecucion registrar(boolean reparar) {
+        if (reparar && libroStock.isActivo()) {
+            throw new RuntimeException("La reparación del inventario no está disponible con el stock en modo memoria");
+        }
+        Ejecucion nueva = new Ejecucion(reparar);
+        Ejecucion anterior = ultima.get();
+        if ((anterior != null && anterior.estado == EstadoConciliacion.EN_CURSO) || !ultima.compareAndSet(anterior, nueva)) {
+            throw new ConflictoException("Ya hay una conciliación del inventario en curso");
+        }
+        return nueva;
+    }
+
+    private void ejecutar(Ejecucion ejecucion) {
+        ForkJoinPool pool = new ForkJoinPool(paralelismo);
+        try {
+            // Posición de cada almacén dentro de los arrays de un tramo, en orden de id
+            Map<Long, Integer> almacenes = new HashMap<>();
+            jdbcTemplate.query("SELECT id FROM almacenes ORDER BY id", rs -> {
+                almacenes.put(rs.getLong(1), almacenes.size());
+            });
+            Map<String, Object> limites = jdbcTemplate.queryForMap("SELECT MIN(id) AS minimo, MAX(id) AS maximo FROM variantes");
+
+            if (!almacenes.isEmpty() && limites.get("minimo") != null) {
+                long desde = ((Number) limites.get("minimo")).longValue();
+                long hasta = ((Number) limites.get("maximo")).longValue();
+                int tamano = Math.max(1, Math.min(tamanoRango, MAX_CELDAS / almacenes.size()));
+                ejecucion.rangosTotales.set(tramos(desde, hasta, tamano));
+                pool.invoke(new TareaRango(ejecucion, almacenes, desde, hasta, tamano));
+            }
+            ejecucion.terminar(null);
+        } catch (RuntimeException e) {
+            ejecucion.terminar(e);
+            System.err.println("ERROR: Conciliación del inventario fallida: " + e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static long tramos(long desde, long hasta, int tamano) {
+        return (hasta - desde) / tamano + 1;
+    }
+
+    // Divide el rango de variantes a la mitad (en múltiplos del tamaño de tramo) hasta llegar a un solo tramo
+    private final class TareaRango extends RecursiveAction {
+        private final Ejecucion ejecucion;
+        private final Map<Long, Integer> almacenes;
+        private final long desde;
+        private final long hasta;
+        private final int tamano;
+
+        TareaRango(Ejecucion ejecucion, Map<Long, Integer> almacenes, long desde, long hasta, int tamano) {
+            this.ejecucion = ejecucion;
+            this.almacenes = almacenes;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.tamano = tamano;
+        }
+
+        @Override
+        protected void compute() {
+            long tramos = tramos(desde, hasta, tamano);
+            if (tramos == 1) {
+                conciliarRango(ejecucion, almacenes, desde, hasta);
+                ejecucion.rangosCompletados.incrementAndGet();
+                return;
+            }
+            long corte = desde + (tramos / 2) * tamano;
+            invokeAll(new TareaRango(ejecucion, almacenes, desde, corte - 1, tamano),
+                    new TareaRango(ejecucion, almacenes, corte, hasta, tamano));
+        }
+    }
+
+    // Concilia las variantes [desde, hasta] en todos los almacenes
+    private void conciliarRango(Ejecucion ejecucion, Map<Long, Integer> almacenes, long desde, long hasta) {
+        int numAlmacenes = almacenes.size();
+        int celdas = (int) (hasta - desde + 1) * numAlmacenes;
+        long[] esperado = new long[celdas];
+        int[] stock = new int[celdas];
+        byte[] presencia = new byte[celdas];
+
+        // Movimientos e inventario se leen en la misma foto de la BDD: los movimientos que entren
+        // mientras tanto no aparecen como descuadres falsos
+        TransactionTemplate lectura = new TransactionTemplate(transactionManager);
+        lectura.setReadOnly(true);
+        lectura.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        lectura.executeWithoutResult(status -> {
+            for (String tabla : List.of("movimientos", "movimientos_archivo")) {
+                jdbcTemplate.query(SUMA_MOVIMIENTOS.formatted(tabla), rs -> {
+                    int celda = celda(rs.getLong(1), rs.getLong(2), desde, almacenes, numAlmacenes);
+                    esperado[celda] += rs.getLong(3);
+                    presencia[celda] |= CON_MOVIMIENTOS;
+                }, desde, hasta);
+            }
+            jdbcTemplate.query("SELECT variante_id, almacen_id, stock FROM inventario WHERE variante_id BETWEEN ? AND ?", rs -> {
+                int celda = celda(rs.getLong(1), rs.getLong(2), desde, almacenes, numAlmacenes);
+                stock[celda] = rs.getInt(3);
+                presencia[celda] |= CON_FILA;
+            }, desde, hasta);
+        });
+
+        // Las celdas se recorren en orden (variante, almacén), el mismo con el que se bloquean las filas
+        Long[] idsAlmacen = new Long[numAlmacenes];
+        almacenes.forEach((id, posicion) -> idsAlmacen[posicion] = id);
+        List<DescuadreInventario> descuadres = new ArrayList<>();
+        long comprobadas = 0;
+        for (int celda = 0; celda < celdas; celda++) {
+            if (presencia[celda] == 0) continue;
+            comprobadas++;
+            boolean conFila = (presencia[celda] & CON_FILA) != 0;
+            if (conFila ? stock[celda] != esperado[celda] : esperado[celda] != 0) {
+                descuadres.add(new DescuadreInventario(desde + celda / numAlmacenes, idsAlmacen[celda % numAlmacenes],
+                        conFila ? stock[celda] : null, esperado[celda]));
+            }
+        }
+        ejecucion.filasComprobadas.addAndGet(comprobadas);
+        ejecucion.anotarDescuadres(descuadres);
+
+        if (ejecucion.reparar && !descuadres.isEmpty()) {
+            reparar(ejecucion, descuadres);
+        }
+    }
+
+    private static int celda(long varianteId, long almacenId, long desde, Map<Long, Integer> almacenes, int numAlmacenes) {
+        return (int) (varianteId - desde) * numAlmacenes + almacenes.get(almacenId);
+    }
+
+    // Corrige las filas descuadradas en lotes, sumando la diferencia en vez de escribir el valor esperado:
+    // un movimiento confirmado entre la lectura y la corrección cambia stock y movimientos a la vez,
+    // y la diferencia sigue siendo la misma
+    private void reparar(Ejecucion ejecucion, List<DescuadreInventario> descuadres) {
+        // Un stock negativo no se puede escribir (las salidas nunca lo permiten): se informa pero no se toca
+        List<DescuadreInventario> reparables = descuadres.stream()
+                .filter(d -> d.stockEsperado() >= 0 && d.stockEsperado() <= Integer.MAX_VALUE)
+                .toList();
+
+        TransactionTemplate escritura = new TransactionTemplate(transactionManager);
+        for (int inicio = 0; inicio < reparables.size(); inicio += tamanoLote) {
+            List<DescuadreInventario> lote = reparables.subList(inicio, Math.min(inicio + tamanoLote, reparables.size()));
+            escritura.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate("INSERT INTO inventario (variante_id, almacen_id, stock) VALUES (?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE stock = stock + ?", lote, lote.size(), (ps, descuadre) -> {
+                    long diferencia = descuadre.stockEsperado() - (descuadre.stockActual() != null ? descuadre.stockActual() : 0);
+                    ps.setLong(1, descuadre.varianteId());
+                    ps.setLong(2, descuadre.almacenId());
+                    ps.setLong(3, diferencia);
+                    ps.setLong(4, diferencia);
+                });
+
+                // Las tablas de lectura reciben el stock ya corregido (la fila sigue bloqueada por el UPDATE)
+                Map<ClaveInventario, Integer> stockPorClave = new TreeMap<>();
+                for (DescuadreInventario descuadre : lote) {
+                    Integer stock = jdbcTemplate.queryForObject("SELECT stock FROM inventario WHERE variante_id = ? AND almacen_id = ?",
+                            Integer.class, descuadre.varianteId(), descuadre.almacenId());
+                    stockPorClave.put(new ClaveInventario(descuadre.varianteId(), descuadre.almacenId()), stock);
+                }
+                vistaInventarioService.registrarStock(stockPorClave);
+                alertasStockService.evaluar(stockPorClave);
+            });
+            ejecucion.filasReparadas.addAndGet(lote.size());
+        }
+    }
+
+    // Progreso de una conciliación, actualizado desde los hilos del pool
+    private static final class Ejecucion {
+        private final boolean reparar;
+        private final LocalDateTime inicio = LocalDateTime.now();
+        private final AtomicLong rangosTotales = new AtomicLong();
+        private final AtomicLong rangosCompletados = new AtomicLong();
+        private final AtomicLong filasComprobadas = new AtomicLong();
+        private final AtomicLong descuadres = new AtomicLong();
+        private final AtomicLong filasReparadas = new AtomicLong();
+        private final ConcurrentLinkedQueue<DescuadreInventario> muestra = new ConcurrentLinkedQueue<>();
+        private volatile EstadoConciliacion estado = EstadoConciliacion.EN_CURSO;
+        private volatile LocalDateTime fin;
+        private volatile String error;
+
+        Ejecucion(boolean reparar) {
+            this.reparar = reparar;
+        }
+
+        void anotarDescuadres(List<DescuadreInventario> encontrados) {
+            long anteriores = descuadres.getAndAdd(encontrados.size());
+            for (int i = 0; i < encontrados.size() && anteriores + i < MAX_MUESTRA; i++) {
+                muestra.add(encontrados.get(i));
+            }
+        }
+
+        void terminar(RuntimeException fallo) {
+            error = fallo != null ? fallo.getMessage() : null;
+            fin = LocalDateTime.now();
+            estado = fallo != null ? EstadoConciliacion.FALLIDA : EstadoConciliacion.TERMINADA;
+        }
+
+        ConciliacionResponse respuesta() {
+            return new ConciliacionResponse(estado, reparar, inicio, fin, rangosTotales.get(), rangosCompletados.get(),
+                    filasComprobadas.get(), descuadres.get(), filasReparadas.get(), List.copyOf(muestra), error);
+        }
+    }
+}
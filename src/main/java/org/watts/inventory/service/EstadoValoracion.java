@@ -0,0 +1,99 @@
+package org.watts.inventory.service;
+
+import org.watts.inventory.models.CapaFifo;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// Valoración de una variante en un almacén mientras se le aplican movimientos, a coste medio y a FIFO
+// La usan tanto la actualización por movimiento como la reconstrucción completa de ValoracionInventarioService
+class EstadoValoracion {
+
+    // Parte de una salida valorada a un mismo coste; la entrada de una transferencia recrea las mismas partes
+    record Tramo(int cantidad, double coste) {
+    }
+
+    private final Long varianteId;
+    private final Long almacenId;
+    private int cantidad;
+    private double costeMedio;
+    private final Deque<CapaFifo> capas;
+    // Capas vaciadas por las salidas (las que ya estaban guardadas hay que borrarlas)
+    private final List<CapaFifo> agotadas = new ArrayList<>();
+
+    EstadoValoracion(Long varianteId, Long almacenId, int cantidad, double costeMedio, List<CapaFifo> capas) {
+        this.varianteId = varianteId;
+        this.almacenId = almacenId;
+        this.cantidad = cantidad;
+        this.costeMedio = costeMedio;
+        this.capas = new ArrayDeque<>(capas);
+    }
+
+    void entrada(int unidades, double coste, LocalDateTime fecha) {
+        entrada(List.of(new Tramo(unidades, coste)), fecha);
+    }
+
+    // Con stock negativo o a cero el coste medio pasa a ser directamente el de la entrada
+    void entrada(List<Tramo> tramos, LocalDateTime fecha) {
+        int unidades = 0;
+        double valor = 0;
+        for (Tramo tramo : tramos) {
+            if (tramo.cantidad() <= 0) continue;
+            unidades += tramo.cantidad();
+            valor += tramo.cantidad() * tramo.coste();
+            capas.addLast(new CapaFifo(varianteId, almacenId, tramo.cantidad(), tramo.coste(), fecha));
+        }
+        if (unidades == 0) return;
+        costeMedio = cantidad > 0 ? (cantidad * costeMedio + valor) / (cantidad + unidades) : valor / unidades;
+        cantidad += unidades;
+    }
+
+    // Consume las capas más antiguas; si no hay capas suficientes (stock negativo) lo que falta sale a coste medio.
+    // El coste medio no cambia con las salidas
+    List<Tramo> salida(int unidades) {
+        List<Tramo> tramos = new ArrayList<>();
+        int resto = unidades;
+        while (resto > 0 && !capas.isEmpty()) {
+            CapaFifo capa = capas.peekFirst();
+            int tomadas = Math.min(resto, capa.getCantidad());
+            tramos.add(new Tramo(tomadas, capa.getCosteUnitario()));
+            capa.setCantidad(capa.getCantidad() - tomadas);
+            resto -= tomadas;
+            if (capa.getCantidad() == 0) {
+                agotadas.add(capas.removeFirst());
+            }
+        }
+        if (resto > 0) {
+            tramos.add(new Tramo(resto, costeMedio));
+        }
+        cantidad -= unidades;
+        return tramos;
+    }
+
+    int cantidad() {
+        return cantidad;
+    }
+
+    double costeMedio() {
+        return costeMedio;
+    }
+
+    double valorFifo() {
+        double valor = 0;
+        for (CapaFifo capa : capas) {
+            valor += capa.getCantidad() * capa.getCosteUnitario();
+        }
+        return valor;
+    }
+
+    Deque<CapaFifo> capas() {
+        return capas;
+    }
+
+    List<CapaFifo> agotadas() {
+        return agotadas;
+    }
+}
@@ -0,0 +1,207 @@
+package org.watts.inventory.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.catalog.repository.VarianteRepository;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.repository.AlmacenRepository;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+// Índice en memoria de SKU -> variante e id -> almacén para el camino de cada movimiento suelto:
+// resolver la petición no cuesta consultas y la BDD solo se toca para la fila de stock y el movimiento.
+// Se carga al arrancar y los servicios de catálogo y almacenes lo actualizan cuando su transacción se confirma.
+// Un SKU o almacén que no esté (creado por otra instancia, o por DataInitializer) se lee de la BDD y se añade.
+// Los cambios hechos en otra instancia no llegan por ese camino: cada variante se vuelve a leer de la BDD al usarla
+// si han pasado más de ttl-ms desde que se leyó, para que sus precios (que van al movimiento, la valoración y
+// los totales diarios) no se queden en los antiguos
+@Service
+public class IndiceReferenciasService {
+
+    // Lo que el registro de un movimiento necesita de la variante; el resto de la entidad no se guarda
+    public record VarianteIndexada(Long id, String sku, boolean activo, Double precioCompra, Double precioVenta,
+                                   Long productoId, String productoNombre, Long tallaId, String talla,
+                                   Long colorId, String color) {
+
+        static VarianteIndexada de(Variante v) {
+            return new VarianteIndexada(v.getId(), v.getSku(), v.isActivo(), v.getPrecioCompra(), v.getPrecioVenta(),
+                    v.getProducto().getId(), v.getProducto().getNombre(), v.getTalla().getId(), v.getTalla().getNombre(),
+                    v.getColor().getId(), v.getColor().getNombre());
+        }
+
+        // Variante desconectada con los datos copiados: vale como referencia de Movimiento e Inventario (solo usan el id)
+        // y para los precios y nombres de la respuesta. Cada llamada crea una nueva, no se comparten entre peticiones
+        public Variante aEntidad() {
+            Producto producto = new Producto();
+            producto.setId(productoId);
+            producto.setNombre(productoNombre);
+            Talla t = new Talla();
+            t.setId(tallaId);
+            t.setNombre(talla);
+            Color c = new Color();
+            c.setId(colorId);
+            c.setNombre(color);
+
+            Variante variante = new Variante();
+            variante.setId(id);
+            variante.setSku(sku);
+            variante.setActivo(activo);
+            variante.setPrecioCompra(precioCompra);
+            variante.setPrecioVenta(precioVenta);
+            variante.setProducto(producto);
+            variante.setTalla(t);
+            variante.setColor(c);
+            return variante;
+        }
+    }
+
+    public record AlmacenIndexado(Long id, String codigo, String descripcion, boolean activo) {
+
+        static AlmacenIndexado de(Almacen a) {
+            return new AlmacenIndexado(a.getId(), a.getCodigo(), a.getDescripcion(), a.isActivo());
+        }
+
+        public Almacen aEntidad() {
+            Almacen almacen = new Almacen();
+            almacen.setId(id);
+            almacen.setCodigo(codigo);
+            almacen.setDescripcion(descripcion);
+            almacen.setActivo(activo);
+            return almacen;
+        }
+    }
+
+    private final VarianteRepository varianteRepository;
+    private final AlmacenRepository almacenRepository;
+
+    private final Map<String, VarianteIndexada> variantesPorSku = new ConcurrentHashMap<>();
+    // SKU actual de cada variante, para quitar el anterior cuando se regenera
+    private final Map<Long, String> skuPorVariante = new ConcurrentHashMap<>();
+    // Hasta cuándo vale cada SKU sin volver a leerlo
+    private final Map<String, Long> caducaPorSku = new ConcurrentHashMap<>();
+    private final Map<Long, AlmacenIndexado> almacenes = new ConcurrentHashMap<>();
+    private final long ttlMs;
+
+    public IndiceReferenciasService(VarianteRepository varianteRepository, AlmacenRepository almacenRepository,
+                                    @Value("${movimientos.indice.ttl-ms:60000}") long ttlMs) {
+        this.varianteRepository = varianteRepository;
+        this.almacenRepository = almacenRepository;
+        this.ttlMs = ttlMs;
+    }
+
+    @PostConstruct
+    void cargar() {
+        varianteRepository.findAllConProducto().forEach(v -> indexar(VarianteIndexada.de(v)));
+        almacenRepository.findAll().forEach(a -> almacenes.put(a.getId(), AlmacenIndexado.de(a)));
+    }
+
+    // Metodo para resolver la variante de un SKU (de memoria mientras no caduque)
+    public Optional<VarianteIndexada> variante(String sku) {
+        VarianteIndexada variante = variantesPorSku.get(sku);
+        if (variante != null && caducaPorSku.getOrDefault(sku, 0L) > System.currentTimeMillis()) {
+            return Optional.of(variante);
+        }
+        Optional<VarianteIndexada> leida = varianteRepository.findConProductoBySku(sku).map(VarianteIndexada::de);
+        if (leida.isPresent()) {
+            refrescar(leida.get());
+        } else if (variante != null) {
+            quitar(variante);
+        }
+        return leida;
+    }
+
+    // Metodo para resolver un almacén por su id
+    public Optional<AlmacenIndexado> almacen(Long id) {
+        AlmacenIndexado almacen = almacenes.get(id);
+        if (almacen != null) {
+            return Optional.of(almacen);
+        }
+        return almacenRepository.findById(id).map(a -> {
+            AlmacenIndexado leido = AlmacenIndexado.de(a);
+            almacenes.putIfAbsent(leido.id(), leido);
+            return leido;
+        });
+    }
+
+    // Metodo para reflejar una variante creada o modificada (precios, activo, SKU regenerado, nombre del producto)
+    // Los datos se copian ahora, dentro de la transacción, y se publican cuando se confirma
+    public void registrarVariante(Variante variante) {
+        VarianteIndexada indexada = VarianteIndexada.de(variante);
+        alConfirmar(() -> indexar(indexada));
+    }
+
+    // Metodo para reflejar un almacén creado o modificado
+    public void registrarAlmacen(Almacen almacen) {
+        AlmacenIndexado indexado = AlmacenIndexado.de(almacen);
+        alConfirmar(() -> almacenes.put(indexado.id(), indexado));
+    }
+
+    // Metodo para reflejar el nombre nuevo de una talla en las variantes que la usan
+    public void renombrarTalla(Long tallaId, String nombre) {
+        alConfirmar(() -> reemplazar(v -> !v.tallaId().equals(tallaId) ? v
+                : new VarianteIndexada(v.id(), v.sku(), v.activo(), v.precioCompra(), v.precioVenta(),
+                        v.productoId(), v.productoNombre(), v.tallaId(), nombre, v.colorId(), v.color())));
+    }
+
+    // Metodo para reflejar el nombre nuevo de un color en las variantes que lo usan
+    public void renombrarColor(Long colorId, String nombre) {
+        alConfirmar(() -> reemplazar(v -> !v.colorId().equals(colorId) ? v
+                : new VarianteIndexada(v.id(), v.sku(), v.activo(), v.precioCompra(), v.precioVenta(),
+                        v.productoId(), v.productoNombre(), v.tallaId(), v.talla(), v.colorId(), nombre)));
+    }
+
+    // Las escrituras son raras (cambios de catálogo): se serializan para que los mapas no se crucen
+    private synchronized void indexar(VarianteIndexada variante) {
+        String anterior = skuPorVariante.put(variante.id(), variante.sku());
+        if (anterior != null && !anterior.equals(variante.sku())) {
+            variantesPorSku.remove(anterior);
+            caducaPorSku.remove(anterior);
+        }
+        variantesPorSku.put(variante.sku(), variante);
+        caducaPorSku.put(variante.sku(), System.currentTimeMillis() + ttlMs);
+    }
+
+    // Lo leído de la BDD no pisa un cambio que se haya indexado mientras tanto (ese vuelve a tener su ttl entero)
+    private synchronized void refrescar(VarianteIndexada leida) {
+        String skuActual = skuPorVariante.get(leida.id());
+        if (skuActual == null || caducaPorSku.getOrDefault(skuActual, 0L) <= System.currentTimeMillis()) {
+            indexar(leida);
+        }
+    }
+
+    // El SKU ya no existe en la BDD (regenerado o borrado en otra instancia)
+    private synchronized void quitar(VarianteIndexada variante) {
+        if (variantesPorSku.remove(variante.sku(), variante)) {
+            caducaPorSku.remove(variante.sku());
+            skuPorVariante.remove(variante.id(), variante.sku());
+        }
+    }
+
+    private synchronized void reemplazar(UnaryOperator<VarianteIndexada> cambio) {
+        variantesPorSku.replaceAll((sku, v) -> cambio.apply(v));
+    }
+
+    // El índice cambia solo si la transacción se confirma; si se deshace, sigue como la BDD
+    private void alConfirmar(Runnable actualizar) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    actualizar.run();
+                }
+            });
+        } else {
+            actualizar.run();
+        }
+    }
+}
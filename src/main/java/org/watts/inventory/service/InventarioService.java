@@ -2,68 +2,170 @@ package org.watts.inventory.service;
 
 import jakarta.persistence.criteria.Predicate;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.watts.catalog.model.Variante;
 import org.watts.inventory.dto.InventarioResponse;
+import org.watts.inventory.dto.StockActual;
 import org.watts.inventory.models.Almacen;
+import org.watts.inventory.models.ClaveInventario;
 import org.watts.inventory.models.Inventario;
+import org.watts.inventory.models.InventarioVista;
+import org.watts.inventory.models.StockTotalVariante;
 import org.watts.inventory.repository.AlmacenRepository;
 import org.watts.inventory.repository.InventarioRepository;
+import org.watts.inventory.repository.InventarioVistaRepository;
+import org.watts.inventory.repository.StockTotalVarianteRepository;
+import org.watts.shared.enums.ModoTotal;
+import org.watts.shared.service.PaginacionService;
 import org.watts.shared.utils.SpecificationUtils;
 import org.watts.transaction.enums.TipoMovimiento;
 import org.watts.transaction.model.Movimiento;
 import org.watts.transaction.repository.MovimientoRepository;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 @Service
 public class InventarioService {
     private final InventarioRepository inventarioRepository;
     private final AlmacenRepository almacenRepository;
     private final MovimientoRepository movimientoRepository;
+    private final InventarioVistaRepository inventarioVistaRepository;
+    private final StockTotalVarianteRepository stockTotalVarianteRepository;
+    private final VistaInventarioService vistaInventarioService;
+    private final AlertasStockService alertasStockService;
+    private final RetencionesStock retenciones;
+    private final PaginacionService paginacionService;
 
 
-    public InventarioService(InventarioRepository inventarioRepository, AlmacenRepository almacenRepository, MovimientoRepository movimientoRepository) {
+    public InventarioService(InventarioRepository inventarioRepository, AlmacenRepository almacenRepository, MovimientoRepository movimientoRepository,
+                             InventarioVistaRepository inventarioVistaRepository, StockTotalVarianteRepository stockTotalVarianteRepository,
+                             VistaInventarioService vistaInventarioService,
+                             AlertasStockService alertasStockService, RetencionesStock retenciones,
+                             PaginacionService paginacionService) {
         this.inventarioRepository = inventarioRepository;
         this.almacenRepository = almacenRepository;
         this.movimientoRepository = movimientoRepository;
+        this.inventarioVistaRepository = inventarioVistaRepository;
+        this.stockTotalVarianteRepository = stockTotalVarianteRepository;
+        this.vistaInventarioService = vistaInventarioService;
+        this.alertasStockService = alertasStockService;
+        this.retenciones = retenciones;
+        this.paginacionService = paginacionService;
     }
 
     // Metodo para agregar o quitar stock desde movimientos
     @Transactional
     public Inventario updateStock(Variante variante, Almacen almacen, int cantidad, TipoMovimiento tipo) {
+        return intentarUpdateStock(variante, almacen, cantidad, tipo)
+                .orElseThrow(() -> {
+                    int stockActual = stockActual(variante.getId(), almacen.getId());
+                    int reservado = retenciones.reservado(new ClaveInventario(variante.getId(), almacen.getId()));
+                    return new RuntimeException("Stock insuficiente. Tienes: " + stockActual
+                            + (reservado > 0 ? " (" + reservado + " reservado)" : "") + ", intentas sacar: " + cantidad);
+                });
+    }
 
-        Inventario inventario = inventarioRepository.findByVarianteAndAlmacen(variante, almacen)
-                .orElse(new Inventario());
+    // Aplica el movimiento con una sola sentencia atómica (insertar o sumar / restar si hay stock)
+    // Devuelve vacío, sin lanzar excepción, si la salida dejaría el stock en negativo o tocaría stock reservado
+    @Transactional
+    public Optional<Inventario> intentarUpdateStock(Variante variante, Almacen almacen, int cantidad, TipoMovimiento tipo) {
+        int filas = tipo.esSalida()
+                ? inventarioRepository.decrementarStock(variante.getId(), almacen.getId(), cantidad,
+                        retenciones.salida(new ClaveInventario(variante.getId(), almacen.getId()), cantidad))
+                : inventarioRepository.incrementarStock(variante.getId(), almacen.getId(), cantidad);
 
-        if (inventario.getId() == null) {
-            inventario.setVariante(variante);
-            inventario.setAlmacen(almacen);
-            inventario.setStock(0);
+        if (filas == 0) {
+            return Optional.empty();
         }
 
-        int stockActual = inventario.getStock();
-        int nuevoStock;
+        // La fila ya está bloqueada por nuestra sentencia, así que esta lectura es barata y consistente
+        StockActual stockActual = inventarioRepository.findStockActual(variante.getId(), almacen.getId())
+                .orElseThrow(() -> new IllegalStateException("No se encuentra el inventario recién actualizado"));
+        vistaInventarioService.registrarStock(variante.getId(), almacen.getId(), stockActual.stock());
+        alertasStockService.evaluar(variante.getId(), almacen.getId(), stockActual.stock());
 
-        switch (tipo) {
-            case VENTA, SALIDA_DEFECTO, SALIDA_REGALO -> {
-                if (stockActual < cantidad) {
-                    throw new RuntimeException("Stock insuficiente. Tienes: " + stockActual + ", intentas sacar: " + cantidad);
-                }
-                nuevoStock = stockActual - cantidad;
-            }
-            case COMPRA, ENTRADA_FABRICACION, ENTRADA_DEVOLUCION -> {
-                nuevoStock = stockActual + cantidad;
+        // Devolvemos una copia con el resultado, no una entidad gestionada
+        Inventario inventario = new Inventario();
+        inventario.setId(stockActual.inventarioId());
+        inventario.setVariante(variante);
+        inventario.setAlmacen(almacen);
+        inventario.setStock(stockActual.stock());
+        return Optional.of(inventario);
+    }
+
+    // Stock actual de una combinación variante / almacén (0 si todavía no hay fila)
+    public int stockActual(Long varianteId, Long almacenId) {
+        return inventarioRepository.findStockActual(varianteId, almacenId)
+                .map(StockActual::stock)
+                .orElse(0);
+    }
+
+    // Suma (o resta, si es negativo) un delta ya validado al stock, creando la fila si no existe
+    // Lo usa el volcado del libro de stock en memoria, que valida las salidas antes de llegar aquí
+    @Transactional
+    public void aplicarDelta(Long varianteId, Long almacenId, int delta) {
+        inventarioRepository.incrementarStock(varianteId, almacenId, delta);
+        int stock = stockActual(varianteId, almacenId);
+        vistaInventarioService.registrarStock(varianteId, almacenId, stock);
+        alertasStockService.evaluar(varianteId, almacenId, stock);
+    }
+
+    // Metodo para bloquear en una sola consulta las filas de inventario de un lote de movimientos
+    // Primero se crean con stock 0 las que falten: el upsert recorre todas las claves en orden (variante, almacén)
+    // y bloquea cada fila, exista o no, así que el orden en que se adquieren los bloqueos es siempre el mismo
+    // y dos lotes que crean filas que el otro necesita no pueden quedar esperándose (deadlock)
+    @Transactional
+    public Map<ClaveInventario, Inventario> bloquearInventarios(Set<ClaveInventario> claves) {
+        Map<ClaveInventario, Inventario> inventarios = new TreeMap<>();
+        if (claves.isEmpty()) {
+            return inventarios;
+        }
+
+        Set<ClaveInventario> ordenadas = new TreeSet<>(claves);
+        for (ClaveInventario clave : ordenadas) {
+            inventarioRepository.crearSiNoExiste(clave.varianteId(), clave.almacenId());
+        }
+        for (Inventario inventario : inventarioRepository.bloquearClaves(ordenadas)) {
+            inventarios.put(ClaveInventario.de(inventario), inventario);
+        }
+
+        // Las filas recién creadas también aparecen en la vista, aunque el lote acabe sin aplicarse
+        // (no se distinguen de las que ya existían con stock 0, que solo se reescriben igual)
+        Map<ClaveInventario, Integer> stockNuevas = new TreeMap<>();
+        inventarios.forEach((clave, inventario) -> {
+            if (inventario.getStock() == 0) {
+                stockNuevas.put(clave, 0);
             }
-            default -> nuevoStock = stockActual;
+        });
+        if (!stockNuevas.isEmpty()) {
+            vistaInventarioService.registrarStock(stockNuevas);
         }
+        return inventarios;
+    }
+
+    // Metodo para guardar de una vez las filas de inventario modificadas en un lote
+    @Transactional
+    public List<Inventario> guardarInventarios(Collection<Inventario> inventarios) {
+        List<Inventario> guardados = inventarioRepository.saveAll(inventarios);
 
-        inventario.setStock(nuevoStock);
-        return inventarioRepository.save(inventario);
+        Map<ClaveInventario, Integer> stockPorClave = new TreeMap<>();
+        guardados.forEach(inventario -> stockPorClave.put(ClaveInventario.de(inventario), inventario.getStock()));
+        vistaInventarioService.registrarStock(stockPorClave);
+        alertasStockService.evaluar(stockPorClave);
+        return guardados;
     }
 
     // Metodo auxiliar para convertir a DTO y evitar loop infinito
@@ -92,9 +194,41 @@ public class InventarioService {
         return dto;
     }
 
-    public int stockTotal(Variante variante) {
-        return inventarioRepository.findByVariante(variante)
-                .stream().mapToInt(Inventario::getStock).sum();
+    // Stock total de una variante en todos los almacenes, leído de la tabla de totales (una fila)
+    // Vacío si la variante nunca ha tenido stock
+    public Optional<Integer> stockTotal(Long varianteId) {
+        return stockTotalVarianteRepository.findById(varianteId).map(StockTotalVariante::getStockTotal);
+    }
+
+    // Metodo auxiliar para convertir una fila de la vista al DTO (sin lazy loads, ya viene todo resuelto)
+    private InventarioResponse mapearVistaADTO(InventarioVista vista) {
+        InventarioResponse dto = new InventarioResponse();
+        dto.setId(vista.getInventarioId());
+        dto.setStock(vista.getStock());
+        dto.setSku(vista.getSku());
+        dto.setProductoNombre(vista.getProductoNombre());
+        dto.setTalla(vista.getTalla());
+        dto.setColor(vista.getColor());
+        dto.setAlmacenNombre(vista.getAlmacenNombre());
+        return dto;
+    }
+
+    // Los clientes ordenan con las rutas de la entidad Inventario, las traducimos a columnas de la vista
+    private Pageable traducirOrden(Pageable pageable) {
+        if (pageable.getSort().isUnsorted()) {
+            return pageable;
+        }
+        Sort sort = Sort.by(pageable.getSort().stream()
+                .map(orden -> orden.withProperty(switch (orden.getProperty()) {
+                    case "variante.sku" -> "sku";
+                    case "variante.producto.nombre" -> "productoNombre";
+                    case "variante.talla.nombre" -> "talla";
+                    case "variante.color.nombre" -> "color";
+                    case "almacen.descripcion" -> "almacenNombre";
+                    default -> orden.getProperty();
+                }))
+                .toList());
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
     }
 
     // Metodo para listar el stock por almacén con paginación y filtros
@@ -110,51 +244,65 @@ public class InventarioService {
             String color,
             String colorMatchMode
     ) {
-        Specification<Inventario> spec = (root, query, cb) -> {
+        return inventarioVistaRepository.findAll(
+                        especificacion(almacenId, producto, productoMatchMode, sku, skuMatchMode, talla, tallaMatchMode, color, colorMatchMode),
+                        traducirOrden(pageable))
+                .map(this::mapearVistaADTO);
+    }
+
+    // Metodo para listar el stock por almacén con el total exacto, aproximado o sin total (solo si hay página siguiente)
+    public Slice<InventarioResponse> listarStockPorAlmacen(
+            Long almacenId,
+            Pageable pageable,
+            String producto,
+            String productoMatchMode,
+            String sku,
+            String skuMatchMode,
+            String talla,
+            String tallaMatchMode,
+            String color,
+            String colorMatchMode,
+            ModoTotal modo
+    ) {
+        return paginacionService.buscar(inventarioVistaRepository,
+                        especificacion(almacenId, producto, productoMatchMode, sku, skuMatchMode, talla, tallaMatchMode, color, colorMatchMode),
+                        traducirOrden(pageable), modo,
+                        PaginacionService.clave("stock", almacenId, producto, productoMatchMode, sku, skuMatchMode, talla, tallaMatchMode, color, colorMatchMode))
+                .map(this::mapearVistaADTO);
+    }
+
+    // Se lee de la vista plana: un filtro por columnas propias sobre el índice (almacén, sku), sin joins
+    private static Specification<InventarioVista> especificacion(Long almacenId, String producto, String productoMatchMode,
+                                                                 String sku, String skuMatchMode, String talla,
+                                                                 String tallaMatchMode, String color, String colorMatchMode) {
+        return (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
 
             // 1. Filtro fijo por Almacén
-            predicates.add(cb.equal(root.get("almacen").get("id"), almacenId));
+            predicates.add(cb.equal(root.get("almacenId"), almacenId));
 
-            // 2. Filtro Producto (Join: Inventario -> Variante -> Producto -> nombre)
+            // 2. Filtro Producto
             if (producto != null) {
-                // Navegamos por la relación: variante.producto.nombre
-                SpecificationUtils.addPredicate(
-                        predicates,
-                        cb,
-                        root.get("variante").get("producto").get("nombre"),
-                        producto,
-                        productoMatchMode
-                );
+                SpecificationUtils.addPredicate(predicates, cb, root.get("productoNombre"), producto, productoMatchMode);
             }
 
-            // 3. Filtro SKU (Join: Inventario -> Variante -> sku)
+            // 3. Filtro SKU
             if (sku != null) {
-                // Navegamos por la relación: variante.sku
-                SpecificationUtils.addPredicate(
-                        predicates,
-                        cb,
-                        root.get("variante").get("sku"),
-                        sku,
-                        skuMatchMode
-                );
+                SpecificationUtils.addPredicate(predicates, cb, root.get("sku"), sku, skuMatchMode);
             }
 
-            // 4. Filtro Talla (Join: Inventario -> Variante -> Talla -> nombre)
+            // 4. Filtro Talla
             if (talla != null) {
-                SpecificationUtils.addPredicate(predicates, cb, root.get("variante").get("talla").get("nombre"), talla, tallaMatchMode);
+                SpecificationUtils.addPredicate(predicates, cb, root.get("talla"), talla, tallaMatchMode);
             }
 
-            // 5. Filtro Color (Join: Inventario -> Variante -> Color -> nombre)
+            // 5. Filtro Color
             if (color != null) {
-                SpecificationUtils.addPredicate(predicates, cb, root.get("variante").get("color").get("nombre"), color, colorMatchMode);
+                SpecificationUtils.addPredicate(predicates, cb, root.get("color"), color, colorMatchMode);
             }
 
             return cb.and(predicates.toArray(new Predicate[0]));
         };
-
-        return inventarioRepository.findAll(spec, pageable)
-                .map(this::mapearADTO);
     }
 
 
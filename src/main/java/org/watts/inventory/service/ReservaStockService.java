@@ -0,0 +1,200 @@
+package org.watts.inventory.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.watts.catalog.model.Variante;
+import org.watts.inventory.dto.DisponibilidadResponse;
+import org.watts.inventory.dto.ReservaResponse;
+import org.watts.inventory.dto.StockActual;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.models.ClaveInventario;
+import org.watts.inventory.models.ReservaStock;
+import org.watts.inventory.repository.InventarioRepository;
+import org.watts.inventory.repository.ReservaStockRepository;
+import org.watts.shared.exception.ResourceNotFoundException;
+import org.watts.shared.utils.RuedaTemporizadora;
+import org.watts.transaction.service.LibroStockMemoria;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Reservas de stock mientras se completa un pedido (p. ej. el checkout de la tienda web)
+// No escriben movimientos ni bloquean filas de inventario: las activas viven en un mapa en memoria y lo retenido
+// por variante / almacén en RetencionesStock, que es lo que respetan las salidas. Confirmar y anular son O(1).
+// Cada reserva se guarda además en reservas_stock solo para recargarlas al arrancar.
+// Como LibroStockMemoria, pensado para una única instancia de la aplicación
+@Service
+public class ReservaStockService {
+
+    public record Reserva(String id, Long varianteId, String varianteSku, Long almacenId, int cantidad, long expiraEn) {
+    }
+
+    private final InventarioRepository inventarioRepository;
+    private final ReservaStockRepository reservaStockRepository;
+    private final RetencionesStock retenciones;
+    private final LibroStockMemoria libroStock;
+    private final TransactionTemplate transactionTemplate;
+    private final int ttlDefectoSegundos;
+    private final int ttlMaximoSegundos;
+
+    private final ConcurrentHashMap<String, Reserva> reservas = new ConcurrentHashMap<>();
+    private final RuedaTemporizadora<String> caducidades;
+
+    public ReservaStockService(InventarioRepository inventarioRepository,
+                               ReservaStockRepository reservaStockRepository,
+                               RetencionesStock retenciones,
+                               LibroStockMemoria libroStock,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${inventario.reservas.ttl-defecto-segundos:900}") int ttlDefectoSegundos,
+                               @Value("${inventario.reservas.ttl-maximo-segundos:3600}") int ttlMaximoSegundos,
+                               @Value("${inventario.reservas.ranuras:512}") int ranuras,
+                               @Value("${inventario.reservas.tick-ms:1000}") long tickMs) {
+        this.inventarioRepository = inventarioRepository;
+        this.reservaStockRepository = reservaStockRepository;
+        this.retenciones = retenciones;
+        this.libroStock = libroStock;
+        this.transactionTemplate = transactionTemplate;
+        this.ttlDefectoSegundos = ttlDefectoSegundos;
+        this.ttlMaximoSegundos = ttlMaximoSegundos;
+        this.caducidades = new RuedaTemporizadora<>(ranuras, tickMs, System.currentTimeMillis());
+    }
+
+    // Al arrancar se recargan las reservas guardadas; las que ya han vencido se liberan en el primer avance de la rueda
+    @PostConstruct
+    void cargar() {
+        for (ReservaStock fila : reservaStockRepository.findAll()) {
+            Reserva reserva = new Reserva(fila.getId(), fila.getVarianteId(), fila.getVarianteSku(), fila.getAlmacenId(),
+                    fila.getCantidad(), fila.getFechaExpiracion().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            reservas.put(reserva.id(), reserva);
+            retenciones.sumar(clave(reserva), reserva.cantidad());
+            caducidades.programar(reserva.id(), reserva.expiraEn());
+        }
+    }
+
+    // Metodo para reservar stock si hay suficiente disponible (stock menos lo ya reservado)
+    // La cantidad queda retenida en cuanto se valida; si la fila de la reserva no llega a guardarse se devuelve
+    @Transactional
+    public ReservaResponse reservar(Variante variante, Almacen almacen, int cantidad, Integer ttlSegundos) {
+        ClaveInventario clave = new ClaveInventario(variante.getId(), almacen.getId());
+        if (libroStock.isActivo()) {
+            // El stock vigente está en el libro: valida con la franja de la clave tomada hasta el final de la transacción
+            libroStock.retener(clave, cantidad);
+        } else {
+            retenciones.retener(clave, cantidad, () -> stock(clave));
+        }
+
+        int ttl = Math.min(ttlSegundos != null ? ttlSegundos : ttlDefectoSegundos, ttlMaximoSegundos);
+        long expiraEn = System.currentTimeMillis() + ttl * 1000L;
+        Reserva reserva = new Reserva(UUID.randomUUID().toString(), variante.getId(), variante.getSku(),
+                almacen.getId(), cantidad, expiraEn);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    reservas.put(reserva.id(), reserva);
+                    caducidades.programar(reserva.id(), expiraEn);
+                } else {
+                    retenciones.soltar(clave, cantidad);
+                }
+            }
+        });
+        reservaStockRepository.save(new ReservaStock(reserva.id(), variante.getId(), variante.getSku(),
+                almacen.getId(), cantidad, fecha(expiraEn)));
+        return new ReservaResponse(reserva.id(), reserva.varianteSku(), reserva.almacenId(), cantidad, fecha(expiraEn));
+    }
+
+    // Metodo para anular una reserva y devolver su stock a disponible
+    // Sacarla del mapa es lo que decide quién se la queda frente a confirmarla o caducar
+    public void liberar(String reservaId) {
+        Reserva reserva = quitar(reservaId);
+        try {
+            transactionTemplate.executeWithoutResult(estado -> reservaStockRepository.borrar(reservaId));
+        } catch (RuntimeException e) {
+            reservas.put(reservaId, reserva);
+            throw e;
+        }
+        retenciones.soltar(clave(reserva), reserva.cantidad());
+    }
+
+    // Metodo para sacar una reserva para confirmarla dentro de la transacción de la venta
+    // Su cantidad pasa a salir con la venta; si la transacción se deshace la reserva vuelve con su cantidad retenida
+    @Transactional
+    public Reserva extraer(String reservaId) {
+        Reserva reserva = quitar(reservaId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    reservas.put(reserva.id(), reserva);
+                    caducidades.programar(reserva.id(), reserva.expiraEn());
+                }
+            }
+        });
+        retenciones.confirmar(clave(reserva), reserva.cantidad());
+        reservaStockRepository.borrar(reservaId);
+        return reserva;
+    }
+
+    public DisponibilidadResponse disponibilidad(Variante variante, Almacen almacen) {
+        ClaveInventario clave = new ClaveInventario(variante.getId(), almacen.getId());
+        int stock = stock(clave);
+        int retenido = retenciones.reservado(clave);
+        return new DisponibilidadResponse(variante.getSku(), almacen.getId(), stock, retenido, Math.max(0, stock - retenido));
+    }
+
+    // Libera las reservas caducadas. Las ya confirmadas o anuladas ya no están en el mapa y se ignoran
+    @Scheduled(fixedDelayString = "${inventario.reservas.tick-ms:1000}")
+    public void expirar() {
+        expirar(System.currentTimeMillis());
+    }
+
+    int expirar(long ahora) {
+        int caducadas = 0;
+        for (String id : caducidades.avanzar(ahora)) {
+            Reserva reserva = reservas.get(id);
+            if (reserva != null && reserva.expiraEn() <= ahora && reservas.remove(id, reserva)) {
+                retenciones.soltar(clave(reserva), reserva.cantidad());
+                caducadas++;
+                try {
+                    transactionTemplate.executeWithoutResult(estado -> reservaStockRepository.borrar(id));
+                } catch (RuntimeException e) {
+                    // Ya está liberada; si la fila sigue ahí, al arrancar se recarga vencida y se vuelve a liberar
+                    System.err.println("ERROR: No se pudo borrar la reserva caducada " + id + ": " + e.getMessage());
+                }
+            }
+        }
+        return caducadas;
+    }
+
+    // Las vencidas que la rueda todavía no ha recogido ya no se pueden confirmar ni anular
+    private Reserva quitar(String reservaId) {
+        Reserva reserva = reservas.get(reservaId);
+        if (reserva == null || reserva.expiraEn() <= System.currentTimeMillis() || !reservas.remove(reservaId, reserva)) {
+            throw new ResourceNotFoundException("Reserva", reservaId);
+        }
+        return reserva;
+    }
+
+    private int stock(ClaveInventario clave) {
+        return inventarioRepository.findStockActual(clave.varianteId(), clave.almacenId())
+                .map(StockActual::stock)
+                .orElse(0);
+    }
+
+    private static ClaveInventario clave(Reserva reserva) {
+        return new ClaveInventario(reserva.varianteId(), reserva.almacenId());
+    }
+
+    private static LocalDateTime fecha(long epochMs) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMs), ZoneId.systemDefault());
+    }
+}
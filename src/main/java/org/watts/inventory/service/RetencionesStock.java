@@ -0,0 +1,130 @@
+package org.watts.inventory.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.watts.inventory.models.ClaveInventario;
+import org.watts.shared.exception.ConflictoException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+
+// Índice en memoria de lo retenido por las reservas activas (ReservaStockService) por variante / almacén
+// Cada cambio es un compute() atómico sobre la clave: reservar, confirmar y anular no bloquean filas de la BDD.
+// Las salidas leen de aquí lo reservado (InventarioService, los lotes de MovimientoService y LibroStockMemoria).
+// Para que una reserva no se reparta stock que está saliendo, cada salida en modo directo anota su cantidad
+// como "saliendo" hasta que termina su transacción y la reserva la descuenta además de lo reservado.
+// Como LibroStockMemoria, pensado para una única instancia de la aplicación
+@Service
+public class RetencionesStock {
+
+    private record Retencion(int reservado, int saliendo) {
+        boolean vacia() {
+            return reservado <= 0 && saliendo <= 0;
+        }
+    }
+
+    private final ConcurrentHashMap<ClaveInventario, Retencion> retenciones = new ConcurrentHashMap<>();
+
+    // Stock reservado de una clave (0 si no hay ninguna reserva)
+    public int reservado(ClaveInventario clave) {
+        Retencion retencion = retenciones.get(clave);
+        return retencion != null ? retencion.reservado() : 0;
+    }
+
+    // Stock reservado más el que está saliendo: lo que una reserva nueva no puede tomar
+    public int comprometido(ClaveInventario clave) {
+        Retencion retencion = retenciones.get(clave);
+        return retencion != null ? retencion.reservado() + retencion.saliendo() : 0;
+    }
+
+    // Metodo para reservar en modo directo: primero suma la cantidad y después lee el stock confirmado.
+    // Una salida que leyó lo reservado antes de esta suma está anotada como saliendo hasta su commit,
+    // y si ya ha confirmado el stock leído la incluye, así que ninguna de las dos se puede comer la otra
+    public void retener(ClaveInventario clave, int cantidad, IntSupplier stock) {
+        Retencion anotada = retenciones.compute(clave, (k, actual) -> actual == null
+                ? new Retencion(cantidad, 0)
+                : new Retencion(actual.reservado() + cantidad, actual.saliendo()));
+        int disponible = stock.getAsInt() - anotada.reservado() - anotada.saliendo();
+        if (disponible < 0) {
+            soltar(clave, cantidad);
+            throw new ConflictoException("Stock disponible insuficiente. Disponible: " + Math.max(0, disponible + cantidad)
+                    + ", intentas reservar: " + cantidad);
+        }
+    }
+
+    // Suma a lo reservado sin validar (el libro de stock ya lo ha validado con la franja tomada, o se recarga al arrancar)
+    public void sumar(ClaveInventario clave, int cantidad) {
+        retenciones.compute(clave, (k, actual) -> actual == null
+                ? new Retencion(cantidad, 0)
+                : new Retencion(actual.reservado() + cantidad, actual.saliendo()));
+    }
+
+    // Metodo para devolver a disponible la cantidad de una reserva anulada o caducada
+    public void soltar(ClaveInventario clave, int cantidad) {
+        retenciones.computeIfPresent(clave, (k, actual) -> {
+            Retencion nueva = new Retencion(actual.reservado() - cantidad, actual.saliendo());
+            return nueva.vacia() ? null : nueva;
+        });
+    }
+
+    // Metodo para anotar una salida de la transacción en curso. Devuelve lo reservado que tiene que respetar
+    public int salida(ClaveInventario clave, int cantidad) {
+        Pendiente pendiente = enTransaccion();
+        Retencion anotada = retenciones.compute(clave, (k, actual) -> actual == null
+                ? new Retencion(0, cantidad)
+                : new Retencion(actual.reservado(), actual.saliendo() + cantidad));
+        pendiente.saliendo.merge(clave, cantidad, Integer::sum);
+        return anotada.reservado();
+    }
+
+    // Metodo para confirmar una reserva: su cantidad deja de estar reservada y pasa a saliendo hasta que
+    // termina la transacción de la venta. Si se deshace vuelve a quedar reservada
+    public void confirmar(ClaveInventario clave, int cantidad) {
+        Pendiente pendiente = enTransaccion();
+        retenciones.compute(clave, (k, actual) -> actual == null
+                ? new Retencion(-cantidad, cantidad)
+                : new Retencion(actual.reservado() - cantidad, actual.saliendo() + cantidad));
+        pendiente.saliendo.merge(clave, cantidad, Integer::sum);
+        pendiente.confirmado.merge(clave, cantidad, Integer::sum);
+    }
+
+    // Lo anotado se quita al terminar la transacción, así que sin ella se quedaría anotado para siempre
+    private Pendiente enTransaccion() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Las salidas con reservas necesitan una transacción");
+        }
+        Pendiente pendiente = (Pendiente) TransactionSynchronizationManager.getResource(this);
+        if (pendiente == null) {
+            pendiente = new Pendiente();
+            TransactionSynchronizationManager.bindResource(this, pendiente);
+            TransactionSynchronizationManager.registerSynchronization(pendiente);
+        }
+        return pendiente;
+    }
+
+    // Lo que la transacción tiene anotado como saliendo y las reservas que ha confirmado
+    // Al terminar se quita lo saliendo y, si se ha deshecho, las reservas confirmadas vuelven a reservado,
+    // las dos cosas en el mismo compute para que no haya un momento en que esa cantidad no cuente
+    private final class Pendiente implements TransactionSynchronization {
+        private final Map<ClaveInventario, Integer> saliendo = new HashMap<>();
+        private final Map<ClaveInventario, Integer> confirmado = new HashMap<>();
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(RetencionesStock.this);
+            boolean deshecha = status == STATUS_ROLLED_BACK;
+            saliendo.forEach((clave, cantidad) -> {
+                int devuelto = deshecha ? confirmado.getOrDefault(clave, 0) : 0;
+                retenciones.compute(clave, (k, actual) -> {
+                    Retencion nueva = actual == null
+                            ? new Retencion(devuelto, -cantidad)
+                            : new Retencion(actual.reservado() + devuelto, actual.saliendo() - cantidad);
+                    return nueva.vacia() ? null : nueva;
+                });
+            });
+        }
+    }
+}
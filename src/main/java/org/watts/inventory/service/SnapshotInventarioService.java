@@ -0,0 +1,214 @@
+package org.watts.inventory.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.watts.catalog.model.Variante;
+import org.watts.catalog.repository.VarianteRepository;
+import org.watts.inventory.dto.StockAFechaResponse;
+import org.watts.inventory.dto.StockActual;
+import org.watts.inventory.dto.StockVariante;
+import org.watts.inventory.models.SnapshotInventario;
+import org.watts.inventory.repository.InventarioRepository;
+import org.watts.inventory.repository.SnapshotInventarioRepository;
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.repository.MovimientoArchivadoRepository;
+import org.watts.transaction.repository.MovimientoRepository;
+import org.watts.transaction.service.ArchivoMovimientosService;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Fotos periódicas del inventario y consultas de stock a una fecha pasada:
+// se parte de la foto más cercana (o del stock actual) y solo se suman / restan los movimientos entre medias
+@Service
+public class SnapshotInventarioService {
+
+    private final SnapshotInventarioRepository snapshotRepository;
+    private final InventarioRepository inventarioRepository;
+    private final MovimientoRepository movimientoRepository;
+    private final MovimientoArchivadoRepository movimientoArchivadoRepository;
+    private final ArchivoMovimientosService archivoMovimientos;
+    private final VarianteRepository varianteRepository;
+
+    private final boolean activo;
+    private final int margenMinutos;
+    private final int retencionDias;
+
+    public SnapshotInventarioService(SnapshotInventarioRepository snapshotRepository,
+                                     InventarioRepository inventarioRepository,
+                                     MovimientoRepository movimientoRepository,
+                                     MovimientoArchivadoRepository movimientoArchivadoRepository,
+                                     ArchivoMovimientosService archivoMovimientos,
+                                     VarianteRepository varianteRepository,
+                                     @Value("${inventario.snapshots.activo:true}") boolean activo,
+                                     @Value("${inventario.snapshots.margen-minutos:5}") int margenMinutos,
+                                     @Value("${inventario.snapshots.retencion-dias:30}") int retencionDias) {
+        this.snapshotRepository = snapshotRepository;
+        this.inventarioRepository = inventarioRepository;
+        this.movimientoRepository = movimientoRepository;
+        this.movimientoArchivadoRepository = movimientoArchivadoRepository;
+        this.archivoMovimientos = archivoMovimientos;
+        this.varianteRepository = varianteRepository;
+        this.activo = activo;
+        this.margenMinutos = margenMinutos;
+        this.retencionDias = retencionDias;
+    }
+
+    // La foto se fecha unos minutos atrás: los movimientos de transacciones que aún no han confirmado
+    // llevan una fecha anterior a su commit, y con el margen ya estarán todos visibles al calcularla
+    @Scheduled(cron = "${inventario.snapshots.cron:0 0 * * * *}")
+    @Transactional
+    public void tomarSnapshotPeriodica() {
+        if (!activo) return;
+        tomarSnapshot(LocalDateTime.now().minusMinutes(margenMinutos).truncatedTo(ChronoUnit.SECONDS));
+        aclararAntiguas(LocalDate.now().minusDays(retencionDias).atStartOfDay());
+    }
+
+    // Metodo para guardar la foto de todas las filas de inventario tal como estaban en una fecha reciente
+    @Transactional
+    public int tomarSnapshot(LocalDateTime fecha) {
+        if (snapshotRepository.existsByFecha(fecha)) return 0;
+        List<String> salidas = TipoMovimiento.salidas().stream().map(Enum::name).toList();
+        int filas = snapshotRepository.tomar(fecha, salidas);
+        return filas - snapshotRepository.borrarVacias(fecha);
+    }
+
+    // De las fotos anteriores al límite solo se conserva la primera de cada día
+    @Transactional
+    public int aclararAntiguas(LocalDateTime limite) {
+        Set<LocalDate> dias = new TreeSet<>();
+        List<LocalDateTime> sobrantes = new ArrayList<>();
+        for (LocalDateTime fecha : snapshotRepository.fechasAnterioresA(limite)) {
+            if (!dias.add(fecha.toLocalDate())) {
+                sobrantes.add(fecha);
+            }
+        }
+        return sobrantes.isEmpty() ? 0 : snapshotRepository.borrarFechas(sobrantes);
+    }
+
+    // Stock de una variante en un almacén al terminar el día indicado
+    @Transactional(readOnly = true)
+    public StockAFechaResponse stockAFecha(Variante variante, Long almacenId, LocalDate dia) {
+        LocalDateTime objetivo = finDelDia(dia);
+        Base base = reconstruir(variante.getId(), almacenId, objetivo);
+        return new StockAFechaResponse(variante.getId(), variante.getSku(), almacenId, objetivo, base.stock(), base.fecha());
+    }
+
+    // Stock de todas las variantes con existencias en un almacén al terminar el día indicado
+    @Transactional(readOnly = true)
+    public List<StockAFechaResponse> stockAFecha(Long almacenId, LocalDate dia) {
+        LocalDateTime objetivo = finDelDia(dia);
+        LocalDateTime desde = elegirBase(objetivo);
+        Map<Long, Long> stock = new HashMap<>();
+        if (desde == null) {
+            inventarioRepository.findStockPorAlmacen(almacenId).forEach(s -> stock.put(s.varianteId(), s.stock()));
+        } else {
+            snapshotRepository.findByFechaAndAlmacenId(desde, almacenId)
+                    .forEach(s -> stock.put(s.getVarianteId(), (long) s.getStock()));
+        }
+
+        LocalDateTime origen = desde != null ? desde : LocalDateTime.now();
+        boolean haciaAtras = origen.isAfter(objetivo);
+        for (StockVariante variacion : variacionPorAlmacen(almacenId, haciaAtras ? objetivo : origen, haciaAtras ? origen : objetivo)) {
+            stock.merge(variacion.varianteId(), haciaAtras ? -variacion.stock() : variacion.stock(), Long::sum);
+        }
+        stock.values().removeIf(s -> s == 0);
+
+        Map<Long, Variante> variantes = varianteRepository.findAllById(stock.keySet()).stream()
+                .collect(Collectors.toMap(Variante::getId, Function.identity()));
+        return new TreeMap<>(stock).entrySet().stream()
+                .map(e -> new StockAFechaResponse(e.getKey(), variantes.get(e.getKey()).getSku(), almacenId,
+                        objetivo, e.getValue().intValue(), desde))
+                .toList();
+    }
+
+    // Stock reconstruido y fecha de la foto de partida (null si se partió del stock actual)
+    private record Base(int stock, LocalDateTime fecha) {
+    }
+
+    private Base reconstruir(Long varianteId, Long almacenId, LocalDateTime objetivo) {
+        LocalDateTime desde = elegirBase(objetivo);
+        long stock;
+        if (desde == null) {
+            stock = inventarioRepository.findStockActual(varianteId, almacenId).map(StockActual::stock).orElse(0);
+        } else {
+            // Sin fila en la foto: el stock era 0
+            stock = snapshotRepository.findByFechaAndVarianteIdAndAlmacenId(desde, varianteId, almacenId)
+                    .map(SnapshotInventario::getStock).orElse(0);
+        }
+
+        LocalDateTime origen = desde != null ? desde : LocalDateTime.now();
+        if (origen.isAfter(objetivo)) {
+            stock -= variacion(varianteId, almacenId, objetivo, origen);
+        } else {
+            stock += variacion(varianteId, almacenId, origen, objetivo);
+        }
+        return new Base((int) stock, desde);
+    }
+
+    // Foto más cercana al objetivo, hacia atrás o hacia delante; null si lo más cercano es el stock actual
+    private LocalDateTime elegirBase(LocalDateTime objetivo) {
+        LocalDateTime ahora = LocalDateTime.now();
+        if (!objetivo.isBefore(ahora)) {
+            return null;
+        }
+        LocalDateTime anterior = snapshotRepository.ultimaHasta(objetivo);
+        LocalDateTime posterior = snapshotRepository.primeraDespuesDe(objetivo);
+
+        Duration hastaPosterior = Duration.between(objetivo, posterior != null ? posterior : ahora);
+        if (anterior != null && Duration.between(anterior, objetivo).compareTo(hastaPosterior) <= 0) {
+            return anterior;
+        }
+        return posterior;
+    }
+
+    // Variación de stock por los movimientos en (desde, hasta], en la tabla caliente, en el archivo o en ambas
+    private long variacion(Long varianteId, Long almacenId, LocalDateTime desde, LocalDateTime hasta) {
+        List<TipoMovimiento> salidas = TipoMovimiento.salidas();
+        return archivoMovimientos.consultar(desde.toLocalDate(), hasta.toLocalDate(), tramo -> {
+            long total = 0;
+            if (tramo != ArchivoMovimientosService.Tramo.ARCHIVO) {
+                Long caliente = movimientoRepository.variacionStock(varianteId, almacenId, desde, hasta, salidas);
+                total += caliente != null ? caliente : 0;
+            }
+            if (tramo != ArchivoMovimientosService.Tramo.CALIENTE) {
+                Long archivado = movimientoArchivadoRepository.variacionStock(varianteId, almacenId, desde, hasta, salidas);
+                total += archivado != null ? archivado : 0;
+            }
+            return total;
+        });
+    }
+
+    private List<StockVariante> variacionPorAlmacen(Long almacenId, LocalDateTime desde, LocalDateTime hasta) {
+        List<TipoMovimiento> salidas = TipoMovimiento.salidas();
+        return archivoMovimientos.consultar(desde.toLocalDate(), hasta.toLocalDate(), tramo -> {
+            List<StockVariante> variaciones = new ArrayList<>();
+            if (tramo != ArchivoMovimientosService.Tramo.ARCHIVO) {
+                variaciones.addAll(movimientoRepository.variacionStockPorAlmacen(almacenId, desde, hasta, salidas));
+            }
+            if (tramo != ArchivoMovimientosService.Tramo.CALIENTE) {
+                variaciones.addAll(movimientoArchivadoRepository.variacionStockPorAlmacen(almacenId, desde, hasta, salidas));
+            }
+            return variaciones;
+        });
+    }
+
+    // Último instante del día con la precisión de las columnas de fecha (microsegundos)
+    private static LocalDateTime finDelDia(LocalDate dia) {
+        return dia.atTime(LocalTime.MAX).truncatedTo(ChronoUnit.MICROS);
+    }
+}
@@ -0,0 +1,198 @@
+package org.watts.inventory.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.watts.inventory.dto.CambioStock;
+import org.watts.inventory.models.ClaveInventario;
+import org.watts.shared.exception.ConflictoException;
+import org.watts.transaction.model.MovimientosAplicadosEvent;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Emite por Server-Sent Events el stock nuevo de cada fila de inventario que cambia, cuando la transacción del
+// movimiento se confirma. Quien publica nunca espera a los clientes: cada suscriptor tiene un buffer acotado
+// que se vacía en otro hilo. Si un cliente va lento, los cambios de una misma fila se funden en el último,
+// y si aun así el buffer se llena se descarta el más antiguo y se le envía "resincronizar" para que recargue el stock
+@Service
+public class StreamStockService {
+
+    private final int bufferMax;
+    private final long timeoutMs;
+    private final int maxSuscriptores;
+
+    private final Set<Suscriptor> suscriptores = ConcurrentHashMap.newKeySet();
+    // Como mucho un hilo por suscriptor (un vaciado a la vez por cliente), así que lo acota max-suscriptores
+    private final ExecutorService envios = Executors.newCachedThreadPool(tarea -> {
+        Thread hilo = new Thread(tarea, "stream-stock");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    public StreamStockService(@Value("${inventario.stream.buffer-max:256}") int bufferMax,
+                              @Value("${inventario.stream.timeout-ms:1800000}") long timeoutMs,
+                              @Value("${inventario.stream.max-suscriptores:200}") int maxSuscriptores) {
+        this.bufferMax = bufferMax;
+        this.timeoutMs = timeoutMs;
+        this.maxSuscriptores = maxSuscriptores;
+    }
+
+    // Metodo para abrir un stream con los cambios de un almacén (o de todos si almacenId es null)
+    public SseEmitter suscribir(Long almacenId) {
+        if (suscriptores.size() >= maxSuscriptores) {
+            throw new ConflictoException("Se ha alcanzado el máximo de suscripciones al stream de stock (" + maxSuscriptores + ")");
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Suscriptor suscriptor = new Suscriptor(almacenId, emitter, bufferMax);
+        suscriptores.add(suscriptor);
+        emitter.onCompletion(() -> suscriptores.remove(suscriptor));
+        emitter.onError(e -> suscriptores.remove(suscriptor));
+        emitter.onTimeout(() -> {
+            suscriptores.remove(suscriptor);
+            emitter.complete();
+        });
+        return emitter;
+    }
+
+    // Sin transacción (p. ej. el libro de stock en memoria) se recibe en el momento
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alAplicarMovimientos(MovimientosAplicadosEvent evento) {
+        for (Suscriptor suscriptor : suscriptores) {
+            boolean encolado = false;
+            for (CambioStock cambio : evento.cambios()) {
+                if (suscriptor.interesa(cambio)) {
+                    suscriptor.encolar(cambio);
+                    encolado = true;
+                }
+            }
+            if (encolado) {
+                programar(suscriptor);
+            }
+        }
+    }
+
+    // Comentario periódico para que proxies y balanceadores no cierren las conexiones sin tráfico
+    @Scheduled(fixedDelayString = "${inventario.stream.heartbeat-ms:15000}")
+    public void latido() {
+        for (Suscriptor suscriptor : suscriptores) {
+            suscriptor.pedirLatido();
+            programar(suscriptor);
+        }
+    }
+
+    int suscripciones() {
+        return suscriptores.size();
+    }
+
+    @PreDestroy
+    void cerrar() {
+        suscriptores.forEach(s -> s.emitter.complete());
+        suscriptores.clear();
+        envios.shutdownNow();
+    }
+
+    // Como mucho un vaciado en marcha por suscriptor: los envíos a un mismo cliente no se intercalan
+    private void programar(Suscriptor suscriptor) {
+        if (suscriptor.programado.compareAndSet(false, true)) {
+            envios.execute(() -> vaciar(suscriptor));
+        }
+    }
+
+    private void vaciar(Suscriptor suscriptor) {
+        try {
+            while (true) {
+                Pendientes pendientes = suscriptor.tomar();
+                if (pendientes.vacio()) {
+                    suscriptor.programado.set(false);
+                    // Algo encolado entre tomar() y soltar el indicador: si nadie más lo ha cogido, seguimos aquí
+                    if (!suscriptor.hayPendientes() || !suscriptor.programado.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                if (pendientes.perdidos()) {
+                    suscriptor.emitter.send(SseEmitter.event().name("resincronizar").data("Se han descartado cambios; vuelve a cargar el stock"));
+                }
+                for (CambioStock cambio : pendientes.cambios()) {
+                    suscriptor.emitter.send(SseEmitter.event().name("stock").data(cambio));
+                }
+                if (pendientes.latido()) {
+                    suscriptor.emitter.send(SseEmitter.event().comment("ping"));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Cliente desconectado o emitter ya cerrado
+            suscriptores.remove(suscriptor);
+            suscriptor.programado.set(false);
+        }
+    }
+
+    record Pendientes(List<CambioStock> cambios, boolean perdidos, boolean latido) {
+        boolean vacio() {
+            return cambios.isEmpty() && !perdidos && !latido;
+        }
+    }
+
+    static class Suscriptor {
+
+        private final Long almacenId;
+        private final SseEmitter emitter;
+        private final int bufferMax;
+        private final AtomicBoolean programado = new AtomicBoolean();
+
+        // Último cambio por fila, en orden de llegada del cambio más reciente
+        private final LinkedHashMap<ClaveInventario, CambioStock> buffer = new LinkedHashMap<>();
+        private boolean perdidos;
+        private boolean latido;
+
+        Suscriptor(Long almacenId, SseEmitter emitter, int bufferMax) {
+            this.almacenId = almacenId;
+            this.emitter = emitter;
+            this.bufferMax = bufferMax;
+        }
+
+        boolean interesa(CambioStock cambio) {
+            return almacenId == null || almacenId.equals(cambio.almacenId());
+        }
+
+        synchronized void encolar(CambioStock cambio) {
+            ClaveInventario clave = new ClaveInventario(cambio.varianteId(), cambio.almacenId());
+            // Un cambio posterior de la misma fila sustituye al anterior y pasa al final
+            if (buffer.remove(clave) == null && buffer.size() >= bufferMax) {
+                Iterator<ClaveInventario> masAntiguo = buffer.keySet().iterator();
+                masAntiguo.next();
+                masAntiguo.remove();
+                perdidos = true;
+            }
+            buffer.put(clave, cambio);
+        }
+
+        synchronized void pedirLatido() {
+            latido = true;
+        }
+
+        synchronized boolean hayPendientes() {
+            return !buffer.isEmpty() || perdidos || latido;
+        }
+
+        synchronized Pendientes tomar() {
+            Pendientes pendientes = new Pendientes(new ArrayList<>(buffer.values()), perdidos, latido);
+            buffer.clear();
+            perdidos = false;
+            latido = false;
+            return pendientes;
+        }
+    }
+}
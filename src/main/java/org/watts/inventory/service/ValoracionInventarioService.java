@@ -0,0 +1,208 @@
+package org.watts.inventory.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.watts.inventory.dto.ReconstruccionValoracionResponse;
+import org.watts.inventory.dto.ValoracionResponse;
+import org.watts.inventory.dto.ValoracionTotalResponse;
+import org.watts.inventory.models.CapaFifo;
+import org.watts.inventory.models.ClaveInventario;
+import org.watts.inventory.models.ValoracionInventario;
+import org.watts.inventory.repository.CapaFifoRepository;
+import org.watts.inventory.repository.ValoracionInventarioRepository;
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.model.Movimiento;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Valoración del inventario a coste medio ponderado y a FIFO, mantenida movimiento a movimiento
+// Cada movimiento aplicado actualiza solo la valoración y las capas FIFO de su fila, en su misma transacción,
+// así el informe es una lectura de valoracion_inventario. reconstruir() la rehace entera recorriendo los movimientos en orden.
+// Las entradas entran al precio de compra del movimiento; las transferencias llevan al destino el coste que sale del origen
+@Service
+public class ValoracionInventarioService {
+
+    private static final String LEER_MOVIMIENTOS = "SELECT id, variante_id, almacen_id, tipo, cantidad, precio_compra_unitario, " +
+            "referencia_transferencia, fecha_creacion FROM %s WHERE id > ? ORDER BY id LIMIT ?";
+
+    private final ValoracionInventarioRepository valoracionRepository;
+    private final CapaFifoRepository capaFifoRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final int tamanoLote;
+
+    public ValoracionInventarioService(ValoracionInventarioRepository valoracionRepository,
+                                       CapaFifoRepository capaFifoRepository,
+                                       JdbcTemplate jdbcTemplate,
+                                       @Value("${inventario.valoracion.tamano-lote:1000}") int tamanoLote) {
+        this.valoracionRepository = valoracionRepository;
+        this.capaFifoRepository = capaFifoRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.tamanoLote = tamanoLote;
+    }
+
+    // Metodo para valorar movimientos recién aplicados, dentro de la transacción que los guarda
+    @Transactional
+    public void registrar(List<Movimiento> movimientos) {
+        if (movimientos.isEmpty()) return;
+
+        // Las valoraciones se bloquean en orden (variante, almacén), igual que las filas de inventario
+        Map<ClaveInventario, Fila> filas = new TreeMap<>();
+        for (Movimiento movimiento : movimientos) {
+            filas.put(new ClaveInventario(movimiento.getVariante().getId(), movimiento.getAlmacen().getId()), null);
+        }
+        filas.replaceAll((clave, vacia) -> cargar(clave));
+
+        Map<String, Deque<List<EstadoValoracion.Tramo>>> transferencias = new HashMap<>();
+        LocalDateTime ahora = LocalDateTime.now();
+        for (Movimiento movimiento : movimientos) {
+            Fila fila = filas.get(new ClaveInventario(movimiento.getVariante().getId(), movimiento.getAlmacen().getId()));
+            aplicar(fila.estado(), movimiento.getVariante().getId(), movimiento.getTipo(), movimiento.getCantidad(),
+                    movimiento.getPrecioCompraUnitario(), movimiento.getReferenciaTransferencia(),
+                    movimiento.getFechaCreacion() != null ? movimiento.getFechaCreacion() : ahora, transferencias);
+        }
+
+        for (Fila fila : filas.values()) {
+            ValoracionInventario valoracion = fila.valoracion();
+            EstadoValoracion estado = fila.estado();
+            valoracion.setCantidad(estado.cantidad());
+            valoracion.setCosteMedio(estado.costeMedio());
+            valoracion.setValorFifo(estado.valorFifo());
+            valoracion.setFechaActualizacion(ahora);
+            valoracionRepository.save(valoracion);
+            // Las capas ya guardadas que siguen vivas se actualizan solas al hacer flush
+            capaFifoRepository.deleteAll(estado.agotadas().stream().filter(c -> c.getId() != null).toList());
+            capaFifoRepository.saveAll(estado.capas().stream().filter(c -> c.getId() == null).toList());
+        }
+    }
+
+    // Metodo para rehacer toda la valoración desde los movimientos (archivados y en la tabla caliente), por orden de id.
+    // Borrar las tablas al principio hace esperar a los movimientos que lleguen mientras tanto, que se valoran
+    // encima de la reconstrucción cuando esta confirma
+    @Transactional
+    public ReconstruccionValoracionResponse reconstruir() {
+        long inicio = System.currentTimeMillis();
+        capaFifoRepository.deleteAllInBatch();
+        valoracionRepository.deleteAllInBatch();
+
+        Map<ClaveInventario, EstadoValoracion> estados = new HashMap<>();
+        Map<String, Deque<List<EstadoValoracion.Tramo>>> transferencias = new HashMap<>();
+        long movimientos = recorrer("movimientos_archivo", estados, transferencias)
+                + recorrer("movimientos", estados, transferencias);
+
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> valoraciones = new ArrayList<>(estados.size());
+        List<Object[]> capas = new ArrayList<>();
+        for (Map.Entry<ClaveInventario, EstadoValoracion> entrada : new TreeMap<>(estados).entrySet()) {
+            ClaveInventario clave = entrada.getKey();
+            EstadoValoracion estado = entrada.getValue();
+            valoraciones.add(new Object[]{clave.varianteId(), clave.almacenId(), estado.cantidad(), estado.costeMedio(),
+                    estado.valorFifo(), ahora});
+            for (CapaFifo capa : estado.capas()) {
+                capas.add(new Object[]{clave.varianteId(), clave.almacenId(), capa.getCantidad(), capa.getCosteUnitario(),
+                        Timestamp.valueOf(capa.getFechaEntrada())});
+            }
+        }
+        insertar("INSERT INTO valoracion_inventario (variante_id, almacen_id, cantidad, coste_medio, valor_fifo, " +
+                "fecha_actualizacion) VALUES (?, ?, ?, ?, ?, ?)", valoraciones);
+        insertar("INSERT INTO capas_fifo (variante_id, almacen_id, cantidad, coste_unitario, fecha_entrada) " +
+                "VALUES (?, ?, ?, ?, ?)", capas);
+
+        return new ReconstruccionValoracionResponse(movimientos, valoraciones.size(), System.currentTimeMillis() - inicio);
+    }
+
+    // Informe de valoración de todo el catálogo (o de un almacén)
+    @Transactional(readOnly = true)
+    public Page<ValoracionResponse> informe(Long almacenId, Pageable pageable) {
+        return valoracionRepository.informe(almacenId, pageable);
+    }
+
+    @Transactional(readOnly = true)
+    public ValoracionTotalResponse total(Long almacenId) {
+        return valoracionRepository.total(almacenId);
+    }
+
+    private record Fila(ValoracionInventario valoracion, EstadoValoracion estado) {
+    }
+
+    // Sin fila todavía se crea; no hay carrera al insertarla porque la fila de inventario ya está bloqueada
+    // (o, con el libro en memoria, porque el volcado es de un solo hilo)
+    private Fila cargar(ClaveInventario clave) {
+        ValoracionInventario valoracion = valoracionRepository.bloquear(clave.varianteId(), clave.almacenId())
+                .orElseGet(() -> new ValoracionInventario(clave.varianteId(), clave.almacenId()));
+        List<CapaFifo> capas = valoracion.getId() != null
+                ? capaFifoRepository.findByVarianteIdAndAlmacenIdOrderById(clave.varianteId(), clave.almacenId())
+                : List.of();
+        return new Fila(valoracion, new EstadoValoracion(clave.varianteId(), clave.almacenId(),
+                valoracion.getCantidad(), valoracion.getCosteMedio(), capas));
+    }
+
+    // Lee los movimientos de una tabla en lotes por id (sin cargar entidades) y los aplica a los estados en memoria
+    private long recorrer(String tabla, Map<ClaveInventario, EstadoValoracion> estados,
+                          Map<String, Deque<List<EstadoValoracion.Tramo>>> transferencias) {
+        String sql = LEER_MOVIMIENTOS.formatted(tabla);
+        long total = 0;
+        long ultimoId = 0;
+        while (true) {
+            long[] ultimo = {ultimoId};
+            int[] leidos = {0};
+            jdbcTemplate.query(sql, rs -> {
+                long varianteId = rs.getLong("variante_id");
+                long almacenId = rs.getLong("almacen_id");
+                double precio = rs.getDouble("precio_compra_unitario");
+                Double precioCompra = rs.wasNull() ? null : precio;
+                Timestamp fecha = rs.getTimestamp("fecha_creacion");
+                EstadoValoracion estado = estados.computeIfAbsent(new ClaveInventario(varianteId, almacenId),
+                        clave -> new EstadoValoracion(clave.varianteId(), clave.almacenId(), 0, 0, List.of()));
+                aplicar(estado, varianteId, TipoMovimiento.valueOf(rs.getString("tipo")), rs.getInt("cantidad"),
+                        precioCompra, rs.getString("referencia_transferencia"),
+                        fecha != null ? fecha.toLocalDateTime() : null, transferencias);
+                ultimo[0] = rs.getLong("id");
+                leidos[0]++;
+            }, ultimoId, tamanoLote);
+            total += leidos[0];
+            if (leidos[0] < tamanoLote) {
+                return total;
+            }
+            ultimoId = ultimo[0];
+        }
+    }
+
+    // La salida de una transferencia deja sus tramos para la entrada con la misma referencia y variante
+    private static void aplicar(EstadoValoracion estado, Long varianteId, TipoMovimiento tipo, int cantidad,
+                                Double precioCompra, String referencia, LocalDateTime fecha,
+                                Map<String, Deque<List<EstadoValoracion.Tramo>>> transferencias) {
+        if (tipo.esSalida()) {
+            List<EstadoValoracion.Tramo> tramos = estado.salida(cantidad);
+            if (tipo == TipoMovimiento.TRANSFERENCIA_SALIDA && referencia != null) {
+                transferencias.computeIfAbsent(referencia + "/" + varianteId, k -> new ArrayDeque<>()).addLast(tramos);
+            }
+            return;
+        }
+        if (tipo == TipoMovimiento.TRANSFERENCIA_ENTRADA && referencia != null) {
+            Deque<List<EstadoValoracion.Tramo>> pendientes = transferencias.get(referencia + "/" + varianteId);
+            if (pendientes != null && !pendientes.isEmpty()) {
+                estado.entrada(pendientes.pollFirst(), fecha);
+                return;
+            }
+        }
+        estado.entrada(cantidad, precioCompra != null ? precioCompra : 0, fecha);
+    }
+
+    private void insertar(String sql, List<Object[]> filas) {
+        for (int i = 0; i < filas.size(); i += tamanoLote) {
+            jdbcTemplate.batchUpdate(sql, filas.subList(i, Math.min(filas.size(), i + tamanoLote)));
+        }
+    }
+}
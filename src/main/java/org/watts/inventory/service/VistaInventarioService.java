@@ -0,0 +1,92 @@
+package org.watts.inventory.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.watts.inventory.models.ClaveInventario;
+import org.watts.inventory.repository.InventarioVistaRepository;
+import org.watts.inventory.repository.StockTotalVarianteRepository;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+// Mantiene las tablas de lectura inventario_vista y stock_total_variante
+// Todos los métodos se llaman dentro de la transacción que cambia el stock o el catálogo
+@Service
+public class VistaInventarioService {
+
+    private final InventarioVistaRepository inventarioVistaRepository;
+    private final StockTotalVarianteRepository stockTotalVarianteRepository;
+
+    public VistaInventarioService(InventarioVistaRepository inventarioVistaRepository,
+                                  StockTotalVarianteRepository stockTotalVarianteRepository) {
+        this.inventarioVistaRepository = inventarioVistaRepository;
+        this.stockTotalVarianteRepository = stockTotalVarianteRepository;
+    }
+
+    // Metodo para reflejar el stock nuevo de una fila de inventario
+    @Transactional
+    public void registrarStock(Long varianteId, Long almacenId, int stock) {
+        registrarStock(Map.of(new ClaveInventario(varianteId, almacenId), stock));
+    }
+
+    // Metodo para reflejar el stock nuevo de varias filas (lotes y transferencias)
+    // Se recorren en orden (variante, almacén) para bloquear igual que el inventario. El total de cada variante
+    // recibe la diferencia entre el stock nuevo y el que tenía su fila de la vista, después de todas sus filas
+    @Transactional
+    public void registrarStock(Map<ClaveInventario, Integer> stockPorClave) {
+        Map<Long, Long> deltas = new TreeMap<>();
+        new TreeMap<>(stockPorClave).forEach((clave, stock) -> {
+            Optional<Integer> anterior = inventarioVistaRepository.bloquearStock(clave.varianteId(), clave.almacenId());
+            if (anterior.isPresent()) {
+                inventarioVistaRepository.actualizarStock(clave.varianteId(), clave.almacenId(), stock);
+            } else if (inventarioVistaRepository.insertarDesdeCatalogo(clave.varianteId(), clave.almacenId(), stock) == 0) {
+                System.err.println("ADVERTENCIA: No se pudo crear la fila de la vista de inventario de la variante "
+                        + clave.varianteId() + " en el almacén " + clave.almacenId());
+            }
+            deltas.merge(clave.varianteId(), (long) stock - anterior.orElse(0), Long::sum);
+        });
+
+        deltas.forEach(stockTotalVarianteRepository::sumar);
+    }
+
+    // Metodo para rellenar las tablas de lectura si están vacías (primer arranque con esta versión)
+    @Transactional
+    public void reconstruirSiVacia() {
+        if (inventarioVistaRepository.count() > 0) return;
+
+        int filas = inventarioVistaRepository.reconstruir();
+        if (filas > 0) {
+            stockTotalVarianteRepository.deleteAllInBatch();
+            stockTotalVarianteRepository.reconstruir();
+            System.out.println("Vista de inventario reconstruida: " + filas + " filas");
+        }
+    }
+
+    // Refrescos de nombres cuando cambian en el catálogo o en los almacenes
+
+    @Transactional
+    public void renombrarProducto(Long productoId, String nombre) {
+        inventarioVistaRepository.renombrarProducto(productoId, nombre);
+    }
+
+    @Transactional
+    public void actualizarSku(Long varianteId, String sku) {
+        inventarioVistaRepository.actualizarSku(varianteId, sku);
+    }
+
+    @Transactional
+    public void renombrarTalla(Long tallaId, String nombre) {
+        inventarioVistaRepository.renombrarTalla(tallaId, nombre);
+    }
+
+    @Transactional
+    public void renombrarColor(Long colorId, String nombre) {
+        inventarioVistaRepository.renombrarColor(colorId, nombre);
+    }
+
+    @Transactional
+    public void renombrarAlmacen(Long almacenId, String nombre) {
+        inventarioVistaRepository.renombrarAlmacen(almacenId, nombre);
+    }
+}
@@ -6,6 +6,7 @@ import java.util.Set;
 
 @Entity
 @Table(name = "roles")
+@EntityListeners(UsuariosModificadosListener.class)
 public class Rol {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
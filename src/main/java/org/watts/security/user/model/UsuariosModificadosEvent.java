@@ -0,0 +1,6 @@
+package org.watts.security.user.model;
+
+// Se publica cuando se crea, modifica o borra un usuario o un rol
+// (por ejemplo, para invalidar la lista cacheada de administradores a los que se avisa por email)
+public record UsuariosModificadosEvent() {
+}
@@ -0,0 +1,24 @@
+package org.watts.security.user.model;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+
+// Listener JPA de Usuario y Rol: cubre cualquier cambio, venga del servicio, de un controlador o del DataInitializer
+// Hibernate lo crea a través de Spring, por eso puede recibir dependencias por constructor
+public class UsuariosModificadosListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public UsuariosModificadosListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void alModificar(Object entidad) {
+        eventPublisher.publishEvent(new UsuariosModificadosEvent());
+    }
+}
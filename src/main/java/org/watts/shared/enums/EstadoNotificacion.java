@@ -0,0 +1,8 @@
+package org.watts.shared.enums;
+
+public enum EstadoNotificacion {
+    PENDIENTE,
+    ENVIANDO, // Reservada por un despachador hasta proximoIntento; si no termina en ese plazo se vuelve a enviar
+    ENVIADA,
+    FALLIDA // Agotó los reintentos, se deja en la tabla para revisarla
+}
@@ -0,0 +1,8 @@
+package org.watts.shared.enums;
+
+// Cómo calcula el total de elementos un listado paginado
+public enum ModoTotal {
+    EXACTO,     // COUNT en cada petición (Page de siempre)
+    SIN_TOTAL,  // Solo si hay página siguiente, sin COUNT (Slice)
+    APROXIMADO  // COUNT cacheado unos segundos por filtro: el total puede ir algo por detrás
+}
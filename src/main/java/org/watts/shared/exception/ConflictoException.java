@@ -0,0 +1,9 @@
+package org.watts.shared.exception;
+
+// Se lanza cuando la petición choca con el estado actual del recurso (Error 409)
+public class ConflictoException extends RuntimeException {
+
+    public ConflictoException(String mensaje) {
+        super(mensaje);
+    }
+}
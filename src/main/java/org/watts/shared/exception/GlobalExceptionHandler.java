@@ -28,6 +28,18 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(respuesta, HttpStatus.NOT_FOUND);
     }
 
+    // Captura peticiones que chocan con el estado actual, por ejemplo una clave de idempotencia repetida (Error 409)
+    @ExceptionHandler(ConflictoException.class)
+    public ResponseEntity<Map<String, Object>> manejarConflicto(ConflictoException ex) {
+        Map<String, Object> respuesta = new HashMap<>();
+        respuesta.put("timestamp", LocalDateTime.now());
+        respuesta.put("status", 409);
+        respuesta.put("error", "Conflicto");
+        respuesta.put("message", ex.getMessage());
+
+        return new ResponseEntity<>(respuesta, HttpStatus.CONFLICT);
+    }
+
     // Captura access denied (Error 403)
     @ExceptionHandler(AccessDeniedException.class)
     public ResponseEntity<Map<String, Object>> manejarAccessDenied(AccessDeniedException ex) {
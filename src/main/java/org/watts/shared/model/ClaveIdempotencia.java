@@ -0,0 +1,79 @@
+package org.watts.shared.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// Clave de idempotencia (cabecera Idempotency-Key) ya usada por un cliente
+// Mientras la petición se procesa la respuesta está vacía; al terminar se guarda para devolverla en los reintentos
+@Entity
+@Table(name = "claves_idempotencia",
+        indexes = @Index(name = "idx_claves_idempotencia_expiracion", columnList = "fechaExpiracion"))
+public class ClaveIdempotencia {
+
+    // Usuario y clave: "usuario:clave"
+    @Id
+    @Column(length = 200)
+    private String id;
+
+    // SHA-256 del cuerpo de la petición original
+    @Column(length = 64, nullable = false)
+    private String huella;
+
+    @Column(columnDefinition = "TEXT")
+    private String respuesta;
+
+    private LocalDateTime fechaCreacion;
+
+    private LocalDateTime fechaExpiracion;
+
+    // Constructor vacío (obligatorio en JPA/Hibernate)
+    public ClaveIdempotencia() {
+    }
+
+    public boolean isCompletada() {
+        return respuesta != null;
+    }
+
+    // Getters y setters
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getHuella() {
+        return huella;
+    }
+
+    public void setHuella(String huella) {
+        this.huella = huella;
+    }
+
+    public String getRespuesta() {
+        return respuesta;
+    }
+
+    public void setRespuesta(String respuesta) {
+        this.respuesta = respuesta;
+    }
+
+    public LocalDateTime getFechaCreacion() {
+        return fechaCreacion;
+    }
+
+    public void setFechaCreacion(LocalDateTime fechaCreacion) {
+        this.fechaCreacion = fechaCreacion;
+    }
+
+    public LocalDateTime getFechaExpiracion() {
+        return fechaExpiracion;
+    }
+
+    public void setFechaExpiracion(LocalDateTime fechaExpiracion) {
+        this.fechaExpiracion = fechaExpiracion;
+    }
+}
@@ -0,0 +1,126 @@
+package org.watts.shared.model;
+
+import jakarta.persistence.*;
+import org.watts.shared.enums.EstadoNotificacion;
+
+import java.time.LocalDateTime;
+
+// Bandeja de salida (outbox) de notificaciones por email
+// Se escribe en la misma transacción que el movimiento y la vacía en segundo plano DespachadorNotificaciones
+@Entity
+@Table(name = "notificaciones_pendientes",
+        indexes = @Index(name = "idx_notificaciones_estado_proximo", columnList = "estado, proximoIntento"))
+public class NotificacionPendiente {
+
+    // Una por movimiento: secuencia reservada de 50 en 50 para que los INSERT vayan en lote
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notificaciones_pendientes_seq")
+    @SequenceGenerator(name = "notificaciones_pendientes_seq", sequenceName = "notificaciones_pendientes_seq", allocationSize = 50)
+    private Long id;
+
+    private String asunto;
+
+    @Column(columnDefinition = "TEXT")
+    private String contenidoHtml;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private EstadoNotificacion estado = EstadoNotificacion.PENDIENTE;
+
+    private int intentos;
+
+    private LocalDateTime fechaCreacion;
+
+    // No se intenta enviar antes de esta fecha (espera entre reintentos)
+    private LocalDateTime proximoIntento;
+
+    private LocalDateTime fechaEnvio;
+
+    @Column(length = 1000)
+    private String ultimoError;
+
+    // Constructor vacío (obligatorio en JPA/Hibernate)
+    public NotificacionPendiente() {
+    }
+
+    public NotificacionPendiente(String asunto, String contenidoHtml) {
+        this.asunto = asunto;
+        this.contenidoHtml = contenidoHtml;
+        this.fechaCreacion = LocalDateTime.now();
+        this.proximoIntento = this.fechaCreacion;
+    }
+
+    // Getters y setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getAsunto() {
+        return asunto;
+    }
+
+    public void setAsunto(String asunto) {
+        this.asunto = asunto;
+    }
+
+    public String getContenidoHtml() {
+        return contenidoHtml;
+    }
+
+    public void setContenidoHtml(String contenidoHtml) {
+        this.contenidoHtml = contenidoHtml;
+    }
+
+    public EstadoNotificacion getEstado() {
+        return estado;
+    }
+
+    public void setEstado(EstadoNotificacion estado) {
+        this.estado = estado;
+    }
+
+    public int getIntentos() {
+        return intentos;
+    }
+
+    public void setIntentos(int intentos) {
+        this.intentos = intentos;
+    }
+
+    public LocalDateTime getFechaCreacion() {
+        return fechaCreacion;
+    }
+
+    public void setFechaCreacion(LocalDateTime fechaCreacion) {
+        this.fechaCreacion = fechaCreacion;
+    }
+
+    public LocalDateTime getProximoIntento() {
+        return proximoIntento;
+    }
+
+    public void setProximoIntento(LocalDateTime proximoIntento) {
+        this.proximoIntento = proximoIntento;
+    }
+
+    public LocalDateTime getFechaEnvio() {
+        return fechaEnvio;
+    }
+
+    public void setFechaEnvio(LocalDateTime fechaEnvio) {
+        this.fechaEnvio = fechaEnvio;
+    }
+
+    public String getUltimoError() {
+        return ultimoError;
+    }
+
+    public void setUltimoError(String ultimoError) {
+        this.ultimoError = ultimoError;
+    }
+}
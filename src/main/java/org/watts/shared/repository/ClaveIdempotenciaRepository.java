@@ -0,0 +1,52 @@
+package org.watts.shared.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.watts.shared.model.ClaveIdempotencia;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ClaveIdempotenciaRepository extends JpaRepository<ClaveIdempotencia, String> {
+
+    // INSERT directo (save haría merge y pisaría una clave existente)
+    // Si otra petición ya reservó la clave salta la violación de clave primaria
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO claves_idempotencia (id, huella, fecha_creacion, fecha_expiracion) " +
+            "VALUES (:id, :huella, :ahora, :expiracion)", nativeQuery = true)
+    int reservar(@Param("id") String id,
+                 @Param("huella") String huella,
+                 @Param("ahora") LocalDateTime ahora,
+                 @Param("expiracion") LocalDateTime expiracion);
+
+    @Modifying
+    @Transactional
+    @Query("update ClaveIdempotencia c set c.respuesta = :respuesta where c.id = :id")
+    int completar(@Param("id") String id, @Param("respuesta") String respuesta);
+
+    @Modifying
+    @Transactional
+    @Query("delete from ClaveIdempotencia c where c.id = :id and c.respuesta is null")
+    int liberar(@Param("id") String id);
+
+    @Modifying
+    @Transactional
+    @Query("delete from ClaveIdempotencia c where c.fechaExpiracion <= :ahora")
+    int borrarExpiradas(@Param("ahora") LocalDateTime ahora);
+
+    @Modifying
+    @Transactional
+    @Query("delete from ClaveIdempotencia c where c.id = :id and c.fechaExpiracion <= :ahora")
+    int borrarSiExpirada(@Param("id") String id, @Param("ahora") LocalDateTime ahora);
+
+    // Reserva sin respuesta de una petición cuya transacción no confirmó (la respuesta se guarda en la misma)
+    @Modifying
+    @Transactional
+    @Query("delete from ClaveIdempotencia c where c.id = :id and c.respuesta is null and c.fechaCreacion <= :limite")
+    int borrarSiAbandonada(@Param("id") String id, @Param("limite") LocalDateTime limite);
+}
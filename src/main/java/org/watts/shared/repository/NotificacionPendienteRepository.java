@@ -0,0 +1,36 @@
+package org.watts.shared.repository;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.watts.shared.enums.EstadoNotificacion;
+import org.watts.shared.model.NotificacionPendiente;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NotificacionPendienteRepository extends JpaRepository<NotificacionPendiente, Long> {
+
+    // Siguiente tanda de notificaciones listas para enviar, en orden de llegada: pendientes cuya espera ha
+    // terminado y reservadas (ENVIANDO) cuyo plazo ha caducado sin que nadie anotara el resultado
+    // SKIP LOCKED (timeout -2): si hay varias instancias, cada una se lleva filas distintas
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select n from NotificacionPendiente n where n.estado in :estados and n.proximoIntento <= :ahora order by n.id")
+    List<NotificacionPendiente> bloquearListas(@Param("estados") Collection<EstadoNotificacion> estados,
+                                               @Param("ahora") LocalDateTime ahora,
+                                               Pageable pageable);
+
+    // Fecha del aviso listo más antiguo (null si no hay ninguno), para saber si se ha cumplido la ventana del resumen
+    @Query("select min(n.fechaCreacion) from NotificacionPendiente n where n.estado in :estados and n.proximoIntento <= :ahora")
+    LocalDateTime masAntigua(@Param("estados") Collection<EstadoNotificacion> estados,
+                             @Param("ahora") LocalDateTime ahora);
+}
@@ -0,0 +1,235 @@
+package org.watts.shared.service;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailSendException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.watts.shared.enums.EstadoNotificacion;
+import org.watts.shared.model.NotificacionPendiente;
+import org.watts.shared.repository.NotificacionPendienteRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Vacía la bandeja de salida de notificaciones en tandas, desde el hilo del planificador
+// (un único hilo, en lugar de uno nuevo por movimiento) y reintenta con espera creciente si el envío falla
+// En modo "resumen" agrupa los avisos de la ventana en un único email por administrador
+// Cada tanda se envía por una sola conexión SMTP, fuera de transacción: las filas se reservan (ENVIANDO)
+// en una transacción corta, se envían sin conexión a la BDD ni bloqueos y el resultado se anota en otra.
+// Si la instancia cae a mitad, al caducar la reserva se vuelven a enviar (mejor repetido que perdido)
+@Service
+public class DespachadorNotificaciones {
+
+    public static final String MODO_INMEDIATO = "inmediato";
+    public static final String MODO_RESUMEN = "resumen";
+
+    private static final Duration ESPERA_INICIAL = Duration.ofSeconds(30);
+    private static final Duration ESPERA_MAXIMA = Duration.ofHours(1);
+    private static final List<EstadoNotificacion> LISTAS = List.of(EstadoNotificacion.PENDIENTE, EstadoNotificacion.ENVIANDO);
+
+    private final NotificacionPendienteRepository notificacionPendienteRepository;
+    private final EmailService emailService;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxLote;
+    private final int maxResumen;
+    private final int maxIntentos;
+    private final boolean resumen;
+    private final Duration ventanaResumen;
+    private final Duration plazoEnvio;
+
+    private volatile boolean avisadoSinCorreo;
+    private volatile boolean avisadoSinDestinatarios;
+
+    public DespachadorNotificaciones(NotificacionPendienteRepository notificacionPendienteRepository,
+                                     EmailService emailService,
+                                     TransactionTemplate transactionTemplate,
+                                     @Value("${notificaciones.max-lote:50}") int maxLote,
+                                     @Value("${notificaciones.max-resumen:1000}") int maxResumen,
+                                     @Value("${notificaciones.max-intentos:8}") int maxIntentos,
+                                     @Value("${notificaciones.modo:resumen}") String modo,
+                                     @Value("${notificaciones.ventana-resumen-ms:900000}") long ventanaResumenMs,
+                                     @Value("${notificaciones.plazo-envio-ms:300000}") long plazoEnvioMs) {
+        this.notificacionPendienteRepository = notificacionPendienteRepository;
+        this.emailService = emailService;
+        this.transactionTemplate = transactionTemplate;
+        this.maxLote = maxLote;
+        this.maxResumen = maxResumen;
+        this.maxIntentos = maxIntentos;
+        this.resumen = MODO_RESUMEN.equalsIgnoreCase(modo);
+        this.ventanaResumen = Duration.ofMillis(ventanaResumenMs);
+        this.plazoEnvio = Duration.ofMillis(plazoEnvioMs);
+    }
+
+    // Metodo que envía la siguiente tanda de notificaciones pendientes
+    @Scheduled(fixedDelayString = "${notificaciones.intervalo-ms:5000}")
+    public void despachar() {
+        // Sin correo configurado los avisos se quedan pendientes: se enviarán cuando lo esté
+        if (!emailService.isConfigurado()) {
+            if (!avisadoSinCorreo) {
+                System.out.println("ADVERTENCIA: No se ha configurado el servicio de correo. Las notificaciones quedan pendientes.");
+                avisadoSinCorreo = true;
+            }
+            return;
+        }
+
+        // Sin ningún administrador con email tampoco se reserva nada: si se enviara la tanda a nadie se daría por enviada
+        List<String> destinatarios = emailService.destinatarios();
+        if (destinatarios.isEmpty()) {
+            if (!avisadoSinDestinatarios) {
+                System.out.println("ADVERTENCIA: No hay administradores activos con email. Las notificaciones quedan pendientes.");
+                avisadoSinDestinatarios = true;
+            }
+            return;
+        }
+        avisadoSinDestinatarios = false;
+
+        LocalDateTime ahora = LocalDateTime.now();
+        if (resumen) {
+            // El resumen sale cuando el aviso más antiguo cumple la ventana y lleva todo lo acumulado hasta entonces
+            LocalDateTime masAntigua = notificacionPendienteRepository.masAntigua(LISTAS, ahora);
+            if (masAntigua == null || masAntigua.plus(ventanaResumen).isAfter(ahora)) {
+                return;
+            }
+        }
+
+        List<NotificacionPendiente> lote = reservar(ahora, resumen ? maxResumen : maxLote);
+        if (lote.isEmpty()) {
+            return;
+        }
+
+        if (resumen) {
+            despacharResumen(lote, destinatarios, ahora);
+        } else {
+            despacharUnoAUno(lote, destinatarios, ahora);
+        }
+
+        transactionTemplate.executeWithoutResult(estado -> notificacionPendienteRepository.saveAll(lote));
+    }
+
+    // Marca la tanda como ENVIANDO hasta que venza el plazo de envío y suelta los bloqueos al confirmar
+    private List<NotificacionPendiente> reservar(LocalDateTime ahora, int maximo) {
+        List<NotificacionPendiente> lote = transactionTemplate.execute(estado -> {
+            List<NotificacionPendiente> listas = notificacionPendienteRepository.bloquearListas(
+                    LISTAS, ahora, PageRequest.of(0, maximo));
+            for (NotificacionPendiente notificacion : listas) {
+                notificacion.setEstado(EstadoNotificacion.ENVIANDO);
+                notificacion.setProximoIntento(ahora.plus(plazoEnvio));
+            }
+            return listas;
+        });
+        return lote != null ? lote : List.of();
+    }
+
+    // Un email por notificación y administrador, todos por la misma conexión
+    private void despacharUnoAUno(List<NotificacionPendiente> lote, List<String> destinatarios, LocalDateTime ahora) {
+        List<MimeMessage> mensajes = new ArrayList<>();
+        Map<MimeMessage, NotificacionPendiente> origen = new IdentityHashMap<>();
+        List<NotificacionPendiente> preparadas = new ArrayList<>();
+
+        for (NotificacionPendiente notificacion : lote) {
+            try {
+                for (String destinatario : destinatarios) {
+                    MimeMessage mensaje = emailService.componer(
+                            destinatario, notificacion.getAsunto(), notificacion.getContenidoHtml());
+                    mensajes.add(mensaje);
+                    origen.put(mensaje, notificacion);
+                }
+                preparadas.add(notificacion);
+            } catch (MessagingException e) {
+                registrarFallo(notificacion, e, ahora);
+            }
+        }
+
+        try {
+            emailService.enviarTodos(mensajes);
+            preparadas.forEach(this::marcarEnviada);
+        } catch (MailSendException e) {
+            // Solo se reintentan las notificaciones con algún mensaje rechazado
+            Map<Object, Exception> fallidos = e.getFailedMessages();
+            Map<NotificacionPendiente, Exception> errores = new IdentityHashMap<>();
+            fallidos.forEach((mensaje, error) -> {
+                NotificacionPendiente notificacion = origen.get(mensaje);
+                if (notificacion != null) {
+                    errores.putIfAbsent(notificacion, error);
+                }
+            });
+
+            for (NotificacionPendiente notificacion : preparadas) {
+                Exception error = errores.get(notificacion);
+                if (error != null) {
+                    registrarFallo(notificacion, error, ahora);
+                } else if (fallidos.isEmpty()) {
+                    // Fallo de conexión: no se ha enviado nada
+                    registrarFallo(notificacion, e, ahora);
+                } else {
+                    marcarEnviada(notificacion);
+                }
+            }
+        } catch (Exception e) {
+            preparadas.forEach(notificacion -> registrarFallo(notificacion, e, ahora));
+        }
+    }
+
+    // Un único email por administrador con todos los avisos de la ventana
+    private void despacharResumen(List<NotificacionPendiente> lote, List<String> destinatarios, LocalDateTime ahora) {
+        String asunto = "Resumen de movimientos: " + lote.size() + (lote.size() == 1 ? " aviso" : " avisos");
+        String contenido = componerResumen(lote);
+        try {
+            List<MimeMessage> mensajes = new ArrayList<>();
+            for (String destinatario : destinatarios) {
+                mensajes.add(emailService.componer(destinatario, asunto, contenido));
+            }
+            emailService.enviarTodos(mensajes);
+            lote.forEach(this::marcarEnviada);
+        } catch (Exception e) {
+            // El resumen va entero o no va: se reintenta toda la tanda
+            lote.forEach(notificacion -> registrarFallo(notificacion, e, ahora));
+        }
+    }
+
+    static String componerResumen(List<NotificacionPendiente> lote) {
+        StringBuilder html = new StringBuilder();
+        html.append("<div style='font-family: Arial, sans-serif;'>")
+                .append("<h2>Resumen de movimientos de inventario</h2>")
+                .append("<p>").append(lote.size()).append(" avisos desde la última notificación.</p>");
+        for (NotificacionPendiente notificacion : lote) {
+            html.append("<hr/><h3>").append(notificacion.getAsunto()).append("</h3>")
+                    .append(notificacion.getContenidoHtml());
+        }
+        return html.append("</div>").toString();
+    }
+
+    private void marcarEnviada(NotificacionPendiente notificacion) {
+        notificacion.setEstado(EstadoNotificacion.ENVIADA);
+        notificacion.setFechaEnvio(LocalDateTime.now());
+    }
+
+    private void registrarFallo(NotificacionPendiente notificacion, Exception e, LocalDateTime ahora) {
+        notificacion.setIntentos(notificacion.getIntentos() + 1);
+        String error = String.valueOf(e.getMessage());
+        notificacion.setUltimoError(error.length() > 1000 ? error.substring(0, 1000) : error);
+
+        if (notificacion.getIntentos() >= maxIntentos) {
+            notificacion.setEstado(EstadoNotificacion.FALLIDA);
+            System.err.println("ERROR: Se descarta la notificación " + notificacion.getId()
+                    + " tras " + notificacion.getIntentos() + " intentos: " + error);
+        } else {
+            notificacion.setEstado(EstadoNotificacion.PENDIENTE);
+            notificacion.setProximoIntento(ahora.plus(espera(notificacion.getIntentos())));
+        }
+    }
+
+    // 30 s, 1 min, 2 min, 4 min... hasta un máximo de una hora
+    static Duration espera(int intentos) {
+        Duration espera = ESPERA_INICIAL.multipliedBy(1L << Math.min(intentos - 1, 20));
+        return espera.compareTo(ESPERA_MAXIMA) > 0 ? ESPERA_MAXIMA : espera;
+    }
+}
@@ -0,0 +1,55 @@
+package org.watts.shared.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.watts.security.user.model.Usuario;
+import org.watts.security.user.model.UsuariosModificadosEvent;
+import org.watts.security.user.repository.UsuarioRepository;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cachea los emails de los administradores que reciben las notificaciones
+// Se invalida cuando se confirma cualquier cambio en usuarios o roles
+@Service
+public class DestinatariosNotificacion {
+
+    private final UsuarioRepository usuarioRepository;
+
+    private volatile List<String> emails;
+    // Evita guardar una lista cargada antes de una invalidación que llegó mientras se cargaba
+    private final AtomicLong version = new AtomicLong();
+
+    public DestinatariosNotificacion(UsuarioRepository usuarioRepository) {
+        this.usuarioRepository = usuarioRepository;
+    }
+
+    // Emails de los administradores activos
+    public List<String> administradores() {
+        List<String> actuales = emails;
+        if (actuales != null) {
+            return actuales;
+        }
+
+        long versionLeida = version.get();
+        List<String> cargados = usuarioRepository.findByRolNombre("ADMIN").stream()
+                .filter(Usuario::isActivo)
+                .map(Usuario::getEmail)
+                .filter(email -> email != null && !email.isBlank())
+                .distinct()
+                .toList();
+        synchronized (this) {
+            if (version.get() == versionLeida) {
+                emails = cargados;
+            }
+        }
+        return cargados;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void invalidar(UsuariosModificadosEvent evento) {
+        version.incrementAndGet();
+        emails = null;
+    }
+}
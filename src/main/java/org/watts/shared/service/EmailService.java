@@ -1,13 +1,12 @@
 package org.watts.shared.service;
+import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.watts.security.user.model.Usuario;
-import org.watts.security.user.repository.UsuarioRepository;
+import org.watts.shared.model.NotificacionPendiente;
+import org.watts.shared.repository.NotificacionPendienteRepository;
 
 import java.util.List;
 
@@ -15,40 +14,50 @@ import java.util.List;
 public class EmailService {
 
     private final JavaMailSender mailSender;
-    private final UsuarioRepository usuarioRepository;
+    private final NotificacionPendienteRepository notificacionPendienteRepository;
+    private final DestinatariosNotificacion destinatariosNotificacion;
 
     public EmailService(@Autowired(required = false) JavaMailSender mailSender,
-                        UsuarioRepository usuarioRepository) {
+                        NotificacionPendienteRepository notificacionPendienteRepository,
+                        DestinatariosNotificacion destinatariosNotificacion) {
         this.mailSender = mailSender;
-        this.usuarioRepository = usuarioRepository;
+        this.notificacionPendienteRepository = notificacionPendienteRepository;
+        this.destinatariosNotificacion = destinatariosNotificacion;
     }
 
-    @Async
+    // Deja la notificación en la bandeja de salida, dentro de la transacción del movimiento:
+    // si el movimiento se deshace no se avisa, y si se confirma el aviso no se pierde aunque caiga la JVM.
+    // El envío real lo hace DespachadorNotificaciones en segundo plano
     public void enviarNotificacionMovimiento(String asunto, String contenidoHtml) {
-        if (this.mailSender == null) {
-            System.out.println("ADVERTENCIA: No se ha configurado el servicio de correo. Se omite el envío.");
-            return;
-        }
-
-        List<Usuario> admins = usuarioRepository.findByRolNombre("ADMIN");
+        notificacionPendienteRepository.save(new NotificacionPendiente(asunto, contenidoHtml));
+    }
 
-        for (Usuario admin : admins) {
-            if (admin.getEmail() == null) continue;
+    public boolean isConfigurado() {
+        return mailSender != null;
+    }
 
-            try {
-                MimeMessage message = mailSender.createMimeMessage();
-                MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+    // Emails de los administradores que reciben las notificaciones (cacheados)
+    public List<String> destinatarios() {
+        return destinatariosNotificacion.administradores();
+    }
 
-                helper.setFrom("notificaciones@wattscycling.es");
-                helper.setTo("serloiarc@alu.edu.gva.es");
-                helper.setSubject(asunto);
-                helper.setText(contenidoHtml, true);
+    // Metodo para preparar un email HTML para un destinatario
+    public MimeMessage componer(String destinatario, String asunto, String contenidoHtml) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
 
-                mailSender.send(message);
+        helper.setFrom("notificaciones@wattscycling.es");
+        helper.setTo(destinatario);
+        helper.setSubject(asunto);
+        helper.setText(contenidoHtml, true);
+        return message;
+    }
 
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    // Envía todos los mensajes por una sola conexión SMTP (JavaMailSenderImpl abre un Transport por llamada)
+    // Si falla alguno lanza MailSendException con los mensajes fallidos
+    public void enviarTodos(List<MimeMessage> mensajes) {
+        if (!mensajes.isEmpty()) {
+            mailSender.send(mensajes.toArray(new MimeMessage[0]));
         }
     }
 }
@@ -0,0 +1,210 @@
+package org.watts.shared.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.watts.shared.exception.ConflictoException;
+import org.watts.shared.model.ClaveIdempotencia;
+import org.watts.shared.repository.ClaveIdempotenciaRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+// Peticiones con cabecera Idempotency-Key: la primera se ejecuta y su respuesta se guarda;
+// los reintentos con la misma clave reciben esa respuesta sin volver a ejecutar nada
+// Las respuestas recientes se sirven desde una caché LRU en memoria y la tabla claves_idempotencia
+// hace de fuente de verdad (también entre instancias) hasta que caducan
+// La respuesta se guarda en la misma transacción que la operación: o se confirman las dos o ninguna, y la clave
+// solo se libera cuando esa transacción se ha deshecho. Una reserva sin respuesta más antigua que el plazo de
+// proceso es de una petición que no llegó a confirmar (p. ej. la instancia se cayó) y se puede volver a usar
+@Service
+public class IdempotenciaService {
+
+    public static final int LONGITUD_MAXIMA_CLAVE = 100;
+
+    private final ClaveIdempotenciaRepository claveIdempotenciaRepository;
+    private final AuditorAware<String> auditorProvider;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration caducidad;
+    private final Duration plazoProceso;
+
+    private final Map<String, Completada> cache;
+
+    public IdempotenciaService(ClaveIdempotenciaRepository claveIdempotenciaRepository,
+                               AuditorAware<String> auditorProvider,
+                               ObjectMapper objectMapper,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${idempotencia.caducidad-horas:24}") long caducidadHoras,
+                               @Value("${idempotencia.plazo-proceso-ms:300000}") long plazoProcesoMs,
+                               @Value("${idempotencia.cache-max:10000}") int cacheMax) {
+        this.claveIdempotenciaRepository = claveIdempotenciaRepository;
+        this.auditorProvider = auditorProvider;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.caducidad = Duration.ofHours(caducidadHoras);
+        this.plazoProceso = Duration.ofMillis(plazoProcesoMs);
+        this.cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Completada> eldest) {
+                return size() > cacheMax;
+            }
+        };
+    }
+
+    // Resultado de una ejecución: la respuesta y si es la repetición de una anterior
+    public record Resultado<T>(T respuesta, boolean repetida) {
+    }
+
+    private record Completada(String huella, String respuesta, LocalDateTime fechaExpiracion) {
+    }
+
+    // Metodo para ejecutar una operación como mucho una vez por clave (y usuario)
+    // Lanza ConflictoException si la clave se reutiliza con otra petición o si la original aún se está procesando
+    public <T> Resultado<T> ejecutar(String clave, Object peticion, Class<T> tipoRespuesta, Supplier<T> operacion) {
+        if (clave.isBlank() || clave.length() > LONGITUD_MAXIMA_CLAVE) {
+            throw new RuntimeException("La cabecera Idempotency-Key debe tener entre 1 y "
+                    + LONGITUD_MAXIMA_CLAVE + " caracteres");
+        }
+
+        String id = auditorProvider.getCurrentAuditor().orElse("anonimo") + ":" + clave;
+        String huella = huella(peticion);
+        LocalDateTime ahora = LocalDateTime.now();
+
+        Optional<Completada> previa = buscarEnCache(id, ahora).or(() -> reservarOBuscar(id, huella, ahora));
+        if (previa.isPresent()) {
+            if (!previa.get().huella().equals(huella)) {
+                throw new ConflictoException("La clave de idempotencia ya se usó con una petición distinta");
+            }
+            return new Resultado<>(leer(previa.get().respuesta(), tipoRespuesta), true);
+        }
+
+        // La operación se une a esta transacción; solo si se deshace no se ha aplicado nada
+        // y el cliente puede reintentar con la misma clave
+        String[] json = new String[1];
+        boolean[] deshecha = new boolean[1];
+        T respuesta;
+        try {
+            respuesta = transactionTemplate.execute(status -> {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int estado) {
+                        deshecha[0] = estado == STATUS_ROLLED_BACK;
+                    }
+                });
+                T resultado = operacion.get();
+                json[0] = escribir(resultado);
+                claveIdempotenciaRepository.completar(id, json[0]);
+                return resultado;
+            });
+        } catch (RuntimeException | Error e) {
+            // Con el resultado del commit desconocido la clave se queda reservada hasta el plazo de proceso
+            if (deshecha[0]) {
+                liberar(id);
+            }
+            throw e;
+        }
+
+        synchronized (cache) {
+            cache.put(id, new Completada(huella, json[0], ahora.plus(caducidad)));
+        }
+        return new Resultado<>(respuesta, false);
+    }
+
+    // Borra las claves caducadas de la tabla
+    @Scheduled(fixedDelayString = "${idempotencia.limpieza-ms:3600000}")
+    public void limpiarExpiradas() {
+        claveIdempotenciaRepository.borrarExpiradas(LocalDateTime.now());
+    }
+
+    private void liberar(String id) {
+        try {
+            claveIdempotenciaRepository.liberar(id);
+        } catch (RuntimeException e) {
+            // Queda reservada; se podrá reutilizar cuando venza el plazo de proceso
+            System.err.println("ERROR: No se pudo liberar la clave de idempotencia " + id + ": " + e.getMessage());
+        }
+    }
+
+    private Optional<Completada> buscarEnCache(String id, LocalDateTime ahora) {
+        synchronized (cache) {
+            Completada completada = cache.get(id);
+            if (completada != null && completada.fechaExpiracion().isBefore(ahora)) {
+                cache.remove(id);
+                return Optional.empty();
+            }
+            return Optional.ofNullable(completada);
+        }
+    }
+
+    // Reserva la clave; si ya existía devuelve la respuesta guardada
+    private Optional<Completada> reservarOBuscar(String id, String huella, LocalDateTime ahora) {
+        for (int intento = 0; intento < 2; intento++) {
+            try {
+                claveIdempotenciaRepository.reservar(id, huella, ahora, ahora.plus(caducidad));
+                return Optional.empty();
+            } catch (DataIntegrityViolationException e) {
+                ClaveIdempotencia existente = claveIdempotenciaRepository.findById(id).orElse(null);
+                if (existente == null || claveIdempotenciaRepository.borrarSiExpirada(id, ahora) > 0
+                        || claveIdempotenciaRepository.borrarSiAbandonada(id, ahora.minus(plazoProceso)) > 0) {
+                    // La liberaron, había caducado o su petición nunca confirmó: se vuelve a intentar la reserva
+                    continue;
+                }
+                if (!existente.getHuella().equals(huella)) {
+                    throw new ConflictoException("La clave de idempotencia ya se usó con una petición distinta");
+                }
+                if (!existente.isCompletada()) {
+                    throw new ConflictoException("La petición con esta clave de idempotencia todavía se está procesando");
+                }
+                Completada completada = new Completada(existente.getHuella(), existente.getRespuesta(),
+                        existente.getFechaExpiracion());
+                synchronized (cache) {
+                    cache.put(id, completada);
+                }
+                return Optional.of(completada);
+            }
+        }
+        throw new ConflictoException("La petición con esta clave de idempotencia todavía se está procesando");
+    }
+
+    private String huella(Object peticion) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(escribir(peticion).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String escribir(Object valor) {
+        try {
+            return objectMapper.writeValueAsString(valor);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error al serializar la respuesta idempotente: " + e.getMessage());
+        }
+    }
+
+    private <T> T leer(String json, Class<T> tipo) {
+        try {
+            return objectMapper.readValue(json, tipo);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error al leer la respuesta idempotente guardada: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.watts.shared.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Service;
+import org.watts.shared.enums.ModoTotal;
+import org.watts.shared.utils.PaginaDesplazada;
+
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+// Listados paginados sin el COUNT de cada petición cuando el cliente no necesita el total exacto:
+// SIN_TOTAL lee una fila de más para saber si hay página siguiente y APROXIMADO reutiliza durante
+// unos segundos el COUNT de la misma consulta (misma clave de filtro normalizada)
+@Service
+public class PaginacionService {
+
+    private record Total(long valor, long caduca) {
+    }
+
+    private final long ttlMs;
+    private final int maxEntradas;
+
+    private final ConcurrentHashMap<String, Total> totales = new ConcurrentHashMap<>();
+
+    public PaginacionService(@Value("${paginacion.total-aproximado.ttl-ms:30000}") long ttlMs,
+                             @Value("${paginacion.total-aproximado.max-entradas:1000}") int maxEntradas) {
+        this.ttlMs = ttlMs;
+        this.maxEntradas = maxEntradas;
+    }
+
+    // Metodo para leer una página con el modo de total pedido; EXACTO es el findAll paginado de siempre
+    public <E> Slice<E> buscar(JpaSpecificationExecutor<E> repository, Specification<E> spec, Pageable pageable,
+                               ModoTotal modo, String clave) {
+        if (modo == ModoTotal.EXACTO || pageable.isUnpaged()) {
+            return repository.findAll(spec, pageable);
+        }
+        Slice<E> trozo = trozo(repository, spec, pageable);
+        if (modo == ModoTotal.SIN_TOTAL) {
+            return trozo;
+        }
+        return aproximada(trozo, contar(clave, () -> repository.count(spec)));
+    }
+
+    // Página sin COUNT: la consulta pide tamaño + 1 filas y la de más solo indica que hay siguiente
+    public <E> Slice<E> trozo(JpaSpecificationExecutor<E> repository, Specification<E> spec, Pageable pageable) {
+        Window<E> ventana = repository.findBy(spec, q -> q.sortBy(pageable.getSort())
+                .limit(pageable.getPageSize())
+                .scroll(ScrollPosition.offset(pageable.getOffset())));
+        return new SliceImpl<>(ventana.getContent(), pageable, ventana.hasNext());
+    }
+
+    // Lo mismo que buscar() para listados que no salen de un findAll: leer devuelve las filas del trozo pedido
+    // (desplazamiento, tamaño y orden del Pageable) y contar el total con los mismos filtros
+    public <T> Slice<T> paginar(Pageable pageable, ModoTotal modo, String clave,
+                                Function<Pageable, List<T>> leer, LongSupplier contar) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(leer.apply(pageable));
+        }
+        if (modo == ModoTotal.EXACTO) {
+            return PageableExecutionUtils.getPage(leer.apply(pageable), pageable, contar);
+        }
+        List<T> filas = leer.apply(new PaginaDesplazada(pageable.getOffset(), pageable.getPageSize() + 1, pageable.getSort()));
+        boolean haySiguiente = filas.size() > pageable.getPageSize();
+        Slice<T> trozo = new SliceImpl<>(haySiguiente ? filas.subList(0, pageable.getPageSize()) : filas, pageable, haySiguiente);
+        return modo == ModoTotal.SIN_TOTAL ? trozo : aproximada(trozo, contar(clave, contar));
+    }
+
+    // Page con un total cacheado, como mínimo el que demuestra la página leída: si hay siguiente, una fila más
+    // (si no, PageImpl recortaría un total antiguo al final de esta página y diría que no hay más)
+    public <E> Page<E> aproximada(Slice<E> trozo, long total) {
+        long visto = trozo.getPageable().getOffset() + trozo.getNumberOfElements() + (trozo.hasNext() ? 1 : 0);
+        return new PageImpl<>(trozo.getContent(), trozo.getPageable(), Math.max(total, visto));
+    }
+
+    // Metodo para reutilizar el total de un filtro mientras no caduque
+    // Dos peticiones simultáneas con la caché vacía pueden contar las dos: no se bloquea a nadie por un total aproximado
+    public long contar(String clave, LongSupplier contar) {
+        long ahora = System.currentTimeMillis();
+        Total total = totales.get(clave);
+        if (total != null && total.caduca() > ahora) {
+            return total.valor();
+        }
+
+        long valor = contar.getAsLong();
+        if (totales.size() >= maxEntradas) {
+            totales.values().removeIf(t -> t.caduca() <= ahora);
+            if (totales.size() >= maxEntradas) {
+                totales.clear();
+            }
+        }
+        totales.put(clave, new Total(valor, ahora + ttlMs));
+        return valor;
+    }
+
+    // Clave de un listado y sus filtros; un texto vacío cuenta como sin filtro, igual que en SpecificationUtils
+    public static String clave(String listado, Object... filtros) {
+        StringJoiner clave = new StringJoiner("|");
+        clave.add(listado);
+        for (Object filtro : filtros) {
+            clave.add(filtro == null ? "" : String.valueOf(filtro));
+        }
+        return clave.toString();
+    }
+}
@@ -7,17 +7,18 @@ import org.openpdf.text.pdf.PdfPTable;
 import org.openpdf.text.pdf.PdfWriter;
 
 import org.springframework.stereotype.Service;
-import org.watts.catalog.model.Producto;
-import org.watts.catalog.model.Variante;
-import org.watts.transaction.model.Movimiento;
+import org.watts.catalog.dto.ProductoExportacion;
+import org.watts.catalog.dto.VarianteExportacion;
+import org.watts.transaction.dto.MovimientoResponse;
 
 import java.awt.*;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.text.NumberFormat;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.function.BiConsumer;
 import java.util.stream.Stream;
 
 @Service
@@ -25,110 +26,97 @@ public class ReportService {
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
     private static final NumberFormat CURRENCY_FORMATTER = NumberFormat.getCurrencyInstance(new Locale("es", "ES"));
+    private static final int FILAS_POR_VOLCADO = 500;
 
     // PRODUCTOS
-    public void generarPdfProductos(List<Producto> productos, OutputStream outputStream) {
+    public void generarPdfProductos(Stream<ProductoExportacion> productos, OutputStream outputStream) {
         generarPdfGenerico("Listado de Productos", 4, new float[]{15, 30, 40, 15},
                 new String[]{"Código", "Nombre", "Características", "Estado"},
-                outputStream,
-                table -> {
-                    for (Producto p : productos) {
-                        addCell(table, p.getCodigoBase());
-                        addCell(table, p.getNombre());
-                        addCell(table, p.getCaracteristicasTecnicas());
-                        addCell(table, p.isActivo() ? "ACTIVO" : "INACTIVO");
-                    }
+                outputStream, productos,
+                (table, p) -> {
+                    addCell(table, p.codigoBase());
+                    addCell(table, p.nombre());
+                    addCell(table, p.caracteristicasTecnicas());
+                    addCell(table, p.activo() ? "ACTIVO" : "INACTIVO");
                 });
     }
 
-    public void generarCsvProductos(List<Producto> productos, OutputStream outputStream) {
+    public void generarCsvProductos(Stream<ProductoExportacion> productos, OutputStream outputStream) {
         generarCsvGenerico(outputStream, writer -> {
             writer.println("Código,Nombre,Características,Estado");
-            for (Producto p : productos) {
-                writer.printf("%s,\"%s\",\"%s\",%s%n",
-                        escapeCsv(p.getCodigoBase()),
-                        escapeCsv(p.getNombre()),
-                        escapeCsv(p.getCaracteristicasTecnicas()),
-                        p.isActivo() ? "ACTIVO" : "INACTIVO"
-                );
-            }
+            productos.forEach(p -> writer.printf("%s,\"%s\",\"%s\",%s%n",
+                    escapeCsv(p.codigoBase()),
+                    escapeCsv(p.nombre()),
+                    escapeCsv(p.caracteristicasTecnicas()),
+                    p.activo() ? "ACTIVO" : "INACTIVO"
+            ));
         });
     }
 
     // VARIANTES
-    public void generarPdfVariantes(List<Variante> variantes, OutputStream outputStream) {
+    public void generarPdfVariantes(Stream<VarianteExportacion> variantes, OutputStream outputStream) {
         generarPdfGenerico("Listado de Variantes", 6, new float[]{20, 30, 10, 10, 15, 15},
                 new String[]{"SKU", "Producto", "Talla", "Color", "P. Compra", "P. Venta"},
-                outputStream,
-                table -> {
-                    for (Variante v : variantes) {
-                        addCell(table, v.getSku());
-                        addCell(table, v.getProducto().getNombre());
-                        addCell(table, v.getTalla().getNombre());
-                        addCell(table, v.getColor().getNombre());
-                        addCell(table, CURRENCY_FORMATTER.format(v.getPrecioCompra()));
-                        addCell(table, CURRENCY_FORMATTER.format(v.getPrecioVenta()));
-                    }
+                outputStream, variantes,
+                (table, v) -> {
+                    addCell(table, v.sku());
+                    addCell(table, v.productoNombre());
+                    addCell(table, v.talla());
+                    addCell(table, v.color());
+                    addCell(table, CURRENCY_FORMATTER.format(v.precioCompra()));
+                    addCell(table, CURRENCY_FORMATTER.format(v.precioVenta()));
                 });
     }
 
-    public void generarCsvVariantes(List<Variante> variantes, OutputStream outputStream) {
+    public void generarCsvVariantes(Stream<VarianteExportacion> variantes, OutputStream outputStream) {
         generarCsvGenerico(outputStream, writer -> {
             writer.println("SKU,Producto,Talla,Color,Precio Compra,Precio Venta,Estado");
-            for (Variante v : variantes) {
-                writer.printf("%s,\"%s\",%s,%s,\"%s\",\"%s\",%s%n",
-                        escapeCsv(v.getSku()),
-                        escapeCsv(v.getProducto().getNombre()),
-                        escapeCsv(v.getTalla().getNombre()),
-                        escapeCsv(v.getColor().getNombre()),
-                        v.getPrecioCompra(),
-                        v.getPrecioVenta(),
-                        v.isActivo() ? "ACTIVO" : "INACTIVO"
-                );
-            }
+            variantes.forEach(v -> writer.printf("%s,\"%s\",%s,%s,\"%s\",\"%s\",%s%n",
+                    escapeCsv(v.sku()),
+                    escapeCsv(v.productoNombre()),
+                    escapeCsv(v.talla()),
+                    escapeCsv(v.color()),
+                    v.precioCompra(),
+                    v.precioVenta(),
+                    v.activo() ? "ACTIVO" : "INACTIVO"
+            ));
         });
     }
 
     // MOVIMIENTOS
-    public void generarPdfMovimientos(List<Movimiento> movimientos, OutputStream outputStream) {
+    public void generarPdfMovimientos(Stream<MovimientoResponse> movimientos, OutputStream outputStream) {
         generarPdfGenerico("Histórico de Movimientos", 8, new float[]{12, 10, 12, 22, 8, 8, 14, 14},
                 new String[]{"Fecha", "Tipo", "SKU", "Producto", "Cant.", "Stock", "Almacén", "Creado por"},
-                outputStream,
-                table -> {
-                    for (Movimiento m : movimientos) {
-                        addCell(table, m.getFechaCreacion().format(DATE_FORMATTER));
-                        addCell(table, m.getTipo().name());
-                        addCell(table, m.getVariante().getSku());
-                        String prod = m.getVariante().getProducto().getNombre() + " (" +
-                                m.getVariante().getTalla().getNombre() + "/" +
-                                m.getVariante().getColor().getNombre() + ")";
-                        addCell(table, prod);
-                        addCell(table, String.valueOf(m.getCantidad()));
-                        addCell(table, String.valueOf(m.getStockResultante()));
-                        addCell(table, m.getAlmacen().getCodigo());
-                        addCell(table, m.getCreadoPor());
-                    }
+                outputStream, movimientos,
+                (table, m) -> {
+                    addCell(table, m.fechaCreacion().format(DATE_FORMATTER));
+                    addCell(table, m.tipo().name());
+                    addCell(table, m.sku());
+                    String prod = m.productoNombre() + " (" + m.talla() + "/" + m.color() + ")";
+                    addCell(table, prod);
+                    addCell(table, String.valueOf(m.cantidad()));
+                    addCell(table, String.valueOf(m.stockResultante()));
+                    addCell(table, m.almacenCodigo());
+                    addCell(table, m.creadoPor());
                 });
     }
 
-    public void generarCsvMovimientos(List<Movimiento> movimientos, OutputStream outputStream) {
+    public void generarCsvMovimientos(Stream<MovimientoResponse> movimientos, OutputStream outputStream) {
         generarCsvGenerico(outputStream, writer -> {
             writer.println("Fecha,Tipo,SKU,Producto,Talla,Color,Cantidad,Stock Resultante,Almacén,Creado por,Observaciones");
-            for (Movimiento m : movimientos) {
-                writer.printf("%s,%s,%s,\"%s\",%s,%s,%d,%d,\"%s\",\"%s\",\"%s\"%n",
-                        m.getFechaCreacion().format(DATE_FORMATTER),
-                        m.getTipo(),
-                        escapeCsv(m.getVariante().getSku()),
-                        escapeCsv(m.getVariante().getProducto().getNombre()),
-                        escapeCsv(m.getVariante().getTalla().getNombre()),
-                        escapeCsv(m.getVariante().getColor().getNombre()),
-                        m.getCantidad(),
-                        m.getStockResultante(),
-                        escapeCsv(m.getAlmacen().getCodigo()),
-                        escapeCsv(m.getCreadoPor()),
-                        escapeCsv(m.getObservaciones())
-                );
-            }
+            movimientos.forEach(m -> writer.printf("%s,%s,%s,\"%s\",%s,%s,%d,%d,\"%s\",\"%s\",\"%s\"%n",
+                    m.fechaCreacion().format(DATE_FORMATTER),
+                    m.tipo(),
+                    escapeCsv(m.sku()),
+                    escapeCsv(m.productoNombre()),
+                    escapeCsv(m.talla()),
+                    escapeCsv(m.color()),
+                    m.cantidad(),
+                    m.stockResultante(),
+                    escapeCsv(m.almacenCodigo()),
+                    escapeCsv(m.creadoPor()),
+                    escapeCsv(m.observaciones())
+            ));
         });
     }
 
@@ -140,7 +128,9 @@ public class ReportService {
     }
 
     // Metodo generico para generar PDF
-    private void generarPdfGenerico(String titulo, int numColumnas, float[] anchos, String[] headers,OutputStream outputStream, TableContentProvider contentProvider) {
+    // La tabla se escribe en el documento cada FILAS_POR_VOLCADO filas y se vacía: en memoria solo está el último tramo
+    private <T> void generarPdfGenerico(String titulo, int numColumnas, float[] anchos, String[] headers, OutputStream outputStream,
+                                        Stream<T> filas, BiConsumer<PdfPTable, T> fila) {
         try {
             Document document = new Document(PageSize.A4.rotate()); // Horizontal para que quepan más datos
             PdfWriter.getInstance(document, outputStream);
@@ -156,6 +146,8 @@ public class ReportService {
             // Tabla
             PdfPTable table = new PdfPTable(numColumnas);
             table.setWidthPercentage(100);
+            table.setHeaderRows(1); // La cabecera se repite en cada página
+            table.setComplete(false);
             if (anchos != null) {
                 table.setWidths(anchos);
             }
@@ -169,9 +161,17 @@ public class ReportService {
                 table.addCell(cell);
             });
 
-            // Llenar datos (callback)
-            contentProvider.provide(table);
+            // Llenar datos (callback), volcando según se avanza
+            int pendientes = 0;
+            for (Iterator<T> it = filas.iterator(); it.hasNext(); ) {
+                fila.accept(table, it.next());
+                if (++pendientes == FILAS_POR_VOLCADO) {
+                    document.add(table);
+                    pendientes = 0;
+                }
+            }
 
+            table.setComplete(true);
             document.add(table);
             document.close();
         } catch (Exception e) {
@@ -196,12 +196,7 @@ public class ReportService {
         return data.replace("\"", "\"\"");
     }
 
-    // Interfaces funcionales internas para los callbacks
-    @FunctionalInterface
-    interface TableContentProvider {
-        void provide(PdfPTable table);
-    }
-
+    // Interfaz funcional interna para el callback del CSV
     @FunctionalInterface
     interface CsvContentProvider {
         void provide(PrintWriter writer);
@@ -0,0 +1,34 @@
+package org.watts.shared.utils;
+
+import jakarta.persistence.TypedQuery;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.query.spi.QueryImplementor;
+
+import java.util.stream.Stream;
+
+// Lectura hacia delante de resultados grandes (exportaciones): el driver trae las filas según se recorren
+// en lugar de cargar el resultado entero. En MySQL se pide con fetch size Integer.MIN_VALUE (streaming de filas
+// de Connector/J), sin useCursorFetch en la URL, que pasaría todas las sentencias de la aplicación a preparadas en servidor.
+// Mientras el Stream está abierto la conexión no admite otras consultas: se consume entero dentro de la
+// transacción y se cierra con try-with-resources antes de lanzar la siguiente
+public final class LecturaContinua {
+
+    public static final int TAMANO_BLOQUE = 1000;
+
+    private LecturaContinua() {
+    }
+
+    public static <T> Stream<T> abrir(TypedQuery<T> consulta) {
+        return consulta
+                .setHint(HibernateHints.HINT_FETCH_SIZE, esMySql(consulta) ? Integer.MIN_VALUE : TAMANO_BLOQUE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    // Otras bases (H2 en los tests) no aceptan un fetch size negativo y ya leen por bloques con el normal
+    private static boolean esMySql(TypedQuery<?> consulta) {
+        return consulta.unwrap(QueryImplementor.class).getSession().getFactory()
+                .getJdbcServices().getDialect() instanceof MySQLDialect;
+    }
+}
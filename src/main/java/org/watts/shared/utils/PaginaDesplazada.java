@@ -0,0 +1,54 @@
+package org.watts.shared.utils;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+// Pageable con un desplazamiento arbitrario (no múltiplo del tamaño de página)
+// Sirve para leer el trozo de una tabla que completa una página repartida entre dos tablas
+public record PaginaDesplazada(long offset, int limite, Sort sort) implements Pageable {
+
+    @Override
+    public int getPageNumber() {
+        return (int) (offset / limite);
+    }
+
+    @Override
+    public int getPageSize() {
+        return limite;
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public Sort getSort() {
+        return sort;
+    }
+
+    @Override
+    public Pageable next() {
+        return new PaginaDesplazada(offset + limite, limite, sort);
+    }
+
+    @Override
+    public Pageable previousOrFirst() {
+        return hasPrevious() ? new PaginaDesplazada(Math.max(0, offset - limite), limite, sort) : first();
+    }
+
+    @Override
+    public Pageable first() {
+        return new PaginaDesplazada(0, limite, sort);
+    }
+
+    @Override
+    public Pageable withPage(int pageNumber) {
+        return new PaginaDesplazada((long) pageNumber * limite, limite, sort);
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return offset > 0;
+    }
+}
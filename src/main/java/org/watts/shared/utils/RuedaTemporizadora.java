@@ -0,0 +1,65 @@
+package org.watts.shared.utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Rueda de temporizadores (hashed timing wheel): programar un vencimiento es O(1) y cada avance
+// solo mira las ranuras por las que pasa, no todos los temporizadores pendientes.
+// Los temporizadores no se cancelan: quien los consume comprueba al vencer si siguen vigentes
+public class RuedaTemporizadora<T> {
+
+    private record Entrada<T>(T valor, long vencimiento) {
+    }
+
+    private final long tickMs;
+    private final ConcurrentLinkedQueue<Entrada<T>>[] ranuras;
+    // Último tick procesado (avanzar() lo vuelve a recorrer en la siguiente llamada)
+    private volatile long ultimoTick;
+
+    @SuppressWarnings("unchecked")
+    public RuedaTemporizadora(int numeroRanuras, long tickMs, long ahoraMs) {
+        this.tickMs = tickMs;
+        this.ranuras = new ConcurrentLinkedQueue[numeroRanuras];
+        for (int i = 0; i < numeroRanuras; i++) {
+            ranuras[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.ultimoTick = ahoraMs / tickMs;
+    }
+
+    // Metodo para programar un valor que vencerá en el instante indicado (ms)
+    // Un vencimiento ya pasado va a la ranura actual para que salga en el siguiente avance
+    public void programar(T valor, long vencimientoMs) {
+        long tick = Math.max(vencimientoMs / tickMs, ultimoTick);
+        ranuras[ranura(tick)].add(new Entrada<>(valor, vencimientoMs));
+    }
+
+    // Metodo para avanzar la rueda hasta ahora y recoger los valores vencidos
+    // Los que caen en una ranura recorrida pero vencen en una vuelta posterior se quedan donde están
+    public synchronized List<T> avanzar(long ahoraMs) {
+        long tickActual = ahoraMs / tickMs;
+        List<T> vencidos = new ArrayList<>();
+        if (tickActual < ultimoTick) {
+            return vencidos;
+        }
+        // Si ha pasado más de una vuelta basta con recorrer cada ranura una vez
+        long desde = Math.max(ultimoTick, tickActual - ranuras.length + 1);
+        for (long tick = desde; tick <= tickActual; tick++) {
+            Iterator<Entrada<T>> it = ranuras[ranura(tick)].iterator();
+            while (it.hasNext()) {
+                Entrada<T> entrada = it.next();
+                if (entrada.vencimiento() <= ahoraMs) {
+                    it.remove();
+                    vencidos.add(entrada.valor());
+                }
+            }
+        }
+        ultimoTick = tickActual;
+        return vencidos;
+    }
+
+    private int ranura(long tick) {
+        return (int) Math.floorMod(tick, (long) ranuras.length);
+    }
+}
@@ -1,33 +1,46 @@
 package org.watts.transaction.controller;
 
-import jakarta.persistence.criteria.Join;
-import jakarta.persistence.criteria.JoinType;
-import jakarta.persistence.criteria.Predicate;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.domain.Slice;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
-import org.watts.catalog.model.Producto;
-import org.watts.catalog.model.Variante;
-import org.watts.catalog.repository.VarianteRepository;
+import org.springframework.web.multipart.MultipartFile;
 import org.watts.inventory.dto.InventarioResponse;
-import org.watts.inventory.models.Almacen;
-import org.watts.inventory.repository.AlmacenRepository;
+import org.watts.inventory.service.IndiceReferenciasService;
+import org.watts.shared.enums.ModoTotal;
 import org.watts.shared.exception.ResourceNotFoundException;
-import org.watts.shared.utils.SpecificationUtils;
+import org.watts.shared.service.IdempotenciaService;
+import org.watts.transaction.enums.EstadoImportacion;
 import org.watts.transaction.enums.TipoMovimiento;
-import org.watts.transaction.model.Movimiento;
+import org.watts.transaction.service.AgrupadorMovimientos;
+import org.watts.transaction.service.ImportacionMovimientosService;
 import org.watts.transaction.service.MovimientoService;
+import org.watts.transaction.service.ResumenDiarioService;
+import org.watts.transaction.dto.ImportacionMovimientosResponse;
+import org.watts.transaction.dto.MovimientoLoteRequest;
+import org.watts.transaction.dto.MovimientoLoteResponse;
 import org.watts.transaction.dto.MovimientoRequest;
+import org.watts.transaction.dto.MovimientoFiltro;
 import org.watts.transaction.dto.MovimientoResponse;
+import org.watts.transaction.dto.MovimientosCursorResponse;
+import org.watts.transaction.dto.RellenoResumenDiarioResponse;
+import org.watts.transaction.dto.ResumenPeriodoResponse;
+import org.watts.transaction.dto.TransferenciaRequest;
+import org.watts.transaction.dto.TransferenciaResponse;
+import org.watts.transaction.dto.VentasDiaResponse;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
 
 @RestController
@@ -35,39 +48,108 @@ import java.util.List;
 public class MovimientoController {
 
     private final MovimientoService movimientoService;
-    private final VarianteRepository varianteRepository;
-    private final AlmacenRepository almacenRepository;
+    private final AgrupadorMovimientos agrupadorMovimientos;
+    private final IndiceReferenciasService indiceReferencias;
+    private final IdempotenciaService idempotenciaService;
+    private final ResumenDiarioService resumenDiarioService;
+    private final ImportacionMovimientosService importacionMovimientosService;
 
-    public MovimientoController(MovimientoService movimientoService, VarianteRepository varianteRepository, AlmacenRepository almacenRepository) {
+    public MovimientoController(MovimientoService movimientoService, AgrupadorMovimientos agrupadorMovimientos, IndiceReferenciasService indiceReferencias, IdempotenciaService idempotenciaService,
+                                ResumenDiarioService resumenDiarioService, ImportacionMovimientosService importacionMovimientosService) {
         this.movimientoService = movimientoService;
-        this.varianteRepository = varianteRepository;
-        this.almacenRepository = almacenRepository;
+        this.agrupadorMovimientos = agrupadorMovimientos;
+        this.indiceReferencias = indiceReferencias;
+        this.idempotenciaService = idempotenciaService;
+        this.resumenDiarioService = resumenDiarioService;
+        this.importacionMovimientosService = importacionMovimientosService;
     }
 
     // Endpoint para crear un movimiento
+    // Pasa por el agrupador, que junta en una transacción los movimientos que llegan a la vez
+    // Con la cabecera Idempotency-Key los reintentos del cliente devuelven la respuesta original sin volver a mover stock
     @PostMapping
     @PreAuthorize("hasAuthority('MOVIMIENTO_CREAR')")
-    public ResponseEntity<InventarioResponse> crearMovimiento(@Valid @RequestBody MovimientoRequest request) {
+    public ResponseEntity<InventarioResponse> crearMovimiento(
+            @Valid @RequestBody MovimientoRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey
+    ) {
+        if (request.tipo().esTransferencia()) {
+            throw new RuntimeException("Las transferencias se registran en /api/movimientos/transferencia");
+        }
+
+        if (idempotencyKey == null) {
+            return new ResponseEntity<>(aplicarMovimiento(request), HttpStatus.CREATED);
+        }
 
-        InventarioResponse inventarioActualizado = movimientoService.procesarMovimiento(
-                varianteRepository.findBySku(request.varianteSku())
-                        .orElseThrow(() -> new ResourceNotFoundException("Variante", request.varianteSku())),
-                almacenRepository.findById(request.almacenId())
-                        .orElseThrow(() -> new ResourceNotFoundException("Almacen", request.almacenId())),
+        IdempotenciaService.Resultado<InventarioResponse> resultado = idempotenciaService.ejecutar(
+                idempotencyKey, request, InventarioResponse.class, () -> aplicarMovimiento(request));
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header("Idempotent-Replayed", String.valueOf(resultado.repetida()))
+                .body(resultado.respuesta());
+    }
+
+    // Variante y almacén salen del índice en memoria: la BDD solo se toca para el stock y el movimiento
+    private InventarioResponse aplicarMovimiento(MovimientoRequest request) {
+        return agrupadorMovimientos.procesarMovimiento(
+                indiceReferencias.variante(request.varianteSku())
+                        .orElseThrow(() -> new ResourceNotFoundException("Variante", request.varianteSku()))
+                        .aEntidad(),
+                indiceReferencias.almacen(request.almacenId())
+                        .orElseThrow(() -> new ResourceNotFoundException("Almacen", request.almacenId()))
+                        .aEntidad(),
                 request.cantidad(),
                 request.tipo(),
                 request.observaciones(),
                 request.precioCompraUnitario(),
                 request.precioVentaUnitario()
         );
+    }
 
-        return new ResponseEntity<>(inventarioActualizado, HttpStatus.CREATED);
+    // Endpoint para registrar un lote de movimientos en una sola petición (sincronizaciones de TPV y escáneres)
+    @PostMapping("/lote")
+    @PreAuthorize("hasAuthority('MOVIMIENTO_CREAR')")
+    public ResponseEntity<MovimientoLoteResponse> crearMovimientosLote(@Valid @RequestBody MovimientoLoteRequest request) {
+        return new ResponseEntity<>(movimientoService.procesarLote(request), HttpStatus.CREATED);
+    }
+
+    // Endpoint para importar movimientos desde un CSV (sku,almacenId,cantidad,tipo[,observaciones,precioCompraUnitario,precioVentaUnitario])
+    // Los ficheros pequeños se procesan en la petición (201); los grandes en segundo plano (202) y se sigue el progreso por id
+    @PostMapping(value = "/importar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAuthority('MOVIMIENTO_CREAR')")
+    public ResponseEntity<ImportacionMovimientosResponse> importarMovimientos(@RequestPart("archivo") MultipartFile archivo) {
+        ImportacionMovimientosResponse importacion = importacionMovimientosService.importar(archivo);
+        HttpStatus estado = importacion.estado() == EstadoImportacion.EN_CURSO ? HttpStatus.ACCEPTED : HttpStatus.CREATED;
+        return new ResponseEntity<>(importacion, estado);
+    }
+
+    // Endpoint para consultar el progreso de una importación
+    @GetMapping("/importar/{id}")
+    @PreAuthorize("hasAuthority('MOVIMIENTO_CREAR')")
+    public ResponseEntity<ImportacionMovimientosResponse> verImportacion(@PathVariable String id) {
+        return ResponseEntity.ok(importacionMovimientosService.verImportacion(id));
+    }
+
+    // Endpoint para descargar las líneas rechazadas de una importación terminada
+    @GetMapping("/importar/{id}/errores")
+    @PreAuthorize("hasAuthority('MOVIMIENTO_CREAR')")
+    public ResponseEntity<Resource> descargarErroresImportacion(@PathVariable String id) {
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"importacion_" + id + "_errores.csv\"")
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .body(importacionMovimientosService.verErrores(id));
+    }
+
+    // Endpoint para transferir stock entre dos almacenes (una o muchas variantes) en una sola operación
+    @PostMapping("/transferencia")
+    @PreAuthorize("hasAuthority('MOVIMIENTO_CREAR')")
+    public ResponseEntity<TransferenciaResponse> crearTransferencia(@Valid @RequestBody TransferenciaRequest request) {
+        return new ResponseEntity<>(movimientoService.procesarTransferencia(request), HttpStatus.CREATED);
     }
 
     // Endpoing para ver todos los movimientos con paginación
     @GetMapping
     @PreAuthorize("hasAuthority('MOVIMIENTO_LEER')")
-    public ResponseEntity<Page<MovimientoResponse>> listarMovimientos(
+    public ResponseEntity<Slice<MovimientoResponse>> listarMovimientos(
             @ParameterObject Pageable pageable,
             @RequestParam(required = false) String varianteNombre,
             @RequestParam(required = false) String varianteMatchMode,
@@ -79,22 +161,36 @@ public class MovimientoController {
             @RequestParam(required = false) LocalDate fechaInicio,
             @RequestParam(required = false) LocalDate fechaFin,
             @RequestParam(required = false) String creadoPor,
+            @RequestParam(required = false) String creadoPorMatchMode,
+            @RequestParam(defaultValue = "EXACTO") ModoTotal total
+    ) {
+        MovimientoFiltro filtro = new MovimientoFiltro(varianteNombre, varianteMatchMode, almacenNombre, almacenMatchMode,
+                tipo, observaciones, observacionesMatchMode, fechaInicio, fechaFin, creadoPor, creadoPorMatchMode);
+        return ResponseEntity.ok(movimientoService.verMovimientos(filtro, pageable, total));
+    }
+
+    // Endpoint para recorrer los movimientos por cursor, con los mismos filtros que el listado
+    // Sin total de elementos: cada respuesta trae el token de la página siguiente (null en la última)
+    @GetMapping("/cursor")
+    @PreAuthorize("hasAuthority('MOVIMIENTO_LEER')")
+    public ResponseEntity<MovimientosCursorResponse> listarMovimientosCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int tamano,
+            @RequestParam(required = false) String varianteNombre,
+            @RequestParam(required = false) String varianteMatchMode,
+            @RequestParam(required = false) String almacenNombre,
+            @RequestParam(required = false) String almacenMatchMode,
+            @RequestParam(required = false) TipoMovimiento tipo,
+            @RequestParam(required = false) String observaciones,
+            @RequestParam(required = false) String observacionesMatchMode,
+            @RequestParam(required = false) LocalDate fechaInicio,
+            @RequestParam(required = false) LocalDate fechaFin,
+            @RequestParam(required = false) String creadoPor,
             @RequestParam(required = false) String creadoPorMatchMode
     ) {
-        return ResponseEntity.ok(movimientoService.verTodosLosMovimientos(
-                pageable,
-                varianteNombre,
-                varianteMatchMode,
-                almacenNombre,
-                almacenMatchMode,
-                tipo,
-                observaciones,
-                observacionesMatchMode,
-                fechaInicio,
-                fechaFin,
-                creadoPor,
-                creadoPorMatchMode
-        ));
+        MovimientoFiltro filtro = new MovimientoFiltro(varianteNombre, varianteMatchMode, almacenNombre, almacenMatchMode,
+                tipo, observaciones, observacionesMatchMode, fechaInicio, fechaFin, creadoPor, creadoPorMatchMode);
+        return ResponseEntity.ok(movimientoService.verMovimientos(filtro, cursor, tamano));
     }
 
     // Endpoint para exportar movimientos
@@ -116,48 +212,54 @@ public class MovimientoController {
             HttpServletResponse response
     ) throws java.io.IOException {
 
-        // 1. Reconstruir Specification
-        Specification<Movimiento> spec = (root, query, cb) -> {
-            List<Predicate> predicates = new java.util.ArrayList<>();
-
-            // Filtros directos
-            SpecificationUtils.addPredicate(predicates, cb, root.get("observaciones"), observaciones, observacionesMatchMode);
-            SpecificationUtils.addPredicate(predicates, cb, root.get("creadoPor"), creadoPor, creadoPorMatchMode);
+        MovimientoFiltro filtro = new MovimientoFiltro(varianteNombre, varianteMatchMode, almacenNombre, almacenMatchMode,
+                tipo, observaciones, observacionesMatchMode, fechaInicio, fechaFin, creadoPor, creadoPorMatchMode);
 
-            if (tipo != null) {
-                predicates.add(cb.equal(root.get("tipo"), tipo));
-            }
-
-            SpecificationUtils.addDateRangePredicate(predicates, cb, root.get("fechaCreacion"), fechaInicio, fechaFin);
-
-            // Filtros por relaciones (Joins)
-            if (varianteNombre != null && !varianteNombre.isEmpty()) {
-                Join<Movimiento, Variante> varianteJoin = root.join("variante", JoinType.LEFT);
-                Join<Variante, Producto> productoJoin = varianteJoin.join("producto", JoinType.LEFT);
-                SpecificationUtils.addPredicate(predicates, cb, productoJoin.get("nombre"), varianteNombre, varianteMatchMode);
-            }
-
-            if (almacenNombre != null && !almacenNombre.isEmpty()) {
-                Join<org.watts.transaction.model.Movimiento, Almacen> almacenJoin = root.join("almacen", JoinType.LEFT);
-                SpecificationUtils.addPredicate(predicates, cb, almacenJoin.get("descripcion"), almacenNombre, almacenMatchMode);
-            }
-
-            return cb.and(predicates.toArray(new Predicate[0]));
-        };
-
-        // 2. Configurar respuesta
+        // Configurar respuesta
         String filename = "movimientos_" + System.currentTimeMillis() + "." + formato;
         response.setHeader("Content-Disposition", "attachment; filename=\"" + filename + "\"");
 
         if ("csv".equalsIgnoreCase(formato)) {
             response.setContentType("text/csv");
-            movimientoService.exportar(spec, formato, response.getOutputStream());
+            movimientoService.exportar(filtro, formato, response.getOutputStream());
         } else {
             response.setContentType("application/pdf");
-            movimientoService.exportar(spec, formato, response.getOutputStream());
+            movimientoService.exportar(filtro, formato, response.getOutputStream());
         }
     }
 
+    // Endpoint para ver los totales mensuales de los periodos archivados (desde y hasta en formato yyyy-MM)
+    @GetMapping("/resumen-periodos")
+    @PreAuthorize("hasAuthority('MOVIMIENTO_LEER')")
+    public ResponseEntity<List<ResumenPeriodoResponse>> verResumenesPeriodo(
+            @RequestParam YearMonth desde,
+            @RequestParam YearMonth hasta
+    ) {
+        return ResponseEntity.ok(movimientoService.verResumenesPeriodo(desde, hasta));
+    }
+
+    // Endpoint para ver las ventas (u otro tipo de movimiento) día a día entre dos fechas, desde los totales diarios
+    @GetMapping("/ventas")
+    @PreAuthorize("hasAuthority('MOVIMIENTO_LEER')")
+    public ResponseEntity<List<VentasDiaResponse>> verVentasPorDia(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) Long almacenId,
+            @RequestParam(defaultValue = "VENTA") TipoMovimiento tipo
+    ) {
+        return ResponseEntity.ok(resumenDiarioService.totalesPorDia(tipo, desde, hasta, almacenId));
+    }
+
+    // Endpoint para recalcular los totales diarios de un rango de días desde los movimientos (p. ej. al activarlos)
+    @PostMapping("/resumen-diario/relleno")
+    @PreAuthorize("hasAuthority('INVENTARIO_CONCILIAR')")
+    public ResponseEntity<RellenoResumenDiarioResponse> rellenarResumenDiario(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta
+    ) {
+        return ResponseEntity.ok(resumenDiarioService.rellenar(desde, hasta));
+    }
+
     // Endpoint para ver el historial de un variante con paginación
     @GetMapping("/historial/{varianteId}")
     @PreAuthorize("hasAuthority('MOVIMIENTO_LEER')")
@@ -167,4 +269,15 @@ public class MovimientoController {
     ) {
         return ResponseEntity.ok(movimientoService.verHistorialVariante(varianteId, pageable));
     }
+
+    // Endpoint para recorrer el historial de una variante por cursor
+    @GetMapping("/historial/{varianteId}/cursor")
+    @PreAuthorize("hasAuthority('MOVIMIENTO_LEER')")
+    public ResponseEntity<MovimientosCursorResponse> verHistorialCursor(
+            @PathVariable Long varianteId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int tamano
+    ) {
+        return ResponseEntity.ok(movimientoService.verHistorialVariante(varianteId, cursor, tamano));
+    }
 }
@@ -0,0 +1,18 @@
+package org.watts.transaction.dto;
+
+import org.watts.transaction.enums.EstadoImportacion;
+
+import java.time.LocalDateTime;
+
+// Progreso de una importación de movimientos desde CSV
+public record ImportacionMovimientosResponse(
+        String id,
+        EstadoImportacion estado,
+        long lineasLeidas,
+        long aplicadas,
+        long rechazadas,
+        LocalDateTime inicio,
+        LocalDateTime fin, // null mientras está en curso
+        String error // Motivo si la importación ha fallado; los errores de cada línea van en el informe descargable
+) {
+}
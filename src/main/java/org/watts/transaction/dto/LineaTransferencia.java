@@ -0,0 +1,12 @@
+package org.watts.transaction.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public record LineaTransferencia(
+        @NotNull(message = "La variante es obligatoria")
+        String varianteSku,
+        @Min(value = 1, message = "La cantidad debe ser mayor que 0")
+        int cantidad
+) {
+}
@@ -0,0 +1,21 @@
+package org.watts.transaction.dto;
+
+import org.watts.transaction.enums.TipoMovimiento;
+
+import java.time.LocalDate;
+
+// Filtros del listado y la exportación de movimientos (los MatchMode son los de PrimeNG)
+public record MovimientoFiltro(
+        String varianteNombre,
+        String varianteMatchMode,
+        String almacenNombre,
+        String almacenMatchMode,
+        TipoMovimiento tipo,
+        String observaciones,
+        String observacionesMatchMode,
+        LocalDate fechaInicio,
+        LocalDate fechaFin,
+        String creadoPor,
+        String creadoPorMatchMode
+) {
+}
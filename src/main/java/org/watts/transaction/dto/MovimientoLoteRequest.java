@@ -0,0 +1,16 @@
+package org.watts.transaction.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record MovimientoLoteRequest(
+        @NotEmpty(message = "El lote debe contener al menos un movimiento")
+        @Size(max = 10000, message = "El lote no puede superar los 10000 movimientos")
+        List<@Valid MovimientoRequest> lineas,
+        // true: si alguna línea falla no se aplica ninguna. false: se aplican las válidas y se informa del resto
+        boolean todoONada
+) {
+}
@@ -0,0 +1,11 @@
+package org.watts.transaction.dto;
+
+import java.util.List;
+
+public record MovimientoLoteResponse(
+        int totalLineas,
+        int aplicadas,
+        int rechazadas,
+        List<ResultadoLineaLote> resultados
+) {
+}
@@ -29,10 +29,31 @@ public record MovimientoResponse(
         String color,
         String almacenId,
         String almacenDescripcion,
+        String almacenCodigo,
 
         Double precioCompraUnitario,
         Double precioVentaUnitario,
         Double precioCompraTotal,
-        Double precioVentaTotal
+        Double precioVentaTotal,
+
+        // Solo en transferencias: misma referencia en la salida y en la entrada
+        String referenciaTransferencia
 ) {
+
+    // Para las consultas con proyección (ProyeccionMovimientosRepository): los ids de talla, color y almacén llegan como números
+    public MovimientoResponse(Long id, LocalDateTime fechaCreacion, String creadoPor, TipoMovimiento tipo, int cantidad,
+                              int stockResultante, String observaciones, String sku, String productoNombre,
+                              String productoCaracteristicasTecnicas, Long tallaId, String talla, Long colorId, String color,
+                              Long almacenId, String almacenDescripcion, String almacenCodigo,
+                              Double precioCompraUnitario, Double precioVentaUnitario,
+                              Double precioCompraTotal, Double precioVentaTotal, String referenciaTransferencia) {
+        this(id, fechaCreacion, creadoPor, tipo, cantidad, stockResultante, observaciones, sku, productoNombre,
+                productoCaracteristicasTecnicas, texto(tallaId), talla, texto(colorId), color, texto(almacenId),
+                almacenDescripcion, almacenCodigo, precioCompraUnitario, precioVentaUnitario, precioCompraTotal,
+                precioVentaTotal, referenciaTransferencia);
+    }
+
+    private static String texto(Long id) {
+        return id != null ? id.toString() : null;
+    }
 }
@@ -0,0 +1,10 @@
+package org.watts.transaction.dto;
+
+import java.util.List;
+
+// Una página de movimientos leída por cursor; siguiente es el token para pedir la próxima (null si no hay más)
+public record MovimientosCursorResponse(
+        List<MovimientoResponse> contenido,
+        String siguiente
+) {
+}
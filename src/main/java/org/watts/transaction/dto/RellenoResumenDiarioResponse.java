@@ -0,0 +1,6 @@
+package org.watts.transaction.dto;
+
+import java.time.LocalDate;
+
+public record RellenoResumenDiarioResponse(LocalDate desde, LocalDate hasta, int tramos, long filas, long duracionMs) {
+}
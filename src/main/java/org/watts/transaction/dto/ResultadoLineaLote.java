@@ -0,0 +1,12 @@
+package org.watts.transaction.dto;
+
+// Resultado de cada línea de un lote, en el mismo orden en que se recibieron
+public record ResultadoLineaLote(
+        int linea,
+        String varianteSku,
+        Long almacenId,
+        boolean aplicado,
+        Integer stockResultante, // null si la línea no se ha aplicado
+        String error
+) {
+}
@@ -0,0 +1,9 @@
+package org.watts.transaction.dto;
+
+public record ResultadoLineaTransferencia(
+        String varianteSku,
+        int cantidad,
+        int stockOrigen, // Stock que queda en el almacén de origen
+        int stockDestino // Stock que queda en el almacén de destino
+) {
+}
@@ -0,0 +1,19 @@
+package org.watts.transaction.dto;
+
+import org.watts.transaction.enums.TipoMovimiento;
+
+import java.time.LocalDate;
+
+// Totales de un mes archivado para una variante, un almacén y un tipo de movimiento
+public record ResumenPeriodoResponse(
+        LocalDate periodo,
+        Long varianteId,
+        Long almacenId,
+        TipoMovimiento tipo,
+        long numeroMovimientos,
+        long cantidadTotal,
+        Double precioCompraTotal,
+        Double precioVentaTotal,
+        Integer stockFinal
+) {
+}
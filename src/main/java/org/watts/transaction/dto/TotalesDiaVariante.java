@@ -0,0 +1,8 @@
+package org.watts.transaction.dto;
+
+import java.time.LocalDate;
+
+// Totales de un día de una variante en un almacén para un tipo de movimiento, leídos de movimientos_diarios
+public record TotalesDiaVariante(LocalDate dia, Long almacenId, Long varianteId, String sku, long cantidadTotal,
+                                 double precioCompraTotal, double precioVentaTotal) {
+}
@@ -0,0 +1,20 @@
+package org.watts.transaction.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record TransferenciaRequest(
+        @NotNull(message = "El almacén de origen es obligatorio")
+        Long almacenOrigenId,
+        @NotNull(message = "El almacén de destino es obligatorio")
+        Long almacenDestinoId,
+        String observaciones,
+        @NotEmpty(message = "La transferencia debe tener al menos una línea")
+        @Size(max = 10000, message = "Una transferencia no puede tener más de 10000 líneas")
+        List<@Valid LineaTransferencia> lineas
+) {
+}
@@ -0,0 +1,11 @@
+package org.watts.transaction.dto;
+
+import java.util.List;
+
+public record TransferenciaResponse(
+        String referencia, // Referencia común de todos los movimientos de la transferencia
+        Long almacenOrigenId,
+        Long almacenDestinoId,
+        List<ResultadoLineaTransferencia> lineas
+) {
+}
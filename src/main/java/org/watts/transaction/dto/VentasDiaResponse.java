@@ -0,0 +1,13 @@
+package org.watts.transaction.dto;
+
+import java.time.LocalDate;
+
+// Totales de un día para un tipo de movimiento (por defecto las ventas): unidades, coste y facturación
+public record VentasDiaResponse(
+        LocalDate dia,
+        long numeroMovimientos,
+        long cantidadTotal,
+        double precioCompraTotal,
+        double precioVentaTotal
+) {
+}
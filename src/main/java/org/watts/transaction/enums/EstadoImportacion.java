@@ -0,0 +1,8 @@
+package org.watts.transaction.enums;
+
+// Estado de una importación de movimientos desde CSV
+public enum EstadoImportacion {
+    EN_CURSO,  // Leyendo y aplicando tramos
+    TERMINADA, // Fichero leído entero; las líneas con error están en el informe
+    FALLIDA    // Se ha cortado a medias (fichero ilegible, error de E/S...); los tramos ya aplicados se quedan
+}
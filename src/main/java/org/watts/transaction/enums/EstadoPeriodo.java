@@ -0,0 +1,7 @@
+package org.watts.transaction.enums;
+
+// Estado del archivado de un mes de movimientos
+public enum EstadoPeriodo {
+    ARCHIVANDO, // Movimientos repartidos entre la tabla caliente y el archivo
+    ARCHIVADO   // Todos los movimientos del mes están en el archivo
+}
@@ -1,10 +1,31 @@
 package org.watts.transaction.enums;
 
+import java.util.Arrays;
+import java.util.List;
+
 public enum TipoMovimiento {
     COMPRA,
     VENTA,
     ENTRADA_FABRICACION,
     SALIDA_DEFECTO,
     SALIDA_REGALO,
-    ENTRADA_DEVOLUCION
+    ENTRADA_DEVOLUCION,
+    // Las dos mitades de una transferencia entre almacenes, enlazadas por Movimiento.referenciaTransferencia
+    TRANSFERENCIA_SALIDA,
+    TRANSFERENCIA_ENTRADA;
+
+    // Indica si el tipo de movimiento resta stock del almacén
+    public boolean esSalida() {
+        return this == VENTA || this == SALIDA_DEFECTO || this == SALIDA_REGALO || this == TRANSFERENCIA_SALIDA;
+    }
+
+    // Tipos que restan stock, para las consultas que suman movimientos con signo
+    public static List<TipoMovimiento> salidas() {
+        return Arrays.stream(values()).filter(TipoMovimiento::esSalida).toList();
+    }
+
+    // Las transferencias solo se crean en pareja desde /api/movimientos/transferencia
+    public boolean esTransferencia() {
+        return this == TRANSFERENCIA_SALIDA || this == TRANSFERENCIA_ENTRADA;
+    }
 }
@@ -3,7 +3,10 @@ package org.watts.transaction.mapper;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.watts.transaction.dto.MovimientoResponse;
+import org.watts.transaction.dto.ResumenPeriodoResponse;
 import org.watts.transaction.model.Movimiento;
+import org.watts.transaction.model.MovimientoArchivado;
+import org.watts.transaction.model.ResumenMovimientosPeriodo;
 
 @Mapper(componentModel = "spring")
 public interface MovimientoMapper {
@@ -20,9 +23,29 @@ public interface MovimientoMapper {
     @Mapping(source = "variante.producto.caracteristicasTecnicas", target = "productoCaracteristicasTecnicas")
     @Mapping(source = "almacen.id", target = "almacenId")
     @Mapping(source = "almacen.descripcion", target = "almacenDescripcion")
+    @Mapping(source = "almacen.codigo", target = "almacenCodigo")
     @Mapping(source = "precioCompraUnitario", target = "precioCompraUnitario")
     @Mapping(source = "precioVentaUnitario", target = "precioVentaUnitario")
     @Mapping(source = "precioCompraTotal", target = "precioCompraTotal")
     @Mapping(source = "precioVentaTotal", target = "precioVentaTotal")
     MovimientoResponse toResponse(Movimiento movimiento);
+
+    // Los movimientos archivados se devuelven igual que los de la tabla caliente
+    @Mapping(source = "variante.sku", target = "sku")
+    @Mapping(source = "variante.talla.id", target = "tallaId")
+    @Mapping(source = "variante.talla.nombre", target = "talla")
+    @Mapping(source = "variante.color.id", target = "colorId")
+    @Mapping(source = "variante.color.nombre", target = "color")
+    @Mapping(source = "variante.producto.nombre", target = "productoNombre")
+    @Mapping(source = "variante.producto.caracteristicasTecnicas", target = "productoCaracteristicasTecnicas")
+    @Mapping(source = "almacen.id", target = "almacenId")
+    @Mapping(source = "almacen.descripcion", target = "almacenDescripcion")
+    @Mapping(source = "almacen.codigo", target = "almacenCodigo")
+    @Mapping(source = "precioCompraUnitario", target = "precioCompraUnitario")
+    @Mapping(source = "precioVentaUnitario", target = "precioVentaUnitario")
+    @Mapping(source = "precioCompraTotal", target = "precioCompraTotal")
+    @Mapping(source = "precioVentaTotal", target = "precioVentaTotal")
+    MovimientoResponse toResponse(MovimientoArchivado movimiento);
+
+    ResumenPeriodoResponse toResponse(ResumenMovimientosPeriodo resumen);
 }
\ No newline at end of file
@@ -1,17 +1,30 @@
 package org.watts.transaction.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 import org.watts.catalog.model.Variante;
 import org.watts.inventory.models.Almacen;
 import org.watts.shared.model.Auditable;
 import org.watts.transaction.enums.TipoMovimiento;
 
 @Entity
-@Table(name = "movimientos")
+@Table(name = "movimientos",
+        indexes = {
+                @Index(name = "idx_movimientos_referencia_transferencia", columnList = "referenciaTransferencia"),
+                // Stock a fecha e instantáneas de inventario: movimientos de una variante/almacén posteriores a una fecha
+                @Index(name = "idx_movimientos_variante_almacen_fecha", columnList = "variante_id, almacen_id, fechaCreacion"),
+                @Index(name = "idx_movimientos_almacen_fecha", columnList = "almacen_id, fechaCreacion"),
+                // Listados e historial por cursor: (fechaCreacion, id) se lee en orden del índice, el id va implícito en InnoDB
+                @Index(name = "idx_movimientos_fecha", columnList = "fechaCreacion"),
+                @Index(name = "idx_movimientos_variante_fecha", columnList = "variante_id, fechaCreacion")
+        })
 public class Movimiento extends Auditable { // Extends Auditable para auditoría automática
 
+    // Identificadores por secuencia reservados de 50 en 50: con IDENTITY Hibernate no puede agrupar los INSERT
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movimientos_seq")
+    @SequenceGenerator(name = "movimientos_seq", sequenceName = "movimientos_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false)
@@ -21,6 +34,8 @@ public class Movimiento extends Auditable { // Extends Auditable para auditoría
     private Almacen almacen;
 
     @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR) // VARCHAR y no ENUM de MySQL, para poder añadir tipos sin tocar la columna
+    @Column(length = 30)
     private TipoMovimiento tipo;
 
     // Cantidad que afecta al stock, si es positiva suma, si es negativa resta
@@ -39,6 +54,10 @@ public class Movimiento extends Auditable { // Extends Auditable para auditoría
 
     private Double precioVentaTotal;
 
+    // Enlaza la salida y la entrada de una misma transferencia entre almacenes
+    @Column(length = 36)
+    private String referenciaTransferencia;
+
     // Getters y setters
 
     public Long getId() {
@@ -128,4 +147,12 @@ public class Movimiento extends Auditable { // Extends Auditable para auditoría
     public void setPrecioVentaTotal(Double precioVentaTotal) {
         this.precioVentaTotal = precioVentaTotal;
     }
+
+    public String getReferenciaTransferencia() {
+        return referenciaTransferencia;
+    }
+
+    public void setReferenciaTransferencia(String referenciaTransferencia) {
+        this.referenciaTransferencia = referenciaTransferencia;
+    }
 }
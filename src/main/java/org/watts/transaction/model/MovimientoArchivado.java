@@ -0,0 +1,150 @@
+package org.watts.transaction.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import org.watts.catalog.model.Variante;
+import org.watts.inventory.models.Almacen;
+import org.watts.transaction.enums.TipoMovimiento;
+
+import java.time.LocalDateTime;
+
+// Movimiento de un mes ya cerrado, trasladado desde la tabla movimientos por ArchivoMovimientosService
+// Mismas columnas y mismo id que el original; solo se lee, nunca se modifica
+@Entity
+@Table(name = "movimientos_archivo",
+        indexes = {
+                @Index(name = "idx_movimientos_archivo_fecha", columnList = "fechaCreacion"),
+                @Index(name = "idx_movimientos_archivo_variante_fecha", columnList = "variante_id, fechaCreacion")
+        })
+public class MovimientoArchivado {
+
+    @Id
+    private Long id;
+
+    @ManyToOne(optional = false)
+    private Variante variante;
+
+    @ManyToOne(optional = false)
+    private Almacen almacen;
+
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(length = 30)
+    private TipoMovimiento tipo;
+
+    private int cantidad;
+
+    private int stockResultante;
+
+    @Column(columnDefinition = "TEXT")
+    private String observaciones;
+
+    private Double precioCompraUnitario;
+
+    private Double precioVentaUnitario;
+
+    private Double precioCompraTotal;
+
+    private Double precioVentaTotal;
+
+    @Column(length = 36)
+    private String referenciaTransferencia;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    private LocalDateTime fechaModificacion;
+
+    private String creadoPor;
+
+    private String modificadoPor;
+
+    // Copia sin persistir como Movimiento, para reutilizar los informes de la tabla caliente
+    public Movimiento comoMovimiento() {
+        Movimiento movimiento = new Movimiento();
+        movimiento.setId(id);
+        movimiento.setVariante(variante);
+        movimiento.setAlmacen(almacen);
+        movimiento.setTipo(tipo);
+        movimiento.setCantidad(cantidad);
+        movimiento.setStockResultante(stockResultante);
+        movimiento.setObservaciones(observaciones);
+        movimiento.setPrecioCompraUnitario(precioCompraUnitario);
+        movimiento.setPrecioVentaUnitario(precioVentaUnitario);
+        movimiento.setPrecioCompraTotal(precioCompraTotal);
+        movimiento.setPrecioVentaTotal(precioVentaTotal);
+        movimiento.setReferenciaTransferencia(referenciaTransferencia);
+        movimiento.setFechaCreacion(fechaCreacion);
+        movimiento.setFechaModificacion(fechaModificacion);
+        movimiento.setCreadoPor(creadoPor);
+        movimiento.setModificadoPor(modificadoPor);
+        return movimiento;
+    }
+
+    // Getters
+
+    public Long getId() {
+        return id;
+    }
+
+    public Variante getVariante() {
+        return variante;
+    }
+
+    public Almacen getAlmacen() {
+        return almacen;
+    }
+
+    public TipoMovimiento getTipo() {
+        return tipo;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    public int getStockResultante() {
+        return stockResultante;
+    }
+
+    public String getObservaciones() {
+        return observaciones;
+    }
+
+    public Double getPrecioCompraUnitario() {
+        return precioCompraUnitario;
+    }
+
+    public Double getPrecioVentaUnitario() {
+        return precioVentaUnitario;
+    }
+
+    public Double getPrecioCompraTotal() {
+        return precioCompraTotal;
+    }
+
+    public Double getPrecioVentaTotal() {
+        return precioVentaTotal;
+    }
+
+    public String getReferenciaTransferencia() {
+        return referenciaTransferencia;
+    }
+
+    public LocalDateTime getFechaCreacion() {
+        return fechaCreacion;
+    }
+
+    public LocalDateTime getFechaModificacion() {
+        return fechaModificacion;
+    }
+
+    public String getCreadoPor() {
+        return creadoPor;
+    }
+
+    public String getModificadoPor() {
+        return modificadoPor;
+    }
+}
@@ -0,0 +1,10 @@
+package org.watts.transaction.model;
+
+import org.watts.inventory.dto.CambioStock;
+
+import java.util.List;
+
+// Se publica dentro de la transacción que aplica uno o varios movimientos; los oyentes AFTER_COMMIT
+// solo lo reciben si la transacción se confirma
+public record MovimientosAplicadosEvent(List<CambioStock> cambios) {
+}
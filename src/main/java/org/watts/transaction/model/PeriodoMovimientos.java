@@ -0,0 +1,69 @@
+package org.watts.transaction.model;
+
+import jakarta.persistence.*;
+import org.watts.transaction.enums.EstadoPeriodo;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Mes de movimientos que se ha sacado (o se está sacando) de la tabla caliente al archivo
+@Entity
+@Table(name = "movimientos_periodos")
+public class PeriodoMovimientos {
+
+    // Primer día del mes
+    @Id
+    private LocalDate inicio;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private EstadoPeriodo estado;
+
+    // Movimientos trasladados al archivo
+    private long movimientos;
+
+    private LocalDateTime fechaArchivo;
+
+    // Constructor vacío (obligatorio en JPA/Hibernate)
+    public PeriodoMovimientos() {
+    }
+
+    public PeriodoMovimientos(LocalDate inicio) {
+        this.inicio = inicio;
+        this.estado = EstadoPeriodo.ARCHIVANDO;
+    }
+
+    // Getters y setters
+
+    public LocalDate getInicio() {
+        return inicio;
+    }
+
+    public void setInicio(LocalDate inicio) {
+        this.inicio = inicio;
+    }
+
+    public EstadoPeriodo getEstado() {
+        return estado;
+    }
+
+    public void setEstado(EstadoPeriodo estado) {
+        this.estado = estado;
+    }
+
+    public long getMovimientos() {
+        return movimientos;
+    }
+
+    public void setMovimientos(long movimientos) {
+        this.movimientos = movimientos;
+    }
+
+    public LocalDateTime getFechaArchivo() {
+        return fechaArchivo;
+    }
+
+    public void setFechaArchivo(LocalDateTime fechaArchivo) {
+        this.fechaArchivo = fechaArchivo;
+    }
+}
@@ -0,0 +1,81 @@
+package org.watts.transaction.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import org.watts.transaction.enums.TipoMovimiento;
+
+import java.time.LocalDate;
+
+// Totales de un día por variante, almacén y tipo de movimiento (ver ResumenDiarioService)
+// Se suman con cada movimiento aplicado; las consultas de ventas por periodo leen de aquí y no de movimientos
+@Entity
+@Table(name = "movimientos_diarios",
+        uniqueConstraints = @UniqueConstraint(name = "uk_movimientos_diarios",
+                columnNames = {"dia", "variante_id", "almacen_id", "tipo"}),
+        indexes = @Index(name = "idx_movimientos_diarios_tipo_dia", columnList = "tipo, dia"))
+public class ResumenMovimientosDia {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private LocalDate dia;
+
+    @Column(name = "variante_id")
+    private Long varianteId;
+
+    @Column(name = "almacen_id")
+    private Long almacenId;
+
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(length = 30)
+    private TipoMovimiento tipo;
+
+    private long numeroMovimientos;
+
+    private long cantidadTotal;
+
+    private double precioCompraTotal;
+
+    private double precioVentaTotal;
+
+    // Getters
+
+    public Long getId() {
+        return id;
+    }
+
+    public LocalDate getDia() {
+        return dia;
+    }
+
+    public Long getVarianteId() {
+        return varianteId;
+    }
+
+    public Long getAlmacenId() {
+        return almacenId;
+    }
+
+    public TipoMovimiento getTipo() {
+        return tipo;
+    }
+
+    public long getNumeroMovimientos() {
+        return numeroMovimientos;
+    }
+
+    public long getCantidadTotal() {
+        return cantidadTotal;
+    }
+
+    public double getPrecioCompraTotal() {
+        return precioCompraTotal;
+    }
+
+    public double getPrecioVentaTotal() {
+        return precioVentaTotal;
+    }
+}
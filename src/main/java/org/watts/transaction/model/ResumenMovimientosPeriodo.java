@@ -0,0 +1,94 @@
+package org.watts.transaction.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import org.watts.transaction.enums.TipoMovimiento;
+
+import java.time.LocalDate;
+
+// Totales de un mes archivado por variante, almacén y tipo de movimiento
+// Permite consultar la actividad de periodos antiguos sin recorrer el archivo
+@Entity
+@Table(name = "movimientos_resumen",
+        uniqueConstraints = @UniqueConstraint(name = "uk_movimientos_resumen",
+                columnNames = {"periodo", "variante_id", "almacen_id", "tipo"}))
+public class ResumenMovimientosPeriodo {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Primer día del mes
+    private LocalDate periodo;
+
+    @Column(name = "variante_id")
+    private Long varianteId;
+
+    @Column(name = "almacen_id")
+    private Long almacenId;
+
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(length = 30)
+    private TipoMovimiento tipo;
+
+    private long numeroMovimientos;
+
+    private long cantidadTotal;
+
+    private Double precioCompraTotal;
+
+    private Double precioVentaTotal;
+
+    // Último movimiento del grupo en el mes y stock que dejó
+    private Long ultimoMovimientoId;
+
+    private Integer stockFinal;
+
+    // Getters
+
+    public Long getId() {
+        return id;
+    }
+
+    public LocalDate getPeriodo() {
+        return periodo;
+    }
+
+    public Long getVarianteId() {
+        return varianteId;
+    }
+
+    public Long getAlmacenId() {
+        return almacenId;
+    }
+
+    public TipoMovimiento getTipo() {
+        return tipo;
+    }
+
+    public long getNumeroMovimientos() {
+        return numeroMovimientos;
+    }
+
+    public long getCantidadTotal() {
+        return cantidadTotal;
+    }
+
+    public Double getPrecioCompraTotal() {
+        return precioCompraTotal;
+    }
+
+    public Double getPrecioVentaTotal() {
+        return precioVentaTotal;
+    }
+
+    public Long getUltimoMovimientoId() {
+        return ultimoMovimientoId;
+    }
+
+    public Integer getStockFinal() {
+        return stockFinal;
+    }
+}
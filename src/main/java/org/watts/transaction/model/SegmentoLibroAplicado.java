@@ -0,0 +1,46 @@
+package org.watts.transaction.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+// Registro de los segmentos del diario del libro de stock ya volcados a la BDD
+// Se guarda en la misma transacción que el volcado, así al recuperar tras una caída no se aplica dos veces
+@Entity
+@Table(name = "libro_stock_segmentos")
+public class SegmentoLibroAplicado {
+
+    @Id
+    private String nombre;
+
+    private LocalDateTime fechaAplicacion;
+
+    // Constructor vacío (obligatorio en JPA/Hibernate)
+    public SegmentoLibroAplicado() {
+    }
+
+    public SegmentoLibroAplicado(String nombre, LocalDateTime fechaAplicacion) {
+        this.nombre = nombre;
+        this.fechaAplicacion = fechaAplicacion;
+    }
+
+    // Getters y setters
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public void setNombre(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public LocalDateTime getFechaAplicacion() {
+        return fechaAplicacion;
+    }
+
+    public void setFechaAplicacion(LocalDateTime fechaAplicacion) {
+        this.fechaAplicacion = fechaAplicacion;
+    }
+}
@@ -0,0 +1,52 @@
+package org.watts.transaction.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.watts.inventory.dto.StockVariante;
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.model.MovimientoArchivado;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MovimientoArchivadoRepository extends JpaRepository<MovimientoArchivado, Long>, JpaSpecificationExecutor<MovimientoArchivado> {
+
+    Page<MovimientoArchivado> findByVarianteId(Long varianteId, Pageable pageable);
+
+    long countByVarianteId(Long varianteId);
+
+    // Copia tal cual los movimientos indicados de la tabla caliente al archivo
+    @Modifying
+    @Query(value = "INSERT INTO movimientos_archivo (id, variante_id, almacen_id, tipo, cantidad, stock_resultante, " +
+            "observaciones, precio_compra_unitario, precio_venta_unitario, precio_compra_total, precio_venta_total, " +
+            "referencia_transferencia, fecha_creacion, fecha_modificacion, creado_por, modificado_por) " +
+            "SELECT id, variante_id, almacen_id, tipo, cantidad, stock_resultante, " +
+            "observaciones, precio_compra_unitario, precio_venta_unitario, precio_compra_total, precio_venta_total, " +
+            "referencia_transferencia, fecha_creacion, fecha_modificacion, creado_por, modificado_por " +
+            "FROM movimientos WHERE id IN (:ids)", nativeQuery = true)
+    int copiarDesdeMovimientos(@Param("ids") Collection<Long> ids);
+
+    // Variación neta de stock de una variante en un almacén por los movimientos en (desde, hasta]
+    @Query("select sum(case when m.tipo in :salidas then -m.cantidad else m.cantidad end) from MovimientoArchivado m " +
+            "where m.variante.id = :varianteId and m.almacen.id = :almacenId " +
+            "and m.fechaCreacion > :desde and m.fechaCreacion <= :hasta")
+    Long variacionStock(@Param("varianteId") Long varianteId, @Param("almacenId") Long almacenId,
+                        @Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta,
+                        @Param("salidas") Collection<TipoMovimiento> salidas);
+
+    // Lo mismo para todas las variantes de un almacén
+    @Query("select new org.watts.inventory.dto.StockVariante(m.variante.id, sum(case when m.tipo in :salidas then -m.cantidad else m.cantidad end)) " +
+            "from MovimientoArchivado m where m.almacen.id = :almacenId and m.fechaCreacion > :desde and m.fechaCreacion <= :hasta " +
+            "group by m.variante.id")
+    List<StockVariante> variacionStockPorAlmacen(@Param("almacenId") Long almacenId,
+                                                 @Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta,
+                                                 @Param("salidas") Collection<TipoMovimiento> salidas);
+}
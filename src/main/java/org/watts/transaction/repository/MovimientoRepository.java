@@ -4,11 +4,17 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.watts.inventory.dto.StockVariante;
 import org.watts.catalog.model.Producto;
+import org.watts.transaction.enums.TipoMovimiento;
 import org.watts.transaction.model.Movimiento;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -25,4 +31,32 @@ public interface MovimientoRepository extends JpaRepository<Movimiento, Long>, J
 
     // Buscar movimientos entre dos fechas específicas
     List<Movimiento> findByFechaCreacionBetween(LocalDateTime fechaInicio, LocalDateTime fechaFin);
+
+    // Fecha del movimiento más antiguo que sigue en la tabla caliente (null si está vacía)
+    @Query("select min(m.fechaCreacion) from Movimiento m")
+    LocalDateTime fechaMasAntigua();
+
+    // Siguiente tanda de ids de un periodo para trasladar al archivo
+    @Query("select m.id from Movimiento m where m.fechaCreacion >= :desde and m.fechaCreacion < :hasta order by m.id")
+    List<Long> idsEntre(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta, Pageable pageable);
+
+    @Modifying
+    @Query("delete from Movimiento m where m.id in :ids")
+    int borrarPorIds(@Param("ids") Collection<Long> ids);
+
+    // Variación neta de stock de una variante en un almacén por los movimientos en (desde, hasta]
+    @Query("select sum(case when m.tipo in :salidas then -m.cantidad else m.cantidad end) from Movimiento m " +
+            "where m.variante.id = :varianteId and m.almacen.id = :almacenId " +
+            "and m.fechaCreacion > :desde and m.fechaCreacion <= :hasta")
+    Long variacionStock(@Param("varianteId") Long varianteId, @Param("almacenId") Long almacenId,
+                        @Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta,
+                        @Param("salidas") Collection<TipoMovimiento> salidas);
+
+    // Lo mismo para todas las variantes de un almacén
+    @Query("select new org.watts.inventory.dto.StockVariante(m.variante.id, sum(case when m.tipo in :salidas then -m.cantidad else m.cantidad end)) " +
+            "from Movimiento m where m.almacen.id = :almacenId and m.fechaCreacion > :desde and m.fechaCreacion <= :hasta " +
+            "group by m.variante.id")
+    List<StockVariante> variacionStockPorAlmacen(@Param("almacenId") Long almacenId,
+                                                 @Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta,
+                                                 @Param("salidas") Collection<TipoMovimiento> salidas);
 }
@@ -0,0 +1,22 @@
+package org.watts.transaction.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.watts.transaction.enums.EstadoPeriodo;
+import org.watts.transaction.model.PeriodoMovimientos;
+
+import java.time.LocalDate;
+
+@Repository
+public interface PeriodoMovimientosRepository extends JpaRepository<PeriodoMovimientos, LocalDate> {
+
+    // Último mes que se ha empezado a archivar (null si ninguno)
+    @Query("select max(p.inicio) from PeriodoMovimientos p")
+    LocalDate ultimoIniciado();
+
+    // Último mes archivado por completo (null si ninguno)
+    @Query("select max(p.inicio) from PeriodoMovimientos p where p.estado = :estado")
+    LocalDate ultimoConEstado(@Param("estado") EstadoPeriodo estado);
+}
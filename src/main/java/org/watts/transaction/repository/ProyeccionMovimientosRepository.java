@@ -0,0 +1,99 @@
+package org.watts.transaction.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.stereotype.Repository;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.inventory.models.Almacen;
+import org.watts.shared.utils.LecturaContinua;
+import org.watts.transaction.dto.MovimientoResponse;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+// Listados de movimientos construidos directamente como MovimientoResponse en una sola consulta:
+// variante, producto, talla, color y almacén van en joins de la misma SELECT en vez de cargarse fila a fila.
+// Sirve para Movimiento y para MovimientoArchivado, que tienen los mismos atributos
+@Repository
+public class ProyeccionMovimientosRepository {
+
+    private final EntityManager entityManager;
+
+    public ProyeccionMovimientosRepository(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    // Filas que cumplen la especificación, en el orden y el trozo que indica el Pageable (todas si no está paginado)
+    public <T> List<MovimientoResponse> buscar(Class<T> entidad, Specification<T> spec, Pageable pageable) {
+        TypedQuery<MovimientoResponse> consulta = consulta(entidad, spec, pageable.getSort());
+        if (pageable.isPaged()) {
+            consulta.setFirstResult(Math.toIntExact(pageable.getOffset()));
+            consulta.setMaxResults(pageable.getPageSize());
+        }
+        return consulta.getResultList();
+    }
+
+    // Todas las filas que cumplen la especificación, leídas por bloques según se recorren (exportaciones)
+    // Hay que consumir el Stream dentro de una transacción y cerrarlo
+    public <T> Stream<MovimientoResponse> recorrer(Class<T> entidad, Specification<T> spec, Sort sort) {
+        return LecturaContinua.abrir(consulta(entidad, spec, sort));
+    }
+
+    private <T> TypedQuery<MovimientoResponse> consulta(Class<T> entidad, Specification<T> spec, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<MovimientoResponse> query = cb.createQuery(MovimientoResponse.class);
+        Root<T> root = query.from(entidad);
+
+        Join<T, Variante> variante = root.join("variante");
+        Join<Variante, Producto> producto = variante.join("producto", JoinType.LEFT);
+        Join<Variante, Talla> talla = variante.join("talla", JoinType.LEFT);
+        Join<Variante, Color> color = variante.join("color", JoinType.LEFT);
+        Join<T, Almacen> almacen = root.join("almacen");
+
+        query.select(cb.construct(MovimientoResponse.class,
+                root.get("id"),
+                root.get("fechaCreacion"),
+                root.get("creadoPor"),
+                root.get("tipo"),
+                root.get("cantidad"),
+                root.get("stockResultante"),
+                root.get("observaciones"),
+                variante.get("sku"),
+                producto.get("nombre"),
+                producto.get("caracteristicasTecnicas"),
+                talla.get("id"),
+                talla.get("nombre"),
+                color.get("id"),
+                color.get("nombre"),
+                almacen.get("id"),
+                almacen.get("descripcion"),
+                almacen.get("codigo"),
+                root.get("precioCompraUnitario"),
+                root.get("precioVentaUnitario"),
+                root.get("precioCompraTotal"),
+                root.get("precioVentaTotal"),
+                root.get("referenciaTransferencia")));
+
+        Predicate predicado = spec != null ? spec.toPredicate(root, query, cb) : null;
+        if (predicado != null) {
+            query.where(predicado);
+        }
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        return entityManager.createQuery(query);
+    }
+}
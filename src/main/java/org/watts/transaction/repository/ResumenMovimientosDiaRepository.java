@@ -0,0 +1,55 @@
+package org.watts.transaction.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.watts.transaction.dto.TotalesDiaVariante;
+import org.watts.transaction.dto.VentasDiaResponse;
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.model.ResumenMovimientosDia;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ResumenMovimientosDiaRepository extends JpaRepository<ResumenMovimientosDia, Long> {
+
+    // Totales por día de un tipo de movimiento entre dos días (inclusive), de un almacén o de todos
+    @Query("select new org.watts.transaction.dto.VentasDiaResponse(r.dia, sum(r.numeroMovimientos), sum(r.cantidadTotal), " +
+            "sum(r.precioCompraTotal), sum(r.precioVentaTotal)) from ResumenMovimientosDia r " +
+            "where r.tipo = :tipo and r.dia between :desde and :hasta and (:almacenId is null or r.almacenId = :almacenId) " +
+            "group by r.dia order by r.dia")
+    List<VentasDiaResponse> totalesPorDia(@Param("tipo") TipoMovimiento tipo,
+                                          @Param("desde") LocalDate desde,
+                                          @Param("hasta") LocalDate hasta,
+                                          @Param("almacenId") Long almacenId);
+
+    // Totales de un tipo de movimiento por día, almacén y variante, con el SKU (panel de control)
+    @Query("select new org.watts.transaction.dto.TotalesDiaVariante(r.dia, r.almacenId, r.varianteId, v.sku, r.cantidadTotal, " +
+            "r.precioCompraTotal, r.precioVentaTotal) from ResumenMovimientosDia r join Variante v on v.id = r.varianteId " +
+            "where r.tipo = :tipo and r.dia between :desde and :hasta")
+    List<TotalesDiaVariante> totalesPorVariante(@Param("tipo") TipoMovimiento tipo,
+                                                @Param("desde") LocalDate desde,
+                                                @Param("hasta") LocalDate hasta);
+
+    @Modifying
+    @Query("delete from ResumenMovimientosDia r where r.dia between :desde and :hasta")
+    int borrarEntre(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    // Agrupa en la BDD los movimientos del rango, estén en la tabla caliente o ya archivados
+    @Modifying
+    @Query(value = "INSERT INTO movimientos_diarios (dia, variante_id, almacen_id, tipo, numero_movimientos, " +
+            "cantidad_total, precio_compra_total, precio_venta_total) " +
+            "SELECT CAST(m.fecha_creacion AS DATE), m.variante_id, m.almacen_id, m.tipo, COUNT(*), SUM(m.cantidad), " +
+            "COALESCE(SUM(m.precio_compra_total), 0), COALESCE(SUM(m.precio_venta_total), 0) FROM (" +
+            "  SELECT fecha_creacion, variante_id, almacen_id, tipo, cantidad, precio_compra_total, precio_venta_total " +
+            "  FROM movimientos WHERE fecha_creacion >= :desde AND fecha_creacion < :hasta " +
+            "  UNION ALL " +
+            "  SELECT fecha_creacion, variante_id, almacen_id, tipo, cantidad, precio_compra_total, precio_venta_total " +
+            "  FROM movimientos_archivo WHERE fecha_creacion >= :desde AND fecha_creacion < :hasta" +
+            ") m GROUP BY CAST(m.fecha_creacion AS DATE), m.variante_id, m.almacen_id, m.tipo", nativeQuery = true)
+    int generar(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+}
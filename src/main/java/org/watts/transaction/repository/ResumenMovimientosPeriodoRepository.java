@@ -0,0 +1,39 @@
+package org.watts.transaction.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.watts.transaction.model.ResumenMovimientosPeriodo;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ResumenMovimientosPeriodoRepository extends JpaRepository<ResumenMovimientosPeriodo, Long> {
+
+    List<ResumenMovimientosPeriodo> findByPeriodoBetweenOrderByPeriodoAscVarianteIdAscAlmacenIdAsc(LocalDate desde, LocalDate hasta);
+
+    @Modifying
+    @Query("delete from ResumenMovimientosPeriodo r where r.periodo = :periodo")
+    int borrarPeriodo(@Param("periodo") LocalDate periodo);
+
+    // Agrupa en la BDD los movimientos del mes (todavía en la tabla caliente) por variante, almacén y tipo
+    @Modifying
+    @Query(value = "INSERT INTO movimientos_resumen (periodo, variante_id, almacen_id, tipo, numero_movimientos, " +
+            "cantidad_total, precio_compra_total, precio_venta_total, ultimo_movimiento_id) " +
+            "SELECT :periodo, m.variante_id, m.almacen_id, m.tipo, COUNT(*), SUM(m.cantidad), " +
+            "SUM(m.precio_compra_total), SUM(m.precio_venta_total), MAX(m.id) " +
+            "FROM movimientos m WHERE m.fecha_creacion >= :desde AND m.fecha_creacion < :hasta " +
+            "GROUP BY m.variante_id, m.almacen_id, m.tipo", nativeQuery = true)
+    int generar(@Param("periodo") LocalDate periodo,
+                @Param("desde") LocalDateTime desde,
+                @Param("hasta") LocalDateTime hasta);
+
+    @Modifying
+    @Query("update ResumenMovimientosPeriodo r set r.stockFinal = " +
+            "(select m.stockResultante from Movimiento m where m.id = r.ultimoMovimientoId) where r.periodo = :periodo")
+    int completarStockFinal(@Param("periodo") LocalDate periodo);
+}
@@ -0,0 +1,9 @@
+package org.watts.transaction.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.watts.transaction.model.SegmentoLibroAplicado;
+
+@Repository
+public interface SegmentoLibroAplicadoRepository extends JpaRepository<SegmentoLibroAplicado, String> {
+}
@@ -0,0 +1,212 @@
+package org.watts.transaction.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.watts.catalog.model.Variante;
+import org.watts.inventory.dto.InventarioResponse;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.models.Inventario;
+import org.watts.inventory.service.InventarioService;
+import org.watts.transaction.enums.TipoMovimiento;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Agrupa los movimientos sueltos que llegan a la vez para aplicarlos en una sola transacción (un solo commit)
+// Cada petición espera a su resultado individual: las que no tienen stock fallan solas y el resto se guarda
+@Service
+public class AgrupadorMovimientos {
+
+    private final MovimientoService movimientoService;
+    private final InventarioService inventarioService;
+    private final LibroStockMemoria libroStock;
+    private final AuditorAware<String> auditorProvider;
+
+    private final boolean activo;
+    private final long maxEsperaNanos;
+    private final int maxLote;
+    private final long timeoutMs;
+
+    private final BlockingQueue<Pendiente> cola = new LinkedBlockingQueue<>();
+    private volatile Thread hilo;
+    private volatile boolean detenido;
+
+    public AgrupadorMovimientos(MovimientoService movimientoService,
+                                InventarioService inventarioService,
+                                LibroStockMemoria libroStock,
+                                AuditorAware<String> auditorProvider,
+                                @Value("${movimientos.agrupacion.activa:true}") boolean activo,
+                                @Value("${movimientos.agrupacion.max-espera-ms:2}") long maxEsperaMs,
+                                @Value("${movimientos.agrupacion.max-lote:50}") int maxLote,
+                                @Value("${movimientos.agrupacion.timeout-ms:30000}") long timeoutMs
+    ) {
+        this.movimientoService = movimientoService;
+        this.inventarioService = inventarioService;
+        this.libroStock = libroStock;
+        this.auditorProvider = auditorProvider;
+        this.activo = activo;
+        this.maxEsperaNanos = TimeUnit.MILLISECONDS.toNanos(maxEsperaMs);
+        this.maxLote = maxLote;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @PostConstruct
+    void iniciar() {
+        if (!activo) return;
+        arrancar();
+    }
+
+    private synchronized void arrancar() {
+        if (detenido) return;
+        Thread nuevo = new Thread(this::ejecutar, "agrupador-movimientos");
+        nuevo.setDaemon(true);
+        hilo = nuevo;
+        nuevo.start();
+    }
+
+    // Si el bucle llega a salir sin que se haya pedido la parada, se arranca otro hilo:
+    // las peticiones que siguen en la cola las recoge el nuevo
+    private void ejecutar() {
+        try {
+            bucle();
+        } finally {
+            if (!detenido) {
+                System.err.println("ERROR: El hilo del agrupador de movimientos ha terminado, se arranca otro");
+                arrancar();
+            }
+        }
+    }
+
+    @PreDestroy
+    void detener() throws InterruptedException {
+        if (hilo == null) return;
+        detenido = true;
+        hilo.interrupt();
+        hilo.join(5000);
+        List<Pendiente> restantes = new ArrayList<>();
+        cola.drainTo(restantes);
+        restantes.forEach(p -> p.futuro().completeExceptionally(new RuntimeException("La aplicación se está deteniendo")));
+    }
+
+    // Metodo para procesar un movimiento suelto, mismo contrato que MovimientoService.procesarMovimiento
+    public InventarioResponse procesarMovimiento(
+            Variante variante,
+            Almacen almacen,
+            int cantidad,
+            TipoMovimiento tipo,
+            String observaciones,
+            Double precioCompraManual,
+            Double precioVentaManual
+    ) {
+        // Sin agrupación, o en modo memoria (allí no hay un commit por movimiento), vamos directos al servicio
+        // También si el llamante ya tiene una transacción abierta: el movimiento tiene que confirmarse con ella
+        if (!activo || libroStock.isActivo() || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return movimientoService.procesarMovimiento(variante, almacen, cantidad, tipo, observaciones,
+                    precioCompraManual, precioVentaManual);
+        }
+
+        PeticionMovimiento peticion = new PeticionMovimiento(variante, almacen, cantidad, tipo, observaciones,
+                precioCompraManual, precioVentaManual, auditorProvider.getCurrentAuditor().orElse(null));
+        CompletableFuture<Inventario> futuro = new CompletableFuture<>();
+        cola.add(new Pendiente(peticion, futuro));
+
+        try {
+            // El DTO se monta en el hilo de la petición, que es el dueño de la variante y el almacén cargados
+            // Nunca se espera indefinidamente: si se agota el plazo antes de que el grupo empiece, la petición
+            // se descarta; si el grupo ya estaba en curso, el resultado no se conoce y hay que consultarlo
+            return inventarioService.mapearADTO(futuro.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new RuntimeException("El movimiento no se ha confirmado a tiempo: consulta los movimientos antes de repetirlo");
+            }
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    private void bucle() {
+        List<Pendiente> grupo = new ArrayList<>(maxLote);
+        while (!detenido) {
+            try {
+                // Esperamos al primero y desde ahí recogemos lo que llegue hasta agotar el tiempo o llenar el grupo
+                grupo.add(cola.take());
+                long limite = System.nanoTime() + maxEsperaNanos;
+                while (grupo.size() < maxLote) {
+                    long restante = limite - System.nanoTime();
+                    Pendiente siguiente = restante > 0 ? cola.poll(restante, TimeUnit.NANOSECONDS) : cola.poll();
+                    if (siguiente == null) break;
+                    grupo.add(siguiente);
+                }
+                aplicar(grupo);
+            } catch (InterruptedException e) {
+                grupo.forEach(p -> p.futuro().completeExceptionally(new RuntimeException("La aplicación se está deteniendo")));
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable e) {
+                // Nunca dejamos a nadie esperando, tampoco ante un Error (sin memoria...)
+                RuntimeException fallo = e instanceof RuntimeException r ? r
+                        : new RuntimeException("Error inesperado al aplicar el movimiento: " + e);
+                grupo.forEach(p -> p.futuro().completeExceptionally(fallo));
+                if (e instanceof Error error) {
+                    // El hilo se sustituye por otro (ejecutar) en vez de seguir en un estado dudoso
+                    throw error;
+                }
+            } finally {
+                grupo.clear();
+            }
+        }
+    }
+
+    private void aplicar(List<Pendiente> grupo) {
+        // Las peticiones que ya han agotado su plazo no se aplican: su cliente ha recibido un error
+        grupo.removeIf(p -> p.futuro().isDone());
+        if (grupo.isEmpty()) return;
+
+        List<String> errores = new ArrayList<>(Collections.nCopies(grupo.size(), null));
+        List<Inventario> resultados;
+        try {
+            resultados = movimientoService.procesarGrupo(grupo.stream().map(Pendiente::peticion).toList(), errores);
+        } catch (RuntimeException e) {
+            // Un fallo inesperado (interbloqueo, caída de la BDD...) deshace el grupo entero,
+            // así que repetimos cada petición en su propia transacción para que solo falle la culpable
+            grupo.forEach(this::aplicarSuelto);
+            return;
+        }
+        completar(grupo, resultados, errores);
+    }
+
+    private void aplicarSuelto(Pendiente pendiente) {
+        List<String> errores = new ArrayList<>(Collections.singletonList(null));
+        try {
+            completar(List.of(pendiente), movimientoService.procesarGrupo(List.of(pendiente.peticion()), errores), errores);
+        } catch (RuntimeException e) {
+            pendiente.futuro().completeExceptionally(e);
+        }
+    }
+
+    private void completar(List<Pendiente> grupo, List<Inventario> resultados, List<String> errores) {
+        for (int i = 0; i < grupo.size(); i++) {
+            if (errores.get(i) != null) {
+                grupo.get(i).futuro().completeExceptionally(new RuntimeException(errores.get(i)));
+            } else {
+                grupo.get(i).futuro().complete(resultados.get(i));
+            }
+        }
+    }
+
+    private record Pendiente(PeticionMovimiento peticion, CompletableFuture<Inventario> futuro) {
+    }
+}
@@ -0,0 +1,153 @@
+package org.watts.transaction.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.watts.transaction.enums.EstadoPeriodo;
+import org.watts.transaction.model.PeriodoMovimientos;
+import org.watts.transaction.model.ResumenMovimientosPeriodo;
+import org.watts.transaction.repository.MovimientoArchivadoRepository;
+import org.watts.transaction.repository.MovimientoRepository;
+import org.watts.transaction.repository.PeriodoMovimientosRepository;
+import org.watts.transaction.repository.ResumenMovimientosPeriodoRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.Function;
+
+// Mantiene la tabla movimientos con solo los últimos meses: los meses cerrados se trasladan por tandas
+// a movimientos_archivo y dejan una fila de resumen por variante, almacén y tipo en movimientos_resumen
+// Así el tamaño de la tabla caliente (y la profundidad de sus índices) no crece con los años de histórico
+// Los límites entre tablas se leen de periodos_movimientos en cada consulta (todas las instancias ven el mismo
+// estado) y en la misma instantánea que las lecturas: un traslado copia y borra cada tanda en una transacción,
+// así que dentro de una instantánea cada movimiento está en una sola de las dos tablas
+@Service
+public class ArchivoMovimientosService {
+
+    // Qué tablas hay que consultar para un rango de fechas
+    public enum Tramo {
+        CALIENTE, ARCHIVO, AMBOS
+    }
+
+    private final MovimientoRepository movimientoRepository;
+    private final MovimientoArchivadoRepository movimientoArchivadoRepository;
+    private final PeriodoMovimientosRepository periodoMovimientosRepository;
+    private final ResumenMovimientosPeriodoRepository resumenRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate lectura;
+
+    private final boolean activo;
+    private final int mesesEnCaliente;
+    private final int tamanoTanda;
+
+    public ArchivoMovimientosService(MovimientoRepository movimientoRepository,
+                                     MovimientoArchivadoRepository movimientoArchivadoRepository,
+                                     PeriodoMovimientosRepository periodoMovimientosRepository,
+                                     ResumenMovimientosPeriodoRepository resumenRepository,
+                                     TransactionTemplate transactionTemplate,
+                                     @Value("${movimientos.archivo.activo:true}") boolean activo,
+                                     @Value("${movimientos.archivo.meses-en-caliente:12}") int mesesEnCaliente,
+                                     @Value("${movimientos.archivo.tamano-tanda:5000}") int tamanoTanda) {
+        this.movimientoRepository = movimientoRepository;
+        this.movimientoArchivadoRepository = movimientoArchivadoRepository;
+        this.periodoMovimientosRepository = periodoMovimientosRepository;
+        this.resumenRepository = resumenRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.lectura = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.lectura.setReadOnly(true);
+        this.lectura.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.activo = activo;
+        this.mesesEnCaliente = mesesEnCaliente;
+        this.tamanoTanda = tamanoTanda;
+    }
+
+    // Metodo para leer un rango de fechas: el tramo y las lecturas de la función comparten instantánea
+    public <T> T consultar(LocalDate fechaInicio, LocalDate fechaFin, Function<Tramo, T> lecturas) {
+        return lectura.execute(status -> lecturas.apply(tramo(fechaInicio, fechaFin)));
+    }
+
+    // Metodo para decidir qué tablas cubren el rango [fechaInicio, fechaFin] (ambos opcionales e inclusivos)
+    // Todo lo anterior a limiteArchivado está solo en el archivo / todo lo posterior a limiteCaliente solo en la tabla caliente
+    public Tramo tramo(LocalDate fechaInicio, LocalDate fechaFin) {
+        LocalDate iniciado = periodoMovimientosRepository.ultimoIniciado();
+        if (iniciado == null) {
+            return Tramo.CALIENTE;
+        }
+        LocalDateTime limiteCaliente = iniciado.plusMonths(1).atStartOfDay();
+        if (fechaInicio != null && !fechaInicio.atStartOfDay().isBefore(limiteCaliente)) {
+            return Tramo.CALIENTE;
+        }
+        LocalDate archivado = fechaFin == null ? null : periodoMovimientosRepository.ultimoConEstado(EstadoPeriodo.ARCHIVADO);
+        if (archivado != null && fechaFin.plusDays(1).atStartOfDay().compareTo(archivado.plusMonths(1).atStartOfDay()) <= 0) {
+            return Tramo.ARCHIVO;
+        }
+        return Tramo.AMBOS;
+    }
+
+    // Resúmenes de los meses archivados entre dos meses (inclusive)
+    public List<ResumenMovimientosPeriodo> resumenes(YearMonth desde, YearMonth hasta) {
+        return resumenRepository.findByPeriodoBetweenOrderByPeriodoAscVarianteIdAscAlmacenIdAsc(
+                desde.atDay(1), hasta.atDay(1));
+    }
+
+    // Archiva, del más antiguo al más reciente, los meses que ya no deben estar en caliente
+    @Scheduled(cron = "${movimientos.archivo.cron:0 30 3 * * *}")
+    public synchronized void archivarPeriodosCerrados() {
+        if (!activo) return;
+
+        YearMonth limite = YearMonth.now().minusMonths(mesesEnCaliente);
+        LocalDateTime masAntiguo = movimientoRepository.fechaMasAntigua();
+        while (masAntiguo != null && YearMonth.from(masAntiguo).isBefore(limite)) {
+            archivarPeriodo(YearMonth.from(masAntiguo));
+            masAntiguo = movimientoRepository.fechaMasAntigua();
+        }
+    }
+
+    // Metodo para trasladar un mes completo al archivo
+    // Cada tanda se copia y se borra en su propia transacción; si se corta a medias, se retoma donde lo dejó
+    public void archivarPeriodo(YearMonth mes) {
+        LocalDate inicio = mes.atDay(1);
+        LocalDateTime desde = inicio.atStartOfDay();
+        LocalDateTime hasta = mes.plusMonths(1).atDay(1).atStartOfDay();
+
+        // 1. Resumen del mes, calculado una sola vez y antes de mover nada
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!periodoMovimientosRepository.existsById(inicio)) {
+                resumenRepository.borrarPeriodo(inicio);
+                resumenRepository.generar(inicio, desde, hasta);
+                resumenRepository.completarStockFinal(inicio);
+                periodoMovimientosRepository.save(new PeriodoMovimientos(inicio));
+            }
+        });
+
+        // 2. Traslado por tandas
+        long trasladados = 0;
+        while (true) {
+            Integer tanda = transactionTemplate.execute(status -> {
+                List<Long> ids = movimientoRepository.idsEntre(desde, hasta, PageRequest.of(0, tamanoTanda));
+                if (ids.isEmpty()) return 0;
+                movimientoArchivadoRepository.copiarDesdeMovimientos(ids);
+                movimientoRepository.borrarPorIds(ids);
+                return ids.size();
+            });
+            if (tanda == null || tanda == 0) break;
+            trasladados += tanda;
+        }
+
+        // 3. Mes cerrado
+        long total = trasladados;
+        transactionTemplate.executeWithoutResult(status -> {
+            PeriodoMovimientos periodo = periodoMovimientosRepository.findById(inicio).orElseThrow();
+            periodo.setEstado(EstadoPeriodo.ARCHIVADO);
+            periodo.setMovimientos(periodo.getMovimientos() + total);
+            periodo.setFechaArchivo(LocalDateTime.now());
+        });
+
+        System.out.println("Archivados " + total + " movimientos de " + mes);
+    }
+}
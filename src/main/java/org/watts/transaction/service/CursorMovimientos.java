@@ -0,0 +1,52 @@
+package org.watts.transaction.service;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Comparator;
+
+// Posición en un listado de movimientos ordenado del más reciente al más antiguo por (fechaCreacion, id)
+// La página siguiente se lee con un WHERE sobre la última fila devuelta en vez de un OFFSET,
+// así cuesta lo mismo la primera página que la cinco mil. Para el cliente es un token opaco
+record CursorMovimientos(LocalDateTime fecha, Long id) {
+
+    static final Sort ORDEN = Sort.by(Sort.Order.desc("fechaCreacion"), Sort.Order.desc("id"));
+
+    static final Comparator<CursorMovimientos> MAS_RECIENTE_PRIMERO =
+            Comparator.comparing(CursorMovimientos::fecha).thenComparing(CursorMovimientos::id).reversed();
+
+    // Token: microsegundos desde la época y id, en base64 apto para URL
+    String codificar() {
+        long micros = ChronoUnit.MICROS.between(LocalDateTime.of(1970, 1, 1, 0, 0), fecha);
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((micros + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static CursorMovimientos leer(String token) {
+        try {
+            String[] partes = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+            if (partes.length != 2) {
+                throw new IllegalArgumentException();
+            }
+            long micros = Long.parseLong(partes[0]);
+            LocalDateTime fecha = LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                    (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+            return new CursorMovimientos(fecha, Long.parseLong(partes[1]));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Cursor no válido");
+        }
+    }
+
+    // Filas estrictamente posteriores al cursor en el orden del listado:
+    // fecha < f OR (fecha = f AND id < i), escrito para que la condición sobre la fecha use el índice
+    <T> Specification<T> siguientes() {
+        return (root, query, cb) -> cb.and(
+                cb.lessThanOrEqualTo(root.get("fechaCreacion"), fecha),
+                cb.or(cb.lessThan(root.get("fechaCreacion"), fecha), cb.lessThan(root.get("id"), id)));
+    }
+}
@@ -0,0 +1,112 @@
+package org.watts.transaction.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Diario de escritura anticipada (write-ahead) del libro de stock en memoria
+// Cada entrada se escribe y se fuerza a disco antes de confirmar el movimiento al cliente.
+// El diario se divide en segmentos: el volcado rota al siguiente y borra el anterior cuando está en la BDD
+class DiarioLibroStock {
+
+    private static final String PREFIJO = "segmento-";
+    private static final String EXTENSION = ".log";
+
+    private final Path directorio;
+    private final ObjectMapper objectMapper;
+    private final long arranque = System.currentTimeMillis();
+    private long secuencia;
+
+    private Path segmentoActual;
+    private FileChannel canal;
+
+    DiarioLibroStock(Path directorio, ObjectMapper objectMapper) throws IOException {
+        this.directorio = directorio;
+        this.objectMapper = objectMapper;
+        Files.createDirectories(directorio);
+    }
+
+    // Segmentos que quedaron en disco de una ejecución anterior, en el orden en que se escribieron
+    synchronized List<Path> segmentosExistentes() throws IOException {
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            return ficheros
+                    .filter(f -> f.getFileName().toString().startsWith(PREFIJO))
+                    .filter(f -> !f.equals(segmentoActual))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    // Escribe las entradas y no vuelve hasta que están en disco
+    synchronized void anotar(List<EntradaLibroStock> entradas) throws IOException {
+        if (canal == null) {
+            abrirNuevoSegmento();
+        }
+        StringBuilder lineas = new StringBuilder();
+        for (EntradaLibroStock entrada : entradas) {
+            lineas.append(objectMapper.writeValueAsString(entrada)).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lineas.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        canal.force(false);
+    }
+
+    // Cierra el segmento en curso y devuelve su ruta (null si no se había escrito nada)
+    synchronized Path rotar() throws IOException {
+        if (canal == null) {
+            return null;
+        }
+        canal.close();
+        canal = null;
+        Path cerrado = segmentoActual;
+        segmentoActual = null;
+        return cerrado;
+    }
+
+    // Lee las entradas de un segmento. Una última línea incompleta corresponde a una escritura
+    // que no llegó a confirmarse al cliente, así que se descarta
+    List<EntradaLibroStock> leer(Path segmento) throws IOException {
+        List<EntradaLibroStock> entradas = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(segmento, StandardCharsets.UTF_8)) {
+            String linea;
+            while ((linea = reader.readLine()) != null) {
+                if (linea.isBlank()) continue;
+                try {
+                    entradas.add(objectMapper.readValue(linea, EntradaLibroStock.class));
+                } catch (IOException e) {
+                    System.err.println("ADVERTENCIA: Se descarta una entrada incompleta del diario " + segmento.getFileName());
+                }
+            }
+        }
+        return entradas;
+    }
+
+    void borrar(Path segmento) throws IOException {
+        Files.deleteIfExists(segmento);
+    }
+
+    synchronized void cerrar() throws IOException {
+        if (canal != null) {
+            canal.close();
+            canal = null;
+        }
+    }
+
+    private void abrirNuevoSegmento() throws IOException {
+        // Marca de arranque + secuencia: el nombre no se repite entre ejecuciones y ordena cronológicamente
+        segmentoActual = directorio.resolve(String.format("%s%013d-%09d%s", PREFIJO, arranque, ++secuencia, EXTENSION));
+        canal = FileChannel.open(segmentoActual, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+}
@@ -0,0 +1,39 @@
+package org.watts.transaction.service;
+
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.model.Movimiento;
+
+// Línea del diario del libro de stock: todo lo necesario para reconstruir el Movimiento tras una caída
+record EntradaLibroStock(
+        Long varianteId,
+        Long almacenId,
+        TipoMovimiento tipo,
+        int cantidad,
+        int stockResultante,
+        String observaciones,
+        Double precioCompraUnitario,
+        Double precioVentaUnitario,
+        String usuario,
+        String referenciaTransferencia
+) {
+
+    static EntradaLibroStock de(Movimiento movimiento, String usuario) {
+        return new EntradaLibroStock(
+                movimiento.getVariante().getId(),
+                movimiento.getAlmacen().getId(),
+                movimiento.getTipo(),
+                movimiento.getCantidad(),
+                movimiento.getStockResultante(),
+                movimiento.getObservaciones(),
+                movimiento.getPrecioCompraUnitario(),
+                movimiento.getPrecioVentaUnitario(),
+                usuario,
+                movimiento.getReferenciaTransferencia()
+        );
+    }
+
+    // Cantidad con signo que aplica este movimiento al stock
+    int delta() {
+        return tipo.esSalida() ? -cantidad : cantidad;
+    }
+}
@@ -0,0 +1,413 @@
+package org.watts.transaction.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.watts.catalog.repository.VarianteRepository;
+import org.watts.inventory.repository.AlmacenRepository;
+import org.watts.shared.exception.ResourceNotFoundException;
+import org.watts.shared.service.EmailService;
+import org.watts.transaction.dto.ImportacionMovimientosResponse;
+import org.watts.transaction.dto.MovimientoLoteRequest;
+import org.watts.transaction.dto.MovimientoLoteResponse;
+import org.watts.transaction.dto.MovimientoRequest;
+import org.watts.transaction.dto.ResultadoLineaLote;
+import org.watts.transaction.enums.EstadoImportacion;
+import org.watts.transaction.enums.TipoMovimiento;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Importación de movimientos desde CSV (saldos iniciales, albaranes de proveedor...) sin una petición por línea.
+// El fichero se lee línea a línea: SKUs y almacenes se validan contra los cargados al empezar y las líneas válidas
+// se aplican en tramos de tamaño fijo, cada uno en su propia transacción (procesarLote), así que la memoria no
+// depende del tamaño del fichero. Las líneas rechazadas se escriben en un informe CSV en disco que se descarga al final.
+// Los ficheros grandes se procesan en segundo plano y se consulta el progreso por id.
+// El registro de importaciones vive en memoria de esta instancia
+@Service
+public class ImportacionMovimientosService {
+
+    static final String COLUMNAS = "sku,almacenId,cantidad,tipo[,observaciones,precioCompraUnitario,precioVentaUnitario]";
+
+    private static class Importacion {
+        final String id;
+        final Path errores;
+        final LocalDateTime inicio = LocalDateTime.now();
+        final AtomicLong leidas = new AtomicLong();
+        final AtomicLong aplicadas = new AtomicLong();
+        final AtomicLong rechazadas = new AtomicLong();
+        volatile EstadoImportacion estado = EstadoImportacion.EN_CURSO;
+        volatile LocalDateTime fin;
+        volatile String error;
+
+        Importacion(String id, Path errores) {
+            this.id = id;
+            this.errores = errores;
+        }
+
+        ImportacionMovimientosResponse respuesta() {
+            return new ImportacionMovimientosResponse(id, estado, leidas.get(), aplicadas.get(), rechazadas.get(),
+                    inicio, fin, error);
+        }
+    }
+
+    private final MovimientoService movimientoService;
+    private final VarianteRepository varianteRepository;
+    private final AlmacenRepository almacenRepository;
+    private final EmailService emailService;
+    private final int tamanoTramo;
+    private final long umbralSegundoPlano;
+    private final Duration retencion;
+
+    private final ConcurrentHashMap<String, Importacion> importaciones = new ConcurrentHashMap<>();
+
+    // Un solo hilo: dos importaciones grandes a la vez solo competirían por los mismos bloqueos de inventario
+    private final ExecutorService segundoPlano = Executors.newSingleThreadExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "importacion-movimientos");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    public ImportacionMovimientosService(MovimientoService movimientoService, VarianteRepository varianteRepository,
+                                         AlmacenRepository almacenRepository, EmailService emailService,
+                                         @Value("${movimientos.importacion.tamano-tramo:1000}") int tamanoTramo,
+                                         @Value("${movimientos.importacion.umbral-segundo-plano-bytes:5242880}") long umbralSegundoPlano,
+                                         @Value("${movimientos.importacion.retencion-horas:24}") long retencionHoras) {
+        this.movimientoService = movimientoService;
+        this.varianteRepository = varianteRepository;
+        this.almacenRepository = almacenRepository;
+        this.emailService = emailService;
+        this.tamanoTramo = tamanoTramo;
+        this.umbralSegundoPlano = umbralSegundoPlano;
+        this.retencion = Duration.ofHours(retencionHoras);
+    }
+
+    // Metodo para importar un CSV de movimientos
+    // Hasta el umbral se procesa dentro de la petición y se devuelve el resultado final; por encima se devuelve EN_CURSO
+    public ImportacionMovimientosResponse importar(MultipartFile archivo) {
+        if (archivo == null || archivo.isEmpty()) {
+            throw new RuntimeException("El fichero de movimientos está vacío");
+        }
+        Importacion importacion = registrar();
+
+        if (archivo.getSize() <= umbralSegundoPlano) {
+            ejecutar(importacion, archivo::getInputStream);
+            return importacion.respuesta();
+        }
+
+        // El fichero subido se borra al acabar la petición: se copia antes de pasarlo al hilo de fondo
+        Path copia;
+        try {
+            copia = Files.createTempFile("importacion-" + importacion.id + "-", ".csv");
+            archivo.transferTo(copia);
+        } catch (IOException e) {
+            importaciones.remove(importacion.id);
+            borrar(importacion.errores);
+            throw new RuntimeException("Error al guardar el fichero de movimientos: " + e.getMessage());
+        }
+        segundoPlano.submit(() -> {
+            try {
+                ejecutar(importacion, () -> Files.newInputStream(copia));
+            } finally {
+                borrar(copia);
+            }
+        });
+        return importacion.respuesta();
+    }
+
+    // Metodo para consultar el progreso de una importación
+    public ImportacionMovimientosResponse verImportacion(String id) {
+        return buscar(id).respuesta();
+    }
+
+    // Metodo para descargar el informe de líneas rechazadas (linea,error,contenido)
+    public Resource verErrores(String id) {
+        Importacion importacion = buscar(id);
+        if (importacion.estado == EstadoImportacion.EN_CURSO) {
+            throw new RuntimeException("La importación " + id + " sigue en curso");
+        }
+        return new FileSystemResource(importacion.errores);
+    }
+
+    // Olvida las importaciones terminadas hace más de la retención y borra sus informes
+    @Scheduled(fixedDelayString = "${movimientos.importacion.limpieza-ms:3600000}")
+    public void limpiarTerminadas() {
+        LocalDateTime limite = LocalDateTime.now().minus(retencion);
+        importaciones.values().removeIf(importacion -> {
+            boolean caducada = importacion.fin != null && importacion.fin.isBefore(limite);
+            if (caducada) {
+                borrar(importacion.errores);
+            }
+            return caducada;
+        });
+    }
+
+    @PreDestroy
+    void cerrar() {
+        segundoPlano.shutdownNow();
+    }
+
+    private Importacion registrar() {
+        String id = UUID.randomUUID().toString();
+        try {
+            Importacion importacion = new Importacion(id, Files.createTempFile("importacion-" + id + "-errores-", ".csv"));
+            importaciones.put(id, importacion);
+            return importacion;
+        } catch (IOException e) {
+            throw new RuntimeException("Error al preparar el informe de errores: " + e.getMessage());
+        }
+    }
+
+    private Importacion buscar(String id) {
+        Importacion importacion = importaciones.get(id);
+        if (importacion == null) {
+            throw new ResourceNotFoundException("Importacion", id);
+        }
+        return importacion;
+    }
+
+    // Lee el fichero entero y deja la importación TERMINADA o FALLIDA; no lanza nada, el resultado queda en el registro
+    private void ejecutar(Importacion importacion, Callable<InputStream> abrir) {
+        try (InputStream entrada = abrir.call();
+             BufferedWriter errores = Files.newBufferedWriter(importacion.errores, StandardCharsets.UTF_8)) {
+            errores.write("linea,error,contenido");
+            errores.newLine();
+            leer(importacion, entrada, errores);
+            importacion.estado = EstadoImportacion.TERMINADA;
+        } catch (Exception e) {
+            // Los tramos ya aplicados se quedan: cada uno se ha confirmado en su transacción
+            System.err.println("ERROR: Importación de movimientos " + importacion.id + " interrumpida: " + e.getMessage());
+            importacion.error = e.getMessage();
+            importacion.estado = EstadoImportacion.FALLIDA;
+        } finally {
+            importacion.fin = LocalDateTime.now();
+        }
+        avisar(importacion);
+    }
+
+    private void leer(Importacion importacion, InputStream entrada, BufferedWriter errores) throws IOException {
+        Set<String> skus = new HashSet<>(varianteRepository.findAllSkus());
+        Set<Long> almacenes = new HashSet<>(almacenRepository.findAllIds());
+
+        BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+        List<MovimientoRequest> tramo = new ArrayList<>(tamanoTramo);
+        List<Long> numeros = new ArrayList<>(tamanoTramo);
+        List<String> originales = new ArrayList<>(tamanoTramo);
+
+        String linea;
+        long numero = 0;
+        while ((linea = lector.readLine()) != null) {
+            numero++;
+            if (numero == 1) {
+                // BOM de Excel y cabecera opcional
+                linea = linea.startsWith("\uFEFF") ? linea.substring(1) : linea;
+                if (linea.toLowerCase().startsWith("sku,")) {
+                    continue;
+                }
+            }
+            if (linea.isBlank()) {
+                continue;
+            }
+            importacion.leidas.incrementAndGet();
+
+            MovimientoRequest request;
+            try {
+                request = interpretar(linea, skus, almacenes);
+            } catch (RuntimeException e) {
+                rechazar(importacion, errores, numero, e.getMessage(), linea);
+                continue;
+            }
+            tramo.add(request);
+            numeros.add(numero);
+            originales.add(linea);
+
+            if (tramo.size() == tamanoTramo) {
+                aplicar(importacion, errores, tramo, numeros, originales);
+                tramo.clear();
+                numeros.clear();
+                originales.clear();
+            }
+        }
+        if (!tramo.isEmpty()) {
+            aplicar(importacion, errores, tramo, numeros, originales);
+        }
+    }
+
+    // Un tramo es un lote parcial: se aplican las líneas con stock suficiente y el resto va al informe
+    private void aplicar(Importacion importacion, BufferedWriter errores, List<MovimientoRequest> tramo,
+                         List<Long> numeros, List<String> originales) throws IOException {
+        MovimientoLoteResponse resultado;
+        try {
+            resultado = movimientoService.procesarLote(new MovimientoLoteRequest(List.copyOf(tramo), false), false);
+        } catch (RuntimeException e) {
+            // La transacción del tramo se ha deshecho entera; los tramos siguientes se intentan igualmente
+            System.err.println("ERROR: Tramo de la importación " + importacion.id + " no aplicado: " + e.getMessage());
+            for (int i = 0; i < tramo.size(); i++) {
+                rechazar(importacion, errores, numeros.get(i), "Tramo no aplicado: " + e.getMessage(), originales.get(i));
+            }
+            return;
+        }
+
+        for (ResultadoLineaLote linea : resultado.resultados()) {
+            if (linea.aplicado()) {
+                importacion.aplicadas.incrementAndGet();
+            } else {
+                int i = linea.linea() - 1;
+                rechazar(importacion, errores, numeros.get(i), linea.error(), originales.get(i));
+            }
+        }
+        errores.flush();
+    }
+
+    private void rechazar(Importacion importacion, BufferedWriter errores, long numero, String error, String linea)
+            throws IOException {
+        importacion.rechazadas.incrementAndGet();
+        errores.write(numero + ",\"" + escapar(error) + "\",\"" + escapar(linea) + "\"");
+        errores.newLine();
+    }
+
+    // Un único aviso por importación en lugar de uno por tramo
+    private void avisar(Importacion importacion) {
+        if (importacion.aplicadas.get() == 0) {
+            return;
+        }
+        String contenido = """
+            <h3>Importación de movimientos de inventario</h3>
+            <p><b>Estado:</b> %s</p>
+            <p><b>Movimientos aplicados:</b> %d</p>
+            <p><b>Movimientos rechazados:</b> %d</p>
+        """.formatted(importacion.estado, importacion.aplicadas.get(), importacion.rechazadas.get());
+        try {
+            emailService.enviarNotificacionMovimiento("Importación de movimientos registrada", contenido);
+        } catch (RuntimeException e) {
+            System.err.println("ERROR: No se pudo registrar el aviso de la importación " + importacion.id + ": " + e.getMessage());
+        }
+    }
+
+    // Metodo para convertir una línea del CSV en un movimiento, validando todo lo que no depende del stock
+    static MovimientoRequest interpretar(String linea, Set<String> skus, Set<Long> almacenes) {
+        List<String> campos = partir(linea);
+        if (campos.size() < 4 || campos.size() > 7) {
+            throw new RuntimeException("Se esperaban las columnas " + COLUMNAS);
+        }
+
+        String sku = campos.get(0).trim();
+        if (!skus.contains(sku)) {
+            throw new RuntimeException("Variante no encontrada con el SKU: " + sku);
+        }
+        long almacenId = entero(campos.get(1), "almacenId");
+        if (!almacenes.contains(almacenId)) {
+            throw new RuntimeException("Almacen no encontrado con el ID: " + almacenId);
+        }
+        long cantidad = entero(campos.get(2), "cantidad");
+        if (cantidad < 1 || cantidad > Integer.MAX_VALUE) {
+            throw new RuntimeException("La cantidad debe ser mayor que 0");
+        }
+
+        TipoMovimiento tipo;
+        try {
+            tipo = TipoMovimiento.valueOf(campos.get(3).trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Tipo de movimiento no válido: " + campos.get(3).trim());
+        }
+        if (tipo.esTransferencia()) {
+            throw new RuntimeException("Las transferencias se registran en /api/movimientos/transferencia");
+        }
+
+        String observaciones = campos.size() > 4 && !campos.get(4).isBlank() ? campos.get(4).trim() : null;
+        Double precioCompra = campos.size() > 5 ? precio(campos.get(5), "compra") : null;
+        Double precioVenta = campos.size() > 6 ? precio(campos.get(6), "venta") : null;
+
+        return new MovimientoRequest(sku, almacenId, (int) cantidad, tipo, observaciones, precioCompra, precioVenta);
+    }
+
+    // Separa una línea por comas respetando los campos entre comillas ("" dentro de comillas es una comilla)
+    static List<String> partir(String linea) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c != '"') {
+                    campo.append(c);
+                } else if (i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else {
+                    entreComillas = false;
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        if (entreComillas) {
+            throw new RuntimeException("Comillas sin cerrar");
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+
+    private static long entero(String valor, String columna) {
+        try {
+            return Long.parseLong(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Valor no válido en " + columna + ": " + valor.trim());
+        }
+    }
+
+    private static Double precio(String valor, String tipo) {
+        if (valor.isBlank()) {
+            return null; // Se usará el de la variante
+        }
+        double precio;
+        try {
+            precio = Double.parseDouble(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Precio de " + tipo + " no válido: " + valor.trim());
+        }
+        if (precio < 0) {
+            throw new RuntimeException("El precio de " + tipo + " no puede ser negativo");
+        }
+        return precio;
+    }
+
+    private static String escapar(String texto) {
+        return texto == null ? "" : texto.replace("\"", "\"\"");
+    }
+
+    private static void borrar(Path fichero) {
+        try {
+            Files.deleteIfExists(fichero);
+        } catch (IOException e) {
+            System.err.println("ERROR: No se pudo borrar " + fichero + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package org.watts.transaction.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.watts.catalog.repository.VarianteRepository;
+import org.watts.inventory.models.ClaveInventario;
+import org.watts.inventory.repository.AlmacenRepository;
+import org.watts.inventory.service.InventarioService;
+import org.watts.inventory.service.RetencionesStock;
+import org.watts.inventory.service.ValoracionInventarioService;
+import org.watts.shared.exception.ConflictoException;
+import org.watts.transaction.model.Movimiento;
+import org.watts.transaction.model.SegmentoLibroAplicado;
+import org.watts.transaction.repository.MovimientoRepository;
+import org.watts.transaction.repository.SegmentoLibroAplicadoRepository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Libro de stock en memoria para el modo inventario.stock.modo=memoria
+// Valida los movimientos sobre un mapa en memoria protegido por franjas de candados y, al confirmar la
+// transacción que los registra, los anota en un diario en disco y los aplica al mapa. Después se vuelcan
+// a la BDD en segundo plano (deltas agrupados por variante / almacén más las filas de movimientos).
+// En este modo el libro es el único que escribe stock: los caminos directos de movimientos (updateStock,
+// lotes sobre filas bloqueadas, agrupador) no se usan, procesarGrupo lo rechaza y la reparación de la
+// conciliación se niega. La única escritura en inventario es aplicarDelta desde volcar(), así que la
+// comprobación de stock insuficiente en memoria da la misma garantía que la resta condicionada de la BDD.
+// Las salidas respetan lo retenido por reservas (RetencionesStock), que se valida aquí bajo las mismas franjas
+@Service
+public class LibroStockMemoria {
+
+    // Espera máxima por una franja menor que otra ya tomada en la misma transacción (fuera de orden)
+    private static final long ESPERA_FUERA_DE_ORDEN_MS = 2000;
+
+    private final InventarioService inventarioService;
+    private final RetencionesStock retenciones;
+    private final ValoracionInventarioService valoracionService;
+    private final ResumenDiarioService resumenDiarioService;
+    private final MovimientoRepository movimientoRepository;
+    private final SegmentoLibroAplicadoRepository segmentoRepository;
+    private final VarianteRepository varianteRepository;
+    private final AlmacenRepository almacenRepository;
+    private final AuditorAware<String> auditorProvider;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    private final boolean activo;
+    private final Path directorioDiario;
+    private final ReentrantLock[] franjas;
+
+    // Stock vigente por (variante, almacén), cargado de la BDD la primera vez que se usa
+    private final Map<ClaveInventario, Integer> stock = new ConcurrentHashMap<>();
+
+    // Entradas anotadas en el segmento en curso del diario (protegidas por el monitor del diario)
+    private List<EntradaLibroStock> enCurso = new ArrayList<>();
+
+    // Segmentos cerrados que aún no se han confirmado en la BDD, en orden (solo los usa el volcado)
+    private final Deque<SegmentoPendiente> porVolcar = new ArrayDeque<>();
+
+    private DiarioLibroStock diario;
+
+    public LibroStockMemoria(InventarioService inventarioService,
+                             RetencionesStock retenciones,
+                             ValoracionInventarioService valoracionService,
+                             ResumenDiarioService resumenDiarioService,
+                             MovimientoRepository movimientoRepository,
+                             SegmentoLibroAplicadoRepository segmentoRepository,
+                             VarianteRepository varianteRepository,
+                             AlmacenRepository almacenRepository,
+                             AuditorAware<String> auditorProvider,
+                             TransactionTemplate transactionTemplate,
+                             EntityManager entityManager,
+                             ObjectMapper objectMapper,
+                             @Value("${inventario.stock.modo:directo}") String modo,
+                             @Value("${inventario.stock.memoria.directorio-diario:./data/libro-stock}") String directorioDiario,
+                             @Value("${inventario.stock.memoria.franjas:64}") int numeroFranjas
+    ) {
+        this.inventarioService = inventarioService;
+        this.retenciones = retenciones;
+        this.valoracionService = valoracionService;
+        this.resumenDiarioService = resumenDiarioService;
+        this.movimientoRepository = movimientoRepository;
+        this.segmentoRepository = segmentoRepository;
+        this.varianteRepository = varianteRepository;
+        this.almacenRepository = almacenRepository;
+        this.auditorProvider = auditorProvider;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.activo = "memoria".equalsIgnoreCase(modo);
+        this.directorioDiario = Path.of(directorioDiario);
+        this.franjas = new ReentrantLock[numeroFranjas];
+        for (int i = 0; i < numeroFranjas; i++) {
+            franjas[i] = new ReentrantLock();
+        }
+    }
+
+    public boolean isActivo() {
+        return activo;
+    }
+
+    // Al arrancar se vuelcan los segmentos que quedaron de una ejecución anterior.
+    // Hasta que no estén en la BDD no se puede cargar stock de ella, así que si falla no arrancamos
+    @PostConstruct
+    void iniciar() throws IOException {
+        if (!activo) return;
+
+        diario = new DiarioLibroStock(directorioDiario, objectMapper);
+        for (Path segmento : diario.segmentosExistentes()) {
+            porVolcar.addLast(new SegmentoPendiente(segmento, diario.leer(segmento)));
+        }
+        if (!porVolcar.isEmpty()) {
+            System.out.println("Recuperando " + porVolcar.size() + " segmentos del diario del libro de stock");
+            volcar();
+            if (!porVolcar.isEmpty()) {
+                throw new IllegalStateException("No se pudo volcar el diario del libro de stock en " + directorioDiario);
+            }
+        }
+    }
+
+    @PreDestroy
+    void detener() throws IOException {
+        if (!activo) return;
+        volcar();
+        diario.cerrar();
+    }
+
+    // Metodo para registrar un movimiento suelto. Lanza excepción si no hay stock suficiente
+    public void registrar(Movimiento movimiento) {
+        List<String> errores = new ArrayList<>();
+        errores.add(null);
+        registrarTodos(List.of(movimiento), errores, true);
+        if (errores.get(0) != null) {
+            throw new RuntimeException(errores.get(0));
+        }
+    }
+
+    // Metodo para registrar varios movimientos de golpe (lotes)
+    // Los candidatos nulos son líneas ya rechazadas; los errores se escriben en la misma posición de la lista.
+    // A los movimientos aplicados se les rellena el stockResultante.
+    // Dentro de una transacción los movimientos quedan pendientes con sus franjas tomadas: se anotan en el
+    // diario y se aplican al mapa justo antes de confirmarla, y si se deshace no queda nada. Sin transacción
+    // se anotan en el acto
+    public void registrarTodos(List<Movimiento> candidatos, List<String> errores, boolean todoONada) {
+        // Tomamos las franjas siempre en orden ascendente para no bloquearnos con otro lote
+        Set<Integer> indices = new TreeSet<>();
+        for (Movimiento movimiento : candidatos) {
+            if (movimiento != null) {
+                indices.add(franja(clave(movimiento)));
+            }
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Pendiente pendiente = new Pendiente();
+            try {
+                pendiente.tomar(indices);
+                aplicar(candidatos, errores, todoONada, pendiente);
+                confirmar(pendiente);
+            } finally {
+                pendiente.soltar();
+            }
+            return;
+        }
+
+        Pendiente pendiente = pendienteDeLaTransaccion();
+        pendiente.tomar(indices);
+        aplicar(candidatos, errores, todoONada, pendiente);
+    }
+
+    // Metodo para retener stock de una reserva. Valida contra el stock vigente y lo retenido con la franja de la
+    // clave tomada hasta que termina la transacción de la reserva (si se deshace, ReservaStockService lo devuelve).
+    // Cuenta también lo que sale con reservas confirmadas que aún no han terminado
+    public void retener(ClaveInventario clave, int cantidad) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Las reservas del libro de stock necesitan una transacción");
+        }
+        Pendiente pendiente = pendienteDeLaTransaccion();
+        pendiente.tomar(Set.of(franja(clave)));
+
+        int stockActual = pendiente.stock.containsKey(clave) ? pendiente.stock.get(clave) : stockVigente(clave);
+        int yaRetenido = retenciones.comprometido(clave);
+        if (stockActual - yaRetenido < cantidad) {
+            throw new ConflictoException("Stock disponible insuficiente. Disponible: " + Math.max(0, stockActual - yaRetenido)
+                    + ", intentas reservar: " + cantidad);
+        }
+        retenciones.sumar(clave, cantidad);
+    }
+
+    private Pendiente pendienteDeLaTransaccion() {
+        Pendiente pendiente = (Pendiente) TransactionSynchronizationManager.getResource(this);
+        if (pendiente == null) {
+            pendiente = new Pendiente();
+            TransactionSynchronizationManager.bindResource(this, pendiente);
+            TransactionSynchronizationManager.registerSynchronization(pendiente);
+        }
+        return pendiente;
+    }
+
+    private void aplicar(List<Movimiento> candidatos, List<String> errores, boolean todoONada, Pendiente pendiente) {
+        // Validamos sobre una copia para no dejar lo pendiente a medias si hay que descartar el lote
+        Map<ClaveInventario, Integer> stockEnCurso = new HashMap<>();
+        boolean hayErrores = errores.stream().anyMatch(e -> e != null);
+
+        for (int i = 0; i < candidatos.size(); i++) {
+            Movimiento movimiento = candidatos.get(i);
+            if (movimiento == null) continue;
+
+            ClaveInventario clave = clave(movimiento);
+            int stockActual = stockEnCurso.computeIfAbsent(clave,
+                    c -> pendiente.stock.containsKey(c) ? pendiente.stock.get(c) : stockVigente(c));
+
+            // Las salidas no pueden tocar el stock reservado
+            int reservado = movimiento.getTipo().esSalida() ? retenciones.reservado(clave) : 0;
+            if (movimiento.getTipo().esSalida() && stockActual - reservado < movimiento.getCantidad()) {
+                errores.set(i, "Stock insuficiente. Tienes: " + stockActual
+                        + (reservado > 0 ? " (" + reservado + " reservado)" : "") + ", intentas sacar: " + movimiento.getCantidad());
+                hayErrores = true;
+                continue;
+            }
+            int nuevoStock = movimiento.getTipo().esSalida()
+                    ? stockActual - movimiento.getCantidad()
+                    : stockActual + movimiento.getCantidad();
+            stockEnCurso.put(clave, nuevoStock);
+            movimiento.setStockResultante(nuevoStock);
+        }
+
+        if (todoONada && hayErrores) return;
+
+        String usuario = auditorProvider.getCurrentAuditor().orElse(null);
+        for (int i = 0; i < candidatos.size(); i++) {
+            if (candidatos.get(i) != null && errores.get(i) == null) {
+                pendiente.entradas.add(EntradaLibroStock.de(candidatos.get(i), usuario));
+            }
+        }
+        pendiente.stock.putAll(stockEnCurso);
+    }
+
+    // Primero al diario (en disco) y solo después al mapa: si falla la escritura no ha cambiado nada
+    private void confirmar(Pendiente pendiente) {
+        if (pendiente.entradas.isEmpty()) return;
+
+        synchronized (diario) {
+            try {
+                diario.anotar(pendiente.entradas);
+            } catch (IOException e) {
+                throw new RuntimeException("Error al escribir el diario del libro de stock: " + e.getMessage());
+            }
+            enCurso.addAll(pendiente.entradas);
+        }
+        stock.putAll(pendiente.stock);
+    }
+
+    // Stock de una clave con su franja ya tomada
+    private int stockVigente(ClaveInventario clave) {
+        Integer actual = stock.get(clave);
+        if (actual == null) {
+            actual = inventarioService.stockActual(clave.varianteId(), clave.almacenId());
+            stock.put(clave, actual);
+        }
+        return actual;
+    }
+
+    // Metodo que vuelca a la BDD lo anotado en el diario
+    // Cada segmento va en su propia transacción junto con su marca de aplicado; si algo falla se
+    // reintenta en la siguiente pasada sin perder el orden
+    @Scheduled(fixedDelayString = "${inventario.stock.memoria.intervalo-volcado-ms:200}")
+    public synchronized void volcar() {
+        if (!activo) return;
+
+        synchronized (diario) {
+            try {
+                Path cerrado = diario.rotar();
+                if (cerrado != null) {
+                    porVolcar.addLast(new SegmentoPendiente(cerrado, enCurso));
+                    enCurso = new ArrayList<>();
+                }
+            } catch (IOException e) {
+                System.err.println("ERROR: No se pudo rotar el diario del libro de stock: " + e.getMessage());
+                return;
+            }
+        }
+
+        while (!porVolcar.isEmpty()) {
+            SegmentoPendiente pendiente = porVolcar.peekFirst();
+            try {
+                transactionTemplate.executeWithoutResult(estado -> aplicarEnBdd(pendiente));
+                diario.borrar(pendiente.ruta());
+                porVolcar.removeFirst();
+            } catch (RuntimeException | IOException e) {
+                System.err.println("ERROR: No se pudo volcar el segmento " + pendiente.ruta().getFileName()
+                        + ", se reintentará: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void aplicarEnBdd(SegmentoPendiente pendiente) {
+        String nombre = pendiente.ruta().getFileName().toString();
+        // Ya se aplicó, pero no llegó a borrarse el fichero antes de una caída
+        if (segmentoRepository.existsById(nombre)) return;
+
+        // Un UPDATE por variante / almacén, en orden, aunque el segmento tenga miles de movimientos
+        Map<ClaveInventario, Integer> deltas = new TreeMap<>();
+        for (EntradaLibroStock entrada : pendiente.entradas()) {
+            deltas.merge(new ClaveInventario(entrada.varianteId(), entrada.almacenId()), entrada.delta(), Integer::sum);
+        }
+        deltas.forEach((clave, delta) -> inventarioService.aplicarDelta(clave.varianteId(), clave.almacenId(), delta));
+
+        List<Movimiento> movimientos = movimientoRepository.saveAll(pendiente.entradas().stream().map(this::aMovimiento).toList());
+        valoracionService.registrar(movimientos);
+        resumenDiarioService.registrar(movimientos);
+        segmentoRepository.save(new SegmentoLibroAplicado(nombre, LocalDateTime.now()));
+    }
+
+    private Movimiento aMovimiento(EntradaLibroStock entrada) {
+        Movimiento movimiento = new Movimiento();
+        movimiento.setVariante(varianteRepository.getReferenceById(entrada.varianteId()));
+        movimiento.setAlmacen(almacenRepository.getReferenceById(entrada.almacenId()));
+        movimiento.setTipo(entrada.tipo());
+        movimiento.setCantidad(entrada.cantidad());
+        movimiento.setStockResultante(entrada.stockResultante());
+        movimiento.setObservaciones(entrada.observaciones());
+        movimiento.setPrecioCompraUnitario(entrada.precioCompraUnitario());
+        movimiento.setPrecioVentaUnitario(entrada.precioVentaUnitario());
+        movimiento.setPrecioCompraTotal(entrada.precioCompraUnitario() != null ? entrada.precioCompraUnitario() * entrada.cantidad() : 0.0);
+        movimiento.setPrecioVentaTotal(entrada.precioVentaUnitario() != null ? entrada.precioVentaUnitario() * entrada.cantidad() : 0.0);
+        // El volcado corre sin usuario en contexto, la auditoría respeta el que ya viene relleno
+        movimiento.setCreadoPor(entrada.usuario());
+        movimiento.setReferenciaTransferencia(entrada.referenciaTransferencia());
+        return movimiento;
+    }
+
+    private ClaveInventario clave(Movimiento movimiento) {
+        return new ClaveInventario(movimiento.getVariante().getId(), movimiento.getAlmacen().getId());
+    }
+
+    private int franja(ClaveInventario clave) {
+        return Math.floorMod(clave.hashCode(), franjas.length);
+    }
+
+    private record SegmentoPendiente(Path ruta, List<EntradaLibroStock> entradas) {
+    }
+
+    // Movimientos validados por una transacción que todavía no se ha confirmado, con las franjas que los protegen.
+    // Las franjas no se sueltan hasta que la transacción termina, así nadie valida contra un stock que aún puede cambiar
+    private final class Pendiente implements TransactionSynchronization {
+        private final Map<ClaveInventario, Integer> stock = new HashMap<>();
+        private final List<EntradaLibroStock> entradas = new ArrayList<>();
+        private final TreeSet<Integer> tomadas = new TreeSet<>();
+
+        // Una segunda llamada en la misma transacción puede necesitar franjas menores que las que ya tiene:
+        // esas no se esperan indefinidamente (podría ser un interbloqueo con otra transacción) y si no se
+        // consiguen a tiempo la transacción falla
+        void tomar(Set<Integer> indices) {
+            for (int indice : indices) {
+                if (tomadas.contains(indice)) continue;
+                if (tomadas.isEmpty() || indice > tomadas.last()) {
+                    franjas[indice].lock();
+                } else if (!intentar(franjas[indice])) {
+                    throw new RuntimeException("El libro de stock está ocupado, vuelve a intentarlo");
+                }
+                tomadas.add(indice);
+            }
+        }
+
+        void soltar() {
+            for (Integer indice : tomadas.descendingSet()) {
+                franjas[indice].unlock();
+            }
+            tomadas.clear();
+        }
+
+        // Lo último antes del COMMIT: se envía a la BDD lo que tenga pendiente la sesión (bandeja de salida,
+        // claves de idempotencia...) para que un fallo ahí deshaga la transacción antes de tocar el diario.
+        // Si el COMMIT falla después de anotar, el movimiento queda aplicado igualmente: el diario manda
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (!entradas.isEmpty()) {
+                entityManager.flush();
+            }
+            confirmar(this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(LibroStockMemoria.this);
+            soltar();
+        }
+    }
+
+    private static boolean intentar(ReentrantLock candado) {
+        try {
+            return candado.tryLock(ESPERA_FUERA_DE_ORDEN_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
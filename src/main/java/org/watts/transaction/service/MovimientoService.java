@@ -3,31 +3,77 @@ package org.watts.transaction.service;
 import jakarta.transaction.Transactional;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.JoinType;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 import org.watts.catalog.model.Producto;
 import org.watts.catalog.model.Variante;
+import org.watts.catalog.repository.VarianteRepository;
 import org.watts.inventory.dto.InventarioResponse;
 import org.watts.inventory.models.Almacen;
+import org.watts.inventory.models.ClaveInventario;
 import org.watts.inventory.models.Inventario;
+import org.watts.inventory.repository.AlmacenRepository;
+import org.watts.inventory.dto.CambioStock;
 import org.watts.inventory.service.InventarioService;
+import org.watts.inventory.service.ValoracionInventarioService;
+import org.watts.inventory.service.ReservaStockService;
+import org.watts.inventory.service.RetencionesStock;
 import org.watts.security.user.repository.UsuarioRepository;
+import org.watts.shared.enums.ModoTotal;
+import org.watts.shared.exception.ResourceNotFoundException;
 import org.watts.shared.service.EmailService;
+import org.watts.shared.service.PaginacionService;
 import org.watts.shared.service.ReportService;
+import org.watts.shared.utils.PaginaDesplazada;
 import org.watts.shared.utils.SpecificationUtils;
+import org.watts.transaction.dto.MovimientoLoteRequest;
+import org.watts.transaction.dto.MovimientoLoteResponse;
+import org.watts.transaction.dto.MovimientoRequest;
+import org.watts.transaction.dto.MovimientoFiltro;
 import org.watts.transaction.dto.MovimientoResponse;
+import org.watts.transaction.dto.MovimientosCursorResponse;
+import org.watts.transaction.dto.ResumenPeriodoResponse;
+import org.watts.transaction.dto.ResultadoLineaLote;
+import org.watts.transaction.dto.ResultadoLineaTransferencia;
+import org.watts.transaction.dto.LineaTransferencia;
+import org.watts.transaction.dto.TransferenciaRequest;
+import org.watts.transaction.dto.TransferenciaResponse;
 import org.watts.transaction.enums.TipoMovimiento;
 import org.watts.transaction.model.Movimiento;
+import org.watts.transaction.model.MovimientosAplicadosEvent;
+import org.watts.transaction.model.MovimientoArchivado;
+import org.watts.transaction.repository.MovimientoArchivadoRepository;
 import org.watts.transaction.repository.MovimientoRepository;
+import org.watts.transaction.repository.ProyeccionMovimientosRepository;
 import org.watts.transaction.mapper.MovimientoMapper;
 import jakarta.persistence.criteria.Predicate;
 
 import java.io.OutputStream;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class MovimientoService {
@@ -37,18 +83,57 @@ public class MovimientoService {
     private final MovimientoMapper movimientoMapper;
     private final ReportService reportService;
     private final EmailService emailService;
+    private final VarianteRepository varianteRepository;
+    private final AlmacenRepository almacenRepository;
+    private final LibroStockMemoria libroStock;
+    private final MovimientoArchivadoRepository movimientoArchivadoRepository;
+    private final ArchivoMovimientosService archivoMovimientos;
+    private final ReservaStockService reservaStockService;
+    private final RetencionesStock retenciones;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ValoracionInventarioService valoracionService;
+    private final ResumenDiarioService resumenDiarioService;
+    private final PaginacionService paginacionService;
+    private final ProyeccionMovimientosRepository proyeccionMovimientos;
+
+    // Tope de filas por página en las lecturas por cursor
+    static final int TAMANO_MAXIMO_CURSOR = 500;
 
     public MovimientoService(MovimientoRepository movimientoRepository,
                              InventarioService inventarioService,
                              MovimientoMapper movimientoMapper,
                              ReportService reportService,
-                             EmailService emailService
+                             EmailService emailService,
+                             VarianteRepository varianteRepository,
+                             AlmacenRepository almacenRepository,
+                             LibroStockMemoria libroStock,
+                             MovimientoArchivadoRepository movimientoArchivadoRepository,
+                             ArchivoMovimientosService archivoMovimientos,
+                             ReservaStockService reservaStockService,
+                             RetencionesStock retenciones,
+                             ApplicationEventPublisher eventPublisher,
+                             ValoracionInventarioService valoracionService,
+                             ResumenDiarioService resumenDiarioService,
+                             PaginacionService paginacionService,
+                             ProyeccionMovimientosRepository proyeccionMovimientos
     ) {
         this.movimientoRepository = movimientoRepository;
         this.inventarioService = inventarioService;
         this.movimientoMapper = movimientoMapper;
         this.reportService = reportService;
         this.emailService = emailService;
+        this.varianteRepository = varianteRepository;
+        this.almacenRepository = almacenRepository;
+        this.libroStock = libroStock;
+        this.movimientoArchivadoRepository = movimientoArchivadoRepository;
+        this.archivoMovimientos = archivoMovimientos;
+        this.reservaStockService = reservaStockService;
+        this.retenciones = retenciones;
+        this.eventPublisher = eventPublisher;
+        this.valoracionService = valoracionService;
+        this.resumenDiarioService = resumenDiarioService;
+        this.paginacionService = paginacionService;
+        this.proyeccionMovimientos = proyeccionMovimientos;
     }
 
     // Metodo para guardar un movimiento
@@ -62,20 +147,367 @@ public class MovimientoService {
             Double precioCompraManual,
             Double precioVentaManual
             ) {
-        // Pedimos a InventarioService que actualice el stock
-        Inventario inventarioActualizado = inventarioService.updateStock(variante, almacen, cantidad, tipo);
+        return registrarMovimiento(variante, almacen, cantidad, tipo, observaciones, precioCompraManual, precioVentaManual);
+    }
+
+    // Metodo para convertir una reserva en venta: un único movimiento VENTA por la cantidad reservada
+    // La reserva se saca dentro de la transacción de la venta: si la venta falla, la reserva sigue
+    @Transactional
+    public InventarioResponse confirmarReserva(String reservaId) {
+        ReservaStockService.Reserva reserva = reservaStockService.extraer(reservaId);
+        Variante variante = varianteRepository.findById(reserva.varianteId())
+                .orElseThrow(() -> new ResourceNotFoundException("Variante", reserva.varianteId()));
+        Almacen almacen = almacenRepository.findById(reserva.almacenId())
+                .orElseThrow(() -> new ResourceNotFoundException("Almacen", reserva.almacenId()));
+        return registrarMovimiento(variante, almacen, reserva.cantidad(), TipoMovimiento.VENTA,
+                "Reserva " + reserva.id(), null, null);
+    }
+
+    private InventarioResponse registrarMovimiento(
+            Variante variante,
+            Almacen almacen,
+            int cantidad,
+            TipoMovimiento tipo,
+            String observaciones,
+            Double precioCompraManual,
+            Double precioVentaManual
+            ) {
+        Movimiento movimiento;
+        Inventario inventarioActualizado;
+
+        if (libroStock.isActivo()) {
+            // Modo memoria: el libro valida y anota el movimiento, la BDD se actualiza en segundo plano
+            movimiento = construirMovimiento(variante, almacen, cantidad, tipo, observaciones,
+                    precioCompraManual, precioVentaManual, 0);
+            libroStock.registrar(movimiento);
+
+            inventarioActualizado = new Inventario();
+            inventarioActualizado.setVariante(variante);
+            inventarioActualizado.setAlmacen(almacen);
+            inventarioActualizado.setStock(movimiento.getStockResultante());
+        } else {
+            // Pedimos a InventarioService que actualice el stock
+            inventarioActualizado = inventarioService.updateStock(variante, almacen, cantidad, tipo);
+
+            // Creamos y guardamos el registro del movimiento
+            movimiento = construirMovimiento(variante, almacen, cantidad, tipo, observaciones,
+                    precioCompraManual, precioVentaManual, inventarioActualizado.getStock());
+
+            movimientoRepository.save(movimiento);
+        }
+
+        String asunto = "Nuevo movimiento registrado";
+
+        String contenido = """
+            <h3>Nuevo movimiento de inventario</h3>
+            %s
+        """.formatted(describirMovimiento(movimiento));
+
+        emailService.enviarNotificacionMovimiento(asunto, contenido);
+        publicarCambios(List.of(movimiento));
+
+        return inventarioService.mapearADTO(inventarioActualizado);
+    }
+
+    // Metodo para aplicar en una sola transacción un grupo de movimientos sueltos que han llegado a la vez
+    // Las líneas sin stock no tumban el grupo: se les anota el error en su posición y el resto se guarda.
+    // Devuelve el inventario resultante de cada línea (null en las rechazadas)
+    @Transactional
+    public List<Inventario> procesarGrupo(List<PeticionMovimiento> peticiones, List<String> errores) {
+        // Escribe directamente en inventario: con el libro en memoria el agrupador no se usa
+        if (libroStock.isActivo()) {
+            throw new IllegalStateException("Los grupos de movimientos no se aplican con el libro de stock en memoria");
+        }
+        // Mismo camino que los lotes: se bloquean primero todas las filas de inventario del grupo en orden
+        // (variante, almacén) y después se escriben la vista y los totales de variante una sola vez, también en orden.
+        // Aplicar las peticiones una a una bloquearía el total de una variante entre dos filas de inventario
+        // y podría esperarse en cruz con un movimiento suelto (deadlock)
+        List<Movimiento> candidatos = new ArrayList<>(peticiones.size());
+        for (PeticionMovimiento peticion : peticiones) {
+            Movimiento movimiento = construirMovimiento(peticion.variante(), peticion.almacen(), peticion.cantidad(),
+                    peticion.tipo(), peticion.observaciones(), peticion.precioCompraManual(),
+                    peticion.precioVentaManual(), 0);
+            // La auditoría no pisa el usuario si el hilo no tiene uno en contexto
+            movimiento.setCreadoPor(peticion.usuario());
+            movimiento.setModificadoPor(peticion.usuario());
+            candidatos.add(movimiento);
+        }
+        Map<ClaveInventario, Inventario> inventarios = aplicarLoteEnBdd(candidatos, errores, false);
+
+        Inventario[] resultados = new Inventario[peticiones.size()];
+        List<Movimiento> movimientos = new ArrayList<>(peticiones.size());
+        for (int i = 0; i < peticiones.size(); i++) {
+            if (errores.get(i) != null) continue;
+
+            Movimiento movimiento = candidatos.get(i);
+            movimientos.add(movimiento);
+            // Devolvemos una copia con el stock que dejó esta petición, no la entidad gestionada
+            Inventario inventario = new Inventario();
+            inventario.setId(inventarios.get(new ClaveInventario(movimiento.getVariante().getId(),
+                    movimiento.getAlmacen().getId())).getId());
+            inventario.setVariante(movimiento.getVariante());
+            inventario.setAlmacen(movimiento.getAlmacen());
+            inventario.setStock(movimiento.getStockResultante());
+            resultados[i] = inventario;
+        }
+
+        for (Movimiento movimiento : movimientos) {
+            String contenido = """
+                <h3>Nuevo movimiento de inventario</h3>
+                %s
+            """.formatted(describirMovimiento(movimiento));
+            emailService.enviarNotificacionMovimiento("Nuevo movimiento registrado", contenido);
+        }
+        publicarCambios(movimientos);
+
+        return Arrays.asList(resultados);
+    }
+
+    // Metodo para procesar un lote de movimientos en una sola transacción
+    // Resuelve SKUs y almacenes con una consulta cada uno y aplica todas las líneas juntas
+    @Transactional
+    public MovimientoLoteResponse procesarLote(MovimientoLoteRequest request) {
+        return procesarLote(request, true);
+    }
+
+    // avisar = false para quien parte un envío grande en varios lotes y manda un único aviso al terminar (importación CSV)
+    @Transactional
+    public MovimientoLoteResponse procesarLote(MovimientoLoteRequest request, boolean avisar) {
+        List<MovimientoRequest> lineas = request.lineas();
+
+        // 1. Resolvemos variantes y almacenes de todo el lote
+        Set<String> skus = lineas.stream().map(MovimientoRequest::varianteSku).collect(Collectors.toSet());
+        Set<Long> almacenIds = lineas.stream().map(MovimientoRequest::almacenId).collect(Collectors.toSet());
+
+        Map<String, Variante> variantesPorSku = varianteRepository.findBySkuIn(skus).stream()
+                .collect(Collectors.toMap(Variante::getSku, Function.identity()));
+        Map<Long, Almacen> almacenesPorId = almacenRepository.findAllById(almacenIds).stream()
+                .collect(Collectors.toMap(Almacen::getId, Function.identity()));
+
+        // 2. Construimos el movimiento de cada línea que se ha podido resolver
+        List<Movimiento> candidatos = new ArrayList<>(lineas.size());
+        List<String> errores = new ArrayList<>(lineas.size());
+        for (MovimientoRequest linea : lineas) {
+            Variante variante = variantesPorSku.get(linea.varianteSku());
+            Almacen almacen = almacenesPorId.get(linea.almacenId());
+
+            if (linea.tipo().esTransferencia()) {
+                candidatos.add(null);
+                errores.add("Las transferencias se registran en /api/movimientos/transferencia");
+            } else if (variante == null) {
+                candidatos.add(null);
+                errores.add("Variante no encontrada con el SKU: " + linea.varianteSku());
+            } else if (almacen == null) {
+                candidatos.add(null);
+                errores.add("Almacen no encontrado con el ID: " + linea.almacenId());
+            } else {
+                candidatos.add(construirMovimiento(variante, almacen, linea.cantidad(), linea.tipo(),
+                        linea.observaciones(), linea.precioCompraUnitario(), linea.precioVentaUnitario(), 0));
+                errores.add(null);
+            }
+        }
+
+        // 3. Validamos y aplicamos el stock, en el libro en memoria o sobre las filas bloqueadas de la BDD
+        if (libroStock.isActivo()) {
+            libroStock.registrarTodos(candidatos, errores, request.todoONada());
+        } else {
+            aplicarLoteEnBdd(candidatos, errores, request.todoONada());
+        }
+
+        List<ResultadoLineaLote> resultados = new ArrayList<>(lineas.size());
+        List<Movimiento> movimientos = new ArrayList<>(lineas.size());
+        int rechazadas = (int) errores.stream().filter(e -> e != null).count();
+
+        for (int i = 0; i < lineas.size(); i++) {
+            MovimientoRequest linea = lineas.get(i);
+            String error = errores.get(i);
+
+            if (error == null && request.todoONada() && rechazadas > 0) {
+                // 4. En modo todo o nada, si alguna línea falla no se ha escrito nada
+                error = "No aplicado: el lote contiene líneas con errores";
+            }
+
+            if (error == null) {
+                Movimiento movimiento = candidatos.get(i);
+                movimientos.add(movimiento);
+                resultados.add(new ResultadoLineaLote(i + 1, linea.varianteSku(), linea.almacenId(), true,
+                        movimiento.getStockResultante(), null));
+            } else {
+                resultados.add(new ResultadoLineaLote(i + 1, linea.varianteSku(), linea.almacenId(), false, null, error));
+            }
+        }
+
+        publicarCambios(movimientos);
+
+        // 5. Un solo aviso por lote en lugar de uno por movimiento
+        if (avisar && !movimientos.isEmpty()) {
+            String contenido = """
+                <h3>Nuevo lote de movimientos de inventario</h3>
+                <p><b>Movimientos aplicados:</b> %d</p>
+                <p><b>Movimientos rechazados:</b> %d</p>
+            """.formatted(movimientos.size(), rechazadas);
+            emailService.enviarNotificacionMovimiento("Nuevo lote de movimientos registrado", contenido);
+        }
+
+        return new MovimientoLoteResponse(lineas.size(), movimientos.size(), lineas.size() - movimientos.size(), resultados);
+    }
+
+    // Metodo para transferir stock entre dos almacenes en una sola transacción
+    // Cada línea genera una salida en el origen y una entrada en el destino con la misma referencia.
+    // Es todo o nada: si a alguna línea le falta stock en el origen no se mueve nada
+    @Transactional
+    public TransferenciaResponse procesarTransferencia(TransferenciaRequest request) {
+        if (request.almacenOrigenId().equals(request.almacenDestinoId())) {
+            throw new RuntimeException("El almacén de origen y el de destino no pueden ser el mismo");
+        }
+        Almacen origen = almacenRepository.findById(request.almacenOrigenId())
+                .orElseThrow(() -> new ResourceNotFoundException("Almacen", request.almacenOrigenId()));
+        Almacen destino = almacenRepository.findById(request.almacenDestinoId())
+                .orElseThrow(() -> new ResourceNotFoundException("Almacen", request.almacenDestinoId()));
+
+        Set<String> skus = request.lineas().stream().map(LineaTransferencia::varianteSku).collect(Collectors.toSet());
+        Map<String, Variante> variantesPorSku = varianteRepository.findBySkuIn(skus).stream()
+                .collect(Collectors.toMap(Variante::getSku, Function.identity()));
+
+        String referencia = UUID.randomUUID().toString();
+        List<Movimiento> candidatos = new ArrayList<>(request.lineas().size() * 2);
+        for (LineaTransferencia linea : request.lineas()) {
+            Variante variante = variantesPorSku.get(linea.varianteSku());
+            if (variante == null) {
+                throw new ResourceNotFoundException("Variante", linea.varianteSku());
+            }
+            Movimiento salida = construirMovimiento(variante, origen, linea.cantidad(), TipoMovimiento.TRANSFERENCIA_SALIDA,
+                    request.observaciones(), null, null, 0);
+            Movimiento entrada = construirMovimiento(variante, destino, linea.cantidad(), TipoMovimiento.TRANSFERENCIA_ENTRADA,
+                    request.observaciones(), null, null, 0);
+            salida.setReferenciaTransferencia(referencia);
+            entrada.setReferenciaTransferencia(referencia);
+            candidatos.add(salida);
+            candidatos.add(entrada);
+        }
+
+        // Mismo camino que los lotes: filas bloqueadas en orden (variante, almacén) o libro en memoria
+        List<String> errores = new ArrayList<>(Collections.nCopies(candidatos.size(), null));
+        if (libroStock.isActivo()) {
+            libroStock.registrarTodos(candidatos, errores, true);
+        } else {
+            aplicarLoteEnBdd(candidatos, errores, true);
+        }
+
+        List<String> fallos = new ArrayList<>();
+        for (int i = 0; i < candidatos.size(); i++) {
+            if (errores.get(i) != null) {
+                fallos.add(candidatos.get(i).getVariante().getSku() + ": " + errores.get(i));
+            }
+        }
+        if (!fallos.isEmpty()) {
+            throw new RuntimeException("Transferencia no aplicada. " + String.join("; ", fallos));
+        }
+
+        publicarCambios(candidatos);
+
+        List<ResultadoLineaTransferencia> resultados = new ArrayList<>(request.lineas().size());
+        for (int i = 0; i < candidatos.size(); i += 2) {
+            Movimiento salida = candidatos.get(i);
+            Movimiento entrada = candidatos.get(i + 1);
+            resultados.add(new ResultadoLineaTransferencia(salida.getVariante().getSku(), salida.getCantidad(),
+                    salida.getStockResultante(), entrada.getStockResultante()));
+        }
+
+        String contenido = """
+            <h3>Nueva transferencia entre almacenes</h3>
+            <p><b>Origen:</b> %s</p>
+            <p><b>Destino:</b> %s</p>
+            <p><b>Líneas:</b> %d</p>
+        """.formatted(origen.getDescripcion(), destino.getDescripcion(), resultados.size());
+        emailService.enviarNotificacionMovimiento("Nueva transferencia registrada", contenido);
 
-        // Creamos y guardamos el registro del movimiento
+        return new TransferenciaResponse(referencia, origen.getId(), destino.getId(), resultados);
+    }
+
+    // Metodo auxiliar que aplica un lote contra la BDD: bloquea las filas de inventario en orden
+    // (variante, almacén), valida cada línea sobre una copia del stock y escribe todo junto. Devuelve las filas bloqueadas
+    private Map<ClaveInventario, Inventario> aplicarLoteEnBdd(List<Movimiento> candidatos, List<String> errores, boolean todoONada) {
+        Set<ClaveInventario> claves = new HashSet<>();
+        for (Movimiento movimiento : candidatos) {
+            if (movimiento != null) {
+                claves.add(new ClaveInventario(movimiento.getVariante().getId(), movimiento.getAlmacen().getId()));
+            }
+        }
+        Map<ClaveInventario, Inventario> inventarios = inventarioService.bloquearInventarios(claves);
+
+        Map<ClaveInventario, Integer> stockEnCurso = new HashMap<>();
+        inventarios.forEach((clave, inventario) -> stockEnCurso.put(clave, inventario.getStock()));
+
+        List<Movimiento> aplicados = new ArrayList<>(candidatos.size());
+        for (int i = 0; i < candidatos.size(); i++) {
+            Movimiento movimiento = candidatos.get(i);
+            if (movimiento == null) continue;
+
+            ClaveInventario clave = new ClaveInventario(movimiento.getVariante().getId(), movimiento.getAlmacen().getId());
+            int stockActual = stockEnCurso.get(clave);
+
+            // Las salidas no pueden tocar el stock reservado
+            int reservado = movimiento.getTipo().esSalida() ? retenciones.salida(clave, movimiento.getCantidad()) : 0;
+            if (movimiento.getTipo().esSalida() && stockActual - reservado < movimiento.getCantidad()) {
+                errores.set(i, "Stock insuficiente. Tienes: " + stockActual
+                        + (reservado > 0 ? " (" + reservado + " reservado)" : "") + ", intentas sacar: " + movimiento.getCantidad());
+                continue;
+            }
+            int nuevoStock = movimiento.getTipo().esSalida()
+                    ? stockActual - movimiento.getCantidad()
+                    : stockActual + movimiento.getCantidad();
+            stockEnCurso.put(clave, nuevoStock);
+            movimiento.setStockResultante(nuevoStock);
+            aplicados.add(movimiento);
+        }
+
+        boolean hayErrores = errores.stream().anyMatch(e -> e != null);
+        if (aplicados.isEmpty() || (todoONada && hayErrores)) {
+            return inventarios;
+        }
+
+        // Escribimos el stock final de cada fila y todos los movimientos de una vez
+        inventarios.forEach((clave, inventario) -> inventario.setStock(stockEnCurso.get(clave)));
+        inventarioService.guardarInventarios(inventarios.values());
+        movimientoRepository.saveAll(aplicados);
+        return inventarios;
+    }
+
+    // Metodo auxiliar que valora los movimientos aplicados, los suma a los totales diarios y avisa del stock
+    // resultante (StreamStockService lo reenvía a los suscriptores cuando la transacción se confirma).
+    // Con el libro en memoria la valoración y los totales se actualizan al volcar los movimientos a la BDD
+    private void publicarCambios(List<Movimiento> movimientos) {
+        if (movimientos.isEmpty()) return;
+        if (!libroStock.isActivo()) {
+            valoracionService.registrar(movimientos);
+            resumenDiarioService.registrar(movimientos);
+        }
+        eventPublisher.publishEvent(new MovimientosAplicadosEvent(movimientos.stream()
+                .map(m -> new CambioStock(m.getVariante().getId(), m.getVariante().getSku(), m.getAlmacen().getId(),
+                        m.getStockResultante(), m.getTipo()))
+                .toList()));
+    }
+
+    // Metodo auxiliar que crea el registro del movimiento aplicando la lógica de precios
+    private Movimiento construirMovimiento(
+            Variante variante,
+            Almacen almacen,
+            int cantidad,
+            TipoMovimiento tipo,
+            String observaciones,
+            Double precioCompraManual,
+            Double precioVentaManual,
+            int stockResultante
+    ) {
         Movimiento movimiento = new Movimiento();
         movimiento.setVariante(variante);
         movimiento.setAlmacen(almacen);
         movimiento.setTipo(tipo);
         movimiento.setCantidad(cantidad);
-        movimiento.setStockResultante(inventarioActualizado.getStock());
+        movimiento.setStockResultante(stockResultante);
         movimiento.setObservaciones(observaciones);
         // Lógica precios
-        Double costeFinal;
-        Double ventaFinal;
         if (precioCompraManual != null) {
             // Si se introduce un precio manual, usamos ese
             movimiento.setPrecioCompraUnitario(precioCompraManual);
@@ -101,33 +533,29 @@ public class MovimientoService {
         } else {
             movimiento.setPrecioVentaTotal(0.0);
         }
+        return movimiento;
+    }
 
-        movimientoRepository.save(movimiento);
-
-        String asunto = "Nuevo movimiento registrado";
-
-        String contenido = """
-            <h3>Nuevo movimiento de inventario</h3>
+    // Metodo auxiliar con el detalle HTML de un movimiento para las notificaciones
+    private String describirMovimiento(Movimiento movimiento) {
+        return """
             <p><b>Variante:</b> %s</p>
             <p><b>Almacén:</b> %s</p>
             <p><b>Tipo:</b> %s</p>
             <p><b>Cantidad:</b> %d</p>
         """.formatted(
-                variante.getSku(),
-                almacen.getDescripcion(),
-                tipo,
-                cantidad
+                movimiento.getVariante().getSku(),
+                movimiento.getAlmacen().getDescripcion(),
+                movimiento.getTipo(),
+                movimiento.getCantidad()
         );
-
-        emailService.enviarNotificacionMovimiento(asunto, contenido);
-
-        return inventarioService.mapearADTO(inventarioActualizado);
     }
 
     // Metodo para ver el historial de un variante
+    // Si ya hay meses archivados se pagina sobre la tabla caliente y el archivo
     public Page<MovimientoResponse> verHistorialVariante(Long varianteId, Pageable pageable) {
-        return movimientoRepository.findByVarianteId(varianteId, pageable)
-                .map(movimientoMapper::toResponse);
+        return archivoMovimientos.consultar(null, null,
+                tramo -> paginar(tramo, deVariante(varianteId), deVariante(varianteId), pageable));
     }
 
     // Metodo para ver todos los movimientos con paginación
@@ -145,50 +573,233 @@ public class MovimientoService {
             String creadoPor,
             String creadoPorMatchMode
     ) {
-        Specification<Movimiento> spec = (root, query, cb) -> {
+        return verMovimientos(new MovimientoFiltro(varianteNombre, varianteMatchMode, almacenNombre, almacenMatchMode,
+                tipo, observaciones, observacionesMatchMode, fechaInicio, fechaFin, creadoPor, creadoPorMatchMode), pageable);
+    }
+
+    // Metodo para ver los movimientos filtrados, consultando solo las tablas que cubren el rango de fechas
+    public Page<MovimientoResponse> verMovimientos(MovimientoFiltro filtro, Pageable pageable) {
+        return archivoMovimientos.consultar(filtro.fechaInicio(), filtro.fechaFin(),
+                tramo -> paginar(tramo, especificacion(filtro), especificacion(filtro), pageable));
+    }
+
+    // Metodo para ver el historial de una variante por cursor: sin OFFSET ni COUNT, cada página cuesta lo mismo
+    public MovimientosCursorResponse verHistorialVariante(Long varianteId, String cursor, int tamano) {
+        return archivoMovimientos.consultar(null, null,
+                tramo -> leerConCursor(tramo, deVariante(varianteId), deVariante(varianteId), cursor, tamano));
+    }
+
+    // Metodo para ver los movimientos filtrados por cursor, con los mismos filtros que el listado paginado
+    public MovimientosCursorResponse verMovimientos(MovimientoFiltro filtro, String cursor, int tamano) {
+        return archivoMovimientos.consultar(filtro.fechaInicio(), filtro.fechaFin(),
+                tramo -> leerConCursor(tramo, especificacion(filtro), especificacion(filtro), cursor, tamano));
+    }
+
+    // Metodo para ver los movimientos filtrados con el total exacto, aproximado o sin total (solo si hay página siguiente)
+    // Repartida entre las dos tablas, la página necesita saber cuántas filas hay en la primera: se usa el total cacheado
+    public Slice<MovimientoResponse> verMovimientos(MovimientoFiltro filtro, Pageable pageable, ModoTotal modo) {
+        if (modo == ModoTotal.EXACTO) {
+            return verMovimientos(filtro, pageable);
+        }
+        Specification<Movimiento> caliente = especificacion(filtro);
+        Specification<MovimientoArchivado> archivo = especificacion(filtro);
+        String clave = PaginacionService.clave("movimientos", filtro.varianteNombre(), filtro.varianteMatchMode(),
+                filtro.almacenNombre(), filtro.almacenMatchMode(), filtro.tipo(), filtro.observaciones(),
+                filtro.observacionesMatchMode(), filtro.fechaInicio(), filtro.fechaFin(), filtro.creadoPor(),
+                filtro.creadoPorMatchMode());
+        String claveArchivo = "archivo|" + clave;
+
+        return archivoMovimientos.consultar(filtro.fechaInicio(), filtro.fechaFin(), tramo -> {
+            if (tramo == ArchivoMovimientosService.Tramo.CALIENTE) {
+                return paginacionService.paginar(pageable, modo, clave,
+                        p -> proyeccionMovimientos.buscar(Movimiento.class, caliente, p), () -> movimientoRepository.count(caliente));
+            }
+            if (tramo == ArchivoMovimientosService.Tramo.ARCHIVO) {
+                return paginacionService.paginar(pageable, modo, claveArchivo,
+                        p -> proyeccionMovimientos.buscar(MovimientoArchivado.class, archivo, p), () -> movimientoArchivadoRepository.count(archivo));
+            }
+            if (pageable.isUnpaged()) {
+                return paginar(tramo, caliente, archivo, pageable);
+            }
+
+            Page<MovimientoResponse> pagina = combinar(caliente, archivo, pageable,
+                    paginacionService.contar(clave, () -> movimientoRepository.count(caliente)),
+                    paginacionService.contar(claveArchivo, () -> movimientoArchivadoRepository.count(archivo)));
+            return modo == ModoTotal.SIN_TOTAL ? new SliceImpl<>(pagina.getContent(), pageable, pagina.hasNext()) : pagina;
+        });
+    }
+
+    // Metodo para exportar usando el servicio ReportService
+    // Primero los movimientos archivados (más antiguos) y después los de la tabla caliente.
+    // Cada tabla se lee por bloques al llegar a ella y las filas se escriben según llegan: la memoria no crece con el rango
+    // Las dos tablas se leen en la misma transacción de solo lectura que decide el tramo
+    public void exportar(MovimientoFiltro filtro, String formato, OutputStream outputStream) {
+        archivoMovimientos.consultar(filtro.fechaInicio(), filtro.fechaFin(), tramo -> {
+            List<Supplier<Stream<MovimientoResponse>>> tablas = new ArrayList<>(2);
+            if (tramo != ArchivoMovimientosService.Tramo.CALIENTE) {
+                tablas.add(() -> proyeccionMovimientos.recorrer(MovimientoArchivado.class, especificacion(filtro), Sort.unsorted()));
+            }
+            if (tramo != ArchivoMovimientosService.Tramo.ARCHIVO) {
+                tablas.add(() -> proyeccionMovimientos.recorrer(Movimiento.class, especificacion(filtro), Sort.unsorted()));
+            }
+
+            // flatMap abre cada lectura cuando le toca y la cierra al terminarla
+            try (Stream<MovimientoResponse> movimientos = tablas.stream().flatMap(Supplier::get)) {
+                if ("csv".equalsIgnoreCase(formato)) {
+                    reportService.generarCsvMovimientos(movimientos, outputStream);
+                } else {
+                    reportService.generarPdfMovimientos(movimientos, outputStream);
+                }
+            }
+            return null;
+        });
+    }
+
+    // Metodo para ver los totales de los meses archivados
+    public List<ResumenPeriodoResponse> verResumenesPeriodo(YearMonth desde, YearMonth hasta) {
+        return archivoMovimientos.resumenes(desde, hasta).stream()
+                .map(movimientoMapper::toResponse)
+                .toList();
+    }
+
+    // Filtros comunes a la tabla caliente y al archivo (las dos entidades tienen los mismos atributos)
+    private static <T> Specification<T> especificacion(MovimientoFiltro filtro) {
+        return (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
 
             // Filtros directos (texto)
-            SpecificationUtils.addPredicate(predicates, cb, root.get("observaciones"), observaciones, observacionesMatchMode);
-            SpecificationUtils.addPredicate(predicates, cb, root.get("creadoPor"), creadoPor, creadoPorMatchMode);
+            SpecificationUtils.addPredicate(predicates, cb, root.get("observaciones"), filtro.observaciones(), filtro.observacionesMatchMode());
+            SpecificationUtils.addPredicate(predicates, cb, root.get("creadoPor"), filtro.creadoPor(), filtro.creadoPorMatchMode());
 
             // Filtro enum
-            if (tipo != null) {
-                predicates.add(cb.equal(root.get("tipo"), tipo));
+            if (filtro.tipo() != null) {
+                predicates.add(cb.equal(root.get("tipo"), filtro.tipo()));
             }
 
             // Filtro fecha
-            SpecificationUtils.addDateRangePredicate(predicates, cb, root.get("fechaCreacion"), fechaInicio, fechaFin);
+            SpecificationUtils.addDateRangePredicate(predicates, cb, root.get("fechaCreacion"), filtro.fechaInicio(), filtro.fechaFin());
 
             // Filtros por relaciones
 
             // Filtro variante
-            if (varianteNombre != null && !varianteNombre.isEmpty()) {
-                Join<Movimiento, Variante> varianteJoin = root.join("variante", JoinType.LEFT);
+            if (filtro.varianteNombre() != null && !filtro.varianteNombre().isEmpty()) {
+                Join<T, Variante> varianteJoin = root.join("variante", JoinType.LEFT);
                 Join<Variante, Producto> productoJoin = varianteJoin.join("producto", JoinType.LEFT);
-                SpecificationUtils.addPredicate(predicates, cb, productoJoin.get("nombre"), varianteNombre, varianteMatchMode);
+                SpecificationUtils.addPredicate(predicates, cb, productoJoin.get("nombre"), filtro.varianteNombre(), filtro.varianteMatchMode());
             }
 
             // Filtro almacén
-            if (almacenNombre != null && !almacenNombre.isEmpty()) {
-                Join<Movimiento, Almacen> almacenJoin = root.join("almacen", JoinType.LEFT);
-                SpecificationUtils.addPredicate(predicates, cb, almacenJoin.get("descripcion"), almacenNombre, almacenMatchMode);
+            if (filtro.almacenNombre() != null && !filtro.almacenNombre().isEmpty()) {
+                Join<T, Almacen> almacenJoin = root.join("almacen", JoinType.LEFT);
+                SpecificationUtils.addPredicate(predicates, cb, almacenJoin.get("descripcion"), filtro.almacenNombre(), filtro.almacenMatchMode());
             }
 
             return cb.and(predicates.toArray(new Predicate[0]));
         };
-        return movimientoRepository.findAll(spec, pageable)
-                .map(movimientoMapper::toResponse);
     }
 
-    // Metodo para exportar usando el servicio ReportService
-    public void exportar(Specification<Movimiento> spec, String formato, OutputStream outputStream) {
-        List<Movimiento> lista = movimientoRepository.findAll(spec);
+    private static <T> Specification<T> deVariante(Long varianteId) {
+        return (root, query, cb) -> cb.equal(root.get("variante").get("id"), varianteId);
+    }
 
-        if ("csv".equalsIgnoreCase(formato)) {
-            reportService.generarCsvMovimientos(lista, outputStream);
-        } else {
-            reportService.generarPdfMovimientos(lista, outputStream);
+    // Metodo auxiliar para leer una página por cursor, del movimiento más reciente al más antiguo
+    // Se pide una fila de más a cada tabla para saber si hay página siguiente sin contar;
+    // con las dos tablas se mezclan los resultados por (fechaCreacion, id)
+    private MovimientosCursorResponse leerConCursor(ArchivoMovimientosService.Tramo tramo,
+                                                    Specification<Movimiento> caliente,
+                                                    Specification<MovimientoArchivado> archivo,
+                                                    String token,
+                                                    int tamano) {
+        if (tamano < 1 || tamano > TAMANO_MAXIMO_CURSOR) {
+            throw new RuntimeException("El tamaño de página debe estar entre 1 y " + TAMANO_MAXIMO_CURSOR);
+        }
+        if (token != null && !token.isBlank()) {
+            CursorMovimientos cursor = CursorMovimientos.leer(token);
+            caliente = caliente.and(cursor.siguientes());
+            archivo = archivo.and(cursor.siguientes());
         }
+
+        PaginaDesplazada primeras = new PaginaDesplazada(0, tamano + 1, CursorMovimientos.ORDEN);
+        List<MovimientoResponse> filas = new ArrayList<>(tamano + 1);
+        if (tramo != ArchivoMovimientosService.Tramo.ARCHIVO) {
+            filas.addAll(proyeccionMovimientos.buscar(Movimiento.class, caliente, primeras));
+        }
+        if (tramo != ArchivoMovimientosService.Tramo.CALIENTE) {
+            filas.addAll(proyeccionMovimientos.buscar(MovimientoArchivado.class, archivo, primeras));
+            filas.sort(Comparator.comparing(MovimientoService::posicion, CursorMovimientos.MAS_RECIENTE_PRIMERO));
+        }
+
+        List<MovimientoResponse> pagina = filas.subList(0, Math.min(tamano, filas.size()));
+        String siguiente = filas.size() > tamano ? posicion(pagina.get(pagina.size() - 1)).codificar() : null;
+        return new MovimientosCursorResponse(List.copyOf(pagina), siguiente);
+    }
+
+    private static CursorMovimientos posicion(MovimientoResponse movimiento) {
+        return new CursorMovimientos(movimiento.fechaCreacion(), movimiento.id());
+    }
+
+    // Metodo auxiliar para paginar sobre una tabla o sobre las dos
+    // Con las dos, la página se rellena con un bloque detrás de otro: primero la tabla caliente (lo más reciente)
+    // salvo que se ordene ascendentemente por fecha o id, en cuyo caso va primero el archivo
+    private Page<MovimientoResponse> paginar(ArchivoMovimientosService.Tramo tramo,
+                                             Specification<Movimiento> caliente,
+                                             Specification<MovimientoArchivado> archivo,
+                                             Pageable pageable) {
+        if (tramo == ArchivoMovimientosService.Tramo.CALIENTE) {
+            return PageableExecutionUtils.getPage(proyeccionMovimientos.buscar(Movimiento.class, caliente, pageable),
+                    pageable, () -> movimientoRepository.count(caliente));
+        }
+        if (tramo == ArchivoMovimientosService.Tramo.ARCHIVO) {
+            return PageableExecutionUtils.getPage(proyeccionMovimientos.buscar(MovimientoArchivado.class, archivo, pageable),
+                    pageable, () -> movimientoArchivadoRepository.count(archivo));
+        }
+
+        if (pageable.isUnpaged()) {
+            Sort sort = pageable.getSort();
+            List<MovimientoResponse> todos = new ArrayList<>();
+            List<MovimientoResponse> delCaliente = proyeccionMovimientos.buscar(Movimiento.class, caliente, pageable);
+            List<MovimientoResponse> delArchivo = proyeccionMovimientos.buscar(MovimientoArchivado.class, archivo, pageable);
+            todos.addAll(archivoPrimero(sort) ? delArchivo : delCaliente);
+            todos.addAll(archivoPrimero(sort) ? delCaliente : delArchivo);
+            return new PageImpl<>(todos);
+        }
+
+        return combinar(caliente, archivo, pageable, movimientoRepository.count(caliente), movimientoArchivadoRepository.count(archivo));
+    }
+
+    // Metodo auxiliar para leer una página repartida entre las dos tablas conociendo cuántas filas tiene cada una
+    private Page<MovimientoResponse> combinar(Specification<Movimiento> caliente,
+                                              Specification<MovimientoArchivado> archivo,
+                                              Pageable pageable,
+                                              long totalCaliente,
+                                              long totalArchivo) {
+        Sort sort = pageable.getSort();
+        boolean archivoPrimero = archivoPrimero(sort);
+        BiFunction<Long, Integer, List<MovimientoResponse>> leerCaliente = (desde, cuantos) ->
+                proyeccionMovimientos.buscar(Movimiento.class, caliente, new PaginaDesplazada(desde, cuantos, sort));
+        BiFunction<Long, Integer, List<MovimientoResponse>> leerArchivo = (desde, cuantos) ->
+                proyeccionMovimientos.buscar(MovimientoArchivado.class, archivo, new PaginaDesplazada(desde, cuantos, sort));
+
+        long totalPrimero = archivoPrimero ? totalArchivo : totalCaliente;
+        BiFunction<Long, Integer, List<MovimientoResponse>> leerPrimero = archivoPrimero ? leerArchivo : leerCaliente;
+        BiFunction<Long, Integer, List<MovimientoResponse>> leerSegundo = archivoPrimero ? leerCaliente : leerArchivo;
+
+        long offset = pageable.getOffset();
+        int tamano = pageable.getPageSize();
+        List<MovimientoResponse> contenido = new ArrayList<>(tamano);
+        if (offset < totalPrimero) {
+            contenido.addAll(leerPrimero.apply(offset, (int) Math.min(tamano, totalPrimero - offset)));
+        }
+        if (contenido.size() < tamano && offset + contenido.size() >= totalPrimero) {
+            contenido.addAll(leerSegundo.apply(Math.max(0, offset - totalPrimero), tamano - contenido.size()));
+        }
+        return new PageImpl<>(contenido, pageable, totalCaliente + totalArchivo);
+    }
+
+    private static boolean archivoPrimero(Sort sort) {
+        return sort.stream().findFirst()
+                .map(orden -> orden.isAscending()
+                        && ("fechaCreacion".equals(orden.getProperty()) || "id".equals(orden.getProperty())))
+                .orElse(false);
     }
 }
@@ -0,0 +1,19 @@
+package org.watts.transaction.service;
+
+import org.watts.catalog.model.Variante;
+import org.watts.inventory.models.Almacen;
+import org.watts.transaction.enums.TipoMovimiento;
+
+// Movimiento suelto pendiente de aplicar en un grupo, con el usuario que lo pidió
+// (el hilo que aplica el grupo no tiene usuario en contexto para la auditoría)
+record PeticionMovimiento(
+        Variante variante,
+        Almacen almacen,
+        int cantidad,
+        TipoMovimiento tipo,
+        String observaciones,
+        Double precioCompraManual,
+        Double precioVentaManual,
+        String usuario
+) {
+}
@@ -0,0 +1,166 @@
+package org.watts.transaction.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.watts.transaction.dto.RellenoResumenDiarioResponse;
+import org.watts.transaction.dto.VentasDiaResponse;
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.model.Movimiento;
+import org.watts.transaction.repository.ResumenMovimientosDiaRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Totales diarios por variante, almacén y tipo de movimiento (tabla movimientos_diarios)
+// Cada transacción que aplica movimientos suma los suyos a las filas de su día, así que las filas solo
+// cuentan lo confirmado. El relleno recalcula días pasados desde los movimientos, por tramos en paralelo
+@Service
+public class ResumenDiarioService {
+
+    private static final String SUMAR = "INSERT INTO movimientos_diarios (dia, variante_id, almacen_id, tipo, " +
+            "numero_movimientos, cantidad_total, precio_compra_total, precio_venta_total) VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE numero_movimientos = numero_movimientos + ?, cantidad_total = cantidad_total + ?, " +
+            "precio_compra_total = precio_compra_total + ?, precio_venta_total = precio_venta_total + ?";
+
+    // Un tramo que choca con el de al lado (bloqueos de hueco de MySQL al borrar rangos) se reintenta
+    private static final int MAX_INTENTOS = 3;
+
+    private record Clave(LocalDate dia, Long varianteId, Long almacenId, TipoMovimiento tipo) {
+        static final Comparator<Clave> ORDEN = Comparator.comparing(Clave::dia)
+                .thenComparing(Clave::varianteId)
+                .thenComparing(Clave::almacenId)
+                .thenComparing(Clave::tipo);
+    }
+
+    private static final class Totales {
+        long numero;
+        long cantidad;
+        double compra;
+        double venta;
+    }
+
+    private final ResumenMovimientosDiaRepository resumenRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int paralelismo;
+    private final int diasPorTramo;
+
+    public ResumenDiarioService(ResumenMovimientosDiaRepository resumenRepository,
+                                JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${movimientos.resumen-diario.paralelismo:4}") int paralelismo,
+                                @Value("${movimientos.resumen-diario.dias-por-tramo:7}") int diasPorTramo) {
+        this.resumenRepository = resumenRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.paralelismo = paralelismo;
+        this.diasPorTramo = diasPorTramo;
+    }
+
+    // Metodo para sumar movimientos recién guardados a los totales de su día, en la transacción que los guarda
+    // Las filas se tocan en orden (día, variante, almacén, tipo) para que dos transacciones no se crucen
+    @Transactional
+    public void registrar(List<Movimiento> movimientos) {
+        if (movimientos.isEmpty()) return;
+
+        Map<Clave, Totales> totales = new TreeMap<>(Clave.ORDEN);
+        LocalDate hoy = LocalDate.now();
+        for (Movimiento movimiento : movimientos) {
+            LocalDate dia = movimiento.getFechaCreacion() != null ? movimiento.getFechaCreacion().toLocalDate() : hoy;
+            Totales t = totales.computeIfAbsent(new Clave(dia, movimiento.getVariante().getId(),
+                    movimiento.getAlmacen().getId(), movimiento.getTipo()), k -> new Totales());
+            t.numero++;
+            t.cantidad += movimiento.getCantidad();
+            t.compra += movimiento.getPrecioCompraTotal() != null ? movimiento.getPrecioCompraTotal() : 0;
+            t.venta += movimiento.getPrecioVentaTotal() != null ? movimiento.getPrecioVentaTotal() : 0;
+        }
+
+        List<Map.Entry<Clave, Totales>> filas = new ArrayList<>(totales.entrySet());
+        jdbcTemplate.batchUpdate(SUMAR, filas, filas.size(), (ps, fila) -> {
+            Clave clave = fila.getKey();
+            Totales t = fila.getValue();
+            ps.setObject(1, clave.dia());
+            ps.setLong(2, clave.varianteId());
+            ps.setLong(3, clave.almacenId());
+            ps.setString(4, clave.tipo().name());
+            ps.setLong(5, t.numero);
+            ps.setLong(6, t.cantidad);
+            ps.setDouble(7, t.compra);
+            ps.setDouble(8, t.venta);
+            ps.setLong(9, t.numero);
+            ps.setLong(10, t.cantidad);
+            ps.setDouble(11, t.compra);
+            ps.setDouble(12, t.venta);
+        });
+    }
+
+    // Totales diarios de un tipo de movimiento entre dos días (inclusive), sin recorrer la tabla de movimientos
+    @Transactional(readOnly = true)
+    public List<VentasDiaResponse> totalesPorDia(TipoMovimiento tipo, LocalDate desde, LocalDate hasta, Long almacenId) {
+        if (hasta.isBefore(desde)) {
+            throw new RuntimeException("La fecha 'hasta' no puede ser anterior a 'desde'");
+        }
+        return resumenRepository.totalesPorDia(tipo, desde, hasta, almacenId);
+    }
+
+    // Metodo para recalcular los totales de un rango de días (inclusive) desde los movimientos y el archivo
+    // Cada tramo de días se borra y se regenera en su propia transacción; los tramos van en paralelo
+    public RellenoResumenDiarioResponse rellenar(LocalDate desde, LocalDate hasta) {
+        if (hasta.isBefore(desde)) {
+            throw new RuntimeException("La fecha 'hasta' no puede ser anterior a 'desde'");
+        }
+        long inicio = System.currentTimeMillis();
+
+        List<Callable<Integer>> tramos = new ArrayList<>();
+        for (LocalDate dia = desde; !dia.isAfter(hasta); dia = dia.plusDays(diasPorTramo)) {
+            LocalDate primero = dia;
+            LocalDate ultimo = dia.plusDays(diasPorTramo - 1L).isAfter(hasta) ? hasta : dia.plusDays(diasPorTramo - 1L);
+            tramos.add(() -> rellenarTramo(primero, ultimo));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(paralelismo, tramos.size())));
+        long filas = 0;
+        try {
+            for (Future<Integer> tramo : pool.invokeAll(tramos)) {
+                filas += tramo.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Relleno de los totales diarios interrumpido");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Relleno de los totales diarios fallido: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return new RellenoResumenDiarioResponse(desde, hasta, tramos.size(), filas, System.currentTimeMillis() - inicio);
+    }
+
+    private int rellenarTramo(LocalDate primero, LocalDate ultimo) {
+        LocalDateTime desde = primero.atStartOfDay();
+        LocalDateTime hasta = ultimo.plusDays(1).atStartOfDay();
+        for (int intento = 1; ; intento++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    resumenRepository.borrarEntre(primero, ultimo);
+                    return resumenRepository.generar(desde, hasta);
+                });
+            } catch (PessimisticLockingFailureException e) {
+                if (intento == MAX_INTENTOS) throw e;
+            }
+        }
+    }
+}
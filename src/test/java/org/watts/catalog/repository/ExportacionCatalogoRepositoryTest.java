@@ -0,0 +1,99 @@
+package org.watts.catalog.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.domain.Specification;
+import org.watts.catalog.dto.VarianteExportacion;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.config.AuditConfig;
+import org.watts.shared.service.ReportService;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(AuditConfig.class)
+class ExportacionCatalogoRepositoryTest {
+
+    @Autowired private TestEntityManager entityManager;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private ExportacionCatalogoRepository repository;
+    private Statistics estadisticas;
+
+    @BeforeEach
+    void setUp() {
+        repository = new ExportacionCatalogoRepository(entityManager.getEntityManager());
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // 600 variantes de 20 productos: más de un volcado de la tabla del PDF
+        Color color = new Color(); color.setNombre("Rojo"); entityManager.persist(color);
+        Talla[] tallas = new Talla[30];
+        for (int j = 0; j < tallas.length; j++) {
+            tallas[j] = new Talla(); tallas[j].setNombre("T" + j); entityManager.persist(tallas[j]);
+        }
+        for (int i = 0; i < 20; i++) {
+            Producto p = new Producto(); p.setNombre("Producto " + i); p.setCodigoBase("P" + i); entityManager.persist(p);
+            for (Talla talla : tallas) {
+                Variante v = new Variante(); v.setProducto(p); v.setTalla(talla); v.setColor(color);
+                v.setPrecioCompra(1.0); v.setPrecioVenta(2.0);
+                entityManager.persist(v);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        estadisticas.clear();
+    }
+
+    @Test
+    @DisplayName("Las variantes se exportan con una sola sentencia y sin cargar entidades")
+    void variantesEnUnaSentencia() {
+        Specification<Variante> tallaT0 = (root, query, cb) -> cb.equal(root.get("talla").get("nombre"), "T0");
+
+        List<VarianteExportacion> filas;
+        try (Stream<VarianteExportacion> variantes = repository.variantes(tallaT0)) {
+            filas = variantes.toList();
+        }
+
+        assertEquals(20, filas.size());
+        assertEquals(new VarianteExportacion("P0-T0-ROJ", "Producto 0", "T0", "Rojo", 1.0, 2.0, true), filas.get(0));
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+        assertEquals(0, estadisticas.getEntityLoadCount());
+    }
+
+    @Test
+    @DisplayName("El CSV y el PDF se escriben desde el Stream, también por encima del tamaño de volcado")
+    void escribirInformes() {
+        ReportService reportService = new ReportService();
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        try (Stream<VarianteExportacion> variantes = repository.variantes(null)) {
+            reportService.generarCsvVariantes(variantes, csv);
+        }
+        String[] lineas = csv.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(601, lineas.length);
+        assertTrue(lineas[1].startsWith("P0-T0-ROJ,"));
+
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        try (Stream<VarianteExportacion> variantes = repository.variantes(null)) {
+            reportService.generarPdfVariantes(variantes, pdf);
+        }
+        assertTrue(pdf.toString(StandardCharsets.ISO_8859_1).startsWith("%PDF"));
+    }
+}
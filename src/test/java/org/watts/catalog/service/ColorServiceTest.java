@@ -1,5 +1,7 @@
 package org.watts.catalog.service;
 
+import org.watts.inventory.service.IndiceReferenciasService;
+import org.watts.inventory.service.VistaInventarioService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -24,6 +26,12 @@ class ColorServiceTest {
     @Mock
     private ColorRepository colorRepository;
 
+    @Mock
+    private VistaInventarioService vistaInventarioService;
+
+    @Mock
+    private IndiceReferenciasService indiceReferencias;
+
     @InjectMocks
     private ColorService colorService;
 
@@ -1,5 +1,7 @@
 package org.watts.catalog.service;
 
+import org.watts.inventory.service.IndiceReferenciasService;
+import org.watts.inventory.service.VistaInventarioService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -35,6 +37,8 @@ class ProductoServiceTest {
     @Mock private ProductoMapper productoMapper;
     @Mock private StorageService storageService; // Necesario porque se usa al crear/actualizar
     @Mock private ReportService reportService;
+    @Mock private VistaInventarioService vistaInventarioService;
+    @Mock private IndiceReferenciasService indiceReferencias;
 
     @InjectMocks
     private ProductoService productoService;
@@ -1,5 +1,7 @@
 package org.watts.catalog.service;
 
+import org.watts.inventory.service.IndiceReferenciasService;
+import org.watts.inventory.service.VistaInventarioService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -22,6 +24,12 @@ class TallaServiceTest {
     @Mock
     private TallaRepository tallaRepository; // Simulamos el repositorio
 
+    @Mock
+    private VistaInventarioService vistaInventarioService;
+
+    @Mock
+    private IndiceReferenciasService indiceReferencias;
+
     @InjectMocks
     private TallaService tallaService; // Inyectamos el mock en el servicio real
 
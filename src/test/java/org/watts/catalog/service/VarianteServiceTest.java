@@ -21,6 +21,7 @@ import org.watts.catalog.repository.ColorRepository;
 import org.watts.catalog.repository.ProductoRepository;
 import org.watts.catalog.repository.TallaRepository;
 import org.watts.catalog.repository.VarianteRepository;
+import org.watts.inventory.service.IndiceReferenciasService;
 import org.watts.shared.service.ReportService;
 import org.watts.shared.service.StorageService;
 
@@ -42,6 +43,7 @@ class VarianteServiceTest {
     @Mock private VarianteMapper varianteMapper;
     @Mock private StorageService storageService;
     @Mock private ReportService reportService;
+    @Mock private IndiceReferenciasService indiceReferencias;
 
     @InjectMocks
     private VarianteService varianteService;
@@ -0,0 +1,109 @@
+package org.watts.dashboard.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.config.AuditConfig;
+import org.watts.dashboard.dto.DashboardResponse;
+import org.watts.dashboard.dto.KpiAlmacenResponse;
+import org.watts.dashboard.dto.KpiPeriodoResponse;
+import org.watts.inventory.dto.ValoracionAlmacenResponse;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.repository.ValoracionInventarioRepository;
+import org.watts.transaction.model.MovimientosAplicadosEvent;
+import org.watts.transaction.repository.ResumenMovimientosDiaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@DataJpaTest
+@Import(AuditConfig.class)
+class DashboardServiceTest {
+
+    @Autowired private ResumenMovimientosDiaRepository resumenRepository;
+    @Autowired private ValoracionInventarioRepository valoracionRepository;
+    @Autowired private TestEntityManager entityManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private DashboardService servicio;
+    private Variante v1, v2;
+    private Almacen a1, a2;
+    private final LocalDate hoy = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+        Producto p = new Producto(); p.setNombre("P"); p.setCodigoBase("C"); entityManager.persist(p);
+        Talla t = new Talla(); t.setNombre("T"); entityManager.persist(t);
+        v1 = variante(p, t, "Rojo");
+        v2 = variante(p, t, "Azul");
+        a1 = new Almacen(); a1.setCodigo("A1"); entityManager.persist(a1);
+        a2 = new Almacen(); a2.setCodigo("A2"); entityManager.persist(a2);
+        entityManager.flush();
+
+        // Sin recarga completa por antigüedad durante el test
+        servicio = new DashboardService(resumenRepository, valoracionRepository, 3_600_000, 1);
+
+        totales(hoy, v1, a1, 2, 10, 40);
+        totales(hoy, v2, a2, 1, 30, 50);
+        // Fuera de cualquier periodo
+        totales(hoy.minusDays(40), v1, a1, 100, 100, 1000);
+        jdbcTemplate.update("INSERT INTO valoracion_inventario (variante_id, almacen_id, cantidad, coste_medio, valor_fifo) " +
+                "VALUES (?, ?, 4, 5.0, 22.0)", v1.getId(), a1.getId());
+    }
+
+    private Variante variante(Producto p, Talla t, String nombreColor) {
+        Color c = new Color(); c.setNombre(nombreColor); entityManager.persist(c);
+        Variante v = new Variante(); v.setProducto(p); v.setTalla(t); v.setColor(c); v.setSku(nombreColor);
+        entityManager.persist(v);
+        return v;
+    }
+
+    private void totales(LocalDate dia, Variante variante, Almacen almacen, long cantidad, double compra, double venta) {
+        jdbcTemplate.update("INSERT INTO movimientos_diarios (dia, variante_id, almacen_id, tipo, numero_movimientos, " +
+                "cantidad_total, precio_compra_total, precio_venta_total) VALUES (?, ?, ?, 'VENTA', 1, ?, ?, ?)",
+                dia, variante.getId(), almacen.getId(), cantidad, compra, venta);
+    }
+
+    @Test
+    @DisplayName("Los KPIs salen de los totales diarios y solo se recalculan tras confirmarse movimientos")
+    void dashboardTest() {
+        DashboardResponse panel = servicio.dashboard();
+
+        assertEquals(List.of("HOY", "SEMANA", "MES"), panel.periodos().stream().map(KpiPeriodoResponse::periodo).toList());
+        for (KpiPeriodoResponse periodo : panel.periodos()) {
+            assertEquals(3, periodo.unidadesVendidas());
+            assertEquals(90.0, periodo.ingresos(), 1e-9);
+            assertEquals(50.0, periodo.margenBruto(), 1e-9);
+            assertEquals(List.of(new KpiAlmacenResponse(a1.getId(), 2, 40.0, 30.0),
+                    new KpiAlmacenResponse(a2.getId(), 1, 50.0, 20.0)), periodo.porAlmacen());
+            // Solo el primero: top-skus = 1
+            assertEquals(1, periodo.topSkus().size());
+            assertEquals(v2.getSku(), periodo.topSkus().get(0).sku());
+        }
+        assertEquals(List.of(new ValoracionAlmacenResponse(a1.getId(), 20.0, 22.0)), panel.valorStock());
+
+        // Sin aviso de movimientos no se vuelve a consultar
+        totales(hoy, v1, a2, 5, 10, 100);
+        servicio.refrescar();
+        assertSame(panel, servicio.dashboard());
+
+        servicio.alAplicarMovimientos(new MovimientosAplicadosEvent(List.of()));
+        servicio.refrescar();
+        KpiPeriodoResponse deHoy = servicio.dashboard().periodos().get(0);
+        assertEquals(8, deHoy.unidadesVendidas());
+        assertEquals(190.0, deHoy.ingresos(), 1e-9);
+        assertEquals(v1.getSku(), deHoy.topSkus().get(0).sku());
+    }
+}
@@ -0,0 +1,112 @@
+package org.watts.inventory.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.config.AuditConfig;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.models.ClaveInventario;
+import org.watts.inventory.models.Inventario;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Las consultas nativas usan sintaxis de MySQL, así que arrancamos H2 en modo compatible
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:inventario;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(AuditConfig.class)
+class InventarioRepositoryTest {
+
+    @Autowired private InventarioRepository inventarioRepository;
+    @Autowired private TestEntityManager entityManager;
+
+    private Variante variante;
+    private Almacen almacen;
+
+    @BeforeEach
+    void setUp() {
+        Producto p = new Producto(); p.setNombre("P"); p.setCodigoBase("C"); entityManager.persist(p);
+        Talla t = new Talla(); t.setNombre("T"); entityManager.persist(t);
+        Color c = new Color(); c.setNombre("C"); entityManager.persist(c);
+
+        variante = new Variante();
+        variante.setProducto(p); variante.setTalla(t); variante.setColor(c);
+        entityManager.persist(variante);
+
+        almacen = new Almacen(); almacen.setCodigo("A1"); entityManager.persist(almacen);
+        entityManager.flush();
+    }
+
+    @Test
+    @DisplayName("Debe crear la fila de inventario en el primer incremento y sumar en los siguientes")
+    void incrementarStockTest() {
+        inventarioRepository.incrementarStock(variante.getId(), almacen.getId(), 5);
+        inventarioRepository.incrementarStock(variante.getId(), almacen.getId(), 3);
+
+        assertEquals(8, inventarioRepository.findStockActual(variante.getId(), almacen.getId()).orElseThrow().stock());
+        assertEquals(1, inventarioRepository.count());
+    }
+
+    @Test
+    @DisplayName("No debe restar stock si el resultado quedaría negativo")
+    void decrementarStockTest() {
+        inventarioRepository.incrementarStock(variante.getId(), almacen.getId(), 5);
+
+        assertEquals(0, inventarioRepository.decrementarStock(variante.getId(), almacen.getId(), 6, 0));
+        assertEquals(1, inventarioRepository.decrementarStock(variante.getId(), almacen.getId(), 5, 0));
+        assertEquals(0, inventarioRepository.findStockActual(variante.getId(), almacen.getId()).orElseThrow().stock());
+        // Sin fila todavía no hay nada que restar
+        assertTrue(inventarioRepository.findStockActual(variante.getId(), almacen.getId() + 1).isEmpty());
+    }
+
+    @Test
+    @DisplayName("No debe restar stock reservado")
+    void decrementarStockReservadoTest() {
+        inventarioRepository.incrementarStock(variante.getId(), almacen.getId(), 5);
+
+        assertEquals(0, inventarioRepository.decrementarStock(variante.getId(), almacen.getId(), 3, 3));
+        assertEquals(1, inventarioRepository.decrementarStock(variante.getId(), almacen.getId(), 2, 3));
+        assertEquals(3, inventarioRepository.findStockActual(variante.getId(), almacen.getId()).orElseThrow().stock());
+    }
+
+    @Test
+    @DisplayName("Debe crear la fila que falta sin tocar el stock de las que existen y bloquear solo los pares pedidos")
+    void bloquearClavesTest() {
+        Variante otra = new Variante();
+        otra.setProducto(variante.getProducto()); otra.setTalla(variante.getTalla());
+        Color c = new Color(); c.setNombre("Azul"); entityManager.persist(c);
+        otra.setColor(c);
+        entityManager.persist(otra);
+        Almacen almacen2 = new Almacen(); almacen2.setCodigo("A2"); entityManager.persist(almacen2);
+
+        inventarioRepository.incrementarStock(variante.getId(), almacen.getId(), 5);
+        inventarioRepository.incrementarStock(variante.getId(), almacen2.getId(), 1);
+        inventarioRepository.incrementarStock(otra.getId(), almacen.getId(), 1);
+        inventarioRepository.crearSiNoExiste(variante.getId(), almacen.getId());
+        inventarioRepository.crearSiNoExiste(otra.getId(), almacen2.getId());
+
+        List<Inventario> bloqueadas = inventarioRepository.bloquearClaves(Set.of(
+                new ClaveInventario(otra.getId(), almacen2.getId()), new ClaveInventario(variante.getId(), almacen.getId())));
+
+        // Las combinaciones cruzadas (variante, almacén2) y (otra, almacén) no entran
+        assertEquals(List.of(new ClaveInventario(variante.getId(), almacen.getId()), new ClaveInventario(otra.getId(), almacen2.getId())),
+                bloqueadas.stream().map(ClaveInventario::de).toList());
+        assertEquals(5, bloqueadas.get(0).getStock());
+        assertEquals(0, bloqueadas.get(1).getStock());
+    }
+}
@@ -0,0 +1,89 @@
+package org.watts.inventory.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.config.AuditConfig;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.models.InventarioVista;
+import org.watts.inventory.service.VistaInventarioService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Las consultas nativas usan sintaxis de MySQL, así que arrancamos H2 en modo compatible
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:vista;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({AuditConfig.class, VistaInventarioService.class})
+class InventarioVistaRepositoryTest {
+
+    @Autowired private InventarioRepository inventarioRepository;
+    @Autowired private InventarioVistaRepository inventarioVistaRepository;
+    @Autowired private StockTotalVarianteRepository stockTotalVarianteRepository;
+    @Autowired private VistaInventarioService vistaInventarioService;
+    @Autowired private TestEntityManager entityManager;
+
+    private Variante variante;
+    private Almacen almacen1;
+    private Almacen almacen2;
+
+    @BeforeEach
+    void setUp() {
+        Producto p = new Producto(); p.setNombre("Camiseta"); p.setCodigoBase("CAM"); entityManager.persist(p);
+        Talla t = new Talla(); t.setNombre("M"); entityManager.persist(t);
+        Color c = new Color(); c.setNombre("Rojo"); entityManager.persist(c);
+
+        variante = new Variante();
+        variante.setProducto(p); variante.setTalla(t); variante.setColor(c);
+        entityManager.persist(variante);
+
+        almacen1 = new Almacen(); almacen1.setCodigo("A1"); almacen1.setDescripcion("Central"); entityManager.persist(almacen1);
+        almacen2 = new Almacen(); almacen2.setCodigo("A2"); almacen2.setDescripcion("Tienda"); entityManager.persist(almacen2);
+        entityManager.flush();
+    }
+
+    @Test
+    @DisplayName("Debe crear la fila plana con los nombres del catálogo y mantener el total de la variante")
+    void registrarStockTest() {
+        inventarioRepository.incrementarStock(variante.getId(), almacen1.getId(), 5);
+        vistaInventarioService.registrarStock(variante.getId(), almacen1.getId(), 5);
+        inventarioRepository.incrementarStock(variante.getId(), almacen2.getId(), 3);
+        vistaInventarioService.registrarStock(variante.getId(), almacen2.getId(), 3);
+        vistaInventarioService.registrarStock(variante.getId(), almacen1.getId(), 1);
+        entityManager.clear();
+
+        InventarioVista vista = inventarioVistaRepository.findAll().stream()
+                .filter(v -> v.getAlmacenId().equals(almacen1.getId())).findFirst().orElseThrow();
+        assertEquals(variante.getSku(), vista.getSku());
+        assertEquals("Camiseta", vista.getProductoNombre());
+        assertEquals("Central", vista.getAlmacenNombre());
+        assertEquals(1, vista.getStock());
+        assertEquals(4, stockTotalVarianteRepository.findById(variante.getId()).orElseThrow().getStockTotal());
+    }
+
+    @Test
+    @DisplayName("Debe reconstruir la vista y los totales desde inventario")
+    void reconstruirTest() {
+        inventarioRepository.incrementarStock(variante.getId(), almacen1.getId(), 2);
+        inventarioRepository.incrementarStock(variante.getId(), almacen2.getId(), 7);
+
+        vistaInventarioService.reconstruirSiVacia();
+        vistaInventarioService.renombrarAlmacen(almacen2.getId(), "Outlet");
+        entityManager.clear();
+
+        assertEquals(2, inventarioVistaRepository.count());
+        assertEquals(9, stockTotalVarianteRepository.findById(variante.getId()).orElseThrow().getStockTotal());
+        assertEquals(1, inventarioVistaRepository.findAll().stream().filter(v -> "Outlet".equals(v.getAlmacenNombre())).count());
+    }
+}
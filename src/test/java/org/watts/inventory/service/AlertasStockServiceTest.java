@@ -0,0 +1,93 @@
+package org.watts.inventory.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.watts.catalog.model.Variante;
+import org.watts.catalog.repository.VarianteRepository;
+import org.watts.inventory.models.AlertaStock;
+import org.watts.inventory.models.UmbralStock;
+import org.watts.inventory.repository.AlertaStockRepository;
+import org.watts.inventory.repository.InventarioRepository;
+import org.watts.inventory.repository.UmbralStockRepository;
+import org.watts.shared.service.EmailService;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AlertasStockServiceTest {
+
+    @Mock private UmbralStockRepository umbralStockRepository;
+    @Mock private AlertaStockRepository alertaStockRepository;
+    @Mock private InventarioRepository inventarioRepository;
+    @Mock private VarianteRepository varianteRepository;
+    @Mock private EmailService emailService;
+
+    private AlertasStockService alertasStockService;
+
+    @BeforeEach
+    void setUp() {
+        // Mínimo 5, se rearma al volver a 8
+        UmbralStock umbral = new UmbralStock();
+        ReflectionTestUtils.setField(umbral, "id", 3L);
+        umbral.setVarianteId(1L); umbral.setAlmacenId(2L); umbral.setMinimo(5); umbral.setHisteresis(3);
+        when(umbralStockRepository.findAll()).thenReturn(List.of(umbral));
+
+        alertasStockService = new AlertasStockService(umbralStockRepository, alertaStockRepository,
+                inventarioRepository, varianteRepository, emailService);
+        alertasStockService.cargarUmbrales();
+    }
+
+    @Test
+    @DisplayName("Salta una sola alerta al bajar del mínimo y no vuelve a saltar hasta recuperar mínimo + histéresis")
+    void histeresisTest() {
+        Variante variante = new Variante(); variante.setSku("SKU-1");
+        when(varianteRepository.findById(1L)).thenReturn(Optional.of(variante));
+        when(umbralStockRepository.cambiarEstado(eq(3L), anyBoolean(), anyBoolean())).thenReturn(1);
+
+        alertasStockService.evaluar(1L, 2L, 6);  // por encima: nada
+        alertasStockService.evaluar(1L, 2L, 4);  // cruza: alerta
+        alertasStockService.evaluar(1L, 2L, 3);  // sigue abajo: nada nuevo
+        alertasStockService.evaluar(1L, 2L, 6);  // dentro de la histéresis: sigue en alerta
+        alertasStockService.evaluar(1L, 2L, 4);  // vuelve a bajar sin haberse rearmado: nada
+        verify(alertaStockRepository, times(1)).save(any(AlertaStock.class));
+        verify(emailService, times(1)).enviarNotificacionMovimiento(eq("Stock bajo: SKU-1"), anyString());
+        verify(alertaStockRepository, never()).resolver(any(), any(), any());
+
+        alertasStockService.evaluar(1L, 2L, 8);  // se rearma
+        verify(alertaStockRepository).resolver(eq(1L), eq(2L), any());
+
+        alertasStockService.evaluar(1L, 2L, 2);  // nueva alerta
+        verify(alertaStockRepository, times(2)).save(any(AlertaStock.class));
+
+        // Filas sin umbral: ni se consultan
+        alertasStockService.evaluar(9L, 2L, 0);
+        verify(umbralStockRepository, times(3)).cambiarEstado(eq(3L), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    @DisplayName("La recarga quita los umbrales borrados en otra instancia y añade los nuevos")
+    void recargarUmbralesTest() {
+        UmbralStock nuevo = new UmbralStock();
+        ReflectionTestUtils.setField(nuevo, "id", 4L);
+        nuevo.setVarianteId(7L); nuevo.setAlmacenId(2L); nuevo.setMinimo(5); nuevo.setHisteresis(0);
+        when(umbralStockRepository.findAll()).thenReturn(List.of(nuevo));
+        when(umbralStockRepository.cambiarEstado(eq(4L), anyBoolean(), anyBoolean())).thenReturn(1);
+
+        alertasStockService.recargarUmbrales();
+        alertasStockService.evaluar(1L, 2L, 0);
+        alertasStockService.evaluar(7L, 2L, 0);
+        verify(umbralStockRepository, never()).cambiarEstado(eq(3L), anyBoolean(), anyBoolean());
+        verify(umbralStockRepository).cambiarEstado(4L, false, true);
+    }
+}
@@ -0,0 +1,174 @@
+package org.watts.inventory.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.catalog.repository.ColorRepository;
+import org.watts.catalog.repository.ProductoRepository;
+import org.watts.catalog.repository.TallaRepository;
+import org.watts.catalog.repository.VarianteRepository;
+import org.watts.config.AuditConfig;
+import org.watts.inventory.dto.ConciliacionResponse;
+import org.watts.inventory.enums.EstadoConciliacion;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.models.Inventario;
+import org.watts.inventory.repository.AlmacenRepository;
+import org.watts.inventory.repository.InventarioRepository;
+import org.watts.inventory.repository.InventarioVistaRepository;
+import org.watts.inventory.repository.StockTotalVarianteRepository;
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.model.Movimiento;
+import org.watts.transaction.repository.MovimientoRepository;
+import org.watts.transaction.service.LibroStockMemoria;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Sin transacción de test: cada tramo se lee y se corrige en su propia transacción desde el pool
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:conciliacion;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(AuditConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ConciliacionInventarioServiceTest {
+
+    @Autowired private InventarioRepository inventarioRepository;
+    @Autowired private InventarioVistaRepository inventarioVistaRepository;
+    @Autowired private StockTotalVarianteRepository stockTotalVarianteRepository;
+    @Autowired private MovimientoRepository movimientoRepository;
+    @Autowired private ProductoRepository productoRepository;
+    @Autowired private TallaRepository tallaRepository;
+    @Autowired private ColorRepository colorRepository;
+    @Autowired private VarianteRepository varianteRepository;
+    @Autowired private AlmacenRepository almacenRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private ConciliacionInventarioService servicio;
+    private Variante v1, v2, v3;
+    private Almacen a1, a2;
+
+    @BeforeEach
+    void setUp() {
+        Producto p = new Producto(); p.setNombre("P"); p.setCodigoBase("C"); productoRepository.save(p);
+        Talla t = new Talla(); t.setNombre("T"); tallaRepository.save(t);
+        v1 = variante(p, t, "Rojo");
+        v2 = variante(p, t, "Verde");
+        v3 = variante(p, t, "Azul");
+        a1 = new Almacen(); a1.setCodigo("A1"); a1 = almacenRepository.save(a1);
+        a2 = new Almacen(); a2.setCodigo("A2"); a2 = almacenRepository.save(a2);
+
+        VistaInventarioService vista = new VistaInventarioService(inventarioVistaRepository, stockTotalVarianteRepository);
+        // Un tramo por variante para repartir el trabajo entre varios hilos
+        servicio = new ConciliacionInventarioService(jdbcTemplate, transactionManager, vista,
+                mock(AlertasStockService.class), mock(LibroStockMemoria.class), 2, 1, 2);
+
+        // v1/A1 cuadra, v2/A1 tiene stock de más, v2/A2 no tiene fila y v3/A2 tiene stock sin movimientos
+        movimiento(v1, a1, TipoMovimiento.COMPRA, 10);
+        movimiento(v1, a1, TipoMovimiento.VENTA, 3);
+        movimiento(v2, a1, TipoMovimiento.COMPRA, 5);
+        movimiento(v2, a2, TipoMovimiento.COMPRA, 4);
+        inventario(v1, a1, 7);
+        inventario(v2, a1, 8);
+        inventario(v3, a2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        inventarioVistaRepository.deleteAll();
+        stockTotalVarianteRepository.deleteAll();
+        inventarioRepository.deleteAll();
+        movimientoRepository.deleteAll();
+        varianteRepository.deleteAll();
+        almacenRepository.deleteAll();
+        productoRepository.deleteAll();
+        tallaRepository.deleteAll();
+        colorRepository.deleteAll();
+    }
+
+    private Variante variante(Producto p, Talla t, String nombreColor) {
+        Color c = new Color(); c.setNombre(nombreColor); colorRepository.save(c);
+        Variante v = new Variante(); v.setProducto(p); v.setTalla(t); v.setColor(c); v.setSku(nombreColor);
+        return varianteRepository.save(v);
+    }
+
+    private void movimiento(Variante variante, Almacen almacen, TipoMovimiento tipo, int cantidad) {
+        Movimiento m = new Movimiento();
+        m.setVariante(variante); m.setAlmacen(almacen); m.setTipo(tipo);
+        m.setCantidad(cantidad); m.setStockResultante(0);
+        movimientoRepository.save(m);
+    }
+
+    private void inventario(Variante variante, Almacen almacen, int stock) {
+        Inventario inventario = new Inventario();
+        inventario.setVariante(variante); inventario.setAlmacen(almacen); inventario.setStock(stock);
+        inventarioRepository.save(inventario);
+    }
+
+    private int stock(Variante variante, Almacen almacen) {
+        return inventarioRepository.findStockActual(variante.getId(), almacen.getId()).orElseThrow().stock();
+    }
+
+    @Test
+    @DisplayName("Informa de los descuadres sin tocar el inventario")
+    void conciliarSinRepararTest() {
+        ConciliacionResponse resultado = servicio.conciliar(false);
+
+        assertEquals(EstadoConciliacion.TERMINADA, resultado.estado());
+        assertEquals(3, resultado.rangosTotales());
+        assertEquals(3, resultado.rangosCompletados());
+        assertEquals(4, resultado.filasComprobadas());
+        assertEquals(3, resultado.descuadres());
+        assertEquals(3, resultado.muestra().size());
+        assertEquals(0, resultado.filasReparadas());
+        assertEquals(8, stock(v2, a1));
+        assertEquals(resultado, servicio.estado());
+    }
+
+    @Test
+    @DisplayName("Con reparar corrige el stock, crea las filas que faltan y deja el inventario cuadrado")
+    void conciliarReparandoTest() {
+        ConciliacionResponse resultado = servicio.conciliar(true);
+
+        assertEquals(3, resultado.descuadres());
+        assertEquals(3, resultado.filasReparadas());
+        assertEquals(7, stock(v1, a1));
+        assertEquals(5, stock(v2, a1));
+        assertEquals(4, stock(v2, a2));
+        assertEquals(0, stock(v3, a2));
+        assertEquals(9, stockTotalVarianteRepository.findById(v2.getId()).orElseThrow().getStockTotal());
+
+        assertEquals(0, servicio.conciliar(false).descuadres());
+    }
+
+    @Test
+    @DisplayName("En modo memoria no repara (el libro de stock no se enteraría), pero sí informa")
+    void conciliarEnModoMemoriaTest() {
+        LibroStockMemoria libro = mock(LibroStockMemoria.class);
+        when(libro.isActivo()).thenReturn(true);
+        ConciliacionInventarioService memoria = new ConciliacionInventarioService(jdbcTemplate, transactionManager,
+                new VistaInventarioService(inventarioVistaRepository, stockTotalVarianteRepository),
+                mock(AlertasStockService.class), libro, 2, 1, 2);
+
+        assertThrows(RuntimeException.class, () -> memoria.conciliar(true));
+        assertEquals(8, stock(v2, a1));
+        assertEquals(3, memoria.conciliar(false).descuadres());
+    }
+}
@@ -0,0 +1,112 @@
+package org.watts.inventory.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.catalog.repository.VarianteRepository;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.repository.AlmacenRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IndiceReferenciasServiceTest {
+
+    @Mock private VarianteRepository varianteRepository;
+    @Mock private AlmacenRepository almacenRepository;
+
+    private IndiceReferenciasService indice;
+    private Variante variante;
+
+    @BeforeEach
+    void setUp() {
+        Producto producto = new Producto(); producto.setId(1L); producto.setNombre("Camiseta"); producto.setCodigoBase("CAM");
+        Talla talla = new Talla(); talla.setId(2L); talla.setNombre("M");
+        Color color = new Color(); color.setId(3L); color.setNombre("Rojo");
+        variante = new Variante(); variante.setId(10L); variante.setProducto(producto); variante.setTalla(talla);
+        variante.setColor(color); variante.setPrecioCompra(4.0); variante.setPrecioVenta(9.0);
+        variante.generarSkuAutomatico();
+        Almacen almacen = new Almacen(); almacen.setId(5L); almacen.setCodigo("A5"); almacen.setDescripcion("Central");
+
+        when(varianteRepository.findAllConProducto()).thenReturn(List.of(variante));
+        when(almacenRepository.findAll()).thenReturn(List.of(almacen));
+        indice = new IndiceReferenciasService(varianteRepository, almacenRepository, 60_000);
+        indice.cargar();
+    }
+
+    @Test
+    @DisplayName("Resuelve SKU y almacén desde memoria, con precios y nombres para el movimiento y la respuesta")
+    void resolverSinConsultas() {
+        Variante resuelta = indice.variante("CAM-M-ROJ").orElseThrow().aEntidad();
+        Almacen almacen = indice.almacen(5L).orElseThrow().aEntidad();
+
+        assertEquals(10L, resuelta.getId());
+        assertEquals(4.0, resuelta.getPrecioCompra());
+        assertEquals("Camiseta", resuelta.getProducto().getNombre());
+        assertEquals("M", resuelta.getTalla().getNombre());
+        assertEquals("Central", almacen.getDescripcion());
+        verify(varianteRepository, never()).findConProductoBySku(any());
+        verify(almacenRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("Un SKU regenerado sustituye al anterior solo cuando la transacción se confirma")
+    void regenerarSkuAlConfirmar() {
+        variante.getProducto().setCodigoBase("TEE");
+        variante.generarSkuAutomatico();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            indice.registrarVariante(variante);
+            assertTrue(indice.variante("CAM-M-ROJ").isPresent());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(10L, indice.variante("TEE-M-ROJ").orElseThrow().id());
+        when(varianteRepository.findConProductoBySku("CAM-M-ROJ")).thenReturn(Optional.empty());
+        assertTrue(indice.variante("CAM-M-ROJ").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Lo que no está en el índice se lee una vez de la BDD y se queda")
+    void leerLoQueFalta() {
+        Almacen nuevo = new Almacen(); nuevo.setId(6L); nuevo.setCodigo("A6");
+        when(almacenRepository.findById(6L)).thenReturn(Optional.of(nuevo));
+
+        assertEquals("A6", indice.almacen(6L).orElseThrow().codigo());
+        assertEquals("A6", indice.almacen(6L).orElseThrow().codigo());
+        verify(almacenRepository, times(1)).findById(6L);
+    }
+
+    @Test
+    @DisplayName("Una variante caducada se vuelve a leer de la BDD y toma los precios cambiados en otra instancia")
+    void releerPreciosCaducados() {
+        IndiceReferenciasService caduca = new IndiceReferenciasService(varianteRepository, almacenRepository, 0);
+        caduca.cargar();
+        variante.setPrecioVenta(12.0);
+        when(varianteRepository.findConProductoBySku("CAM-M-ROJ")).thenReturn(Optional.of(variante));
+
+        assertEquals(12.0, caduca.variante("CAM-M-ROJ").orElseThrow().precioVenta());
+        verify(varianteRepository).findConProductoBySku("CAM-M-ROJ");
+
+        // Borrada en otra instancia: deja de resolverse
+        when(varianteRepository.findConProductoBySku("CAM-M-ROJ")).thenReturn(Optional.empty());
+        assertTrue(caduca.variante("CAM-M-ROJ").isEmpty());
+    }
+}
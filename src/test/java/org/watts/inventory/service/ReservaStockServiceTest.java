@@ -0,0 +1,195 @@
+package org.watts.inventory.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.catalog.repository.ColorRepository;
+import org.watts.catalog.repository.ProductoRepository;
+import org.watts.catalog.repository.TallaRepository;
+import org.watts.catalog.repository.VarianteRepository;
+import org.watts.config.AuditConfig;
+import org.watts.inventory.dto.ReservaResponse;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.models.ClaveInventario;
+import org.watts.inventory.models.ReservaStock;
+import org.watts.inventory.repository.AlmacenRepository;
+import org.watts.inventory.repository.InventarioRepository;
+import org.watts.inventory.repository.ReservaStockRepository;
+import org.watts.shared.exception.ConflictoException;
+import org.watts.shared.exception.ResourceNotFoundException;
+import org.watts.transaction.service.LibroStockMemoria;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Sin transacción de test: cada operación confirma la suya, como en producción
+// Las consultas nativas usan sintaxis de MySQL, así que arrancamos H2 en modo compatible
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reservas;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "inventario.reservas.ttl-defecto-segundos=60",
+        "inventario.reservas.ttl-maximo-segundos=120",
+        "inventario.reservas.ranuras=8",
+        "inventario.reservas.tick-ms=100"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({AuditConfig.class, ReservaStockService.class, RetencionesStock.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReservaStockServiceTest {
+
+    @Autowired private ReservaStockService reservaStockService;
+    @Autowired private ReservaStockRepository reservaStockRepository;
+    @Autowired private RetencionesStock retenciones;
+    @Autowired private InventarioRepository inventarioRepository;
+    @Autowired private ProductoRepository productoRepository;
+    @Autowired private TallaRepository tallaRepository;
+    @Autowired private ColorRepository colorRepository;
+    @Autowired private VarianteRepository varianteRepository;
+    @Autowired private AlmacenRepository almacenRepository;
+    @Autowired private TransactionTemplate transactionTemplate;
+    // Modo directo: el libro no está activo
+    @MockBean private LibroStockMemoria libroStock;
+
+    private Variante variante;
+    private Almacen almacen;
+
+    @BeforeEach
+    void setUp() {
+        Producto p = new Producto(); p.setNombre("P"); p.setCodigoBase("C"); productoRepository.save(p);
+        Talla t = new Talla(); t.setNombre("T"); tallaRepository.save(t);
+        Color c = new Color(); c.setNombre("C"); colorRepository.save(c);
+        variante = new Variante(); variante.setProducto(p); variante.setTalla(t); variante.setColor(c); variante.setSku("SKU-1");
+        variante = varianteRepository.save(variante);
+        almacen = new Almacen(); almacen.setCodigo("A1"); almacen = almacenRepository.save(almacen);
+        transactionTemplate.executeWithoutResult(s -> inventarioRepository.incrementarStock(variante.getId(), almacen.getId(), 10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        reservaStockRepository.deleteAll();
+        inventarioRepository.deleteAll();
+        varianteRepository.deleteAll();
+        almacenRepository.deleteAll();
+        productoRepository.deleteAll();
+        tallaRepository.deleteAll();
+        colorRepository.deleteAll();
+    }
+
+    private ClaveInventario clave() {
+        return new ClaveInventario(variante.getId(), almacen.getId());
+    }
+
+    // Una salida como la de InventarioService: respeta lo reservado que lee del índice
+    private int restar(int cantidad) {
+        Integer filas = transactionTemplate.execute(s -> inventarioRepository.decrementarStock(variante.getId(), almacen.getId(),
+                cantidad, retenciones.salida(clave(), cantidad)));
+        return filas != null ? filas : 0;
+    }
+
+    @Test
+    @DisplayName("Las reservas restan del disponible, no pueden pasarse del stock, las salidas las respetan y al anularse lo devuelven")
+    void reservarYLiberarTest() {
+        ReservaResponse reserva = reservaStockService.reservar(variante, almacen, 7, null);
+        assertEquals(7, retenciones.reservado(clave()));
+        assertEquals(3, reservaStockService.disponibilidad(variante, almacen).disponible());
+        assertTrue(reservaStockRepository.existsById(reserva.id()));
+
+        assertThrows(ConflictoException.class, () -> reservaStockService.reservar(variante, almacen, 4, null));
+        assertEquals(7, retenciones.reservado(clave()));
+        // Una salida no puede comerse lo reservado
+        assertEquals(0, restar(4));
+        assertEquals(1, restar(3));
+        assertEquals(7, retenciones.comprometido(clave()));
+
+        reservaStockService.liberar(reserva.id());
+        assertEquals(0, retenciones.comprometido(clave()));
+        assertEquals(7, reservaStockService.disponibilidad(variante, almacen).disponible());
+        assertFalse(reservaStockRepository.existsById(reserva.id()));
+        assertThrows(ResourceNotFoundException.class, () -> reservaStockService.liberar(reserva.id()));
+    }
+
+    @Test
+    @DisplayName("Una reserva no puede tomar el stock de una salida cuya transacción no ha terminado")
+    void reservarDuranteSalidaTest() throws Exception {
+        CountDownLatch anotada = new CountDownLatch(1);
+        CountDownLatch seguir = new CountDownLatch(1);
+        CompletableFuture<Void> salida = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(s -> {
+            retenciones.salida(clave(), 8);
+            anotada.countDown();
+            try {
+                seguir.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inventarioRepository.decrementarStock(variante.getId(), almacen.getId(), 8, 0);
+        }));
+        anotada.await();
+
+        // El stock confirmado todavía es 10, pero 8 están saliendo
+        assertThrows(ConflictoException.class, () -> reservaStockService.reservar(variante, almacen, 3, null));
+        assertEquals(0, retenciones.reservado(clave()));
+        seguir.countDown();
+        salida.get();
+
+        assertEquals(0, retenciones.comprometido(clave()));
+        ReservaResponse reserva = reservaStockService.reservar(variante, almacen, 2, null);
+        assertEquals(0, reservaStockService.disponibilidad(variante, almacen).disponible());
+        reservaStockService.liberar(reserva.id());
+    }
+
+    @Test
+    @DisplayName("Si la transacción que confirma la reserva se deshace, la reserva sigue retenida")
+    void extraerSeDeshaceTest() {
+        ReservaResponse reserva = reservaStockService.reservar(variante, almacen, 5, null);
+
+        assertThrows(RuntimeException.class, () -> transactionTemplate.executeWithoutResult(s -> {
+            reservaStockService.extraer(reserva.id());
+            throw new RuntimeException("La venta ha fallado");
+        }));
+        assertEquals(5, retenciones.comprometido(clave()));
+        assertTrue(reservaStockRepository.existsById(reserva.id()));
+
+        transactionTemplate.executeWithoutResult(s -> reservaStockService.extraer(reserva.id()));
+        assertEquals(0, retenciones.comprometido(clave()));
+        assertFalse(reservaStockRepository.existsById(reserva.id()));
+        assertThrows(ResourceNotFoundException.class, () -> reservaStockService.liberar(reserva.id()));
+    }
+
+    @Test
+    @DisplayName("Las reservas caducan una sola vez y las guardadas se recargan al arrancar")
+    void caducidadTest() {
+        ReservaResponse porRueda = reservaStockService.reservar(variante, almacen, 2, 1);
+        long ahora = System.currentTimeMillis();
+        assertEquals(0, reservaStockService.expirar(ahora - 1000));
+        assertEquals(1, reservaStockService.expirar(ahora + 2000));
+        assertEquals(0, reservaStockService.expirar(ahora + 2000));
+        assertEquals(0, retenciones.reservado(clave()));
+        assertFalse(reservaStockRepository.existsById(porRueda.id()));
+        assertThrows(ResourceNotFoundException.class, () -> reservaStockService.liberar(porRueda.id()));
+
+        // Reserva guardada antes de reiniciar
+        reservaStockRepository.save(new ReservaStock("guardada", variante.getId(), "SKU-1", almacen.getId(), 3,
+                LocalDateTime.now().plusSeconds(30)));
+        reservaStockService.cargar();
+        assertEquals(3, retenciones.reservado(clave()));
+        assertEquals(1, reservaStockService.expirar(System.currentTimeMillis() + 60000));
+        assertEquals(0, retenciones.reservado(clave()));
+        assertFalse(reservaStockRepository.existsById("guardada"));
+    }
+}
@@ -0,0 +1,136 @@
+package org.watts.inventory.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.catalog.repository.VarianteRepository;
+import org.watts.config.AuditConfig;
+import org.watts.inventory.dto.StockAFechaResponse;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.models.Inventario;
+import org.watts.inventory.repository.InventarioRepository;
+import org.watts.inventory.repository.SnapshotInventarioRepository;
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.model.Movimiento;
+import org.watts.transaction.repository.MovimientoArchivadoRepository;
+import org.watts.transaction.repository.MovimientoRepository;
+import org.watts.transaction.service.ArchivoMovimientosService;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@Import(AuditConfig.class)
+class SnapshotInventarioServiceTest {
+
+    @Autowired private SnapshotInventarioRepository snapshotRepository;
+    @Autowired private InventarioRepository inventarioRepository;
+    @Autowired private MovimientoRepository movimientoRepository;
+    @Autowired private MovimientoArchivadoRepository movimientoArchivadoRepository;
+    @Autowired private VarianteRepository varianteRepository;
+    @Autowired private TestEntityManager entityManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private SnapshotInventarioService servicio;
+    private Variante variante;
+    private Almacen almacen;
+    private final LocalDate hoy = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+        Producto p = new Producto(); p.setNombre("P"); p.setCodigoBase("C"); entityManager.persist(p);
+        Talla t = new Talla(); t.setNombre("T"); entityManager.persist(t);
+        Color c = new Color(); c.setNombre("C"); entityManager.persist(c);
+        variante = new Variante(); variante.setProducto(p); variante.setTalla(t); variante.setColor(c); variante.setSku("SKU");
+        entityManager.persist(variante);
+        almacen = new Almacen(); almacen.setCodigo("A1"); entityManager.persist(almacen);
+
+        // Nada archivado: todas las consultas van a la tabla caliente
+        ArchivoMovimientosService archivo = mock(ArchivoMovimientosService.class);
+        when(archivo.consultar(any(), any(), any()))
+                .thenAnswer(i -> i.<Function<ArchivoMovimientosService.Tramo, Object>>getArgument(2).apply(ArchivoMovimientosService.Tramo.CALIENTE));
+
+        servicio = new SnapshotInventarioService(snapshotRepository, inventarioRepository, movimientoRepository,
+                movimientoArchivadoRepository, archivo, varianteRepository, true, 5, 30);
+
+        // Compra de 10 hace tres días, venta de 4 hace dos y compra de 5 hoy: stock actual 11
+        movimiento(TipoMovimiento.COMPRA, 10, hoy.minusDays(3).atTime(12, 0));
+        movimiento(TipoMovimiento.VENTA, 4, hoy.minusDays(2).atTime(12, 0));
+        movimiento(TipoMovimiento.COMPRA, 5, LocalDateTime.now().minusMinutes(1));
+        Inventario inventario = new Inventario();
+        inventario.setVariante(variante); inventario.setAlmacen(almacen); inventario.setStock(11);
+        entityManager.persist(inventario);
+        entityManager.flush();
+    }
+
+    private void movimiento(TipoMovimiento tipo, int cantidad, LocalDateTime fecha) {
+        Movimiento m = new Movimiento();
+        m.setVariante(variante); m.setAlmacen(almacen); m.setTipo(tipo);
+        m.setCantidad(cantidad); m.setStockResultante(0);
+        entityManager.persist(m);
+        entityManager.flush();
+        // La auditoría pone la fecha actual: la retrasamos directamente en la tabla
+        jdbcTemplate.update("UPDATE movimientos SET fecha_creacion = ? WHERE id = ?", fecha, m.getId());
+    }
+
+    @Test
+    @DisplayName("La foto descuenta los movimientos posteriores a su fecha y las consultas parten de la más cercana")
+    void stockAFechaTest() {
+        LocalDateTime fechaFoto = hoy.minusDays(2).atTime(18, 0);
+        assertEquals(1, servicio.tomarSnapshot(fechaFoto));
+        assertEquals(6, snapshotRepository.findByFechaAndVarianteIdAndAlmacenId(fechaFoto, variante.getId(), almacen.getId())
+                .orElseThrow().getStock());
+
+        // Hacia atrás desde la foto: se deshace la venta
+        StockAFechaResponse hace3 = servicio.stockAFecha(variante, almacen.getId(), hoy.minusDays(3));
+        assertEquals(10, hace3.stock());
+        assertEquals(fechaFoto, hace3.fechaSnapshot());
+
+        assertEquals(0, servicio.stockAFecha(variante, almacen.getId(), hoy.minusDays(4)).stock());
+        assertEquals(6, servicio.stockAFecha(variante, almacen.getId(), hoy.minusDays(1)).stock());
+
+        // A día de hoy se responde con el stock actual, sin foto
+        StockAFechaResponse actual = servicio.stockAFecha(variante, almacen.getId(), hoy);
+        assertEquals(11, actual.stock());
+        assertNull(actual.fechaSnapshot());
+
+        List<StockAFechaResponse> almacenHace3 = servicio.stockAFecha(almacen.getId(), hoy.minusDays(3));
+        assertEquals(1, almacenHace3.size());
+        assertEquals(variante.getSku(), almacenHace3.get(0).sku());
+        assertEquals(10, almacenHace3.get(0).stock());
+        assertEquals(0, servicio.stockAFecha(almacen.getId(), hoy.minusDays(4)).size());
+    }
+
+    @Test
+    @DisplayName("Las fotos antiguas se reducen a la primera de cada día")
+    void aclararAntiguasTest() {
+        LocalDate antiguo = hoy.minusDays(40);
+        // Stock previo para que las fotos antiguas no salgan vacías (las filas a 0 no se guardan)
+        movimiento(TipoMovimiento.COMPRA, 3, hoy.minusDays(50).atTime(12, 0));
+        jdbcTemplate.update("UPDATE inventario SET stock = 14");
+        servicio.tomarSnapshot(antiguo.atTime(10, 0));
+        servicio.tomarSnapshot(antiguo.atTime(11, 0));
+        servicio.tomarSnapshot(hoy.minusDays(1).atTime(10, 0));
+
+        assertEquals(1, servicio.aclararAntiguas(hoy.minusDays(30).atStartOfDay()));
+        assertEquals(List.of(antiguo.atTime(10, 0)), snapshotRepository.fechasAnterioresA(hoy.atStartOfDay().minusDays(30)));
+        assertEquals(2, snapshotRepository.count());
+    }
+}
@@ -0,0 +1,64 @@
+package org.watts.inventory.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.watts.inventory.dto.CambioStock;
+import org.watts.shared.exception.ConflictoException;
+import org.watts.transaction.enums.TipoMovimiento;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamStockServiceTest {
+
+    private final StreamStockService streamStockService = new StreamStockService(2, 60_000, 1);
+
+    @AfterEach
+    void tearDown() {
+        streamStockService.cerrar();
+    }
+
+    @Test
+    @DisplayName("Los cambios de una misma fila se funden en el último y con el buffer lleno se descarta el más antiguo")
+    void bufferAcotadoTest() {
+        StreamStockService.Suscriptor suscriptor = new StreamStockService.Suscriptor(null, null, 2);
+        suscriptor.encolar(cambio(1L, 1L, 5));
+        suscriptor.encolar(cambio(2L, 1L, 8));
+        suscriptor.encolar(cambio(1L, 1L, 4));
+
+        StreamStockService.Pendientes pendientes = suscriptor.tomar();
+        assertFalse(pendientes.perdidos());
+        assertEquals(List.of(cambio(2L, 1L, 8), cambio(1L, 1L, 4)), pendientes.cambios());
+        assertTrue(suscriptor.tomar().vacio());
+
+        suscriptor.encolar(cambio(1L, 1L, 3));
+        suscriptor.encolar(cambio(2L, 1L, 7));
+        suscriptor.encolar(cambio(3L, 1L, 1));
+        pendientes = suscriptor.tomar();
+        assertTrue(pendientes.perdidos());
+        assertEquals(List.of(cambio(2L, 1L, 7), cambio(3L, 1L, 1)), pendientes.cambios());
+    }
+
+    @Test
+    @DisplayName("Un suscriptor con almacén solo recibe los cambios de ese almacén")
+    void filtroAlmacenTest() {
+        StreamStockService.Suscriptor suscriptor = new StreamStockService.Suscriptor(1L, null, 2);
+        assertTrue(suscriptor.interesa(cambio(1L, 1L, 5)));
+        assertFalse(suscriptor.interesa(cambio(1L, 2L, 5)));
+        assertTrue(new StreamStockService.Suscriptor(null, null, 2).interesa(cambio(1L, 2L, 5)));
+    }
+
+    @Test
+    @DisplayName("No se admiten más suscripciones que el máximo configurado")
+    void maxSuscriptoresTest() {
+        streamStockService.suscribir(1L);
+        assertEquals(1, streamStockService.suscripciones());
+        assertThrows(ConflictoException.class, () -> streamStockService.suscribir(null));
+    }
+
+    private static CambioStock cambio(Long varianteId, Long almacenId, int stock) {
+        return new CambioStock(varianteId, "SKU-" + varianteId, almacenId, stock, TipoMovimiento.VENTA);
+    }
+}
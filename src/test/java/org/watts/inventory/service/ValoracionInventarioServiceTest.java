@@ -0,0 +1,113 @@
+package org.watts.inventory.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.config.AuditConfig;
+import org.watts.inventory.dto.ReconstruccionValoracionResponse;
+import org.watts.inventory.dto.ValoracionResponse;
+import org.watts.inventory.dto.ValoracionTotalResponse;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.repository.CapaFifoRepository;
+import org.watts.inventory.repository.ValoracionInventarioRepository;
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.model.Movimiento;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@Import(AuditConfig.class)
+class ValoracionInventarioServiceTest {
+
+    @Autowired private ValoracionInventarioRepository valoracionRepository;
+    @Autowired private CapaFifoRepository capaFifoRepository;
+    @Autowired private TestEntityManager entityManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private ValoracionInventarioService servicio;
+    private Variante variante;
+    private Almacen origen;
+    private Almacen destino;
+
+    @BeforeEach
+    void setUp() {
+        Producto p = new Producto(); p.setNombre("P"); p.setCodigoBase("C"); entityManager.persist(p);
+        Talla t = new Talla(); t.setNombre("T"); entityManager.persist(t);
+        Color c = new Color(); c.setNombre("C"); entityManager.persist(c);
+        variante = new Variante(); variante.setProducto(p); variante.setTalla(t); variante.setColor(c); variante.setSku("SKU");
+        entityManager.persist(variante);
+        origen = new Almacen(); origen.setCodigo("A1"); entityManager.persist(origen);
+        destino = new Almacen(); destino.setCodigo("A2"); entityManager.persist(destino);
+
+        // Lote de 2 para que la reconstrucción tenga que leer los movimientos en varias pasadas
+        servicio = new ValoracionInventarioService(valoracionRepository, capaFifoRepository, jdbcTemplate, 2);
+    }
+
+    private Movimiento movimiento(Almacen almacen, TipoMovimiento tipo, int cantidad, Double precioCompra, String referencia) {
+        Movimiento m = new Movimiento();
+        m.setVariante(variante); m.setAlmacen(almacen); m.setTipo(tipo);
+        m.setCantidad(cantidad); m.setPrecioCompraUnitario(precioCompra); m.setReferenciaTransferencia(referencia);
+        entityManager.persist(m);
+        return m;
+    }
+
+    @Test
+    @DisplayName("Cada movimiento actualiza el coste medio y las capas FIFO, y la reconstrucción llega al mismo resultado")
+    void valoracionIncrementalYReconstruccionTest() {
+        // 10 a 5 € y 10 a 7 €; la venta de 15 se lleva las 10 primeras a 5 € y 5 a 7 €
+        servicio.registrar(List.of(
+                movimiento(origen, TipoMovimiento.COMPRA, 10, 5.0, null),
+                movimiento(origen, TipoMovimiento.COMPRA, 10, 7.0, null)));
+        servicio.registrar(List.of(movimiento(origen, TipoMovimiento.VENTA, 15, null, null)));
+        // Las 3 unidades transferidas llegan al destino a 7 €, el coste FIFO con el que salen del origen
+        servicio.registrar(List.of(
+                movimiento(origen, TipoMovimiento.TRANSFERENCIA_SALIDA, 3, 6.0, "REF"),
+                movimiento(destino, TipoMovimiento.TRANSFERENCIA_ENTRADA, 3, 6.0, "REF")));
+        entityManager.flush();
+        entityManager.clear();
+
+        comprobar();
+        assertEquals(1, capaFifoRepository.findByVarianteIdAndAlmacenIdOrderById(variante.getId(), origen.getId()).size());
+
+        ReconstruccionValoracionResponse reconstruccion = servicio.reconstruir();
+        entityManager.clear();
+        assertEquals(5, reconstruccion.movimientos());
+        assertEquals(2, reconstruccion.filas());
+        comprobar();
+    }
+
+    private void comprobar() {
+        List<ValoracionResponse> informe = servicio.informe(null, PageRequest.of(0, 10, Sort.by("almacenId"))).getContent();
+        assertEquals(2, informe.size());
+
+        ValoracionResponse enOrigen = informe.get(0);
+        assertEquals(variante.getSku(), enOrigen.sku());
+        assertEquals(2, enOrigen.cantidad());
+        assertEquals(6.0, enOrigen.costeMedio(), 1e-9);
+        assertEquals(12.0, enOrigen.valorMedio(), 1e-9);
+        assertEquals(14.0, enOrigen.valorFifo(), 1e-9);
+
+        ValoracionResponse enDestino = informe.get(1);
+        assertEquals(3, enDestino.cantidad());
+        assertEquals(7.0, enDestino.costeMedio(), 1e-9);
+        assertEquals(21.0, enDestino.valorFifo(), 1e-9);
+
+        ValoracionTotalResponse total = servicio.total(null);
+        assertEquals(5, total.cantidad());
+        assertEquals(33.0, total.valorMedio(), 1e-9);
+        assertEquals(35.0, total.valorFifo(), 1e-9);
+    }
+}
@@ -0,0 +1,151 @@
+package org.watts.shared.service;
+
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailSendException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.watts.shared.enums.EstadoNotificacion;
+import org.watts.shared.model.NotificacionPendiente;
+import org.watts.shared.repository.NotificacionPendienteRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DespachadorNotificacionesTest {
+
+    @Mock private NotificacionPendienteRepository notificacionPendienteRepository;
+    @Mock private EmailService emailService;
+    @Mock private TransactionTemplate transactionTemplate;
+
+    private final List<List<MimeMessage>> envios = new ArrayList<>();
+
+    private DespachadorNotificaciones despachador(String modo, long ventanaMs) throws Exception {
+        when(emailService.isConfigurado()).thenReturn(true);
+        lenient().when(emailService.destinatarios()).thenReturn(List.of("admin1@watts.es", "admin2@watts.es"));
+        // Las transacciones cortas de reserva y de resultado se ejecutan en el acto
+        lenient().doAnswer(i -> i.<TransactionCallback<?>>getArgument(0).doInTransaction(null))
+                .when(transactionTemplate).execute(any());
+        lenient().doAnswer(i -> { i.<Consumer<TransactionStatus>>getArgument(0).accept(null); return null; })
+                .when(transactionTemplate).executeWithoutResult(any());
+        lenient().doAnswer(i -> {
+            MimeMessage mensaje = new MimeMessage(Session.getInstance(new Properties()));
+            mensaje.setSubject(i.getArgument(1));
+            return mensaje;
+        }).when(emailService).componer(any(), any(), any());
+        return new DespachadorNotificaciones(notificacionPendienteRepository, emailService, transactionTemplate,
+                50, 1000, 2, modo, ventanaMs, 300_000);
+    }
+
+    @Test
+    @DisplayName("Envía las notificaciones pendientes y reprograma las que fallan")
+    void despacharTest() throws Exception {
+        DespachadorNotificaciones despachador = despachador(DespachadorNotificaciones.MODO_INMEDIATO, 0);
+        NotificacionPendiente ok = new NotificacionPendiente("A", "<p>ok</p>");
+        NotificacionPendiente ko = new NotificacionPendiente("B", "<p>ko</p>");
+        when(notificacionPendienteRepository.bloquearListas(any(), any(), any()))
+                .thenReturn(List.of(ok, ko));
+        doAnswer(i -> {
+            List<MimeMessage> mensajes = i.getArgument(0);
+            envios.add(mensajes);
+            Map<Object, Exception> fallidos = new LinkedHashMap<>();
+            for (MimeMessage mensaje : mensajes) {
+                if ("B".equals(mensaje.getSubject())) fallidos.put(mensaje, new RuntimeException("SMTP caído"));
+            }
+            if (!fallidos.isEmpty()) throw new MailSendException(fallidos);
+            return null;
+        }).when(emailService).enviarTodos(any());
+
+        despachador.despachar();
+
+        // Un solo envío (una conexión) con un mensaje por notificación y administrador
+        assertEquals(1, envios.size());
+        assertEquals(4, envios.get(0).size());
+        assertEquals(EstadoNotificacion.ENVIADA, ok.getEstado());
+        assertNotNull(ok.getFechaEnvio());
+        assertEquals(EstadoNotificacion.PENDIENTE, ko.getEstado());
+        assertEquals(1, ko.getIntentos());
+        assertEquals("SMTP caído", ko.getUltimoError());
+        assertTrue(ko.getProximoIntento().isAfter(LocalDateTime.now().plusSeconds(20)));
+
+        // Segundo fallo: con max-intentos 2 se da por perdida
+        despachador.despachar();
+        assertEquals(EstadoNotificacion.FALLIDA, ko.getEstado());
+    }
+
+    @Test
+    @DisplayName("En modo resumen se espera a la ventana y se envía un email por administrador con todo lo acumulado")
+    void despacharResumenTest() throws Exception {
+        NotificacionPendiente a = new NotificacionPendiente("A", "<p>a</p>");
+        NotificacionPendiente b = new NotificacionPendiente("B", "<p>b</p>");
+        when(notificacionPendienteRepository.masAntigua(any(), any()))
+                .thenReturn(LocalDateTime.now(), LocalDateTime.now().minusHours(2));
+        when(notificacionPendienteRepository.bloquearListas(any(), any(), any()))
+                .thenReturn(List.of(a, b));
+        doAnswer(i -> envios.add(i.getArgument(0))).when(emailService).enviarTodos(any());
+
+        // Ventana de una hora sin cumplir: no se reserva ni se envía nada
+        despachador(DespachadorNotificaciones.MODO_RESUMEN, 3_600_000).despachar();
+        assertTrue(envios.isEmpty());
+        verify(notificacionPendienteRepository, never()).bloquearListas(any(), any(), any());
+
+        despachador(DespachadorNotificaciones.MODO_RESUMEN, 3_600_000).despachar();
+
+        // Se reserva toda la ventana (hasta max-resumen), no solo una tanda de max-lote
+        verify(notificacionPendienteRepository).bloquearListas(any(), any(), eq(PageRequest.of(0, 1000)));
+        assertEquals(1, envios.size());
+        assertEquals(2, envios.get(0).size());
+        assertEquals("Resumen de movimientos: 2 avisos", envios.get(0).get(0).getSubject());
+        assertEquals(EstadoNotificacion.ENVIADA, a.getEstado());
+        assertEquals(EstadoNotificacion.ENVIADA, b.getEstado());
+        verify(notificacionPendienteRepository).saveAll(List.of(a, b));
+    }
+
+    @Test
+    @DisplayName("Sin correo configurado los avisos se quedan pendientes")
+    void sinCorreoTest() {
+        when(emailService.isConfigurado()).thenReturn(false);
+        new DespachadorNotificaciones(notificacionPendienteRepository, emailService, transactionTemplate,
+                50, 1000, 2, DespachadorNotificaciones.MODO_INMEDIATO, 0, 300_000).despachar();
+
+        verifyNoInteractions(notificacionPendienteRepository, transactionTemplate);
+    }
+
+    @Test
+    @DisplayName("Sin administradores con email los avisos se quedan pendientes en lugar de darse por enviados")
+    void sinDestinatariosTest() throws Exception {
+        DespachadorNotificaciones despachador = despachador(DespachadorNotificaciones.MODO_INMEDIATO, 0);
+        when(emailService.destinatarios()).thenReturn(List.of());
+        despachador.despachar();
+
+        verifyNoInteractions(notificacionPendienteRepository, transactionTemplate);
+        verify(emailService, never()).enviarTodos(any());
+    }
+
+    @Test
+    @DisplayName("La espera entre reintentos crece hasta un máximo de una hora")
+    void esperaTest() {
+        assertEquals(Duration.ofSeconds(30), DespachadorNotificaciones.espera(1));
+        assertEquals(Duration.ofMinutes(2), DespachadorNotificaciones.espera(3));
+        assertEquals(Duration.ofHours(1), DespachadorNotificaciones.espera(30));
+    }
+}
@@ -0,0 +1,122 @@
+package org.watts.shared.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.watts.shared.repository.NotificacionPendienteRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class EmailServiceTest {
+
+    private ServidorSmtp servidor;
+    private EmailService emailService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        servidor = new ServidorSmtp();
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(servidor.puerto());
+        emailService = new EmailService(mailSender,
+                mock(NotificacionPendienteRepository.class), mock(DestinatariosNotificacion.class));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        servidor.close();
+    }
+
+    @Test
+    @DisplayName("Envía toda la tanda por una única conexión SMTP")
+    void enviarTodosTest() throws Exception {
+        emailService.enviarTodos(List.of(
+                emailService.componer("admin1@watts.es", "Aviso 1", "<p>1</p>"),
+                emailService.componer("admin2@watts.es", "Aviso 2", "<p>2</p>"),
+                emailService.componer("admin3@watts.es", "Aviso 3", "<p>3</p>")));
+
+        assertEquals(1, servidor.conexiones.get());
+        assertEquals(3, servidor.mensajes.get());
+    }
+
+    // Servidor SMTP mínimo en el propio proceso: acepta todo y cuenta conexiones y mensajes
+    private static class ServidorSmtp implements AutoCloseable {
+
+        private final ServerSocket socket = new ServerSocket(0, 10, InetAddress.getLoopbackAddress());
+        private final AtomicInteger conexiones = new AtomicInteger();
+        private final AtomicInteger mensajes = new AtomicInteger();
+
+        ServidorSmtp() throws IOException {
+            Thread hilo = new Thread(this::aceptar, "smtp-prueba");
+            hilo.setDaemon(true);
+            hilo.start();
+        }
+
+        int puerto() {
+            return socket.getLocalPort();
+        }
+
+        private void aceptar() {
+            while (!socket.isClosed()) {
+                try (Socket cliente = socket.accept()) {
+                    conexiones.incrementAndGet();
+                    atender(cliente);
+                } catch (IOException e) {
+                    // Servidor cerrado
+                }
+            }
+        }
+
+        private void atender(Socket cliente) throws IOException {
+            BufferedReader entrada = new BufferedReader(
+                    new InputStreamReader(cliente.getInputStream(), StandardCharsets.US_ASCII));
+            PrintWriter salida = new PrintWriter(cliente.getOutputStream(), true, StandardCharsets.US_ASCII);
+            responder(salida, "220 localhost");
+
+            String linea;
+            while ((linea = entrada.readLine()) != null) {
+                String comando = linea.length() >= 4 ? linea.substring(0, 4).toUpperCase() : linea.toUpperCase();
+                switch (comando) {
+                    case "EHLO", "HELO" -> responder(salida, "250 localhost");
+                    case "DATA" -> {
+                        responder(salida, "354 Fin con <CRLF>.<CRLF>");
+                        while ((linea = entrada.readLine()) != null && !linea.equals(".")) {
+                            // Se descarta el contenido
+                        }
+                        mensajes.incrementAndGet();
+                        responder(salida, "250 OK");
+                    }
+                    case "QUIT" -> {
+                        responder(salida, "221 Adios");
+                        return;
+                    }
+                    default -> responder(salida, "250 OK");
+                }
+            }
+        }
+
+        private void responder(PrintWriter salida, String respuesta) {
+            salida.print(respuesta + "\r\n");
+            salida.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.watts.shared.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.watts.inventory.dto.InventarioResponse;
+import org.watts.shared.exception.ConflictoException;
+import org.watts.shared.model.ClaveIdempotencia;
+import org.watts.shared.repository.ClaveIdempotenciaRepository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Sin transacción de test: cada llamada al repositorio se confirma como en producción
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotenciaServiceTest {
+
+    @Autowired private ClaveIdempotenciaRepository claveIdempotenciaRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private final AtomicInteger ejecuciones = new AtomicInteger();
+
+    private IdempotenciaService nuevoServicio() {
+        return new IdempotenciaService(claveIdempotenciaRepository, () -> Optional.of("escaner"),
+                new ObjectMapper(), new TransactionTemplate(transactionManager), 24, 300000, 100);
+    }
+
+    private InventarioResponse aplicar() {
+        InventarioResponse response = new InventarioResponse();
+        response.setStock(10 + ejecuciones.incrementAndGet());
+        return response;
+    }
+
+    @BeforeEach
+    @AfterEach
+    void limpiar() {
+        claveIdempotenciaRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Un reintento con la misma clave devuelve la respuesta original sin volver a ejecutar")
+    void repeticionTest() {
+        IdempotenciaService servicio = nuevoServicio();
+        Map<String, Object> peticion = Map.of("sku", "SKU-1", "cantidad", 1);
+
+        IdempotenciaService.Resultado<InventarioResponse> primera =
+                servicio.ejecutar("clave-1", peticion, InventarioResponse.class, this::aplicar);
+        IdempotenciaService.Resultado<InventarioResponse> segunda =
+                servicio.ejecutar("clave-1", peticion, InventarioResponse.class, this::aplicar);
+        // Otra instancia (caché vacía) lee la respuesta de la BDD
+        IdempotenciaService.Resultado<InventarioResponse> otraInstancia =
+                nuevoServicio().ejecutar("clave-1", peticion, InventarioResponse.class, this::aplicar);
+
+        assertEquals(1, ejecuciones.get());
+        assertFalse(primera.repetida());
+        assertTrue(segunda.repetida());
+        assertTrue(otraInstancia.repetida());
+        assertEquals(11, segunda.respuesta().getStock());
+        assertEquals(11, otraInstancia.respuesta().getStock());
+    }
+
+    @Test
+    @DisplayName("Reutilizar una clave con otra petición, o mientras se procesa, es un conflicto")
+    void conflictoTest() {
+        IdempotenciaService servicio = nuevoServicio();
+        servicio.ejecutar("clave-2", Map.of("cantidad", 1), InventarioResponse.class, this::aplicar);
+
+        assertThrows(ConflictoException.class, () ->
+                servicio.ejecutar("clave-2", Map.of("cantidad", 2), InventarioResponse.class, this::aplicar));
+
+        // Petición aún en curso en otra instancia
+        claveIdempotenciaRepository.reservar("escaner:clave-3", "x", LocalDateTime.now(), LocalDateTime.now().plusHours(1));
+        assertThrows(ConflictoException.class, () ->
+                servicio.ejecutar("clave-3", Map.of("cantidad", 1), InventarioResponse.class, this::aplicar));
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    @DisplayName("Si la operación falla la clave se libera y se puede reintentar; las caducadas se reutilizan")
+    void liberarYCaducarTest() {
+        IdempotenciaService servicio = nuevoServicio();
+        assertThrows(RuntimeException.class, () ->
+                servicio.ejecutar("clave-4", Map.of(), InventarioResponse.class, () -> {
+                    throw new RuntimeException("Stock insuficiente");
+                }));
+        assertTrue(claveIdempotenciaRepository.findById("escaner:clave-4").isEmpty());
+
+        claveIdempotenciaRepository.reservar("escaner:clave-5", "x", LocalDateTime.now().minusDays(2),
+                LocalDateTime.now().minusDays(1));
+        assertFalse(servicio.ejecutar("clave-5", Map.of(), InventarioResponse.class, this::aplicar).repetida());
+        ClaveIdempotencia guardada = claveIdempotenciaRepository.findById("escaner:clave-5").orElseThrow();
+        assertTrue(guardada.isCompletada());
+    }
+
+    @Test
+    @DisplayName("La respuesta se guarda en la transacción de la operación y una reserva abandonada se reutiliza")
+    void mismaTransaccionTest() {
+        IdempotenciaService servicio = nuevoServicio();
+        // Si falla al guardar la respuesta tras aplicar, la operación se deshace con ella y la clave queda libre
+        assertThrows(RuntimeException.class, () ->
+                servicio.ejecutar("clave-6", Map.of(), Object.class, Object::new));
+        assertTrue(claveIdempotenciaRepository.findById("escaner:clave-6").isEmpty());
+
+        // Reserva sin respuesta de una petición que nunca confirmó (instancia caída)
+        claveIdempotenciaRepository.reservar("escaner:clave-7", "x", LocalDateTime.now().minusHours(1),
+                LocalDateTime.now().plusHours(23));
+        IdempotenciaService.Resultado<InventarioResponse> resultado =
+                servicio.ejecutar("clave-7", Map.of(), InventarioResponse.class, this::aplicar);
+        assertFalse(resultado.repetida());
+        assertTrue(claveIdempotenciaRepository.findById("escaner:clave-7").orElseThrow().isCompletada());
+    }
+}
@@ -0,0 +1,92 @@
+package org.watts.shared.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.watts.config.AuditConfig;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.repository.AlmacenRepository;
+import org.watts.shared.enums.ModoTotal;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@Import(AuditConfig.class)
+class PaginacionServiceTest {
+
+    @Autowired private AlmacenRepository almacenRepository;
+
+    private final PaginacionService servicio = new PaginacionService(60_000, 100);
+    private final Specification<Almacen> todos = (root, query, cb) -> cb.conjunction();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 1; i <= 5; i++) {
+            Almacen almacen = new Almacen();
+            almacen.setCodigo("A" + i);
+            almacenRepository.save(almacen);
+        }
+    }
+
+    @Test
+    @DisplayName("Sin total cada página trae las filas que tocan y solo indica si hay siguiente")
+    void sinTotal() {
+        PageRequest segunda = PageRequest.of(1, 2, Sort.by("codigo"));
+        Slice<Almacen> pagina = servicio.buscar(almacenRepository, todos, segunda, ModoTotal.SIN_TOTAL, "almacenes");
+
+        assertFalse(pagina instanceof Page);
+        assertEquals(List.of("A3", "A4"), pagina.map(Almacen::getCodigo).getContent());
+        assertTrue(pagina.hasNext());
+
+        Slice<Almacen> ultima = servicio.buscar(almacenRepository, todos, segunda.next(), ModoTotal.SIN_TOTAL, "almacenes");
+        assertEquals(List.of("A5"), ultima.map(Almacen::getCodigo).getContent());
+        assertFalse(ultima.hasNext());
+    }
+
+    @Test
+    @DisplayName("El total aproximado se reutiliza para el mismo filtro hasta que caduca")
+    void totalAproximado() {
+        PageRequest primera = PageRequest.of(0, 2, Sort.by("codigo"));
+        Slice<Almacen> pagina = servicio.buscar(almacenRepository, todos, primera, ModoTotal.APROXIMADO, "almacenes|a");
+        assertEquals(5, assertInstanceOf(Page.class, pagina).getTotalElements());
+
+        Almacen nuevo = new Almacen();
+        nuevo.setCodigo("A6");
+        almacenRepository.save(nuevo);
+        Almacen otro = new Almacen();
+        otro.setCodigo("A7");
+        almacenRepository.save(otro);
+
+        // Mismo filtro: total de la caché; otro filtro: se cuenta de nuevo
+        Page<?> cacheada = (Page<?>) servicio.buscar(almacenRepository, todos, primera, ModoTotal.APROXIMADO, "almacenes|a");
+        Page<?> contada = (Page<?>) servicio.buscar(almacenRepository, todos, primera, ModoTotal.APROXIMADO, "almacenes|b");
+        assertEquals(5, cacheada.getTotalElements());
+        assertEquals(7, contada.getTotalElements());
+
+        // La página leída ve más filas que el total cacheado: no puede decir que es la última
+        Page<?> tercera = (Page<?>) servicio.buscar(almacenRepository, todos, PageRequest.of(2, 2, Sort.by("codigo")),
+                ModoTotal.APROXIMADO, "almacenes|a");
+        assertTrue(tercera.hasNext());
+        assertEquals(7, tercera.getTotalElements());
+    }
+
+    @Test
+    @DisplayName("Un filtro vacío y uno nulo comparten clave")
+    void clave() {
+        assertEquals(PaginacionService.clave("productos", null, "x", true),
+                PaginacionService.clave("productos", "", "x", true));
+    }
+}
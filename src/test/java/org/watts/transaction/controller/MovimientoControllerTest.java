@@ -14,25 +14,30 @@ import org.springframework.http.MediaType;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
-import org.watts.catalog.model.Variante;
-import org.watts.catalog.repository.VarianteRepository;
 import org.watts.inventory.dto.InventarioResponse;
-import org.watts.inventory.models.Almacen;
-import org.watts.inventory.repository.AlmacenRepository;
+import org.watts.inventory.service.IndiceReferenciasService;
 import org.watts.security.jwt.JwtAuthEntryPoint;
 import org.watts.security.jwt.JwtAuthFilter;
 import org.watts.security.jwt.JwtUtils;
+import org.watts.shared.service.IdempotenciaService;
 import org.watts.transaction.dto.MovimientoRequest;
 import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.service.AgrupadorMovimientos;
+import org.watts.transaction.service.ImportacionMovimientosService;
 import org.watts.transaction.service.MovimientoService;
+import org.watts.transaction.service.ResumenDiarioService;
 
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(MovimientoController.class)
@@ -43,9 +48,12 @@ class MovimientoControllerTest {
     @Autowired private ObjectMapper objectMapper;
 
     @MockBean private MovimientoService movimientoService;
+    @MockBean private AgrupadorMovimientos agrupadorMovimientos;
     // Mocks adicionales requeridos por la lógica del Controller antes de llamar al servicio
-    @MockBean private VarianteRepository varianteRepository;
-    @MockBean private AlmacenRepository almacenRepository;
+    @MockBean private IndiceReferenciasService indiceReferencias;
+    @MockBean private IdempotenciaService idempotenciaService;
+    @MockBean private ResumenDiarioService resumenDiarioService;
+    @MockBean private ImportacionMovimientosService importacionMovimientosService;
 
     // --- MOCKS DE SEGURIDAD ---
     @MockBean private JwtUtils jwtUtils;
@@ -69,12 +77,14 @@ class MovimientoControllerTest {
                 "SKU-123", 1L, 10, TipoMovimiento.COMPRA, "Obs", 50.0, 100.0
         );
 
-        when(varianteRepository.findBySku("SKU-123")).thenReturn(Optional.of(new Variante()));
-        when(almacenRepository.findById(1L)).thenReturn(Optional.of(new Almacen()));
+        when(indiceReferencias.variante("SKU-123")).thenReturn(Optional.of(new IndiceReferenciasService.VarianteIndexada(
+                7L, "SKU-123", true, 40.0, 90.0, 1L, "Producto", 2L, "M", 3L, "Rojo")));
+        when(indiceReferencias.almacen(1L)).thenReturn(Optional.of(new IndiceReferenciasService.AlmacenIndexado(
+                1L, "A1", "Central", true)));
 
         InventarioResponse response = new InventarioResponse();
         response.setStock(10);
-        when(movimientoService.procesarMovimiento(any(), any(), eq(10), eq(TipoMovimiento.COMPRA), any(), any(), any()))
+        when(agrupadorMovimientos.procesarMovimiento(any(), any(), eq(10), eq(TipoMovimiento.COMPRA), any(), any(), any()))
                 .thenReturn(response);
 
         mockMvc.perform(post("/api/movimientos")
@@ -92,7 +102,7 @@ class MovimientoControllerTest {
                 "SKU-FALSO", 1L, 10, TipoMovimiento.COMPRA, null, null, null
         );
 
-        when(varianteRepository.findBySku("SKU-FALSO")).thenReturn(Optional.empty());
+        when(indiceReferencias.variante("SKU-FALSO")).thenReturn(Optional.empty());
 
         mockMvc.perform(post("/api/movimientos")
                         .with(csrf())
@@ -100,4 +110,29 @@ class MovimientoControllerTest {
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isNotFound());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("POST /api/movimientos - Un reintento con Idempotency-Key devuelve la respuesta original")
+    @WithMockUser(authorities = "MOVIMIENTO_CREAR")
+    void crearMovimientoRepetidoTest() throws Exception {
+        MovimientoRequest request = new MovimientoRequest(
+                "SKU-123", 1L, 10, TipoMovimiento.COMPRA, null, null, null
+        );
+
+        InventarioResponse original = new InventarioResponse();
+        original.setStock(10);
+        when(idempotenciaService.ejecutar(eq("clave-1"), eq(request), eq(InventarioResponse.class), any()))
+                .thenReturn(new IdempotenciaService.Resultado<>(original, true));
+
+        mockMvc.perform(post("/api/movimientos")
+                        .with(csrf())
+                        .header("Idempotency-Key", "clave-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.stock").value(10));
+
+        verify(agrupadorMovimientos, never()).procesarMovimiento(any(), any(), any(Integer.class), any(), any(), any(), any());
+    }
+}
@@ -0,0 +1,90 @@
+package org.watts.transaction.repository;
+
+import jakarta.persistence.EntityManager;
+import org.h2.tools.Server;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.config.AuditConfig;
+import org.watts.inventory.models.Almacen;
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.model.Movimiento;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Medición de la inserción masiva de movimientos en H2 (no forma parte de la batería normal)
+// H2 se sirve por TCP para que cada sentencia tenga su ida y vuelta por red, como con MySQL
+// Ejecutar con: mvn test -Dbenchmark=true -Dtest=MovimientoInsercionBenchmarkTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(AuditConfig.class)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class MovimientoInsercionBenchmarkTest {
+
+    private static final int TOTAL = 100_000;
+    private static final int TANDA = 1_000;
+
+    @DynamicPropertySource
+    static void baseDeDatos(DynamicPropertyRegistry registry) throws SQLException {
+        Server servidor = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        registry.add("spring.datasource.url", () -> "jdbc:h2:tcp://localhost:" + servidor.getPort() + "/mem:benchmark");
+        registry.add("spring.datasource.driver-class-name", () -> "org.h2.Driver");
+        registry.add("spring.datasource.username", () -> "sa");
+        registry.add("spring.datasource.password", () -> "");
+    }
+
+    @Autowired private MovimientoRepository movimientoRepository;
+    @Autowired private EntityManager entityManager;
+
+    @Test
+    @DisplayName("Inserta 100.000 movimientos con saveAll en tandas")
+    void insertarMovimientosTest() {
+        Producto p = new Producto(); p.setNombre("P"); p.setCodigoBase("C"); entityManager.persist(p);
+        Talla t = new Talla(); t.setNombre("T"); entityManager.persist(t);
+        Color c = new Color(); c.setNombre("C"); entityManager.persist(c);
+        Variante v = new Variante(); v.setProducto(p); v.setTalla(t); v.setColor(c); v.setSku("SKU");
+        entityManager.persist(v);
+        Almacen a = new Almacen(); a.setCodigo("A1"); entityManager.persist(a);
+        entityManager.flush();
+
+        Statistics estadisticas = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+
+        long inicio = System.nanoTime();
+        for (int hechos = 0; hechos < TOTAL; hechos += TANDA) {
+            List<Movimiento> tanda = new ArrayList<>(TANDA);
+            for (int i = 0; i < TANDA; i++) {
+                Movimiento m = new Movimiento();
+                m.setVariante(v); m.setAlmacen(a); m.setTipo(TipoMovimiento.COMPRA);
+                m.setCantidad(1); m.setStockResultante(hechos + i + 1);
+                tanda.add(m);
+            }
+            movimientoRepository.saveAll(tanda);
+            entityManager.flush();
+            entityManager.clear();
+            v = entityManager.getReference(Variante.class, v.getId());
+            a = entityManager.getReference(Almacen.class, a.getId());
+        }
+        long ms = (System.nanoTime() - inicio) / 1_000_000;
+
+        System.out.printf("Benchmark inserción: %d movimientos en %d ms, %d sentencias JDBC preparadas%n",
+                TOTAL, ms, estadisticas.getPrepareStatementCount());
+        assertEquals(TOTAL, movimientoRepository.count());
+    }
+}
@@ -0,0 +1,89 @@
+package org.watts.transaction.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.config.AuditConfig;
+import org.watts.inventory.models.Almacen;
+import org.watts.transaction.dto.MovimientoResponse;
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.model.Movimiento;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(AuditConfig.class)
+class ProyeccionMovimientosRepositoryTest {
+
+    @Autowired private TestEntityManager entityManager;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private ProyeccionMovimientosRepository repository;
+    private Statistics estadisticas;
+
+    @BeforeEach
+    void setUp() {
+        repository = new ProyeccionMovimientosRepository(entityManager.getEntityManager());
+        estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // 30 movimientos repartidos en 10 variantes (cada una con su producto, talla y color) y 3 almacenes
+        Almacen[] almacenes = new Almacen[3];
+        for (int i = 0; i < almacenes.length; i++) {
+            almacenes[i] = new Almacen(); almacenes[i].setCodigo("A" + i); almacenes[i].setDescripcion("Almacén " + i);
+            entityManager.persist(almacenes[i]);
+        }
+        for (int i = 0; i < 10; i++) {
+            Producto p = new Producto(); p.setNombre("Producto " + i); p.setCodigoBase("P" + i); entityManager.persist(p);
+            Talla t = new Talla(); t.setNombre("T" + i); entityManager.persist(t);
+            Color c = new Color(); c.setNombre("C" + i); entityManager.persist(c);
+            Variante v = new Variante(); v.setProducto(p); v.setTalla(t); v.setColor(c);
+            entityManager.persist(v);
+            for (int j = 0; j < 3; j++) {
+                Movimiento m = new Movimiento();
+                m.setVariante(v); m.setAlmacen(almacenes[j]); m.setTipo(TipoMovimiento.COMPRA); m.setCantidad(i + j);
+                entityManager.persist(m);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        estadisticas.clear();
+    }
+
+    @Test
+    @DisplayName("Una página de movimientos se lee con una sola sentencia, sea cual sea su tamaño")
+    void unaSentenciaPorPagina() {
+        Specification<Movimiento> compras = (root, query, cb) -> cb.equal(root.get("tipo"), TipoMovimiento.COMPRA);
+
+        List<MovimientoResponse> pagina = repository.buscar(Movimiento.class, compras,
+                PageRequest.of(0, 25, Sort.by("variante.sku", "id")));
+        assertEquals(25, pagina.size());
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+
+        MovimientoResponse primero = pagina.get(0);
+        assertEquals("P0-T0-C0", primero.sku());
+        assertEquals("Producto 0", primero.productoNombre());
+        assertEquals("T0", primero.talla());
+        assertEquals("C0", primero.color());
+        assertEquals("A0", primero.almacenCodigo());
+
+        estadisticas.clear();
+        assertEquals(5, repository.buscar(Movimiento.class, compras, PageRequest.of(1, 25)).size());
+        assertEquals(1, estadisticas.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,121 @@
+package org.watts.transaction.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.AuditorAware;
+import org.watts.catalog.model.Variante;
+import org.watts.inventory.dto.InventarioResponse;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.models.Inventario;
+import org.watts.inventory.service.InventarioService;
+import org.watts.transaction.enums.TipoMovimiento;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AgrupadorMovimientosTest {
+
+    @Mock private MovimientoService movimientoService;
+    @Mock private InventarioService inventarioService;
+    @Mock private LibroStockMemoria libroStock;
+    @Mock private AuditorAware<String> auditorProvider;
+
+    private AgrupadorMovimientos agrupador;
+
+    @AfterEach
+    void detener() throws InterruptedException {
+        agrupador.detener();
+    }
+
+    @Test
+    @DisplayName("Los movimientos que llegan a la vez se aplican en un solo grupo y cada uno recibe su resultado")
+    void agruparMovimientosTest() throws Exception {
+        // Con una espera larga los dos movimientos caen seguro en el mismo grupo
+        agrupador = new AgrupadorMovimientos(movimientoService, inventarioService, libroStock, auditorProvider, true, 500, 2, 5000);
+        agrupador.iniciar();
+
+        List<List<PeticionMovimiento>> grupos = new ArrayList<>();
+        when(movimientoService.procesarGrupo(any(), any())).thenAnswer(i -> {
+            List<PeticionMovimiento> peticiones = i.getArgument(0);
+            List<String> errores = i.getArgument(1);
+            grupos.add(peticiones);
+            List<Inventario> resultados = new ArrayList<>();
+            for (int n = 0; n < peticiones.size(); n++) {
+                if (peticiones.get(n).tipo() == TipoMovimiento.VENTA) {
+                    errores.set(n, "Stock insuficiente. Tienes: 0, intentas sacar: 1");
+                    resultados.add(null);
+                } else {
+                    Inventario inventario = new Inventario(); inventario.setStock(peticiones.get(n).cantidad());
+                    resultados.add(inventario);
+                }
+            }
+            return resultados;
+        });
+        when(inventarioService.mapearADTO(any())).thenAnswer(i -> {
+            InventarioResponse r = new InventarioResponse(); r.setStock(i.<Inventario>getArgument(0).getStock()); return r;
+        });
+
+        Variante variante = new Variante(); variante.setId(1L);
+        Almacen almacen = new Almacen(); almacen.setId(1L);
+
+        CompletableFuture<InventarioResponse> compra = CompletableFuture.supplyAsync(() ->
+                agrupador.procesarMovimiento(variante, almacen, 3, TipoMovimiento.COMPRA, null, null, null));
+        CompletableFuture<InventarioResponse> venta = CompletableFuture.supplyAsync(() ->
+                agrupador.procesarMovimiento(variante, almacen, 1, TipoMovimiento.VENTA, null, null, null));
+
+        assertEquals(3, compra.get().getStock());
+        Exception ex = assertThrows(Exception.class, venta::get);
+        assertTrue(ex.getCause().getMessage().startsWith("Stock insuficiente")); // Solo falla la línea sin stock
+        assertEquals(1, grupos.size());
+        assertEquals(2, grupos.get(0).size());
+    }
+
+    @Test
+    @DisplayName("Desactivado, el movimiento va directo a MovimientoService")
+    void agrupacionDesactivadaTest() throws Exception {
+        agrupador = new AgrupadorMovimientos(movimientoService, inventarioService, libroStock, auditorProvider, false, 2, 50, 5000);
+        agrupador.iniciar();
+        Variante variante = new Variante();
+        Almacen almacen = new Almacen();
+
+        agrupador.procesarMovimiento(variante, almacen, 1, TipoMovimiento.COMPRA, null, null, null);
+
+        verify(movimientoService).procesarMovimiento(variante, almacen, 1, TipoMovimiento.COMPRA, null, null, null);
+        verify(movimientoService, never()).procesarGrupo(any(), any());
+    }
+
+    @Test
+    @DisplayName("Un Error en el hilo del agrupador no deja peticiones colgadas y el hilo se sustituye")
+    void errorEnElHiloTest() {
+        agrupador = new AgrupadorMovimientos(movimientoService, inventarioService, libroStock, auditorProvider, true, 2, 50, 5000);
+        agrupador.iniciar();
+        when(movimientoService.procesarGrupo(any(), any()))
+                .thenThrow(new OutOfMemoryError("simulado"))
+                .thenAnswer(i -> {
+                    Inventario inventario = new Inventario(); inventario.setStock(7);
+                    return List.of(inventario);
+                });
+        when(inventarioService.mapearADTO(any())).thenAnswer(i -> {
+            InventarioResponse r = new InventarioResponse(); r.setStock(i.<Inventario>getArgument(0).getStock()); return r;
+        });
+        Variante variante = new Variante(); variante.setId(1L);
+        Almacen almacen = new Almacen(); almacen.setId(1L);
+
+        RuntimeException ex = assertThrows(RuntimeException.class, () ->
+                agrupador.procesarMovimiento(variante, almacen, 1, TipoMovimiento.COMPRA, null, null, null));
+        assertTrue(ex.getMessage().contains("simulado"));
+
+        // El siguiente movimiento lo atiende el hilo nuevo
+        assertEquals(7, agrupador.procesarMovimiento(variante, almacen, 1, TipoMovimiento.COMPRA, null, null, null).getStock());
+    }
+}
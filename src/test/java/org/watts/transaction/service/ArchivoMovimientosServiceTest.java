@@ -0,0 +1,140 @@
+package org.watts.transaction.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.catalog.repository.ColorRepository;
+import org.watts.catalog.repository.ProductoRepository;
+import org.watts.catalog.repository.TallaRepository;
+import org.watts.catalog.repository.VarianteRepository;
+import org.watts.config.AuditConfig;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.repository.AlmacenRepository;
+import org.watts.transaction.enums.EstadoPeriodo;
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.model.Movimiento;
+import org.watts.transaction.model.PeriodoMovimientos;
+import org.watts.transaction.model.ResumenMovimientosPeriodo;
+import org.watts.transaction.repository.MovimientoArchivadoRepository;
+import org.watts.transaction.repository.MovimientoRepository;
+import org.watts.transaction.repository.PeriodoMovimientosRepository;
+import org.watts.transaction.repository.ResumenMovimientosPeriodoRepository;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Sin transacción de test: el servicio confirma cada tanda por su cuenta
+@DataJpaTest
+@Import(AuditConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ArchivoMovimientosServiceTest {
+
+    @Autowired private MovimientoRepository movimientoRepository;
+    @Autowired private MovimientoArchivadoRepository movimientoArchivadoRepository;
+    @Autowired private PeriodoMovimientosRepository periodoMovimientosRepository;
+    @Autowired private ResumenMovimientosPeriodoRepository resumenRepository;
+    @Autowired private ProductoRepository productoRepository;
+    @Autowired private TallaRepository tallaRepository;
+    @Autowired private ColorRepository colorRepository;
+    @Autowired private VarianteRepository varianteRepository;
+    @Autowired private AlmacenRepository almacenRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private ArchivoMovimientosService servicio;
+    private Variante variante;
+    private Almacen almacen;
+
+    @BeforeEach
+    void setUp() {
+        Producto p = new Producto(); p.setNombre("P"); p.setCodigoBase("C"); productoRepository.save(p);
+        Talla t = new Talla(); t.setNombre("T"); tallaRepository.save(t);
+        Color c = new Color(); c.setNombre("C"); colorRepository.save(c);
+        variante = new Variante(); variante.setProducto(p); variante.setTalla(t); variante.setColor(c); variante.setSku("SKU");
+        variante = varianteRepository.save(variante);
+        almacen = new Almacen(); almacen.setCodigo("A1"); almacen = almacenRepository.save(almacen);
+
+        // Tandas de un movimiento para pasar por varias transacciones
+        servicio = new ArchivoMovimientosService(movimientoRepository, movimientoArchivadoRepository,
+                periodoMovimientosRepository, resumenRepository, new TransactionTemplate(transactionManager),
+                true, 12, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        resumenRepository.deleteAll();
+        periodoMovimientosRepository.deleteAll();
+        movimientoArchivadoRepository.deleteAll();
+        movimientoRepository.deleteAll();
+        varianteRepository.deleteAll();
+        almacenRepository.deleteAll();
+        productoRepository.deleteAll();
+        tallaRepository.deleteAll();
+        colorRepository.deleteAll();
+    }
+
+    private void movimiento(int cantidad, int stockResultante, LocalDate fecha) {
+        Movimiento m = new Movimiento();
+        m.setVariante(variante); m.setAlmacen(almacen); m.setTipo(TipoMovimiento.COMPRA);
+        m.setCantidad(cantidad); m.setStockResultante(stockResultante);
+        m = movimientoRepository.save(m);
+        // La auditoría pone la fecha actual: la retrasamos directamente en la tabla
+        jdbcTemplate.update("UPDATE movimientos SET fecha_creacion = ? WHERE id = ?", fecha.atTime(12, 0), m.getId());
+    }
+
+    @Test
+    @DisplayName("Traslada los meses cerrados al archivo, deja su resumen y enruta las consultas por fecha")
+    void archivarPeriodosCerradosTest() {
+        YearMonth antiguo = YearMonth.now().minusMonths(24);
+        movimiento(5, 5, antiguo.atDay(3));
+        movimiento(2, 7, antiguo.atDay(20));
+        movimiento(1, 8, LocalDate.now());
+
+        // Otra instancia, que no ha ejecutado el archivado
+        ArchivoMovimientosService otraInstancia = new ArchivoMovimientosService(movimientoRepository,
+                movimientoArchivadoRepository, periodoMovimientosRepository, resumenRepository,
+                new TransactionTemplate(transactionManager), false, 12, 1);
+        assertEquals(ArchivoMovimientosService.Tramo.CALIENTE, servicio.tramo(null, null));
+
+        servicio.archivarPeriodosCerrados();
+
+        assertEquals(1, movimientoRepository.count());
+        assertEquals(2, movimientoArchivadoRepository.count());
+
+        PeriodoMovimientos periodo = periodoMovimientosRepository.findById(antiguo.atDay(1)).orElseThrow();
+        assertEquals(EstadoPeriodo.ARCHIVADO, periodo.getEstado());
+        assertEquals(2, periodo.getMovimientos());
+
+        List<ResumenMovimientosPeriodo> resumenes = servicio.resumenes(antiguo, antiguo);
+        assertEquals(1, resumenes.size());
+        assertEquals(2, resumenes.get(0).getNumeroMovimientos());
+        assertEquals(7, resumenes.get(0).getCantidadTotal());
+        assertEquals(7, resumenes.get(0).getStockFinal());
+
+        assertEquals(ArchivoMovimientosService.Tramo.CALIENTE, servicio.tramo(LocalDate.now().minusMonths(1), null));
+        assertEquals(ArchivoMovimientosService.Tramo.ARCHIVO, servicio.tramo(null, antiguo.atEndOfMonth()));
+        assertEquals(ArchivoMovimientosService.Tramo.AMBOS, servicio.tramo(antiguo.atDay(1), null));
+
+        // La otra instancia ve los mismos límites y lee las dos tablas en una sola transacción
+        assertEquals(ArchivoMovimientosService.Tramo.AMBOS, otraInstancia.tramo(null, null));
+        long total = otraInstancia.consultar(null, null, tramo ->
+                movimientoRepository.count() + movimientoArchivadoRepository.count());
+        assertEquals(3, total);
+    }
+}
@@ -0,0 +1,137 @@
+package org.watts.transaction.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.watts.catalog.repository.VarianteRepository;
+import org.watts.inventory.repository.AlmacenRepository;
+import org.watts.shared.service.EmailService;
+import org.watts.transaction.dto.ImportacionMovimientosResponse;
+import org.watts.transaction.dto.MovimientoLoteRequest;
+import org.watts.transaction.dto.MovimientoLoteResponse;
+import org.watts.transaction.dto.MovimientoRequest;
+import org.watts.transaction.dto.ResultadoLineaLote;
+import org.watts.transaction.enums.EstadoImportacion;
+import org.watts.transaction.enums.TipoMovimiento;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImportacionMovimientosServiceTest {
+
+    @Mock private MovimientoService movimientoService;
+    @Mock private VarianteRepository varianteRepository;
+    @Mock private AlmacenRepository almacenRepository;
+    @Mock private EmailService emailService;
+
+    // Catálogo con dos SKUs y un almacén; el lote aplica todo salvo las ventas de más de 100 unidades (sin stock)
+    private void prepararCatalogo() {
+        when(varianteRepository.findAllSkus()).thenReturn(List.of("SKU-1", "SKU-2"));
+        when(almacenRepository.findAllIds()).thenReturn(List.of(1L));
+        when(movimientoService.procesarLote(any(), eq(false))).thenAnswer(invocacion -> {
+            List<MovimientoRequest> lineas = invocacion.<MovimientoLoteRequest>getArgument(0).lineas();
+            List<ResultadoLineaLote> resultados = new ArrayList<>();
+            for (int i = 0; i < lineas.size(); i++) {
+                MovimientoRequest linea = lineas.get(i);
+                boolean sinStock = linea.tipo() == TipoMovimiento.VENTA && linea.cantidad() > 100;
+                resultados.add(new ResultadoLineaLote(i + 1, linea.varianteSku(), linea.almacenId(), !sinStock,
+                        sinStock ? null : 5, sinStock ? "Stock insuficiente" : null));
+            }
+            int aplicadas = (int) resultados.stream().filter(ResultadoLineaLote::aplicado).count();
+            return new MovimientoLoteResponse(lineas.size(), aplicadas, lineas.size() - aplicadas, resultados);
+        });
+    }
+
+    @Test
+    @DisplayName("Aplica las líneas válidas por tramos y deja las rechazadas en el informe con su número de línea")
+    void importarPorTramos() throws Exception {
+        String csv = """
+                sku,almacenId,cantidad,tipo,observaciones,precioCompraUnitario,precioVentaUnitario
+                SKU-1,1,10,COMPRA,"Albarán 7, proveedor \"\"A\"\"",4.5,
+                SKU-9,1,3,COMPRA
+                SKU-2,1,5,compra
+                SKU-1,2,1,COMPRA
+                SKU-1,1,500,VENTA
+                SKU-2,1,1,TRANSFERENCIA_ENTRADA
+
+                SKU-2,1,0,COMPRA
+                SKU-2,1,2,ENTRADA_DEVOLUCION
+                """;
+        prepararCatalogo();
+        ImportacionMovimientosService servicio = servicio(2, 1_000_000);
+
+        ImportacionMovimientosResponse importacion = servicio.importar(fichero(csv));
+
+        assertEquals(EstadoImportacion.TERMINADA, importacion.estado());
+        assertEquals(8, importacion.lineasLeidas());
+        assertEquals(3, importacion.aplicadas());
+        assertEquals(5, importacion.rechazadas());
+
+        // 4 líneas válidas en tramos de 2: dos transacciones, sin aviso por tramo
+        ArgumentCaptor<MovimientoLoteRequest> tramos = ArgumentCaptor.forClass(MovimientoLoteRequest.class);
+        verify(movimientoService, times(2)).procesarLote(tramos.capture(), eq(false));
+        MovimientoRequest primera = tramos.getAllValues().get(0).lineas().get(0);
+        assertEquals("Albarán 7, proveedor \"A\"", primera.observaciones());
+        assertEquals(4.5, primera.precioCompraUnitario());
+        assertNull(primera.precioVentaUnitario());
+        assertFalse(tramos.getAllValues().get(0).todoONada());
+        verify(emailService, times(1)).enviarNotificacionMovimiento(anyString(), anyString());
+
+        List<String> informe = Files.readAllLines(servicio.verErrores(importacion.id()).getFile().toPath(), StandardCharsets.UTF_8);
+        assertEquals("linea,error,contenido", informe.get(0));
+        assertEquals(6, informe.size());
+        assertTrue(informe.get(1).startsWith("3,\"Variante no encontrada con el SKU: SKU-9\""));
+        assertTrue(informe.get(2).startsWith("5,\"Almacen no encontrado con el ID: 2\""));
+        assertTrue(informe.get(3).startsWith("7,\"Las transferencias"));
+        assertTrue(informe.get(4).startsWith("9,\"La cantidad debe ser mayor que 0\""));
+        assertEquals("6,\"Stock insuficiente\",\"SKU-1,1,500,VENTA\"", informe.get(5));
+    }
+
+    @Test
+    @DisplayName("Los ficheros por encima del umbral se procesan en segundo plano y se sigue su progreso por id")
+    void importarEnSegundoPlano() throws Exception {
+        prepararCatalogo();
+        ImportacionMovimientosService servicio = servicio(1000, 10);
+
+        ImportacionMovimientosResponse importacion = servicio.importar(fichero("SKU-1,1,1,COMPRA\nSKU-2,1,1,COMPRA\n"));
+        assertEquals(EstadoImportacion.EN_CURSO, importacion.estado());
+
+        ImportacionMovimientosResponse progreso = servicio.verImportacion(importacion.id());
+        for (int i = 0; i < 100 && progreso.estado() == EstadoImportacion.EN_CURSO; i++) {
+            Thread.sleep(20);
+            progreso = servicio.verImportacion(importacion.id());
+        }
+        assertEquals(EstadoImportacion.TERMINADA, progreso.estado());
+        assertEquals(2, progreso.aplicadas());
+        assertNotNull(progreso.fin());
+    }
+
+    @Test
+    @DisplayName("Separa los campos entre comillas y rechaza las comillas sin cerrar")
+    void partir() {
+        assertEquals(List.of("a", "b,c", "d\"e", ""), ImportacionMovimientosService.partir("a,\"b,c\",\"d\"\"e\","));
+        assertThrows(RuntimeException.class, () -> ImportacionMovimientosService.partir("a,\"b"));
+    }
+
+    private ImportacionMovimientosService servicio(int tamanoTramo, long umbral) {
+        return new ImportacionMovimientosService(movimientoService, varianteRepository, almacenRepository, emailService,
+                tamanoTramo, umbral, 24);
+    }
+
+    private MockMultipartFile fichero(String contenido) {
+        return new MockMultipartFile("archivo", "movimientos.csv", "text/csv", contenido.getBytes(StandardCharsets.UTF_8));
+    }
+}
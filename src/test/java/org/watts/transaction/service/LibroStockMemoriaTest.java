@@ -0,0 +1,196 @@
+package org.watts.transaction.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import jakarta.persistence.EntityManager;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.watts.catalog.model.Variante;
+import org.watts.catalog.repository.VarianteRepository;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.models.ClaveInventario;
+import org.watts.inventory.repository.AlmacenRepository;
+import org.watts.inventory.service.InventarioService;
+import org.watts.inventory.service.RetencionesStock;
+import org.watts.inventory.service.ValoracionInventarioService;
+import org.watts.shared.exception.ConflictoException;
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.model.Movimiento;
+import org.watts.transaction.repository.MovimientoRepository;
+import org.watts.transaction.repository.SegmentoLibroAplicadoRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LibroStockMemoriaTest {
+
+    @Mock private InventarioService inventarioService;
+    @Mock private ValoracionInventarioService valoracionService;
+    @Mock private ResumenDiarioService resumenDiarioService;
+    @Mock private MovimientoRepository movimientoRepository;
+    @Mock private SegmentoLibroAplicadoRepository segmentoRepository;
+    @Mock private VarianteRepository varianteRepository;
+    @Mock private AlmacenRepository almacenRepository;
+    @Mock private AuditorAware<String> auditorProvider;
+    @Mock private TransactionTemplate transactionTemplate;
+    @Mock private EntityManager entityManager;
+    private final RetencionesStock retenciones = new RetencionesStock();
+
+    @TempDir
+    Path directorio;
+
+    private LibroStockMemoria nuevoLibro() throws Exception {
+        LibroStockMemoria libro = new LibroStockMemoria(inventarioService, retenciones, valoracionService, resumenDiarioService, movimientoRepository, segmentoRepository,
+                varianteRepository, almacenRepository, auditorProvider, transactionTemplate, entityManager, new ObjectMapper(),
+                "memoria", directorio.toString(), 8);
+        libro.iniciar();
+        return libro;
+    }
+
+    private Movimiento movimiento(TipoMovimiento tipo, int cantidad) {
+        Variante variante = new Variante(); variante.setId(1L);
+        Almacen almacen = new Almacen(); almacen.setId(2L);
+        Movimiento movimiento = new Movimiento();
+        movimiento.setVariante(variante);
+        movimiento.setAlmacen(almacen);
+        movimiento.setTipo(tipo);
+        movimiento.setCantidad(cantidad);
+        return movimiento;
+    }
+
+    @Test
+    @DisplayName("Rechaza una salida que dejaría el stock en negativo")
+    void registrarSinStockTest() throws Exception {
+        when(inventarioService.stockActual(1L, 2L)).thenReturn(5);
+        LibroStockMemoria libro = nuevoLibro();
+
+        Movimiento venta = movimiento(TipoMovimiento.VENTA, 3);
+        libro.registrar(venta);
+        assertEquals(2, venta.getStockResultante());
+
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> libro.registrar(movimiento(TipoMovimiento.VENTA, 3)));
+        assertTrue(ex.getMessage().contains("Stock insuficiente"));
+        verify(inventarioService, times(1)).stockActual(1L, 2L); // Solo se carga de la BDD la primera vez
+    }
+
+    @Test
+    @DisplayName("Tras una caída, al arrancar vuelca a la BDD lo anotado en el diario")
+    void recuperarDiarioTest() throws Exception {
+        when(inventarioService.stockActual(1L, 2L)).thenReturn(0);
+        LibroStockMemoria libro = nuevoLibro();
+        libro.registrar(movimiento(TipoMovimiento.COMPRA, 10));
+        libro.registrar(movimiento(TipoMovimiento.VENTA, 4));
+        // No se llama a volcar(): simulamos que el proceso muere aquí
+
+        doAnswer(i -> { i.<Consumer<Object>>getArgument(0).accept(null); return null; })
+                .when(transactionTemplate).executeWithoutResult(any());
+
+        nuevoLibro();
+
+        verify(inventarioService).aplicarDelta(1L, 2L, 6); // Los dos movimientos agrupados en un único delta
+        verify(movimientoRepository).saveAll(argThat(lista -> ((List<?>) lista).size() == 2));
+        verify(segmentoRepository).save(any());
+        try (var ficheros = Files.list(directorio)) {
+            assertEquals(0, ficheros.count()); // El segmento aplicado se borra
+        }
+    }
+
+    @Test
+    @DisplayName("Dentro de una transacción el movimiento solo se anota al confirmarla y se descarta si se deshace")
+    void registrarEnTransaccionTest() throws Exception {
+        when(inventarioService.stockActual(1L, 2L)).thenReturn(5);
+        LibroStockMemoria libro = nuevoLibro();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            libro.registrar(movimiento(TipoMovimiento.VENTA, 3));
+            // La segunda salida de la misma transacción ve la primera aunque todavía no esté en el mapa
+            assertThrows(RuntimeException.class, () -> libro.registrar(movimiento(TipoMovimiento.VENTA, 3)));
+            terminar(false);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        try (var ficheros = Files.list(directorio)) {
+            assertEquals(0, ficheros.count()); // Nada anotado en el diario
+        }
+
+        // Deshecha la primera, vuelve a haber 5; esta vez se confirma
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            Movimiento venta = movimiento(TipoMovimiento.VENTA, 4);
+            libro.registrar(venta);
+            assertEquals(1, venta.getStockResultante());
+            terminar(true);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(entityManager).flush();
+        try (var ficheros = Files.list(directorio)) {
+            assertEquals(1, ficheros.count());
+        }
+        assertThrows(RuntimeException.class, () -> libro.registrar(movimiento(TipoMovimiento.VENTA, 2)));
+    }
+
+    @Test
+    @DisplayName("Las reservas se validan con la franja tomada y las salidas respetan lo retenido")
+    void retenerTest() throws Exception {
+        when(inventarioService.stockActual(1L, 2L)).thenReturn(5);
+        LibroStockMemoria libro = nuevoLibro();
+        ClaveInventario clave = new ClaveInventario(1L, 2L);
+        retenciones.sumar(clave, 1);
+
+        assertThrows(IllegalStateException.class, () -> libro.retener(clave, 1));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            libro.retener(clave, 3);
+            assertThrows(ConflictoException.class, () -> libro.retener(clave, 2));
+            terminar(true);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(4, retenciones.reservado(clave));
+        // 5 de stock y 4 retenidos: solo se puede sacar 1
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> libro.registrar(movimiento(TipoMovimiento.VENTA, 2)));
+        assertTrue(error.getMessage().contains("4 reservado"));
+
+        // Confirmar una reserva: su cantidad sale con la venta y nadie más puede reservarla mientras tanto
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            retenciones.confirmar(clave, 3);
+            assertThrows(ConflictoException.class, () -> libro.retener(clave, 2));
+            Movimiento venta = movimiento(TipoMovimiento.VENTA, 4);
+            libro.registrar(venta);
+            assertEquals(1, venta.getStockResultante());
+            terminar(true);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(1, retenciones.comprometido(clave));
+    }
+
+    // Lo que haría el gestor de transacciones al confirmar o deshacer
+    private void terminar(boolean confirmar) {
+        List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+        if (confirmar) {
+            sincronizaciones.forEach(s -> s.beforeCommit(false));
+        }
+        sincronizaciones.forEach(s -> s.afterCompletion(confirmar
+                ? TransactionSynchronization.STATUS_COMMITTED : TransactionSynchronization.STATUS_ROLLED_BACK));
+    }
+}
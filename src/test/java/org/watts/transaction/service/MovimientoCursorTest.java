@@ -0,0 +1,127 @@
+package org.watts.transaction.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.config.AuditConfig;
+import org.watts.inventory.models.Almacen;
+import org.watts.transaction.dto.MovimientoFiltro;
+import org.watts.transaction.dto.MovimientoResponse;
+import org.watts.transaction.dto.MovimientosCursorResponse;
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.model.Movimiento;
+import org.watts.transaction.repository.MovimientoArchivadoRepository;
+import org.watts.transaction.repository.MovimientoRepository;
+import org.watts.transaction.repository.ProyeccionMovimientosRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@Import(AuditConfig.class)
+class MovimientoCursorTest {
+
+    @Autowired private MovimientoRepository movimientoRepository;
+    @Autowired private MovimientoArchivadoRepository movimientoArchivadoRepository;
+    @Autowired private TestEntityManager entityManager;
+
+    private MovimientoService servicio;
+    private Variante variante;
+    private Almacen almacen;
+
+    @BeforeEach
+    void setUp() {
+        Producto p = new Producto(); p.setNombre("P"); p.setCodigoBase("C"); entityManager.persist(p);
+        Talla t = new Talla(); t.setNombre("T"); entityManager.persist(t);
+        Color c = new Color(); c.setNombre("C"); entityManager.persist(c);
+        variante = new Variante(); variante.setProducto(p); variante.setTalla(t); variante.setColor(c); variante.setSku("SKU");
+        entityManager.persist(variante);
+        almacen = new Almacen(); almacen.setCodigo("A1"); entityManager.persist(almacen);
+
+        ArchivoMovimientosService archivo = mock(ArchivoMovimientosService.class);
+        when(archivo.consultar(any(), any(), any()))
+                .thenAnswer(i -> i.<Function<ArchivoMovimientosService.Tramo, Object>>getArgument(2).apply(ArchivoMovimientosService.Tramo.CALIENTE));
+        servicio = new MovimientoService(movimientoRepository, null, null, null, null, null, null, null,
+                movimientoArchivadoRepository, archivo, null, null, null, null, null, null,
+                new ProyeccionMovimientosRepository(entityManager.getEntityManager()));
+    }
+
+    @Test
+    @DisplayName("Recorre todos los movimientos por cursor sin repetir ni saltar, también con fechas empatadas")
+    void recorrerConEmpates() {
+        // 7 movimientos: los cuatro primeros comparten fecha para que el desempate sea por id
+        LocalDateTime base = LocalDateTime.of(2026, 3, 10, 12, 0);
+        List<Long> esperados = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            // Orden esperado: fechas descendentes y, a igual fecha, id descendente
+            esperados.add(0, crear(i < 4 ? base : base.plusMinutes(i), TipoMovimiento.COMPRA));
+        }
+
+        List<Long> leidos = new ArrayList<>();
+        String cursor = null;
+        int paginas = 0;
+        do {
+            MovimientosCursorResponse pagina = servicio.verHistorialVariante(variante.getId(), cursor, 3);
+            pagina.contenido().stream().map(MovimientoResponse::id).forEach(leidos::add);
+            cursor = pagina.siguiente();
+            paginas++;
+        } while (cursor != null);
+
+        assertEquals(esperados, leidos);
+        assertEquals(3, paginas);
+    }
+
+    @Test
+    @DisplayName("Aplica los mismos filtros que el listado paginado")
+    void filtrarPorTipo() {
+        LocalDateTime base = LocalDateTime.of(2026, 3, 10, 12, 0);
+        crear(base, TipoMovimiento.COMPRA);
+        Long venta = crear(base.plusMinutes(1), TipoMovimiento.VENTA);
+        crear(base.plusMinutes(2), TipoMovimiento.COMPRA);
+
+        MovimientoFiltro filtro = new MovimientoFiltro(null, null, null, null, TipoMovimiento.VENTA,
+                null, null, null, null, null, null);
+        MovimientosCursorResponse pagina = servicio.verMovimientos(filtro, null, 10);
+
+        assertEquals(List.of(venta), pagina.contenido().stream().map(MovimientoResponse::id).toList());
+        assertNull(pagina.siguiente());
+    }
+
+    @Test
+    @DisplayName("Un cursor manipulado o un tamaño fuera de rango se rechazan")
+    void cursorNoValido() {
+        MovimientoFiltro filtro = new MovimientoFiltro(null, null, null, null, null, null, null, null, null, null, null);
+        assertThrows(RuntimeException.class, () -> servicio.verMovimientos(filtro, "no-es-un-cursor", 10));
+        assertThrows(RuntimeException.class, () -> servicio.verMovimientos(filtro, null, 0));
+    }
+
+    // La fecha de creación la pone la auditoría: se fija después con un UPDATE
+    private Long crear(LocalDateTime fecha, TipoMovimiento tipo) {
+        Movimiento m = new Movimiento();
+        m.setVariante(variante); m.setAlmacen(almacen); m.setTipo(tipo); m.setCantidad(1);
+        entityManager.persistAndFlush(m);
+        entityManager.getEntityManager()
+                .createQuery("update Movimiento m set m.fechaCreacion = :fecha where m.id = :id")
+                .setParameter("fecha", fecha).setParameter("id", m.getId())
+                .executeUpdate();
+        entityManager.clear();
+        return m.getId();
+    }
+}
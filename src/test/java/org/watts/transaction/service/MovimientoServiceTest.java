@@ -6,24 +6,48 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.watts.catalog.model.Producto;
 import org.watts.catalog.model.Variante;
+import org.watts.catalog.repository.VarianteRepository;
 import org.watts.inventory.dto.InventarioResponse;
 import org.watts.inventory.models.Almacen;
+import org.watts.inventory.models.ClaveInventario;
 import org.watts.inventory.models.Inventario;
+import org.watts.inventory.repository.AlmacenRepository;
 import org.watts.inventory.service.InventarioService;
+import org.watts.inventory.service.ValoracionInventarioService;
+import org.watts.inventory.service.ReservaStockService;
+import org.watts.inventory.service.RetencionesStock;
 import org.watts.shared.service.EmailService;
 import org.watts.shared.service.ReportService;
+import org.watts.transaction.dto.MovimientoLoteRequest;
+import org.watts.transaction.dto.MovimientoLoteResponse;
+import org.watts.transaction.dto.LineaTransferencia;
+import org.watts.transaction.dto.MovimientoRequest;
+import org.watts.transaction.dto.MovimientoResponse;
+import org.watts.transaction.dto.TransferenciaRequest;
+import org.watts.transaction.dto.TransferenciaResponse;
 import org.watts.transaction.enums.TipoMovimiento;
 import org.watts.transaction.mapper.MovimientoMapper;
 import org.watts.transaction.model.Movimiento;
+import org.watts.transaction.model.MovimientoArchivado;
+import org.watts.transaction.repository.MovimientoArchivadoRepository;
 import org.watts.transaction.repository.MovimientoRepository;
+import org.watts.transaction.repository.ProyeccionMovimientosRepository;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -38,6 +62,17 @@ class MovimientoServiceTest {
     @Mock private MovimientoMapper movimientoMapper;
     @Mock private ReportService reportService;
     @Mock private EmailService emailService;
+    @Mock private VarianteRepository varianteRepository;
+    @Mock private AlmacenRepository almacenRepository;
+    @Mock private LibroStockMemoria libroStock;
+    @Mock private MovimientoArchivadoRepository movimientoArchivadoRepository;
+    @Mock private ArchivoMovimientosService archivoMovimientos;
+    @Mock private ReservaStockService reservaStockService;
+    @Mock private RetencionesStock retenciones;
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Mock private ValoracionInventarioService valoracionService;
+    @Mock private ResumenDiarioService resumenDiarioService;
+    @Mock private ProyeccionMovimientosRepository proyeccionMovimientos;
 
     @InjectMocks
     private MovimientoService movimientoService;
@@ -83,13 +118,205 @@ class MovimientoServiceTest {
     @Test
     @DisplayName("Debe listar historial con filtros")
     void verTodosLosMovimientosTest() {
-        Page<Movimiento> page = new PageImpl<>(Collections.singletonList(new Movimiento()));
-        when(movimientoRepository.findAll(any(Specification.class), any(Pageable.class))).thenReturn(page);
+        when(archivoMovimientos.consultar(any(), any(), any()))
+                .thenAnswer(i -> i.<Function<ArchivoMovimientosService.Tramo, Object>>getArgument(2).apply(ArchivoMovimientosService.Tramo.CALIENTE));
+        when(proyeccionMovimientos.buscar(eq(Movimiento.class), any(Specification.class), any(Pageable.class)))
+                .thenReturn(Collections.singletonList(respuesta()));
 
         movimientoService.verTodosLosMovimientos(
                 Pageable.unpaged(), "Var", null, "Alm", null, TipoMovimiento.VENTA, null, null, null, null, null, null
         );
 
-        verify(movimientoRepository).findAll(any(Specification.class), any(Pageable.class));
+        verify(proyeccionMovimientos).buscar(eq(Movimiento.class), any(Specification.class), any(Pageable.class));
+        verify(proyeccionMovimientos, never()).buscar(eq(MovimientoArchivado.class), any(Specification.class), any(Pageable.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Con meses archivados la página se completa con la tabla caliente y después con el archivo")
+    void verTodosLosMovimientosConArchivoTest() {
+        when(archivoMovimientos.consultar(any(), any(), any()))
+                .thenAnswer(i -> i.<Function<ArchivoMovimientosService.Tramo, Object>>getArgument(2).apply(ArchivoMovimientosService.Tramo.AMBOS));
+        when(movimientoRepository.count(any(Specification.class))).thenReturn(3L);
+        when(movimientoArchivadoRepository.count(any(Specification.class))).thenReturn(10L);
+        when(proyeccionMovimientos.buscar(eq(MovimientoArchivado.class), any(Specification.class), any(Pageable.class)))
+                .thenReturn(List.of(respuesta(), respuesta(), respuesta(), respuesta()));
+
+        // Página 1 de tamaño 5: el último de la tabla caliente (offset 5 > 3) no entra; del archivo desde su offset 2
+        Page<MovimientoResponse> pagina = movimientoService.verTodosLosMovimientos(
+                PageRequest.of(1, 5), null, null, null, null, null, null, null, null, null, null, null);
+
+        assertEquals(13, pagina.getTotalElements());
+        verify(proyeccionMovimientos, never()).buscar(eq(Movimiento.class), any(Specification.class), any(Pageable.class));
+        verify(proyeccionMovimientos).buscar(eq(MovimientoArchivado.class), any(Specification.class),
+                argThat((Pageable p) -> p.getOffset() == 2 && p.getPageSize() == 5));
+    }
+
+    @Test
+    @DisplayName("Debe procesar un lote aplicando las líneas válidas y rechazando las que dejan stock negativo")
+    void procesarLoteParcialTest() {
+        // GIVEN
+        Variante variante = new Variante(); variante.setId(1L); variante.setSku("SKU-1"); variante.setPrecioCompra(10.0);
+        Almacen almacen = new Almacen(); almacen.setId(2L);
+        Inventario inventario = new Inventario(); inventario.setVariante(variante); inventario.setAlmacen(almacen); inventario.setStock(5);
+
+        when(varianteRepository.findBySkuIn(any())).thenReturn(List.of(variante));
+        when(almacenRepository.findAllById(any())).thenReturn(List.of(almacen));
+        Map<ClaveInventario, Inventario> bloqueados = new TreeMap<>(Map.of(new ClaveInventario(1L, 2L), inventario));
+        when(inventarioService.bloquearInventarios(any())).thenReturn(bloqueados);
+
+        MovimientoLoteRequest request = new MovimientoLoteRequest(List.of(
+                new MovimientoRequest("SKU-1", 2L, 3, TipoMovimiento.VENTA, null, null, null),
+                new MovimientoRequest("SKU-1", 2L, 4, TipoMovimiento.VENTA, null, null, null), // Solo quedan 2
+                new MovimientoRequest("SKU-X", 2L, 1, TipoMovimiento.COMPRA, null, null, null)  // SKU inexistente
+        ), false);
+
+        // WHEN
+        MovimientoLoteResponse resultado = movimientoService.procesarLote(request);
+
+        // THEN
+        assertEquals(1, resultado.aplicadas());
+        assertEquals(2, resultado.rechazadas());
+        assertTrue(resultado.resultados().get(0).aplicado());
+        assertEquals(2, resultado.resultados().get(0).stockResultante());
+        assertFalse(resultado.resultados().get(1).aplicado());
+        assertEquals(2, inventario.getStock()); // Se escribe el stock final de la fila
+        verify(movimientoRepository).saveAll(argThat(lista -> ((List<?>) lista).size() == 1));
+        verify(emailService, times(1)).enviarNotificacionMovimiento(anyString(), anyString()); // Un único aviso por lote
+    }
+
+    @Test
+    @DisplayName("En modo todo o nada, un lote con errores no escribe nada")
+    void procesarLoteTodoONadaTest() {
+        Variante variante = new Variante(); variante.setId(1L); variante.setSku("SKU-1");
+        Almacen almacen = new Almacen(); almacen.setId(2L);
+        Inventario inventario = new Inventario(); inventario.setVariante(variante); inventario.setAlmacen(almacen); inventario.setStock(1);
+
+        when(varianteRepository.findBySkuIn(any())).thenReturn(List.of(variante));
+        when(almacenRepository.findAllById(any())).thenReturn(List.of(almacen));
+        when(inventarioService.bloquearInventarios(any()))
+                .thenReturn(new TreeMap<>(Map.of(new ClaveInventario(1L, 2L), inventario)));
+
+        MovimientoLoteRequest request = new MovimientoLoteRequest(List.of(
+                new MovimientoRequest("SKU-1", 2L, 1, TipoMovimiento.COMPRA, null, null, null),
+                new MovimientoRequest("SKU-1", 2L, 10, TipoMovimiento.VENTA, null, null, null)
+        ), true);
+
+        MovimientoLoteResponse resultado = movimientoService.procesarLote(request);
+
+        assertEquals(0, resultado.aplicadas());
+        assertEquals(1, inventario.getStock());
+        verify(movimientoRepository, never()).saveAll(any());
+        verify(inventarioService, never()).guardarInventarios(any());
+    }
+
+    @Test
+    @DisplayName("En modo memoria el movimiento pasa por el libro de stock y no toca la BDD")
+    void procesarMovimientoEnMemoriaTest() {
+        Variante variante = new Variante(); variante.setSku("SKU-1");
+        Almacen almacen = new Almacen(); almacen.setDescripcion("Principal");
+
+        when(libroStock.isActivo()).thenReturn(true);
+        doAnswer(i -> { i.<Movimiento>getArgument(0).setStockResultante(7); return null; })
+                .when(libroStock).registrar(any(Movimiento.class));
+        when(inventarioService.mapearADTO(any(Inventario.class)))
+                .thenAnswer(i -> { InventarioResponse r = new InventarioResponse(); r.setStock(i.<Inventario>getArgument(0).getStock()); return r; });
+
+        InventarioResponse resultado = movimientoService.procesarMovimiento(
+                variante, almacen, 2, TipoMovimiento.COMPRA, null, null, null
+        );
+
+        assertEquals(7, resultado.getStock());
+        verify(inventarioService, never()).updateStock(any(), any(), anyInt(), any());
+        verify(movimientoRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Un grupo de movimientos guarda las líneas con stock y anota el error de las demás")
+    void procesarGrupoTest() {
+        Variante variante = new Variante(); variante.setId(1L); variante.setSku("SKU-1");
+        Almacen almacen = new Almacen(); almacen.setId(2L);
+        Inventario inventario = new Inventario(); inventario.setId(7L); inventario.setStock(5);
+
+        when(inventarioService.bloquearInventarios(Set.of(new ClaveInventario(1L, 2L))))
+                .thenReturn(new TreeMap<>(Map.of(new ClaveInventario(1L, 2L), inventario)));
+
+        List<String> errores = new ArrayList<>(Collections.nCopies(2, null));
+        List<Inventario> resultados = movimientoService.procesarGrupo(List.of(
+                new PeticionMovimiento(variante, almacen, 1, TipoMovimiento.VENTA, null, null, null, "ana"),
+                new PeticionMovimiento(variante, almacen, 9, TipoMovimiento.VENTA, null, null, null, "luis")
+        ), errores);
+
+        assertEquals(4, resultados.get(0).getStock());
+        assertEquals(7L, resultados.get(0).getId());
+        assertNull(resultados.get(1));
+        assertNull(errores.get(0));
+        assertTrue(errores.get(1).startsWith("Stock insuficiente"));
+        // Las filas del grupo se bloquean de una vez y la vista y los totales se escriben una sola vez al final
+        assertEquals(4, inventario.getStock());
+        verify(inventarioService, never()).intentarUpdateStock(any(), any(), anyInt(), any());
+        verify(inventarioService).guardarInventarios(any());
+        verify(movimientoRepository).saveAll(argThat(lista -> ((List<?>) lista).size() == 1)); // Un solo INSERT por grupo
+    }
+
+    @Test
+    @DisplayName("Una transferencia crea una salida y una entrada enlazadas y mueve el stock en una sola escritura")
+    void procesarTransferenciaTest() {
+        Variante variante = new Variante(); variante.setId(1L); variante.setSku("SKU-1");
+        Almacen origen = new Almacen(); origen.setId(1L);
+        Almacen destino = new Almacen(); destino.setId(2L);
+        Inventario invOrigen = new Inventario(); invOrigen.setStock(10);
+        Inventario invDestino = new Inventario(); invDestino.setStock(0);
+
+        when(almacenRepository.findById(1L)).thenReturn(Optional.of(origen));
+        when(almacenRepository.findById(2L)).thenReturn(Optional.of(destino));
+        when(varianteRepository.findBySkuIn(any())).thenReturn(List.of(variante));
+        when(inventarioService.bloquearInventarios(any())).thenReturn(new TreeMap<>(Map.of(
+                new ClaveInventario(1L, 1L), invOrigen,
+                new ClaveInventario(1L, 2L), invDestino)));
+
+        TransferenciaResponse resultado = movimientoService.procesarTransferencia(
+                new TransferenciaRequest(1L, 2L, null, List.of(new LineaTransferencia("SKU-1", 4))));
+
+        assertEquals(6, resultado.lineas().get(0).stockOrigen());
+        assertEquals(4, resultado.lineas().get(0).stockDestino());
+        assertEquals(6, invOrigen.getStock());
+        assertEquals(4, invDestino.getStock());
+        verify(movimientoRepository).saveAll(argThat(lista -> {
+            List<Movimiento> movimientos = (List<Movimiento>) lista;
+            return movimientos.size() == 2
+                    && movimientos.get(0).getTipo() == TipoMovimiento.TRANSFERENCIA_SALIDA
+                    && movimientos.get(1).getTipo() == TipoMovimiento.TRANSFERENCIA_ENTRADA
+                    && resultado.referencia().equals(movimientos.get(0).getReferenciaTransferencia())
+                    && resultado.referencia().equals(movimientos.get(1).getReferenciaTransferencia());
+        }));
+    }
+
+    @Test
+    @DisplayName("Si falta stock en el origen la transferencia no mueve nada")
+    void procesarTransferenciaSinStockTest() {
+        Variante variante = new Variante(); variante.setId(1L); variante.setSku("SKU-1");
+        Almacen origen = new Almacen(); origen.setId(1L);
+        Almacen destino = new Almacen(); destino.setId(2L);
+        Inventario invOrigen = new Inventario(); invOrigen.setStock(2);
+        Inventario invDestino = new Inventario(); invDestino.setStock(5);
+
+        when(almacenRepository.findById(1L)).thenReturn(Optional.of(origen));
+        when(almacenRepository.findById(2L)).thenReturn(Optional.of(destino));
+        when(varianteRepository.findBySkuIn(any())).thenReturn(List.of(variante));
+        when(inventarioService.bloquearInventarios(any())).thenReturn(new TreeMap<>(Map.of(
+                new ClaveInventario(1L, 1L), invOrigen,
+                new ClaveInventario(1L, 2L), invDestino)));
+
+        TransferenciaRequest request = new TransferenciaRequest(1L, 2L, null, List.of(new LineaTransferencia("SKU-1", 4)));
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> movimientoService.procesarTransferencia(request));
+
+        assertTrue(ex.getMessage().contains("Stock insuficiente"));
+        assertEquals(5, invDestino.getStock());
+        verify(movimientoRepository, never()).saveAll(any());
+    }
+
+    private static MovimientoResponse respuesta() {
+        return new MovimientoResponse(1L, null, null, TipoMovimiento.VENTA, -1, 0, null, "SKU", null, null,
+                (String) null, null, (String) null, null, (String) null, null, null, null, null, null, null, null);
+    }
+}
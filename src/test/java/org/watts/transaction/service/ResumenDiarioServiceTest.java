@@ -0,0 +1,135 @@
+package org.watts.transaction.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.watts.catalog.model.Color;
+import org.watts.catalog.model.Producto;
+import org.watts.catalog.model.Talla;
+import org.watts.catalog.model.Variante;
+import org.watts.catalog.repository.ColorRepository;
+import org.watts.catalog.repository.ProductoRepository;
+import org.watts.catalog.repository.TallaRepository;
+import org.watts.catalog.repository.VarianteRepository;
+import org.watts.config.AuditConfig;
+import org.watts.inventory.models.Almacen;
+import org.watts.inventory.repository.AlmacenRepository;
+import org.watts.transaction.dto.RellenoResumenDiarioResponse;
+import org.watts.transaction.dto.VentasDiaResponse;
+import org.watts.transaction.enums.TipoMovimiento;
+import org.watts.transaction.model.Movimiento;
+import org.watts.transaction.repository.MovimientoRepository;
+import org.watts.transaction.repository.ResumenMovimientosDiaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Sin transacción de test: el relleno regenera cada tramo en su propia transacción desde el pool
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:resumendiario;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(AuditConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ResumenDiarioServiceTest {
+
+    @Autowired private ResumenMovimientosDiaRepository resumenRepository;
+    @Autowired private MovimientoRepository movimientoRepository;
+    @Autowired private ProductoRepository productoRepository;
+    @Autowired private TallaRepository tallaRepository;
+    @Autowired private ColorRepository colorRepository;
+    @Autowired private VarianteRepository varianteRepository;
+    @Autowired private AlmacenRepository almacenRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private ResumenDiarioService servicio;
+    private Variante variante;
+    private Almacen a1, a2;
+    private final LocalDate hoy = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+        Producto p = new Producto(); p.setNombre("P"); p.setCodigoBase("C"); productoRepository.save(p);
+        Talla t = new Talla(); t.setNombre("T"); tallaRepository.save(t);
+        Color c = new Color(); c.setNombre("C"); colorRepository.save(c);
+        Variante v = new Variante(); v.setProducto(p); v.setTalla(t); v.setColor(c); v.setSku("SKU");
+        variante = varianteRepository.save(v);
+        a1 = new Almacen(); a1.setCodigo("A1"); a1 = almacenRepository.save(a1);
+        a2 = new Almacen(); a2.setCodigo("A2"); a2 = almacenRepository.save(a2);
+
+        // Un tramo por día, dos a la vez
+        servicio = new ResumenDiarioService(resumenRepository, jdbcTemplate, new TransactionTemplate(transactionManager), 2, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        resumenRepository.deleteAll();
+        movimientoRepository.deleteAll();
+        varianteRepository.deleteAll();
+        almacenRepository.deleteAll();
+        productoRepository.deleteAll();
+        tallaRepository.deleteAll();
+        colorRepository.deleteAll();
+    }
+
+    private Movimiento movimiento(Almacen almacen, TipoMovimiento tipo, int cantidad, double venta, LocalDate dia) {
+        Movimiento m = new Movimiento();
+        m.setVariante(variante); m.setAlmacen(almacen); m.setTipo(tipo);
+        m.setCantidad(cantidad); m.setPrecioCompraTotal(cantidad * 5.0); m.setPrecioVentaTotal(venta);
+        m = movimientoRepository.save(m);
+        // La auditoría pone la fecha actual: la retrasamos directamente en la tabla y en la entidad
+        jdbcTemplate.update("UPDATE movimientos SET fecha_creacion = ? WHERE id = ?", dia.atTime(12, 0), m.getId());
+        m.setFechaCreacion(dia.atTime(12, 0));
+        return m;
+    }
+
+    @Test
+    @DisplayName("Los movimientos se suman a los totales de su día y el relleno los recalcula desde la tabla de movimientos")
+    void totalesDiariosYRellenoTest() {
+        Movimiento compra = movimiento(a1, TipoMovimiento.COMPRA, 10, 0, hoy.minusDays(3));
+        Movimiento venta1 = movimiento(a1, TipoMovimiento.VENTA, 2, 40, hoy.minusDays(3));
+        Movimiento venta2 = movimiento(a2, TipoMovimiento.VENTA, 3, 60, hoy.minusDays(1));
+        Movimiento venta3 = movimiento(a1, TipoMovimiento.VENTA, 1, 20, hoy);
+        servicio.registrar(List.of(compra, venta1, venta2));
+        servicio.registrar(List.of(venta3));
+
+        comprobarVentas(1);
+
+        // Un total sumado dos veces (p. ej. datos previos a activar los totales) se corrige al rellenar
+        servicio.registrar(List.of(venta3));
+        comprobarVentas(2);
+
+        RellenoResumenDiarioResponse relleno = servicio.rellenar(hoy.minusDays(3), hoy);
+        assertEquals(4, relleno.tramos());
+        assertEquals(4, relleno.filas());
+        comprobarVentas(1);
+
+        List<VentasDiaResponse> compras = servicio.totalesPorDia(TipoMovimiento.COMPRA, hoy.minusDays(7), hoy, null);
+        assertEquals(List.of(new VentasDiaResponse(hoy.minusDays(3), 1, 10, 50.0, 0.0)), compras);
+    }
+
+    private void comprobarVentas(int ventasDeHoy) {
+        List<VentasDiaResponse> ventas = servicio.totalesPorDia(TipoMovimiento.VENTA, hoy.minusDays(7), hoy, null);
+        assertEquals(List.of(
+                new VentasDiaResponse(hoy.minusDays(3), 1, 2, 10.0, 40.0),
+                new VentasDiaResponse(hoy.minusDays(1), 1, 3, 15.0, 60.0),
+                new VentasDiaResponse(hoy, ventasDeHoy, ventasDeHoy, 5.0 * ventasDeHoy, 20.0 * ventasDeHoy)), ventas);
+
+        List<VentasDiaResponse> enA1 = servicio.totalesPorDia(TipoMovimiento.VENTA, hoy.minusDays(7), hoy, a1.getId());
+        assertEquals(2, enA1.size());
+    }
+}